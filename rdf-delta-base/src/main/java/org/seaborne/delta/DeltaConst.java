@@ -97,6 +97,17 @@ public class DeltaConst {
     // Properties used to define patch store providers. 
     public static final String pDeltaFile      = "delta.file";
     public static final String pDeltaZk        = "delta.zk";
+    /** Server property: "true" to reduce each transaction of a patch to its net effect before storing it. */
+    public static final String pDeltaCanonical = "delta.canonical";
+    /**
+     * Server property: compression codec name ("gzip", "identity") for stored patches.
+     * A log can override this with "delta.compression.<i>logName</i>".
+     */
+    public static final String pDeltaCompression = "delta.compression";
+    /** Server property: most quad changes held in memory when squashing patches for a catch-up fetch. */
+    public static final String pDeltaCatchUpMemory = "delta.catchup.memory";
+    /** Server property: directory for the temporary files of a catch-up fetch that does not fit in memory. */
+    public static final String pDeltaCatchUpDir = "delta.catchup.dir";
     
     // HTTP query string.
     // Registration
@@ -107,6 +118,8 @@ public class DeltaConst {
     public static final String paramPatch      = "patch";
     public static final String paramDatasource = F_DATASOURCE;
     public static final String paramVersion    = "version";
+    /** Fetch the net effect of all patches from the version to the latest as one patch. */
+    public static final String paramCatchUp    = "catchup";
     
     // Symbols used to store information, e.g. in a dataset context.
     
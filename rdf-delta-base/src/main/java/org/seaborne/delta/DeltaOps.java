@@ -18,9 +18,17 @@
 
 package org.seaborne.delta;
 
+import java.io.InputStream ;
 import java.io.OutputStream ;
 
+import org.apache.jena.atlas.web.AcceptList ;
+import org.apache.jena.atlas.web.ContentType ;
+import org.apache.jena.atlas.web.MediaType ;
 import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch ;
+import org.seaborne.patch.RDFPatchOps ;
+import org.seaborne.patch.binary.RDFChangesWriterBinary ;
+import org.seaborne.patch.binary.RDFPatchReaderBinary ;
 import org.seaborne.patch.changes.RDFChangesLog ;
 import org.seaborne.patch.changes.RDFChangesN ;
 import org.seaborne.patch.system.Printer ;
@@ -64,4 +72,39 @@ public class DeltaOps {
         TokenWriter tokenWriter = new TokenWriterText(out) ;
         return tokenWriter ;
     }
+    
+    /** Is the content type that of a binary (Thrift) patch? Null means "text". */
+    public static boolean isBinaryPatch(String contentType) {
+        if ( contentType == null )
+            return false;
+        return DeltaConst.contentTypePatchBinary.equalsIgnoreCase(ContentType.create(contentType).getContentType());
+    }
+
+    /**
+     * Choose the patch content type for an HTTP {@code Accept} header.
+     * The default, including no header, is text.
+     */
+    public static String negotiatePatch(String acceptHeader) {
+        if ( acceptHeader == null || acceptHeader.isEmpty() )
+            return DeltaConst.contentTypePatchText;
+        MediaType mt = AcceptList.match(new AcceptList(acceptHeader), DeltaConst.rsOfferPatch);
+        if ( mt == null )
+            return DeltaConst.contentTypePatchText;
+        return isBinaryPatch(mt.getContentType()) ? DeltaConst.contentTypePatchBinary : DeltaConst.contentTypePatchText;
+    }
+
+    /** Read a patch, in text or binary according to the content type. */
+    public static RDFPatch readPatch(InputStream in, String contentType) {
+        if ( isBinaryPatch(contentType) )
+            return RDFPatchReaderBinary.read(in);
+        return RDFPatchOps.read(in);
+    }
+
+    /** Write a patch, in text or binary according to the content type. */
+    public static void writePatch(OutputStream out, RDFPatch patch, String contentType) {
+        if ( isBinaryPatch(contentType) )
+            RDFChangesWriterBinary.write(patch, out);
+        else
+            RDFPatchOps.write(out, patch);
+    }
 }
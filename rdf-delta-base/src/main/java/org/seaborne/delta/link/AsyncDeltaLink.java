@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.link;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogInfo ;
+import org.seaborne.patch.RDFPatch ;
+
+/**
+ * Asynchronous form of the {@link DeltaLink} operations used for patch log traffic.
+ * Each operation returns immediately with a {@link CompletableFuture}.
+ * <p>
+ * Exceptions are reported by completing the future exceptionally with the exception
+ * the {@link DeltaLink} operation would have thrown.
+ * <p>
+ * The operations run the blocking {@link DeltaLink} calls on other threads.
+ * {@link #wrap(DeltaLink)} gives each {@code AsyncDeltaLink} its own small, fixed
+ * maximum number of threads, which end when idle; further operations wait in a queue.
+ * Callers that issue operations ahead of need, such as fetching patches ahead, should
+ * use {@link #available} so that they do not fill the queue and hold up other
+ * operations on the link.
+ * 
+ * @see #wrap(DeltaLink)
+ */
+public interface AsyncDeltaLink {
+    
+    /** Asynchronous operations over any {@link DeltaLink}, using a bounded pool of threads for this link. */ 
+    public static AsyncDeltaLink wrap(DeltaLink dLink) {
+        return new AsyncDeltaLinkWrapper(dLink);
+    }
+
+    /** Asynchronous operations over any {@link DeltaLink}, run by the given {@link Executor}. */ 
+    public static AsyncDeltaLink wrap(DeltaLink dLink, Executor executor) {
+        return new AsyncDeltaLinkWrapper(dLink, executor);
+    }
+
+    /** The synchronous {@link DeltaLink} for other operations. */ 
+    public DeltaLink getLink();
+
+    /** Return details of all patch logs. */
+    public CompletableFuture<List<PatchLogInfo>> listPatchLogInfo();
+
+    /** Return details of the patch log; the future completes with null if the patch log is not registered. */
+    public CompletableFuture<PatchLogInfo> getPatchLogInfo(Id dsRef);
+
+    /** Send a patch to the patch log; the future completes with the new version. */
+    public CompletableFuture<Long> append(Id dsRef, RDFPatch patch);
+
+    /** Get a patch by version. */
+    public CompletableFuture<RDFPatch> fetch(Id dsRef, long version);
+
+    /** Get a patch by id. */
+    public CompletableFuture<RDFPatch> fetch(Id dsRef, Id patchId);
+
+    /** No-op end-to-end operation. */
+    public CompletableFuture<Void> ping();
+
+    /**
+     * The number of further operations that would start now, without waiting for
+     * a thread. {@link Integer#MAX_VALUE} if there is no limit or it is not known.
+     */
+    public default int available() {
+        return Integer.MAX_VALUE;
+    }
+}
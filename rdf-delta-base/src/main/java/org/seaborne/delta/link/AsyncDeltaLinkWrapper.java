@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.link;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogInfo ;
+import org.seaborne.patch.RDFPatch ;
+
+/**
+ * {@link AsyncDeltaLink} over a {@link DeltaLink}.
+ * The blocking calls run on an {@link Executor}; the default is a pool for this link of
+ * at most {@link #POOL_SIZE} threads, so the number of threads does not grow with the number of
+ * outstanding requests, and one link does not hold up another.
+ */
+class AsyncDeltaLinkWrapper implements AsyncDeltaLink {
+    
+    /*package*/ static final int POOL_SIZE = 8;
+    
+    // Time an idle thread of the default pool is kept.
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    
+    private static final ThreadFactory threadFactory = new ThreadFactory();
+    
+    private static ThreadPoolExecutor newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(0);
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "DeltaLink-async-"+counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+    
+    private final DeltaLink dLink;
+    private final Executor executor;
+
+    AsyncDeltaLinkWrapper(DeltaLink dLink) {
+        this(dLink, newExecutor());
+    }
+
+    AsyncDeltaLinkWrapper(DeltaLink dLink, Executor executor) {
+        this.dLink = Objects.requireNonNull(dLink, "DeltaLink");
+        this.executor = Objects.requireNonNull(executor, "Executor");
+    }
+    
+    private <X> CompletableFuture<X> async(Supplier<X> action) {
+        return CompletableFuture.supplyAsync(action, executor);
+    }
+
+    @Override
+    public DeltaLink getLink() {
+        return dLink;
+    }
+
+    @Override
+    public CompletableFuture<List<PatchLogInfo>> listPatchLogInfo() {
+        return async(()->dLink.listPatchLogInfo());
+    }
+
+    @Override
+    public CompletableFuture<PatchLogInfo> getPatchLogInfo(Id dsRef) {
+        return async(()->dLink.getPatchLogInfo(dsRef));
+    }
+
+    @Override
+    public CompletableFuture<Long> append(Id dsRef, RDFPatch patch) {
+        return async(()->dLink.append(dsRef, patch));
+    }
+
+    @Override
+    public CompletableFuture<RDFPatch> fetch(Id dsRef, long version) {
+        return async(()->dLink.fetch(dsRef, version));
+    }
+
+    @Override
+    public CompletableFuture<RDFPatch> fetch(Id dsRef, Id patchId) {
+        return async(()->dLink.fetch(dsRef, patchId));
+    }
+
+    @Override
+    public CompletableFuture<Void> ping() {
+        return CompletableFuture.runAsync(()->dLink.ping(), executor);
+    }
+
+    @Override
+    public int available() {
+        if ( ! ( executor instanceof ThreadPoolExecutor ) )
+            return AsyncDeltaLink.super.available();
+        ThreadPoolExecutor pool = (ThreadPoolExecutor)executor;
+        return Math.max(0, pool.getMaximumPoolSize() - pool.getActiveCount() - pool.getQueue().size());
+    }
+}
@@ -18,12 +18,17 @@
 
 package org.seaborne.delta.link;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.LongStream;
 
 import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaNotFoundException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.PatchLogInfo ;
 import org.seaborne.patch.RDFPatch ;
+import org.seaborne.patch.RDFPatchOps ;
 
 /** Interface to the server for the operations.
  * A server is any engine that that provides the Delta operations
@@ -126,6 +131,24 @@ public interface DeltaLink {
     /** Retrieve a patch by data source and patch id. */ 
     public RDFPatch fetch(Id dsRef, Id patchId);
 
+    /**
+     * Retrieve the net effect of the patches from {@code version} to the latest version,
+     * as one patch; see {@link RDFPatchOps#squash}. The patch has the id of the latest patch.
+     * Return null if there are no patches from {@code version}.
+     */
+    public default RDFPatch fetchCatchUp(Id dsRef, long version) {
+        long latest = getCurrentVersion(dsRef);
+        if ( version < DeltaConst.VERSION_FIRST || version > latest )
+            return null;
+        Iterator<RDFPatch> iter = LongStream.rangeClosed(version, latest).mapToObj(v->{
+            RDFPatch patch = fetch(dsRef, v);
+            if ( patch == null )
+                throw new DeltaNotFoundException("Patch not found: version="+v);
+            return patch;
+        }).iterator();
+        return RDFPatchOps.squash(iter);
+    }
+
     /**
      * Retrieve a URL to the initial state.
      * The log starts with this state.
@@ -26,6 +26,7 @@ import org.junit.runners.Suite ;
     TestId.class
     , TestDatasetGraphWithAbort.class
     , TestPersistentState.class
+    , TestAsyncDeltaLink.class
 })
 
 public class TS_DeltaBase { }
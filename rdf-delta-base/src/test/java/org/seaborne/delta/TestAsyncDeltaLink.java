@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.seaborne.delta.link.AsyncDeltaLink;
+import org.seaborne.delta.link.DeltaLink;
+
+public class TestAsyncDeltaLink {
+
+    // DeltaLink where ping waits for the latch.
+    private static DeltaLink blockingLink(CountDownLatch latch) {
+        return (DeltaLink)Proxy.newProxyInstance(DeltaLink.class.getClassLoader(), new Class<?>[] {DeltaLink.class}, (proxy, method, args)->{
+            if ( method.getName().equals("ping") )
+                latch.await();
+            return null;
+        });
+    }
+
+    private static void awaitAvailable(AsyncDeltaLink aLink, int expected) throws InterruptedException {
+        for ( int i = 0 ; i < 500 && aLink.available() != expected ; i++ )
+            Thread.sleep(10);
+        assertEquals(expected, aLink.available());
+    }
+
+    // Each link has its own threads.
+    @Test public void async_available() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AsyncDeltaLink aLink1 = AsyncDeltaLink.wrap(blockingLink(latch));
+        AsyncDeltaLink aLink2 = AsyncDeltaLink.wrap(blockingLink(latch));
+        int n = aLink1.available();
+        assertTrue(n > 0);
+        assertTrue(n < Integer.MAX_VALUE);
+        CompletableFuture<Void> f = aLink1.ping();
+        awaitAvailable(aLink1, n-1);
+        assertEquals(n, aLink2.available());
+        latch.countDown();
+        f.join();
+        awaitAvailable(aLink1, n);
+    }
+}
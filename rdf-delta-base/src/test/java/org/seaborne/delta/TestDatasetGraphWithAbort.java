@@ -18,6 +18,9 @@
 
 package org.seaborne.delta;
 
+import java.util.concurrent.CompletableFuture ;
+
+import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.graph.Node ;
 import org.apache.jena.query.Dataset ;
 import org.apache.jena.query.DatasetFactory ;
@@ -29,6 +32,10 @@ import org.apache.jena.sparql.sse.SSE ;
 import org.apache.jena.system.Txn ;
 import org.junit.Assert ;
 import org.junit.Test ;
+import org.seaborne.patch.PatchException ;
+import org.seaborne.patch.RDFChanges ;
+import org.seaborne.patch.changes.RDFChangesCounter ;
+import org.seaborne.patch.changes.RDFChangesWrapper ;
 import org.seaborne.patch.system.DatasetGraphBuffering ;
 
 /** Tests for a transactional dataset with added abort capability. */ 
@@ -48,7 +55,7 @@ public class TestDatasetGraphWithAbort //extends AbstractTestTransactionLifecycl
     
     @Test public void dummy() {}
     
-    //@Test 
+    @Test 
     public void abort_data_1() {
         DatasetGraph dsg = create().asDatasetGraph() ;
         Txn.executeWrite(dsg, ()->dsg.add(q1)) ;
@@ -61,4 +68,117 @@ public class TestDatasetGraphWithAbort //extends AbstractTestTransactionLifecycl
         Assert.assertTrue(dsg.contains(q1)) ;
         Assert.assertFalse(dsg.contains(q2)) ;
     }
+
+    @Test public void buffer_find_1() {
+        DatasetGraph dsg1 = DatasetGraphFactory.createTxnMem() ;
+        Txn.executeWrite(dsg1, ()->dsg1.add(q1)) ;
+        DatasetGraphBuffering dsg = new DatasetGraphBuffering(dsg1) ;
+        dsg.begin(ReadWrite.WRITE);
+        dsg.add(q1) ;
+        dsg.add(q2) ;
+        dsg.add(q3) ;
+        dsg.delete(q3) ;
+        // Buffered : not yet in the base dataset.
+        Assert.assertTrue(dsg.contains(q2)) ;
+        Assert.assertFalse(dsg.contains(q3)) ;
+        Assert.assertFalse(dsg1.contains(q2)) ;
+        // No duplicates.
+        Assert.assertEquals(2, Iter.count(dsg.find(Node.ANY, s1, Node.ANY, Node.ANY))) ;
+        Assert.assertEquals(1, Iter.count(dsg.find(q1.getGraph(), Node.ANY, Node.ANY, Node.ANY))) ;
+        Assert.assertEquals(1, Iter.count(dsg.getDefaultGraph().find(null, null, null))) ;
+        dsg.commit();
+        dsg.end();
+        Txn.executeRead(dsg1, ()->{
+            Assert.assertTrue(dsg1.contains(q1)) ;
+            Assert.assertTrue(dsg1.contains(q2)) ;
+            Assert.assertFalse(dsg1.contains(q3)) ;
+        });
+    }
+
+    @Test public void buffer_changes_1() {
+        DatasetGraph dsg1 = DatasetGraphFactory.createTxnMem() ;
+        Txn.executeWrite(dsg1, ()->dsg1.add(q1)) ;
+        RDFChangesCounter counter = new RDFChangesCounter() ;
+        DatasetGraphBuffering dsg = new DatasetGraphBuffering(dsg1, counter) ;
+        Txn.executeWrite(dsg, ()->{
+            dsg.add(q1) ;       // Already present : no change.
+            dsg.add(q2) ;
+            dsg.delete(q2) ;    // Cancels the add.
+            dsg.delete(q3) ;    // Not present : no change.
+            dsg.add(q3) ;
+        });
+        Assert.assertEquals(1, counter.summary().getCountAddData()) ;
+        Assert.assertEquals(0, counter.summary().getCountDeleteData()) ;
+        Assert.assertEquals(1, counter.summary().getCountTxnCommit()) ;
+        Txn.executeRead(dsg1, ()->Assert.assertTrue(dsg1.contains(q3))) ;
+    }
+
+    @Test public void buffer_flush_1() {
+        DatasetGraph dsg1 = DatasetGraphFactory.create() ;
+        DatasetGraphBuffering dsg = new DatasetGraphBuffering(dsg1) ;
+        dsg.add(q1) ;
+        Assert.assertTrue(dsg.hasPending()) ;
+        Assert.assertFalse(dsg1.contains(q1)) ;
+        dsg.flush() ;
+        Assert.assertFalse(dsg.hasPending()) ;
+        Assert.assertTrue(dsg1.contains(q1)) ;
+    }
+
+    @Test public void buffer_read_txn_1() {
+        DatasetGraph dsg1 = DatasetGraphFactory.createTxnMem() ;
+        DatasetGraphBuffering dsg = new DatasetGraphBuffering(dsg1) ;
+        dsg.add(q1) ;
+        // A read transaction does not discard changes made outside a transaction. 
+        Txn.executeRead(dsg, ()->Assert.assertTrue(dsg.contains(q1))) ;
+        Assert.assertTrue(dsg.hasPending()) ;
+        // A write transaction that does not commit does.
+        dsg.begin(ReadWrite.WRITE) ;
+        dsg.abort() ;
+        dsg.end() ;
+        Assert.assertFalse(dsg.hasPending()) ;
+    }
+
+    @Test public void buffer_isolation_1() throws Exception {
+        DatasetGraph dsg1 = DatasetGraphFactory.createTxnMem() ;
+        Txn.executeWrite(dsg1, ()->dsg1.add(q1)) ;
+        DatasetGraphBuffering dsg = new DatasetGraphBuffering(dsg1) ;
+        dsg.begin(ReadWrite.WRITE) ;
+        dsg.add(q2) ;
+        dsg.delete(q1) ;
+        // Another thread does not see the buffered changes.
+        boolean[] seen = CompletableFuture.supplyAsync(()->Txn.calculateRead(dsg, ()->
+            new boolean[] { dsg.contains(q1), dsg.contains(q2), dsg.hasPending() }
+        )).get() ;
+        Assert.assertTrue(seen[0]) ;
+        Assert.assertFalse(seen[1]) ;
+        Assert.assertFalse(seen[2]) ;
+        Assert.assertTrue(dsg.hasPending()) ;
+        dsg.commit() ;
+        dsg.end() ;
+        Txn.executeRead(dsg1, ()->{
+            Assert.assertFalse(dsg1.contains(q1)) ;
+            Assert.assertTrue(dsg1.contains(q2)) ;
+        });
+    }
+
+    @Test public void buffer_changes_fail_1() {
+        DatasetGraph dsg1 = DatasetGraphFactory.createTxnMem() ;
+        RDFChangesCounter counter = new RDFChangesCounter() ;
+        RDFChanges failing = new RDFChangesWrapper(counter) {
+            @Override public void add(Node g, Node s, Node p, Node o) { throw new PatchException("add") ; }
+        } ;
+        DatasetGraphBuffering dsg = new DatasetGraphBuffering(dsg1, failing) ;
+        dsg.begin(ReadWrite.WRITE) ;
+        dsg.add(q1) ;
+        try {
+            dsg.commit() ;
+            Assert.fail("Expected the commit to fail") ;
+        } catch (PatchException ex) {}
+        dsg.end() ;
+        Assert.assertEquals(1, counter.summary().getCountTxnBegin()) ;
+        Assert.assertEquals(1, counter.summary().getCountTxnAbort()) ;
+        Assert.assertEquals(0, counter.summary().getCountTxnCommit()) ;
+        Assert.assertFalse(dsg.hasPending()) ;
+        Txn.executeRead(dsg1, ()->Assert.assertFalse(dsg1.contains(q1))) ;
+    }
 }
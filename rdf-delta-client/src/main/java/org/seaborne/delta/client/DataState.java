@@ -25,10 +25,12 @@ import static org.seaborne.delta.DeltaConst.F_STORAGE ;
 import static org.seaborne.delta.DeltaConst.F_URI ;
 import static org.seaborne.delta.DeltaConst.F_VERSION;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.lib.Pair;
 import org.seaborne.delta.*;
 import org.seaborne.delta.lib.JSONX;
 import org.slf4j.Logger;
@@ -43,6 +45,12 @@ public class DataState {
     private String uri;
     private RefString stateStr;
     private PersistentState state;
+    // Append-only record of version changes; null if not persisted.
+    private StateJournal journal;
+    // Local copy of the patches; null if not kept.
+    private PatchMirror mirror = null;
+    // Write-behind commits not yet in the patch log; null if not persisted.
+    private PendingWrites pending = null;
 
     // Data source id for the state
     private Id datasource;
@@ -62,13 +70,22 @@ public class DataState {
     //   datasource: string/uuid
     //   patch:      string/uuid
     // }
+    // If the zone is using a state journal, version and patch changes are
+    // appended to the journal and the last journal record overrides the
+    // JSON state file. The state file is rewritten (compacted) periodically.
     
     /** Create from existing state */ 
     /*package*/ DataState(Zone zone, PersistentState state) {
         this.zone = zone;
         this.state = state;
         this.stateStr = state;
+        this.journal = new StateJournal(journalPath(state.getPath()), zone.getStateJournalSync());
         setStateFromString(this, state.getString());
+        applyJournal();
+        Path mirrorPath = mirrorPath(state.getPath());
+        if ( Files.exists(mirrorPath) && storage != null && storage.isEphemeral() )
+            this.mirror = new PatchMirror(mirrorPath);
+        this.pending = new PendingWrites(pendingPath(state.getPath()));
         //FmtLog.info(LOG, "%s", this);
     }
     
@@ -77,8 +94,19 @@ public class DataState {
         this.zone = zone;
         this.datasource = dsRef;
         this.state = null;
-        if ( stateFile != null ) 
+        if ( stateFile != null ) { 
             this.state = new PersistentState(stateFile);
+            this.journal = new StateJournal(journalPath(stateFile), zone.getStateJournalSync());
+            // Any left-over journal is from an earlier use of the area.
+            if ( Files.exists(journal.getPath()) )
+                journal.truncate();
+            this.pending = new PendingWrites(pendingPath(stateFile));
+            pending.truncate();
+            if ( zone.getPatchMirror() && storage != null && storage.isEphemeral() ) {
+                this.mirror = new PatchMirror(mirrorPath(stateFile));
+                this.mirror.truncate();
+            }
+        }
         this.stateStr = state;
         this.version = version;
         this.patchId = patchId;
@@ -97,6 +125,48 @@ public class DataState {
         state = new PersistentState(stateFile);
         stateStr = state;
         readState(stateStr);
+        applyJournal();
+    }
+
+    private static Path journalPath(Path stateFile) {
+        return stateFile.resolveSibling(FN.JOURNAL);
+    }
+
+    private static Path mirrorPath(Path stateFile) {
+        return stateFile.resolveSibling(FN.MIRROR);
+    }
+
+    private static Path pendingPath(Path stateFile) {
+        return stateFile.resolveSibling(FN.PENDING);
+    }
+
+    /** The record of write-behind commits not yet sent, or null if the state is not persisted. */
+    /*package*/ PendingWrites getPendingWrites() {
+        return pending;
+    }
+
+    /** The local copy of the patches for this data source, or null. */
+    /*package*/ PatchMirror getPatchMirror() {
+        return mirror;
+    }
+
+    /** Stop keeping a local copy of the patches and remove it. */
+    /*package*/ synchronized void dropPatchMirror() {
+        if ( mirror == null )
+            return;
+        mirror.delete();
+        mirror = null;
+    }
+
+    /** Bring the in-memory state up to the last record in the journal, if any. */
+    private void applyJournal() {
+        if ( journal == null )
+            return;
+        Pair<Long, Id> last = journal.last();
+        if ( last == null )
+            return;
+        this.version = last.car();
+        this.patchId = last.cdr();
     }
 
     public long version() {
@@ -120,11 +190,37 @@ public class DataState {
     public synchronized void updateState(long newVersion, Id patchId) {
         // Update the shadow data first. Replaying patches is safe. 
         // Update on disk.
-        writeState(this.stateStr, this.datasource, this.name, this.uri, this.storage, newVersion, patchId);
+        int compactInterval = zone.getStateJournal();
+        if ( journal != null && compactInterval > 0 ) {
+            journal.append(newVersion, patchId);
+            if ( journal.entries() >= compactInterval )
+                compact(newVersion, patchId);
+        } else
+            compact(newVersion, patchId);
         // Update local
         this.version = newVersion;
         this.patchId = patchId;
     }
+
+    /** Write the full state, then clear the journal. */
+    private void compact(long newVersion, Id patchId) {
+        writeState(this.stateStr, this.datasource, this.name, this.uri, this.storage, newVersion, patchId);
+        if ( journal != null && journal.entries() > 0 )
+            journal.truncate();
+    }
+
+    /** Release any file resources. The on-disk state is complete after this call. */
+    /*package*/ synchronized void close() {
+        if ( mirror != null )
+            mirror.close();
+        if ( pending != null )
+            pending.close();
+        if ( journal == null )
+            return;
+        if ( journal.entries() > 0 )
+            compact(version, patchId);
+        journal.close();
+    }
     
     public Id getDataSourceId() {
         return datasource;
@@ -157,7 +253,7 @@ public class DataState {
 
     
     private void writeState(DataState dataState) {
-        writeState(dataState.stateStr, dataState.datasource, dataState.name, dataState.uri, dataState.storage, dataState.version, dataState.patchId);
+        dataState.compact(dataState.version, dataState.patchId);
     }
     
     /** Allow a different version so we can write the state ahead of changing in-memory */  
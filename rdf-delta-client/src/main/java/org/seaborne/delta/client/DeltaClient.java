@@ -20,7 +20,9 @@ package org.seaborne.delta.client;
 
 import java.util.Map;
 import java.util.Objects ;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import org.apache.jena.sparql.core.DatasetGraph ;
 import org.seaborne.delta.DataSourceDescription ;
@@ -105,16 +107,23 @@ public class DeltaClient {
     private final DeltaLink dLink ;
     // For now, non-counting.
     private Map<Id, DeltaConnection> connections = new ConcurrentHashMap<>();
+    private volatile MetricsRegistry metricsRegistry = MetricsRegistry.NONE;
     
     private void removeCache(Id id) {
-        connections.remove(id);
+        DeltaConnection dConn = connections.remove(id);
+        if ( dConn != null )
+            metricsRegistry.unregister(dConn.getStats());
     }
     
     private void putCache(Id id, DeltaConnection dConn) {
-        if ( dConn == null )
-            connections.remove(id);
-        else
-            connections.put(id, dConn);
+        if ( dConn == null ) {
+            removeCache(id);
+            return;
+        }
+        DeltaConnection dConn0 = connections.put(id, dConn);
+        if ( dConn0 != null && dConn0 != dConn )
+            metricsRegistry.unregister(dConn0.getStats());
+        metricsRegistry.register(dConn.getStats());
     }
     
     private DeltaConnection getCache(Id id) {
@@ -447,6 +456,35 @@ public class DeltaClient {
 
     
     
+    /**
+     * Sync all the connected data sources with the patch log server, concurrently.
+     * Each data source is synced by a thread from {@code executor};
+     * patches are fetched in parallel with applying them.
+     * The returned future completes when all the data sources have been synced,
+     * or exceptionally if any one of them failed.
+     */
+    public CompletableFuture<Void> syncAll(Executor executor) {
+        checkDeltaClient();
+        CompletableFuture<?>[] syncs = connections.values().stream()
+            .map(dConn->dConn.syncAsync(executor))
+            .toArray(CompletableFuture<?>[]::new);
+        return CompletableFuture.allOf(syncs);
+    }
+    
+    /**
+     * Report the {@link ReplicationStats} of the connections of this client to a
+     * {@link MetricsRegistry}, for example {@link MetricsRegistry#jmx()}.
+     * The default is {@link MetricsRegistry#NONE}.
+     */
+    public void setMetricsRegistry(MetricsRegistry registry) {
+        MetricsRegistry registry0 = metricsRegistry;
+        metricsRegistry = ( registry == null ) ? MetricsRegistry.NONE : registry;
+        connections.values().forEach(dConn->{
+            registry0.unregister(dConn.getStats());
+            metricsRegistry.register(dConn.getStats());
+        });
+    }
+    
     private void checkDeltaClient() {}
 
 //    public void printState() {
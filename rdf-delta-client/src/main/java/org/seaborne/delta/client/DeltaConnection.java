@@ -21,7 +21,19 @@ package org.seaborne.delta.client;
 import static java.lang.String.format;
 import static org.seaborne.delta.DeltaConst.VERSION_UNSET ;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference ;
 import java.util.function.Consumer ;
 
@@ -34,15 +46,21 @@ import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.ReadWrite ;
 import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
 import org.apache.jena.web.HttpSC;
 import org.seaborne.delta.*;
+import org.seaborne.delta.link.AsyncDeltaLink;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.link.RegToken;
 import org.seaborne.patch.RDFChanges;
 import org.seaborne.patch.RDFPatch ;
 import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.PatchSummary;
 import org.seaborne.patch.changes.RDFChangesApply ;
+import org.seaborne.patch.changes.RDFChangesCanonical;
 import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesWrapper;
 import org.seaborne.patch.system.DatasetGraphChanges;
 import org.seaborne.patch.system.RDFChangesSuppressEmpty;
 import org.slf4j.Logger;
@@ -56,6 +74,7 @@ public class DeltaConnection implements AutoCloseable {
     
     // The version of the remote copy.
     private final DeltaLink dLink ;
+    private final AsyncDeltaLink asyncLink ;
 
     // Last seen PatchLogInfo in getPatchLogInfo()
     // null when not started
@@ -77,6 +96,19 @@ public class DeltaConnection implements AutoCloseable {
 
     private boolean valid = false;
     private final SyncPolicy syncPolicy;
+
+    // Write-behind: null when each commit is sent to the patch log as it happens.
+    // Lock order: a write transaction on the local dataset, then writeBehindLock, then this
+    // connection (append). The timer thread sends by flush(), in that order.
+    private final Object writeBehindLock = new Object();
+    private WriteBehind writeBehind = null;
+    // Number of flush() calls in their write transaction on the local dataset.
+    private final AtomicInteger flushing = new AtomicInteger(0);
+    // Number of times to re-base and resend a local commit when the patch log has moved on.
+    private volatile int rebaseRetries = 0;
+    // Reduce transactions to their net effect.
+    private volatile boolean canonical = false;
+    private final ReplicationStats stats;
     
     /** 
      * Connect to an existing {@code DataSource} with the {@link DatasetGraph} as local state.
@@ -113,6 +145,9 @@ public class DeltaConnection implements AutoCloseable {
         this.datasourceId = dataState.getDataSourceId();
         this.datasourceName = dataState.getDatasourceName();
         this.dLink = link;
+        this.asyncLink = AsyncDeltaLink.wrap(link);
+        this.stats = new ReplicationStats(datasourceId, datasourceName, ()->state.version(),
+                                          ()->Math.max(getRemoteVersionCached(), state.version()));
         this.valid = true;
         this.syncPolicy = syncTxnBegin;
         if ( basedsg == null ) {
@@ -153,10 +188,10 @@ public class DeltaConnection implements AutoCloseable {
         return (rw)->{
             switch(rw) {
                 case READ: 
-                    try { sync(); } catch (Exception ex) {}
+                    try { syncTxnBegin(); } catch (Exception ex) {}
                     break;
                 case WRITE:
-                    this.sync();
+                    this.syncTxnBegin();
                     break;
             }
         };
@@ -172,7 +207,7 @@ public class DeltaConnection implements AutoCloseable {
                 case READ:// No action. 
                     break;
                 case WRITE:
-                    this.sync();
+                    this.syncTxnBegin();
                     break;
             }
         };
@@ -220,7 +255,8 @@ public class DeltaConnection implements AutoCloseable {
             //setLocalState(newVersion, patch.getId());
             
             try { 
-                append(patch);
+                if ( ! addWriteBehind(patch) )
+                    appendRebase(patch, rebaseRetries);
             } catch(DeltaBadRequestException ex) {
                 FmtLog.warn(LOG, "Failed to commit: %s", ex.getMessage());
                 throw ex;
@@ -240,12 +276,35 @@ public class DeltaConnection implements AutoCloseable {
     
     private RDFChanges createRDFChanges(Id dsRef) {
         RDFChanges changes = new RDFChangesDS();
+        RDFChanges canonicalChanges = new RDFChangesCanonical(changes);
         //changes = new RDFChangesSuppressEmpty(changes);
-        return changes; 
+        // Choose, for each transaction, whether to reduce it to its net effect.
+        return new RDFChangesWrapper(changes) {
+            private RDFChanges current = changes;
+            @Override protected RDFChanges get() { return current; }
+            @Override public void txnBegin() {
+                current = canonical ? canonicalChanges : changes;
+                super.txnBegin();
+            }
+        };
+    }
+
+    /**
+     * Reduce each local transaction to its net effect before it is sent to the patch log:
+     * duplicate changes are removed and only the last change to a quad is sent.
+     * Takes effect from the next transaction.
+     */
+    public void setCanonical(boolean canonical) {
+        this.canonical = canonical;
+    }
+
+    public boolean getCanonical() {
+        return canonical;
     }
     
     /*package*/ void start() {
         checkDeltaConnection();
+        recoverWriteBehind();
         trySyncIfAuto();
     }
     
@@ -254,7 +313,16 @@ public class DeltaConnection implements AutoCloseable {
     /** Send a patch to log server. */
     public synchronized void append(RDFPatch patch) {
         checkDeltaConnection();
-        long ver = dLink.append(datasourceId, patch);
+        long start = System.nanoTime();
+        long ver;
+        try {
+            ver = dLink.append(datasourceId, patch);
+        } catch (DeltaBadRequestException ex) {
+            stats.appendRejected();
+            throw ex;
+        } finally {
+            stats.appended(System.nanoTime()-start);
+        }
         if ( ver < 0 )
             // Didn't happen.
             return ;
@@ -262,6 +330,86 @@ public class DeltaConnection implements AutoCloseable {
         if ( ver0 >= ver )
             FmtLog.warn(LOG, "[%s] Version did not advance: %d -> %d", datasourceId.toString(), ver0 , ver);
         state.updateState(ver, Id.fromNode(patch.getId()));
+        mirror(ver, patch);
+    }
+
+    /**
+     * Set the number of times a local commit, rejected because other changes have been
+     * added to the patch log since the last sync, is re-based onto the new log head and resent.
+     * The missing patches are applied to the local dataset inside the committing transaction.
+     * 0 (the default) means the commit fails on such a conflict.
+     * Changes waiting in write-behind mode are re-based when sent by {@link #flush()} or
+     * {@link #sync()}, with at least one retry.
+     */
+    public void setRebaseRetries(int retries) {
+        this.rebaseRetries = Math.max(0, retries);
+    }
+
+    public int getRebaseRetries() {
+        return rebaseRetries;
+    }
+
+    /**
+     * Send the patch for a local commit, re-basing it if the patch log has moved on.
+     * <p>
+     * The patches played while re-basing are only in the committing transaction, so the
+     * local state is not changed here; it moves on when {@link #append} succeeds.
+     * If the commit fails, the transaction aborts and the local state is still correct.
+     */
+    private void appendRebase(RDFPatch patch, int retries) {
+        // The version and patch the local changes follow, after any re-basing. 
+        long baseVersion = getLocalVersion();
+        Id baseId = state.latestPatchId();
+        for ( int attempt = 0 ; ; attempt++ ) {
+            try {
+                append(patch);
+                return;
+            } catch (DeltaBadRequestException ex) {
+                if ( attempt >= retries )
+                    throw ex;
+                PatchLogInfo logInfo = getPatchLogInfo();
+                // Rejected for some reason other than a concurrent update.
+                if ( logInfo == null || logInfo.getMaxVersion() <= baseVersion )
+                    throw ex;
+                FmtLog.info(LOG, "[%s] Rebase: local=%d, remote=%d", datasourceId, baseVersion, logInfo.getMaxVersion());
+                // Inside the committing transaction: apply changes only.
+                RDFChanges inTxn = applyOnly(target);
+                Pair<Long, Node> p = play(inTxn, baseVersion+1, logInfo.getMaxVersion());
+                if ( p.car() != VERSION_UNSET ) {
+                    baseVersion = p.car();
+                    baseId = Id.fromNode(p.cdr());
+                }
+                patch = rebase(patch, inTxn, baseId);
+            }
+        }
+    }
+
+    /** Pass on the changes, not the transaction steps, for use inside a transaction. */
+    private static RDFChanges applyOnly(RDFChanges changes) {
+        return new RDFChangesWrapper(changes) {
+            @Override public void txnBegin() {}
+            @Override public void txnCommit() {}
+            @Override public void txnAbort() {}
+        };
+    }
+
+    /**
+     * Replay the local changes so they come after the patches played into {@code inTxn},
+     * then return the patch with {@code prev} as its previous patch.
+     */
+    private static RDFPatch rebase(RDFPatch patch, RDFChanges inTxn, Id prev) {
+        patch.apply(inTxn);
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, patch.getId());
+        if ( prev != null )
+            c.header(RDFPatchConst.PREV, prev.asNode());
+        patch.apply(new RDFChangesWrapper(c) {
+            @Override public void header(String field, Node value) {
+                if ( ! RDFPatchConst.ID.equals(field) && ! RDFPatchConst.PREV.equals(field) )
+                    super.header(field, value);
+            }
+        });
+        return c.getRDFPatch();
     }
 
     /** Try to sync ; return true if succeeded, else false */ 
@@ -297,7 +445,18 @@ public class DeltaConnection implements AutoCloseable {
         dLink.ping();
     }
     
+    /** Sync at the start of a transaction. Skipped if there are local changes waiting to be sent. */
+    private void syncTxnBegin() {
+        if ( hasPendingWrites() )
+            return;
+        long start = System.nanoTime();
+        try { sync(); }
+        finally { stats.txnBeginSync(System.nanoTime()-start); }
+    }
+    
+    /** Sync with the patch log, first sending any changes waiting in write-behind mode. */
     public void sync() {
+        flush();
         try { 
             checkDeltaConnection();
             PatchLogInfo logInfo = getPatchLogInfo();
@@ -309,6 +468,34 @@ public class DeltaConnection implements AutoCloseable {
         }
     }
     
+    /**
+     * Sync with the patch log without waiting.
+     * The patch log details are requested asynchronously, then patches are fetched
+     * in parallel and applied in order, using the {@code executor} thread.
+     * Any changes waiting in write-behind mode are sent first.
+     */
+    public CompletableFuture<Void> syncAsync(Executor executor) {
+        checkDeltaConnection();
+        return CompletableFuture.runAsync(this::flush, executor)
+            .thenCompose(x->asyncLink.getPatchLogInfo(datasourceId))
+            .thenAcceptAsync(logInfo->{
+                if ( logInfo == null )
+                    return;
+                remote.set(logInfo);
+                sync(logInfo);
+            }, executor);
+    }
+    
+    /** Replication statistics for this connection. */ 
+    public ReplicationStats getStats() {
+        return stats;
+    }
+    
+    /** The asynchronous form of the link to the patch log server. */ 
+    public AsyncDeltaLink getAsyncLink() {
+        return asyncLink;
+    }
+    
     // Attempt an operation and return true/false as to whether it succeeded or not.
     private boolean attempt(Runnable action) {
         try { action.run(); return true ; }
@@ -359,46 +546,436 @@ public class DeltaConnection implements AutoCloseable {
 
     /** Play the patches (range is inclusive at both ends) */
     private void playPatches(long firstPatchVer, long lastPatchVer) {
-        Pair<Long, Node> p = play(datasourceId, target, dLink, firstPatchVer, lastPatchVer);
+        Pair<Long, Node> p = null;
+        // A patch mirror needs each patch, not their net effect.
+        if ( lastPatchVer - firstPatchVer + 1 >= CATCH_UP_MIN && state.getPatchMirror() == null )
+            p = catchUp(target, firstPatchVer);
+        if ( p == null )
+            p = play(target, firstPatchVer, lastPatchVer);
         long patchLastVersion = p.car();
         Node patchLastIdNode = p.cdr();
         setLocalState(patchLastVersion, patchLastIdNode);
     }
     
-    /** Play patches, return details of the the last successfully applied one */ 
-    private static Pair<Long, Node> play(Id datasourceId, RDFChanges target, DeltaLink dLink, long minVersion, long maxVersion) {
-        // [Delta] replace with a one-shot "get all patches" operation.
+    // Most patches fetched ahead of the one being applied.
+    private static final int FETCH_AHEAD = 8;
+    
+    // Fewest patches behind for which the net effect is fetched as one patch.
+    private static final int CATCH_UP_MIN = 100;
+    
+    /**
+     * Fetch the net effect of the patches from {@code minVersion} to the latest as one
+     * patch (see {@link DeltaLink#fetchCatchUp}) and apply it; return details of the
+     * latest patch. Return null, having applied nothing, if this is not possible, e.g.
+     * the fetch failed or the log moved on so the version reached is not known; the
+     * caller then plays the patches one by one.
+     */
+    private Pair<Long, Node> catchUp(RDFChanges target, long minVersion) {
+        long start = System.nanoTime();
+        RDFPatch patch;
+        PatchLogInfo logInfo;
+        try {
+            patch = dLink.fetchCatchUp(datasourceId, minVersion);
+            logInfo = getPatchLogInfo();
+        } catch (RuntimeException ex) {
+            FmtLog.info(LOG, "[%s] Catch-up from %d: %s", datasourceId, minVersion, ex.getMessage());
+            return null;
+        } finally { stats.fetched(System.nanoTime()-start); }
+        if ( patch == null || logInfo == null || logInfo.getLatestPatch() == null )
+            return null;
+        // Patch ids are unique so if the patch has the id of the latest patch, it goes
+        // up to the latest version.
+        if ( ! Objects.equals(patch.getId(), logInfo.getLatestPatch().asNode()) )
+            return null;
+        FmtLog.info(LOG, "[%s] Catch-up: versions [%d, %d]", datasourceId, minVersion, logInfo.getMaxVersion());
+        apply(target, patch);
+        return Pair.create(logInfo.getMaxVersion(), patch.getId());
+    }
+    
+    /**
+     * Play patches, return details of the the last successfully applied one.
+     * Patches are fetched ahead, in parallel, and applied in order. Fetching ahead
+     * only uses threads of the {@link AsyncDeltaLink} that are free.
+     * If there is a {@link PatchMirror}, each patch is also added to it.
+     */ 
+    private Pair<Long, Node> play(RDFChanges target, long minVersion, long maxVersion) {
         //FmtLog.debug(LOG, "Patch range [%d, %d]", minVersion, maxVersion);
         Node patchLastIdNode = null;
         long patchLastVersion = VERSION_UNSET;
+        Deque<CompletableFuture<RDFPatch>> fetches = new ArrayDeque<>(); 
+        long fetchVer = minVersion;
         
-        for ( long ver = minVersion ; ver <= maxVersion ; ver++ ) {
-            //FmtLog.debug(LOG, "Play: patch=%d", ver);
-            RDFPatch patch;
-            try { 
-                patch = dLink.fetch(datasourceId, ver);
-                if ( patch == null ) { 
+        try {
+            for ( long ver = minVersion ; ver <= maxVersion ; ver++ ) {
+                //FmtLog.debug(LOG, "Play: patch=%d", ver);
+                for ( ; fetchVer <= maxVersion && fetchVer < ver+FETCH_AHEAD ; fetchVer++ ) {
+                    if ( ! fetches.isEmpty() && asyncLink.available() <= 0 )
+                        break;
+                    fetches.add(fetch(fetchVer));
+                }
+                RDFPatch patch;
+                try { 
+                    patch = await(fetches.remove());
+                    if ( patch == null ) { 
+                        FmtLog.info(LOG, "Play: %s patch=%d : not found", datasourceId, ver);
+                        continue;
+                    }
+                } catch (DeltaNotFoundException ex) {
+                    // Which ever way it is signalled.  This way means "bad datasourceId"
                     FmtLog.info(LOG, "Play: %s patch=%d : not found", datasourceId, ver);
                     continue;
                 }
-            } catch (DeltaNotFoundException ex) {
-                // Which ever way it is signalled.  This way means "bad datasourceId"
-                FmtLog.info(LOG, "Play: %s patch=%d : not found", datasourceId, ver);
-                continue;
+                apply(target, patch);
+                mirror(ver, patch);
+                patchLastIdNode = patch.getId();
+                patchLastVersion = ver;
             }
-            RDFChanges c = target;
-            if ( false )
-                c = DeltaOps.print(c);
-            patch.apply(c);
-            patchLastIdNode = patch.getId();
-            patchLastVersion = ver;
+        } finally {
+            // On error, drop any outstanding fetches.
+            fetches.forEach(f->f.cancel(false));
         }
         return Pair.create(patchLastVersion, patchLastIdNode);
     }
     
+    /** Apply a patch, counting the quads applied. */
+    private void apply(RDFChanges target, RDFPatch patch) {
+        long[] quads = { 0 };
+        RDFChanges c = new RDFChangesWrapper(target) {
+            @Override public void add(Node g, Node s, Node p, Node o)       { quads[0]++; super.add(g, s, p, o); }
+            @Override public void delete(Node g, Node s, Node p, Node o)    { quads[0]++; super.delete(g, s, p, o); }
+        };
+        if ( false )
+            c = DeltaOps.print(c);
+        patch.apply(c);
+        stats.patchApplied(quads[0]);
+    }
+    
+    /**
+     * Add a patch to the {@link PatchMirror}, if there is one.
+     * Any patches missing from the mirror (e.g. ones not found when played) are fetched
+     * from the patch log first. If they can not be fetched, the mirror is removed so that
+     * a restart syncs from the patch log.
+     */
+    private void mirror(long version, RDFPatch patch) {
+        PatchMirror mirror = state.getPatchMirror();
+        if ( mirror == null )
+            return;
+        try {
+            for ( long ver = mirror.lastVersion()+1 ; ver < version ; ver++ ) {
+                RDFPatch missing = dLink.fetch(datasourceId, ver);
+                if ( missing == null )
+                    throw new DeltaNotFoundException("Patch not found: version="+ver);
+                mirror.append(ver, missing);
+            }
+            mirror.append(version, patch);
+        } catch (RuntimeException ex) {
+            FmtLog.warn(LOG, "[%s] Patch mirror: can not add patch %d (%s) : mirror removed", datasourceId, version, ex.getMessage());
+            state.dropPatchMirror();
+        }
+    }
+    
+    /** Fetch a patch, recording the time taken. */ 
+    private CompletableFuture<RDFPatch> fetch(long version) {
+        long start = System.nanoTime();
+        return asyncLink.fetch(datasourceId, version).whenComplete((p, ex)->stats.fetched(System.nanoTime()-start));
+    }
+    
+    /** Wait for an asynchronous operation; throw the exception of the operation if it failed. */ 
+    private static <X> X await(CompletableFuture<X> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if ( ex.getCause() instanceof RuntimeException )
+                throw (RuntimeException)ex.getCause();
+            throw ex;
+        }
+    }
+    
+    // ---- Write-behind
+    
+    // Shared timer for time-based flushing of write-behind changes.
+    private static final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(r->{
+        Thread thread = new Thread(r, "DeltaConnection-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Switch on write-behind mode. Local commits are merged into one patch which is sent
+     * to the patch log when it has {@code maxChanges} changes, when the first waiting
+     * commit is {@code maxDelayMillis} old, or on {@link #flush()}.
+     * <p>
+     * Local changes are not in the patch log until they are sent. If the zone keeps state
+     * on disk, each waiting commit is recorded there before the local commit and any not sent
+     * are sent when the data source is next connected. 
+     * While changes are waiting, the local dataset does not sync at the start of a
+     * transaction; {@link #sync()} sends the waiting changes first.
+     * <p>
+     * If the patch log has moved on when the changes are sent, they are re-based as for a
+     * local commit (see {@link #setRebaseRetries}). If that fails when sending because of
+     * {@code maxChanges}, the local commit fails.
+     * <p>
+     * {@code maxChanges} of 0 or less switches write-behind off, after sending any waiting changes.
+     * {@code maxDelayMillis} of 0 or less means no time-based sending.
+     * {@link #close()} also sends any waiting changes and switches write-behind off.
+     */
+    public void setWriteBehind(int maxChanges, long maxDelayMillis) {
+        checkDeltaConnection();
+        flush();
+        synchronized(writeBehindLock) {
+            if ( writeBehind != null ) {
+                // Any commits since the flush above.
+                writeBehind.flush(0);
+                writeBehind.cancel();
+                writeBehind = null;
+            }
+            if ( maxChanges > 0 )
+                writeBehind = new WriteBehind(maxChanges, maxDelayMillis, false);
+        }
+    }
+    
+    /**
+     * Send any changes waiting in write-behind mode to the patch log.
+     * On return, all local commits are in the patch log.
+     * Does nothing if not in write-behind mode. 
+     * <p>
+     * If the patch log has moved on, the waiting changes are re-based as for a local commit
+     * (see {@link #setRebaseRetries}), in a write transaction on the local dataset, so that a
+     * conflict does not leave them waiting for ever. This is not possible from inside a
+     * transaction, where a conflict causes an exception and the changes stay waiting.
+     */
+    public void flush() {
+        if ( ! hasPendingWrites() )
+            return;
+        if ( base == null || base.isInTransaction() ) {
+            synchronized(writeBehindLock) {
+                if ( writeBehind != null )
+                    writeBehind.flush(0);
+            }
+            return;
+        }
+        // If the resend fails, the patches played into the local dataset are aborted.
+        // The changes are waiting until that transaction ends, including any patches played
+        // when re-basing.
+        flushing.incrementAndGet();
+        try {
+            Txn.executeWrite(base, ()->{
+                synchronized(writeBehindLock) {
+                    if ( writeBehind != null )
+                        writeBehind.flush(Math.max(1, rebaseRetries));
+                }
+            });
+        } finally { flushing.decrementAndGet(); }
+    }
+    
+    /**
+     * Whether there are local commits waiting to be sent in write-behind mode, or being sent
+     * by {@link #flush()} and not yet committed to the local dataset with any re-basing changes.
+     */  
+    public boolean hasPendingWrites() {
+        if ( flushing.get() > 0 )
+            return true;
+        synchronized(writeBehindLock) {
+            return writeBehind != null && ! writeBehind.isEmpty();
+        }
+    }
+    
+    /**
+     * Add to the write-behind changes; return false if not in write-behind mode.
+     * Called when the local transaction is committing.
+     */
+    private boolean addWriteBehind(RDFPatch patch) {
+        synchronized(writeBehindLock) {
+            if ( writeBehind == null )
+                return false;
+            writeBehind.add(patch);
+            return true;
+        }
+    }
+
+    /**
+     * Send any write-behind commits left by an earlier run; they are first applied to the
+     * local dataset, which may not have them (in-memory storage, or a crash before the local commit).
+     * If they can not be sent now, they wait, in write-behind mode, for {@link #flush()} or {@link #sync()}.
+     */
+    private void recoverWriteBehind() {
+        PendingWrites pending = state.getPendingWrites();
+        if ( pending == null || base == null )
+            return;
+        List<RDFPatch> patches = pending.read();
+        if ( patches.isEmpty() )
+            return;
+        FmtLog.warn(LOG, "[%s] %d local commit(s) from an earlier run not in the patch log", datasourceId, patches.size());
+        Txn.executeWrite(base, ()->patches.forEach(p->p.apply(applyOnly(target))));
+        synchronized(writeBehindLock) {
+            writeBehind = new WriteBehind(Integer.MAX_VALUE, 0, true);
+            writeBehind.recover(patches);
+        }
+        try { flush(); }
+        catch (RuntimeException ex) {
+            FmtLog.warn(LOG, "[%s] Write-behind: failed to send changes: %s", datasourceId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Local commits waiting to be sent as one patch. Guarded by {@code writeBehindLock}.
+     * Each commit is also recorded in the {@link PendingWrites} of the data state, if there is one. 
+     */
+    private class WriteBehind {
+        private final int maxChanges;
+        private final long maxDelay;
+        // Switch write-behind off once sent: commits recovered from an earlier run.
+        private final boolean once;
+        private final List<RDFPatch> commits = new ArrayList<>();
+        private final PendingWrites pending = state.getPendingWrites();
+        private long changes = 0;
+        private long firstCommit = -1;
+        private final ScheduledFuture<?> timer;
+        
+        WriteBehind(int maxChanges, long maxDelay, boolean once) {
+            this.maxChanges = maxChanges;
+            this.maxDelay = maxDelay;
+            this.once = once;
+            if ( maxDelay > 0 )
+                timer = flushTimer.scheduleWithFixedDelay(this::timeout, maxDelay, maxDelay, TimeUnit.MILLISECONDS);
+            else
+                timer = null;
+        }
+
+        boolean isEmpty() {
+            return commits.isEmpty();
+        }
+        
+        /** Commits already in the {@link PendingWrites}. */
+        void recover(List<RDFPatch> patches) {
+            patches.forEach(this::addCommit);
+        }
+        
+        /**
+         * Add a local commit. When there are {@code maxChanges} changes, they are sent inside
+         * the committing transaction. If the patch log has moved on and the changes can not be
+         * re-based, the commit fails as a direct commit does. Any other failure to send leaves the
+         * changes waiting and the local commit goes ahead.
+         */
+        void add(RDFPatch patch) {
+            // Keep a copy: the patch shares storage with the collector that made it.
+            RDFChangesCollector copy = new RDFChangesCollector();
+            patch.apply(copy);
+            patch = copy.getRDFPatch();
+            if ( pending != null )
+                pending.append(patch);
+            addCommit(patch);
+            if ( changes < maxChanges )
+                return;
+            try { flush(0); }
+            catch (DeltaBadRequestException ex) {
+                try { flush(Math.max(1, rebaseRetries)); }
+                catch (RuntimeException ex2) {
+                    // Patches played while re-basing are in the committing transaction, which now aborts.  
+                    commits.remove(commits.size()-1);
+                    changes -= count(patch);
+                    if ( pending != null )
+                        pending.removeLast();
+                    if ( commits.isEmpty() )
+                        firstCommit = -1;
+                    throw ex2;
+                }
+            } catch (RuntimeException ex) {
+                FmtLog.warn(LOG, "[%s] Write-behind: failed to send changes: %s", datasourceId, ex.getMessage());
+            }
+        }
+
+        private void addCommit(RDFPatch patch) {
+            commits.add(patch);
+            changes += count(patch);
+            if ( firstCommit < 0 )
+                firstCommit = System.currentTimeMillis();
+        }
+
+        private long count(RDFPatch patch) {
+            PatchSummary summary = RDFPatchOps.summary(patch);
+            return summary.getCountAddData() + summary.getCountDeleteData() + summary.getCountAddPrefix() + summary.getCountDeletePrefix();
+        }
+
+        /**
+         * Send as one patch, with a new id and the current latest patch as previous.
+         * With {@code retries} greater than 0, the caller is in a write transaction on the local dataset.
+         */
+        void flush(int retries) {
+            if ( isEmpty() )
+                return;
+            RDFChangesCollector c = new RDFChangesCollector();
+            c.header(RDFPatchConst.ID, Id.create().asNode());
+            Id prev = state.latestPatchId();
+            if ( prev != null )
+                c.header(RDFPatchConst.PREV, prev.asNode());
+            c.txnBegin();
+            // The body of each transaction.
+            RDFChanges body = new RDFChangesWrapper(c) {
+                @Override public void header(String field, Node value) {}
+                @Override public void txnBegin() {}
+                @Override public void txnCommit() {}
+                @Override public void txnAbort() {}
+            };
+            commits.forEach(p->p.apply(body));
+            c.txnCommit();
+            RDFPatch patch = c.getRDFPatch();
+            FmtLog.debug(LOG, "[%s] Write-behind: %d commits, %d changes", datasourceId, commits.size(), changes);
+            // If this fails, the changes remain waiting.
+            appendRebase(patch, retries);
+            commits.clear();
+            changes = 0;
+            firstCommit = -1;
+            if ( pending != null )
+                pending.truncate();
+            if ( once && writeBehind == this ) {
+                cancel();
+                writeBehind = null;
+            }
+        }
+        
+        void cancel() {
+            if ( timer != null )
+                timer.cancel(false);
+        }
+        
+        /** Send, re-basing if necessary, if the first waiting commit is old enough. */ 
+        private void timeout() {
+            synchronized(writeBehindLock) {
+                if ( writeBehind != this || isEmpty() )
+                    return;
+                if ( System.currentTimeMillis() - firstCommit < maxDelay )
+                    return;
+            }
+            // flush() takes a write transaction, then writeBehindLock.
+            try { DeltaConnection.this.flush(); }
+            catch (RuntimeException ex) {
+                FmtLog.warn(LOG, "[%s] Write-behind: failed to send changes: %s", datasourceId, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Send any changes waiting in write-behind mode and switch write-behind off.
+     * If the changes can not be sent, they stay waiting, without time-based sending, and
+     * an exception is thrown.
+     */
     @Override
     public void close() {
         // Return to pool if pooled.
+        synchronized(writeBehindLock) {
+            if ( writeBehind == null )
+                return;
+        }
+        try { 
+            setWriteBehind(0, 0);
+        } catch (RuntimeException ex) {
+            synchronized(writeBehindLock) {
+                if ( writeBehind != null )
+                    writeBehind.cancel();
+            }
+            throw new DeltaException(format("[%s] Write-behind changes not sent: %s", datasourceId, ex.getMessage()), ex);
+        }
     }
     
     public boolean isValid() {
@@ -31,6 +31,15 @@ public class DeltaLib {
     
     /** Connect to a destination for changes */
     public static RDFChanges destination(String dest) {
+        return destination(dest, false);
+    }
+
+    /**
+     * Connect to a destination for changes.
+     * For an HTTP destination, {@code streaming} causes the changes to be sent
+     * as the transaction proceeds, not collected and sent on commit. 
+     */
+    public static RDFChanges destination(String dest, boolean streaming) {
         // TODO text vs binary
         if ( dest.startsWith("file:") ) {
             OutputStream out = IO.openOutputFile(dest) ;
@@ -45,7 +54,7 @@ public class DeltaLib {
         
         if ( dest.startsWith("http:") || dest.startsWith("https:") ) {
             // Triggered on each transaction.
-            return new RDFChangesHTTP(dest, ()->dest, null) ;
+            return new RDFChangesHTTP(dest, null, ()->dest, null, streaming) ;
         }
         throw new IllegalArgumentException("Not understood: "+dest) ;
     }
@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.web.HttpSC;
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.Delta;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogInfo;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.link.DeltaNotConnectedException;
+import org.seaborne.delta.link.RegToken;
+import org.seaborne.patch.RDFPatch;
+
+/**
+ * {@link DeltaLink} over several patch log servers for the same patch logs
+ * (for example, servers sharing a Zookeeper-based patch store).
+ * <p>
+ * One server, the one with the lowest ping time, is the primary. Appends and
+ * management operations go to the primary. Fetches are spread across all the
+ * servers that are up. If a server can not be reached, it is marked as down for a
+ * while and the operation is retried on another server, registering with it
+ * using the same client id if necessary.
+ * <p>
+ * An append is only retried on another server if the connection was never made.
+ * If the connection failed after that, the patch may be in the log, so the head of
+ * the log is checked: if it is the patch, the append has happened; if not, or if
+ * the log can not be checked, the append fails.
+ */
+public class DeltaLinkFailover implements DeltaLink {
+    
+    /** Time a server is not used after a connection failure. */
+    private static final long DOWN_MILLIS = 5_000;
+
+    private static class Server {
+        final DeltaLink link;
+        final String label;
+        volatile long downUntil = 0;
+        // Client id this server has been registered with. 
+        volatile Id registeredAs = null;
+        
+        Server(DeltaLink link, String label) {
+            this.link = link;
+            this.label = label;
+        }
+        
+        boolean isUp(long now) {
+            return downUntil <= now;
+        }
+    }
+    
+    private final List<Server> servers;
+    private volatile Server primary;
+    private final AtomicInteger fetchCounter = new AtomicInteger(0);
+    private volatile Id clientId = null;
+    private volatile boolean registered = false;
+    private volatile boolean linkOpen = true;
+    
+    /** Connect to the patch log servers at the given URLs. */
+    public static DeltaLink connect(List<String> serverURLs) {
+        Objects.requireNonNull(serverURLs, "DeltaLinkFailover: Null list of server URLs");
+        if ( serverURLs.isEmpty() )
+            throw new IllegalArgumentException("No server URLs");
+        List<Server> servers = serverURLs.stream()
+            .map(url->new Server(DeltaLinkHTTP.connect(url), url))
+            .collect(Collectors.toList());
+        return new DeltaLinkFailover(servers);
+    }
+
+    /** Use the given {@link DeltaLink DeltaLinks}, which must be links to servers for the same patch logs. */
+    public static DeltaLink create(List<DeltaLink> links) {
+        Objects.requireNonNull(links, "DeltaLinkFailover: Null list of links");
+        if ( links.isEmpty() )
+            throw new IllegalArgumentException("No links");
+        List<Server> servers = new ArrayList<>();
+        for ( int i = 0 ; i < links.size() ; i++ )
+            servers.add(new Server(links.get(i), "link-"+i));
+        return new DeltaLinkFailover(servers);
+    }
+    
+    private DeltaLinkFailover(List<Server> servers) {
+        this.servers = servers;
+        this.primary = choosePrimary(null);
+    }
+
+    /**
+     * Choose the server, that is up, with the lowest ping time.
+     * If none respond, return the first one that is not {@code exclude}.
+     */
+    private Server choosePrimary(Server exclude) {
+        Server best = null;
+        long bestTime = Long.MAX_VALUE;
+        long now = System.currentTimeMillis();
+        for ( Server server : servers ) {
+            if ( server == exclude || ! server.isUp(now) )
+                continue;
+            long start = System.nanoTime();
+            try {
+                server.link.ping();
+            } catch (RuntimeException ex) {
+                if ( ! isConnectionFailure(ex) )
+                    throw ex;
+                markDown(server, ex);
+                continue;
+            }
+            long time = System.nanoTime() - start;
+            if ( time < bestTime ) {
+                best = server;
+                bestTime = time;
+            }
+        }
+        if ( best == null ) {
+            // Nothing responded. Try again on use.
+            best = servers.stream().filter(s->s != exclude).findFirst().orElse(servers.get(0));
+        }
+        FmtLog.debug(Delta.DELTA_HTTP_LOG, "Primary server: %s", best.label);
+        return best;
+    }
+    
+    private void markDown(Server server, RuntimeException ex) {
+        FmtLog.warn(Delta.DELTA_HTTP_LOG, "Server %s not available: %s", server.label, ex.getMessage());
+        server.downUntil = System.currentTimeMillis() + DOWN_MILLIS;
+    }
+    
+    /** Whether the exception indicates that the server could not be reached, or is unavailable. */ 
+    private static boolean isConnectionFailure(RuntimeException ex) {
+        if ( ex instanceof HttpException ) {
+            int rc = ((HttpException)ex).getResponseCode();
+            if ( rc == -1 || rc == HttpSC.SERVICE_UNAVAILABLE_503 || rc == HttpSC.BAD_GATEWAY_502 || rc == HttpSC.GATEWAY_TIMEOUT_504 )
+                return true;
+        }
+        for ( Throwable th = ex ; th != null ; th = th.getCause() ) {
+            if ( th instanceof IOException )
+                return true;
+        }
+        return false;
+    }
+    
+    /** Whether the exception indicates that the connection to the server was never made. */ 
+    private static boolean isNotConnected(RuntimeException ex) {
+        for ( Throwable th = ex ; th != null ; th = th.getCause() ) {
+            if ( th instanceof ConnectException || th instanceof ConnectTimeoutException
+                 || th instanceof NoRouteToHostException || th instanceof UnknownHostException )
+                return true;
+        }
+        return false;
+    }
+
+    /** Make sure the server has the client registration, if any. */ 
+    private void ensureRegistered(Server server) {
+        Id id = clientId;
+        if ( registered && ! id.equals(server.registeredAs) ) {
+            server.link.register(id);
+            server.registeredAs = id;
+        }
+    }
+    
+    /** Perform an operation on the primary, failing over to another server if it can not be reached. */
+    private <X> X exec(Function<DeltaLink, X> action) {
+        checkLink();
+        RuntimeException lastEx = null;
+        for ( int i = 0 ; i < servers.size() ; i++ ) {
+            Server server = primary;
+            try {
+                ensureRegistered(server);
+                return action.apply(server.link);
+            } catch (RuntimeException ex) {
+                if ( ! isConnectionFailure(ex) )
+                    throw ex;
+                lastEx = ex;
+                markDown(server, ex);
+                synchronized(this) {
+                    if ( primary == server )
+                        primary = choosePrimary(server);
+                }
+            }
+        }
+        throw lastEx;
+    }
+
+    /** Perform a read operation on the next server that is up, failing over to the primary. */
+    private <X> X execSpread(Function<DeltaLink, X> action) {
+        checkLink();
+        long now = System.currentTimeMillis();
+        int n = servers.size();
+        int start = Math.floorMod(fetchCounter.getAndIncrement(), n);
+        for ( int i = 0 ; i < n ; i++ ) {
+            Server server = servers.get((start+i) % n);
+            if ( ! server.isUp(now) )
+                continue;
+            try {
+                ensureRegistered(server);
+                return action.apply(server.link);
+            } catch (RuntimeException ex) {
+                if ( ! isConnectionFailure(ex) )
+                    throw ex;
+                markDown(server, ex);
+            }
+        }
+        return exec(action);
+    }
+    
+    private void checkLink() {
+        if ( ! linkOpen )
+            throw new DeltaNotConnectedException("Not connected: "+servers.stream().map(s->s.label).collect(Collectors.joining(", ")));
+    }
+
+    @Override
+    public Id newDataSource(String name, String uri) {
+        return exec(link->link.newDataSource(name, uri));
+    }
+
+    @Override
+    public void removeDataSource(Id dsRef) {
+        exec(link->{ link.removeDataSource(dsRef); return null; });
+    }
+
+    @Override
+    public List<Id> listDatasets() {
+        return exec(link->link.listDatasets());
+    }
+
+    @Override
+    public List<PatchLogInfo> listPatchLogInfo() {
+        return exec(link->link.listPatchLogInfo());
+    }
+
+    @Override
+    public PatchLogInfo getPatchLogInfo(Id dsRef) {
+        return exec(link->link.getPatchLogInfo(dsRef));
+    }
+
+    @Override
+    public List<DataSourceDescription> listDescriptions() {
+        return exec(link->link.listDescriptions());
+    }
+
+    @Override
+    public DataSourceDescription getDataSourceDescription(Id dsRef) {
+        return exec(link->link.getDataSourceDescription(dsRef));
+    }
+
+    @Override
+    public DataSourceDescription getDataSourceDescriptionByURI(String uri) {
+        return exec(link->link.getDataSourceDescriptionByURI(uri));
+    }
+
+    @Override
+    public DataSourceDescription getDataSourceDescriptionByName(String name) {
+        return exec(link->link.getDataSourceDescriptionByName(name));
+    }
+
+    /**
+     * Append on the primary. Only fail over to another server if the patch did not
+     * reach the primary, or if the log shows that the patch is not in it.
+     */
+    @Override
+    public long append(Id dsRef, RDFPatch patch) {
+        checkLink();
+        RuntimeException lastEx = null;
+        for ( int i = 0 ; i < servers.size() ; i++ ) {
+            Server server = primary;
+            try {
+                ensureRegistered(server);
+                return server.link.append(dsRef, patch);
+            } catch (RuntimeException ex) {
+                if ( ! isConnectionFailure(ex) )
+                    throw ex;
+                lastEx = ex;
+                markDown(server, ex);
+                synchronized(this) {
+                    if ( primary == server )
+                        primary = choosePrimary(server);
+                }
+                if ( ! isNotConnected(ex) ) {
+                    // The patch may have been sent: it is not safe to send it again
+                    // unless the log shows it has not been appended. 
+                    PatchLogInfo info;
+                    try {
+                        info = exec(link->link.getPatchLogInfo(dsRef));
+                    } catch (RuntimeException ex2) {
+                        FmtLog.warn(Delta.DELTA_HTTP_LOG, "Append to %s failed and the log can not be checked: %s", server.label, ex2.getMessage());
+                        throw ex;
+                    }
+                    if ( info != null && Objects.equals(patch.getId(), info.getLatestPatch()) )
+                        return info.getMaxVersion();
+                }
+            }
+        }
+        throw lastEx;
+    }
+
+    @Override
+    public RDFPatch fetch(Id dsRef, long version) {
+        return execSpread(link->link.fetch(dsRef, version));
+    }
+
+    @Override
+    public RDFPatch fetchCatchUp(Id dsRef, long version) {
+        return execSpread(link->link.fetchCatchUp(dsRef, version));
+    }
+
+    @Override
+    public RDFPatch fetch(Id dsRef, Id patchId) {
+        return execSpread(link->link.fetch(dsRef, patchId));
+    }
+
+    @Override
+    public String initialState(Id dsRef) {
+        return exec(link->link.initialState(dsRef));
+    }
+
+    @Override
+    public RegToken register(Id clientId) {
+        this.clientId = clientId;
+        this.registered = true;
+        servers.forEach(s->s.registeredAs = null);
+        // Registers with the primary; other servers are registered when first used.
+        return exec(link->link.getRegToken());
+    }
+
+    @Override
+    public void deregister() {
+        checkLink();
+        registered = false;
+        for ( Server server : servers ) {
+            if ( server.registeredAs == null )
+                continue;
+            server.registeredAs = null;
+            try { server.link.deregister(); }
+            catch (RuntimeException ex) {
+                if ( ! isConnectionFailure(ex) )
+                    throw ex;
+            }
+        }
+    }
+
+    @Override
+    public boolean isRegistered() {
+        if ( ! registered )
+            return false;
+        return exec(link->link.isRegistered());
+    }
+
+    @Override
+    public RegToken getRegToken() {
+        return primary.link.getRegToken();
+    }
+
+    @Override
+    public Id getClientId() {
+        return clientId;
+    }
+
+    @Override
+    public void ping() {
+        exec(link->{ link.ping(); return null; });
+    }
+
+    @Override
+    public void close() {
+        linkOpen = false;
+        servers.forEach(s->s.link.close());
+    }
+    
+    @Override
+    public String toString() {
+        return "DeltaLinkFailover"+servers.stream().map(s->s.label).collect(Collectors.toList());
+    }
+}
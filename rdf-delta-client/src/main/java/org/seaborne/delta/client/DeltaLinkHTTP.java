@@ -20,7 +20,8 @@ package org.seaborne.delta.client;
 
 import static java.lang.String.format;
 
-import java.io.InputStream ;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Supplier ;
@@ -32,16 +33,22 @@ import org.apache.jena.atlas.json.JsonObject ;
 import org.apache.jena.atlas.json.JsonValue ;
 import org.apache.jena.atlas.logging.FmtLog ;
 import org.apache.jena.atlas.web.HttpException ;
+import org.apache.jena.atlas.web.TypedInputStream ;
 import org.apache.jena.riot.web.HttpOp ;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.*;
+import org.seaborne.delta.lib.IOX;
 import org.seaborne.delta.lib.JSONX;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.link.DeltaNotConnectedException ;
 import org.seaborne.delta.link.DeltaNotRegisteredException ;
 import org.seaborne.delta.link.RegToken;
+import org.seaborne.patch.PatchCompression ;
+import org.seaborne.patch.PatchCompression.Codec ;
+import org.seaborne.patch.PatchProcessor ;
 import org.seaborne.patch.RDFPatch ;
-import org.seaborne.patch.changes.RDFChangesCollector ;
+import org.seaborne.patch.binary.RDFPatchReaderBinary ;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact ;
 import org.seaborne.patch.text.RDFPatchReaderText ;
 
 /** 
@@ -59,22 +66,53 @@ public class DeltaLinkHTTP implements DeltaLink {
     private RegToken regToken = null;
     private Id clientId = null;
     private boolean linkOpen = false;
+    // Send appended patches as a chunked stream.
+    private final boolean streamingAppend;
+    // Send and ask for patches in the binary (Thrift) format.
+    private final boolean binaryPatches;
+    // Content-Encoding for appended patches.
+    private volatile Codec compression = PatchCompression.NONE;
+    
+    // Accept header for fetching patches in binary mode; text is still acceptable.
+    private static final String acceptBinaryPatch = DeltaConst.contentTypePatchBinary+", "+DeltaConst.contentTypePatchText+";q=0.5";
     
     private final static JsonObject emptyObject = new JsonObject();
     
     public static DeltaLink connect(String serverURL) {
+        return connect(serverURL, false);
+    }
+    
+    /**
+     * Connect to a patch log server.
+     * If {@code streamingAppend} is true, patches are appended as a chunked stream,
+     * so the whole patch is not held as bytes before sending.
+     */
+    public static DeltaLink connect(String serverURL, boolean streamingAppend) {
+        return connect(serverURL, streamingAppend, false);
+    }
+
+    /**
+     * Connect to a patch log server.
+     * If {@code streamingAppend} is true, patches are appended as a chunked stream,
+     * so the whole patch is not held as bytes before sending.
+     * If {@code binaryPatches} is true, patches are sent, and requested, in the binary
+     * (Thrift) format; a server may still reply with text which is then read as text.
+     */
+    public static DeltaLink connect(String serverURL, boolean streamingAppend, boolean binaryPatches) {
         Objects.requireNonNull(serverURL, "DelatLinkHTTP: Null URL for the server");
         if ( ! serverURL.startsWith("http://") && ! serverURL.startsWith("https://") )  
             throw new IllegalArgumentException("Bad server URL: '"+serverURL+"'");
-        return new DeltaLinkHTTP(serverURL);
+        return new DeltaLinkHTTP(serverURL, streamingAppend, binaryPatches);
     }
     
-    private DeltaLinkHTTP(String serverURL) {
+    private DeltaLinkHTTP(String serverURL, boolean streamingAppend, boolean binaryPatches) {
         if ( ! serverURL.endsWith("/" ))
             serverURL= serverURL+"/";
 
         this.remoteServer = serverURL;
         this.linkOpen = true;
+        this.streamingAppend = streamingAppend;
+        this.binaryPatches = binaryPatches;
 
         // One URL
         this.remoteSend     = serverURL+"{"+DeltaConst.paramDatasource+"}";
@@ -154,9 +192,23 @@ public class DeltaLinkHTTP implements DeltaLink {
         Objects.requireNonNull(dsRef);
         checkLink();
         checkRegistered();
-        return new RDFChangesHTTP(dsRef.toSchemeString("ds:"),
-                                  ()->calcChangesURL(dsRef),
-                                  ()->reregister());
+        RDFChangesHTTP changes = new RDFChangesHTTP(dsRef.toSchemeString("ds:"),
+                                                    null,
+                                                    ()->calcChangesURL(dsRef),
+                                                    ()->reregister(),
+                                                    streamingAppend,
+                                                    binaryPatches);
+        changes.setCompression(compression);
+        return changes;
+    }
+
+    /**
+     * Compress appended patches with the codec (not when streaming appends).
+     * Fetched patches are compressed if the HTTP client and server agree an encoding
+     * and are read whatever the encoding.
+     */
+    public void setCompression(Codec codec) {
+        this.compression = ( codec == null ) ? PatchCompression.NONE : codec;
     }
     
     /** Calculate the patch log URL */ 
@@ -201,33 +253,50 @@ public class DeltaLinkHTTP implements DeltaLink {
     public RDFPatch fetch(Id dsRef, long version) {
         if ( version < 0 )
             return null;
-        return fetchCommon(dsRef, DeltaConst.paramVersion, version, Long.toString(version));
+        return fetchCommon(dsRef, DeltaConst.paramVersion, version, Long.toString(version), false);
+    }
+
+    @Override
+    public RDFPatch fetchCatchUp(Id dsRef, long version) {
+        if ( version < 0 )
+            return null;
+        // The server squashes the patches.
+        return fetchCommon(dsRef, DeltaConst.paramVersion, version, Long.toString(version)+" (catch-up)", true);
     }
 
     @Override
     public RDFPatch fetch(Id dsRef, Id patchId) {
-        return fetchCommon(dsRef, DeltaConst.paramPatch, patchId.asParam(), patchId.toString());
+        return fetchCommon(dsRef, DeltaConst.paramPatch, patchId.asParam(), patchId.toString(), false);
     }
 
-    private RDFPatch fetchCommon(Id dsRef, String param, Object value, String valueLogStr) {
+    private RDFPatch fetchCommon(Id dsRef, String param, Object value, String valueLogStr, boolean catchUp) {
         checkLink();
         
         String url = remoteReceive;
         url = createURL(url, DeltaConst.paramDatasource, dsRef.asParam());
         url = appendURL(url, value.toString());
+        if ( catchUp )
+            url = DeltaLib.makeURL(url, DeltaConst.paramCatchUp, "true");
         url = addToken(url);
         final String s = url;
         FmtLog.info(Delta.DELTA_HTTP_LOG, "Fetch request: %s %s=%s [%s]", dsRef, param, valueLogStr, url);
         try { 
             return retry(()->{
                 // [NET] Network point
-                InputStream in = HttpOp.execHttpGet(s) ;
+                TypedInputStream in = binaryPatches ? HttpOp.execHttpGet(s, acceptBinaryPatch) : HttpOp.execHttpGet(s) ;
                 if ( in == null )
                     return null ;
-                RDFPatchReaderText pr = new RDFPatchReaderText(in) ;
-                RDFChangesCollector collector = new RDFChangesCollector();
-                pr.apply(collector);
-                return collector.getRDFPatch();
+                // Close: a decompressing stream may not read to the end, which would leave the connection in use.
+                try ( InputStream input = PatchCompression.decompress(in) ) {
+                    // Read according to what the server sent.
+                    // The HTTP client normally removes any Content-Encoding; check in case it did not.
+                    PatchProcessor pr = DeltaOps.isBinaryPatch(in.getContentType())
+                        ? RDFPatchReaderBinary.create(input)
+                        : new RDFPatchReaderText(input) ;
+                    RDFChangesCollectorCompact collector = new RDFChangesCollectorCompact();
+                    pr.apply(collector);
+                    return collector.getRDFPatch();
+                } catch (IOException ex) { throw IOX.exception(ex); }
             }, ()->true, ()->"Retry fetch patch.", ()->"Failed to fetch patch.");
         }
         catch ( HttpException ex) {
@@ -25,6 +25,15 @@ class FN {
     
     /** Name of the file holding the persistent state, client DeltaConnection. */
     public static final String STATE      = "state";
+
+    /** Name of the append-only journal of state changes, used with {@link Zone#setStateJournal}. */
+    public static final String JOURNAL    = "state-journal";
+
+    /** Name of the append-only local copy of patches, used with {@link Zone#setPatchMirror}. */
+    public static final String MIRROR     = "patches";
+
+    /** Name of the record of local commits not yet sent in write-behind mode. */
+    public static final String PENDING    = "pending";
     
 
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed, roughly logarithmic, buckets in milliseconds.
+ * Recording is lock-free; readings are approximate while recording is happening.
+ */
+public class LatencyHistogram {
+    /** Upper bounds (inclusive) of the buckets, in milliseconds. There is a final bucket for larger values. */
+    private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length+1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    
+    /** Record one measurement. */
+    public void record(long nanos) {
+        long millis = nanos / 1_000_000;
+        int idx = 0;
+        while ( idx < BOUNDS.length && millis > BOUNDS[idx] )
+            idx++;
+        buckets.incrementAndGet(idx);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    /** Mean in milliseconds; 0 if there are no measurements. */
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (n * 1_000_000.0);
+    }
+    
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+    
+    /**
+     * The upper bound, in milliseconds, of the bucket containing the given quantile
+     * (0 to 1). Returns the maximum for the last, unbounded, bucket. 
+     */
+    public double getQuantileMillis(double quantile) {
+        long n = 0;
+        long[] counts = new long[buckets.length()];
+        for ( int i = 0 ; i < counts.length ; i++ ) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if ( n == 0 )
+            return 0;
+        long target = (long)Math.ceil(quantile * n);
+        long seen = 0;
+        for ( int i = 0 ; i < BOUNDS.length ; i++ ) {
+            seen += counts[i];
+            if ( seen >= target )
+                return BOUNDS[i];
+        }
+        return getMaxMillis();
+    }
+    
+    /** Bucket upper bounds in milliseconds; the last bucket, for larger values, has no bound. */
+    public static long[] getBounds() {
+        return BOUNDS.clone();
+    }
+    
+    /** Counts per bucket, one more than {@link #getBounds()}. */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length()];
+        for ( int i = 0 ; i < counts.length ; i++ )
+            counts[i] = buckets.get(i);
+        return counts;
+    }
+}
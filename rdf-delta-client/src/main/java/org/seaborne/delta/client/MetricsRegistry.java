@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Destination for the {@link ReplicationStats} of the connections of a {@link DeltaClient}.
+ * Applications can provide an implementation to feed their own metrics system.
+ * 
+ * @see DeltaClient#setMetricsRegistry
+ */
+public interface MetricsRegistry {
+    
+    /** Registry that does nothing. */
+    public static final MetricsRegistry NONE = new MetricsRegistry() {
+        @Override public void register(ReplicationStats stats)   {}
+        @Override public void unregister(ReplicationStats stats) {}
+    };
+    
+    /** Registry that makes the statistics available as platform MBeans. */
+    public static MetricsRegistry jmx() {
+        return new MetricsRegistryJMX();
+    }
+    
+    /** Start reporting the statistics of a connection. */ 
+    public void register(ReplicationStats stats);
+    
+    /** Stop reporting the statistics of a connection. */ 
+    public void unregister(ReplicationStats stats);
+    
+    /** 
+     * Registry for JMX. The object name is
+     * {@code org.seaborne.delta:type=DeltaConnection,name=<data source name>,instance=<n>}
+     * where the instance number distinguishes several connections to the same data source
+     * in one JVM.
+     */
+    static class MetricsRegistryJMX implements MetricsRegistry {
+        private static Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+        private final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        
+        @Override
+        public void register(ReplicationStats stats) {
+            try {
+                ObjectName objName = objectName(stats);
+                if ( mbs.isRegistered(objName) )
+                    mbs.unregisterMBean(objName);
+                mbs.registerMBean(stats, objName);
+            } catch (JMException ex) {
+                FmtLog.warn(LOG, "Failed to register JMX statistics for %s: %s", stats.getDataSourceName(), ex.getMessage());
+            }
+        }
+
+        @Override
+        public void unregister(ReplicationStats stats) {
+            try {
+                ObjectName objName = objectName(stats);
+                if ( mbs.isRegistered(objName) )
+                    mbs.unregisterMBean(objName);
+            } catch (JMException ex) {
+                FmtLog.warn(LOG, "Failed to unregister JMX statistics for %s: %s", stats.getDataSourceName(), ex.getMessage());
+            }
+        }
+        
+        static ObjectName objectName(ReplicationStats stats) throws JMException {
+            return new ObjectName("org.seaborne.delta:type=DeltaConnection,name="+ObjectName.quote(stats.getDataSourceName())
+                                  +",instance="+stats.getInstance());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.binary.RDFChangesWriterBinary;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
+import org.seaborne.patch.changes.RDFChangesApply;
+import org.seaborne.patch.changes.RDFChangesWrapper;
+
+/**
+ * Append-only local copy of the patches of a data source, kept in the zone.
+ * <p>
+ * Each record is: version (8 bytes), length (4 bytes), the patch in binary form.
+ * Records are in version order, starting at version 1, with no gaps. A record cut short by a crash is removed when the mirror is opened.
+ * <p>
+ * This allows an in-memory replica to be rebuilt from local disk on restart;
+ * only patches after the last one in the mirror are fetched from the patch log server.
+ */
+class PatchMirror {
+    private static final int RECORD_HEADER = Long.BYTES + Integer.BYTES;
+    
+    private final Path path;
+    private FileChannel channel = null;
+    // Version of the last record; 0 if empty.
+    private long lastVersion = 0;
+
+    PatchMirror(Path path) {
+        this.path = path;
+        this.lastVersion = scan();
+    }
+
+    Path getPath() {
+        return path;
+    }
+    
+    /** Version of the last patch in the mirror, or 0 if the mirror is empty. */
+    synchronized long lastVersion() {
+        return lastVersion;
+    }
+
+    /** 
+     * Add a patch. Patches already in the mirror are skipped.
+     * A patch that is not the next version is an error. 
+     */
+    synchronized void append(long version, RDFPatch patch) {
+        if ( version <= lastVersion )
+            return;
+        if ( version != lastVersion+1 )
+            throw new DeltaException(String.format("Patch mirror %s : expected version %d, got %d", path, lastVersion+1, version));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(1024);
+        RDFChangesWriterBinary writer = new RDFChangesWriterBinary(bout);
+        writer.start();
+        patch.apply(writer);
+        writer.finish();
+        byte[] bytes = bout.toByteArray();
+        ByteBuffer bb = ByteBuffer.allocate(RECORD_HEADER+bytes.length);
+        bb.putLong(version).putInt(bytes.length).put(bytes).flip();
+        try {
+            FileChannel ch = channel();
+            while ( bb.hasRemaining() )
+                ch.write(bb);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        lastVersion = version;
+    }
+
+    /**
+     * Apply all the patches in the mirror to the dataset, in one transaction.
+     * Return the version and id of the last patch applied, or null if the mirror is empty.
+     */
+    synchronized Pair<Long, Node> replay(DatasetGraph dsg) {
+        if ( lastVersion == 0 )
+            return null;
+        // Inside one transaction: apply changes only.
+        RDFChanges target = new RDFChangesWrapper(new RDFChangesApply(dsg)) {
+            @Override public void txnBegin() {}
+            @Override public void txnCommit() {}
+            @Override public void txnAbort() {}
+        };
+        return Txn.calculateWrite(dsg, ()->{
+            long ver = 0;
+            Node id = null;
+            try ( DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 128*1024)) ) {
+                while ( ver < lastVersion ) {
+                    ver = in.readLong();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    RDFPatch patch = RDFPatchReaderBinary.read(new ByteArrayInputStream(bytes));
+                    patch.apply(target);
+                    id = patch.getId();
+                }
+            } catch (IOException ex) { throw IOX.exception(ex); }
+            return Pair.create(ver, id);
+        });
+    }
+
+    /** Remove all patches. */
+    synchronized void truncate() {
+        try {
+            channel().truncate(0);
+            channel().force(false);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        lastVersion = 0;
+    }
+
+    /** Close and remove the mirror file. */
+    synchronized void delete() {
+        close();
+        try { Files.deleteIfExists(path); }
+        catch (IOException ex) { throw IOX.exception(ex); }
+        lastVersion = 0;
+    }
+
+    synchronized void close() {
+        if ( channel == null )
+            return;
+        try { channel.close(); }
+        catch (IOException ex) { throw IOX.exception(ex); }
+        channel = null;
+    }
+
+    /** Find the last complete record, removing any incomplete one at the end. */ 
+    private long scan() {
+        if ( ! Files.exists(path) )
+            return 0;
+        long last = 0;
+        long position = 0;
+        try ( FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE) ) {
+            long size = ch.size();
+            ByteBuffer bb = ByteBuffer.allocate(RECORD_HEADER);
+            while ( position + RECORD_HEADER <= size ) {
+                bb.clear();
+                while ( bb.hasRemaining() && ch.read(bb, position+bb.position()) >= 0 ) {}
+                bb.flip();
+                long ver = bb.getLong();
+                int len = bb.getInt();
+                if ( position + RECORD_HEADER + len > size )
+                    break;
+                if ( ver != last+1 )
+                    break;
+                last = ver;
+                position = position + RECORD_HEADER + len;
+            }
+            if ( position < size ) {
+                FmtLog.warn(DataState.LOG, "Patch mirror %s : removing incomplete data at end", path);
+                ch.truncate(position);
+            }
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        return last;
+    }
+
+    private FileChannel channel() throws IOException {
+        if ( channel == null )
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return channel;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.binary.RDFChangesWriterBinary;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
+
+/**
+ * Append-only record, kept in the zone, of the local commits made in write-behind mode
+ * that have not yet been sent to the patch log.
+ * <p>
+ * Each record is: length (4 bytes), the patch in binary form. Each record is forced to
+ * disk before the local commit happens. The file is truncated when the commits have
+ * been sent. A record cut short by a crash is removed when the file is read.
+ */
+class PendingWrites {
+    private final Path path;
+    private FileChannel channel = null;
+    // Start of the last record; -1 if not known.
+    private long lastStart = -1;
+
+    PendingWrites(Path path) {
+        this.path = path;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /** Add a local commit, forcing it to disk. */
+    synchronized void append(RDFPatch patch) {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(1024);
+        RDFChangesWriterBinary writer = new RDFChangesWriterBinary(bout);
+        writer.start();
+        patch.apply(writer);
+        writer.finish();
+        byte[] bytes = bout.toByteArray();
+        ByteBuffer bb = ByteBuffer.allocate(Integer.BYTES+bytes.length);
+        bb.putInt(bytes.length).put(bytes).flip();
+        try {
+            FileChannel ch = channel();
+            lastStart = ch.size();
+            while ( bb.hasRemaining() )
+                ch.write(bb);
+            ch.force(false);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /** Remove the record added by the last call of {@link #append}. */
+    synchronized void removeLast() {
+        if ( lastStart < 0 )
+            return;
+        try {
+            channel().truncate(lastStart);
+            channel().force(false);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        lastStart = -1;
+    }
+
+    /** Read the commits, removing any incomplete record at the end. */ 
+    synchronized List<RDFPatch> read() {
+        List<RDFPatch> patches = new ArrayList<>();
+        if ( ! Files.exists(path) )
+            return patches;
+        long position = 0;
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))) ) {
+            long size = Files.size(path);
+            while ( position + Integer.BYTES <= size ) {
+                int len = in.readInt();
+                if ( position + Integer.BYTES + len > size )
+                    break;
+                byte[] bytes = new byte[len];
+                in.readFully(bytes);
+                patches.add(RDFPatchReaderBinary.read(new ByteArrayInputStream(bytes)));
+                position = position + Integer.BYTES + len;
+            }
+            if ( position < size ) {
+                FmtLog.warn(DataState.LOG, "Pending writes %s : removing incomplete data at end", path);
+                channel().truncate(position);
+            }
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        return patches;
+    }
+
+    /** Remove all records. Call when the commits are in the patch log. */
+    synchronized void truncate() {
+        if ( channel == null && ! Files.exists(path) )
+            return;
+        try {
+            channel().truncate(0);
+            channel().force(false);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        lastStart = -1;
+    }
+
+    synchronized void close() {
+        if ( channel == null )
+            return;
+        try { channel.close(); }
+        catch (IOException ex) { throw IOX.exception(ex); }
+        channel = null;
+    }
+
+    private FileChannel channel() throws IOException {
+        if ( channel == null )
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return channel;
+    }
+}
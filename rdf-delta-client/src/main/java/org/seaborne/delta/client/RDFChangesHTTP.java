@@ -21,7 +21,10 @@ package org.seaborne.delta.client;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong ;
 import java.util.function.Supplier;
 
@@ -30,6 +33,7 @@ import org.apache.http.HttpResponse ;
 import org.apache.http.StatusLine ;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
@@ -39,19 +43,41 @@ import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.graph.Node;
 import org.seaborne.delta.*;
 import org.seaborne.delta.lib.IOX ;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
 import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.binary.RDFChangesWriterBinary;
 import org.seaborne.patch.changes.RDFChangesWriter;
 import org.slf4j.Logger;
 
-/** Collect the bytes of a change stream, then write to HTTP */ 
+/**
+ * Collect the bytes of a change stream, then write to HTTP.
+ * <p>
+ * In streaming mode, the HTTP request is started at {@code txnBegin} and the
+ * bytes are sent as a chunked request body while the transaction is running.
+ * The server accepts or rejects the patch when the commit completes the request.
+ * Client memory use is bounded by a small queue of chunks. If all the threads for
+ * streamed requests are busy, the transaction is collected and sent at the commit as
+ * when not streaming.
+ */ 
 public class RDFChangesHTTP extends RDFChangesWriter {
     
-    // This should be tied to the DeltaLink and have that control text/binary.
+    // The DeltaLink controls text/binary.
     
     private static final Logger LOG = Delta.DELTA_HTTP_LOG;
     // XXX Caching? Auth?
     private final CloseableHttpClient httpClient = HttpClients.createDefault();
     private final ByteArrayOutputStream bytes ;
+    private final boolean streaming;
+    // Binary (Thrift) output, or null for text.
+    private final RDFChangesWriterBinary binary;
+    private final String contentType;
+    // Streaming : the request for the current transaction, or null.
+    private HttpEntityRDFChanges entity = null;
+    private HttpPost streamRequest      = null;
+    private Future<Result> streamResult = null;
+    // Streaming : no thread was free for this transaction; collect the bytes instead.
+    private boolean streamBuffered      = false;
     private final Runnable resetAction;
     private final Supplier<String> urlSupplier;
     private final String label ;
@@ -60,6 +86,8 @@ public class RDFChangesHTTP extends RDFChangesWriter {
     private StatusLine statusLine       = null;
     private String response             = null;
     private Node patchId                = null;
+    // Content-Encoding of the request body (not streaming).
+    private Codec compression           = PatchCompression.NONE;
     
     /** Send changes to a specific URL */
     public RDFChangesHTTP(String urlstr) {
@@ -78,55 +106,126 @@ public class RDFChangesHTTP extends RDFChangesWriter {
     
     /** Send changes to a supplied URL, with an action a specific action on any 401 and sync'ed on a specific object  */
     public RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction) {
-        this(label, syncObject, urlSupplier, resetAction, new ByteArrayOutputStream(100*1024));
+        this(label, syncObject, urlSupplier, resetAction, false);
     }
 
-    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, ByteArrayOutputStream out) {
-        super(DeltaOps.tokenWriter(out));
+    /**
+     * Send changes to a supplied URL, with an action a specific action on any 401 and sync'ed on a specific object.
+     * If {@code streaming} is true, start sending at the start of the transaction.
+     * A streamed patch is resent after a 401 if it is small enough to have been kept
+     * (see {@link #RETRY_LIMIT}); otherwise the reset action is run and the commit fails.
+     */
+    public RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, boolean streaming) {
+        this(label, syncObject, urlSupplier, resetAction, streaming, false);
+    }
+
+    /**
+     * Send changes to a supplied URL, with an action a specific action on any 401 and sync'ed on a specific object.
+     * If {@code streaming} is true, start sending at the start of the transaction.
+     * If {@code binary} is true, the patch is sent in the binary (Thrift) format
+     * ({@value DeltaConst#contentTypePatchBinary}), otherwise as text.
+     */
+    public RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, boolean streaming, boolean binary) {
+        this(label, syncObject, urlSupplier, resetAction, streaming, binary, new ByteArrayOutputStream(streaming ? CHUNK_SIZE : 100*1024));
+    }
+
+    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, boolean streaming, boolean binary, ByteArrayOutputStream out) {
+        this(label, syncObject, urlSupplier, resetAction, streaming, binary, out, streaming ? new StreamOutput(out) : out);
+    }
+
+    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, boolean streaming, boolean binary, ByteArrayOutputStream out, OutputStream output) {
+        super(DeltaOps.tokenWriter(output));
         this.syncObject = (syncObject!=null) ? syncObject : new Object();
         this.resetAction = resetAction;
         this.urlSupplier = urlSupplier;
         this.label = label;
         this.bytes = out;
+        this.streaming = streaming;
+        this.binary = binary ? new RDFChangesWriterBinary(output) : null;
+        this.contentType = binary ? DeltaConst.contentTypePatchBinary : DeltaConst.contentTypePatchText;
+        if ( streaming )
+            ((StreamOutput)output).owner = this;
         reset();
     }
     
+    /**
+     * Compress the request body, setting the {@code Content-Encoding}.
+     * This applies when not streaming; a streamed patch is sent uncompressed.
+     */
+    public void setCompression(Codec codec) {
+        this.compression = ( codec == null ) ? PatchCompression.NONE : codec;
+    }
+
+    /** The content type of the patches sent. */
+    public String getContentType() {
+        return contentType;
+    }
+
     @Override
     public void header(String field, Node value) {
-        super.header(field, value);
+        if ( binary != null )
+            binary.header(field, value);
+        else
+            super.header(field, value);
         if ( field.equals(RDFPatchConst.ID) )
             patchId = value;
     }
     
-//    @Override
-//    public void add(Node g, Node s, Node p, Node o) {
-//        super.add(g, s, p, o);
-//    }
-//
-//    @Override
-//    public void delete(Node g, Node s, Node p, Node o) {
-//        super.delete(g, s, p, o);
-//    }
-//
-//    @Override
-//    public void addPrefix(Node gn, String prefix, String uriStr) {
-//        super.addPrefix(gn, prefix, uriStr);
-//    }
-//
-//    @Override
-//    public void deletePrefix(Node gn, String prefix) {
-//        super.deletePrefix(gn, prefix);
-//    }
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        if ( binary != null )
+            binary.add(g, s, p, o);
+        else
+            super.add(g, s, p, o);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        if ( binary != null )
+            binary.delete(g, s, p, o);
+        else
+            super.delete(g, s, p, o);
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        if ( binary != null )
+            binary.addPrefix(gn, prefix, uriStr);
+        else
+            super.addPrefix(gn, prefix, uriStr);
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        if ( binary != null )
+            binary.deletePrefix(gn, prefix);
+        else
+            super.deletePrefix(gn, prefix);
+    }
 
     @Override
     public void txnBegin() {
+        if ( binary != null ) {
+            // Any header is buffered in the Thrift protocol.
+            binary.finish();
+            if ( streaming )
+                startStream();
+            binary.txnBegin();
+            return;
+        }
+        if ( streaming )
+            startStream();
         super.txnBegin();
     }
 
     @Override
     public void txnCommit() {
         // This adds the "TC"
-        super.txnCommit();
+        if ( binary != null ) {
+            binary.txnCommit();
+            binary.finish();
+        } else
+            super.txnCommit();
         // This will throw an exception if the patch isn't current.
         // send does reset().
         // The exception passes up and DatasetGraphCjanges turns the commit into an abort.  
@@ -136,6 +235,11 @@ public class RDFChangesHTTP extends RDFChangesWriter {
     @Override
     public void txnAbort() {
         response = null;
+        if ( binary != null )
+            // Discard anything buffered.
+            binary.finish();
+        if ( streaming )
+            abortStream();
         reset();
         // Forget everything.
     }
@@ -143,6 +247,10 @@ public class RDFChangesHTTP extends RDFChangesWriter {
     private void reset() {
         patchId = null ;
         bytes.reset();
+        entity = null;
+        streamRequest = null;
+        streamResult = null;
+        streamBuffered = false;
     }
 
     private byte[] collected() {
@@ -151,7 +259,12 @@ public class RDFChangesHTTP extends RDFChangesWriter {
     
     public void send() {
         synchronized(syncObject) {
-            try { send$(); }
+            try {
+                if ( streaming && ! streamBuffered )
+                    finishStream();
+                else
+                    send$();
+            }
             finally { reset(); }
         }
     }
@@ -161,45 +274,283 @@ public class RDFChangesHTTP extends RDFChangesWriter {
         return response;
     }
     
-//    /** An {@link HttpEntity} that is "output only"; it writes a RDF Patch
-//     * to an {@code OutputStream}.  
-//     * It does not support {@link HttpEntity#getContent()}
-//     */
-//    static class HttpEntityRDFChanges extends AbstractHttpEntity {
-//        // Open the connection on begin()
-//        
-//        // Really want to get to the base OutputStream.
-//        // Output only?
-//
-//        RDFChangesWriter w;
-//        
-//        public HttpEntityRDFChanges(RDFChanges changes) {}
-//        
-//        @Override
-//        public boolean isRepeatable() {
-//            return false;
-//        }
-//
-//        @Override
-//        public long getContentLength() {
-//            return -1;
-//        }
-//
-//        @Override
-//        public InputStream getContent() throws IOException, UnsupportedOperationException {
-//            throw new UnsupportedOperationException("HttpEntityRDFChanges");
-//        }
-//
-//        @Override
-//        public void writeTo(OutputStream outstream) throws IOException {
-//
-//        }
-//
-//        @Override
-//        public boolean isStreaming() {
-//            return false;
-//        }
-//    }
+    // ---- Streaming
+
+    /** Size of a chunk of the request body. */
+    private static final int CHUNK_SIZE     = 64*1024;
+    /** Number of chunks that can be waiting to be sent. This bounds the memory used. */
+    private static final int QUEUE_LENGTH   = 8;
+    /** Largest streamed request body kept so that it can be resent after a 401. */
+    static final int RETRY_LIMIT            = 1024*1024;
+    /** Most streamed requests in progress at once. */
+    private static final int STREAM_THREADS = 16;
+
+    // Threads to run the HTTP requests while the transaction is writing the body.
+    // No queue: a request that can not start now is sent at the commit instead.
+    private static final ExecutorService executor = new ThreadPoolExecutor(0, STREAM_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r->{
+        Thread thread = new Thread(r, "RDFChangesHTTP");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The status line and body of an HTTP response. */
+    private static class Result {
+        final StatusLine statusLine;
+        final String response;
+        Result(StatusLine statusLine, String response) {
+            this.statusLine = statusLine;
+            this.response = response;
+        }
+    }
+
+    /**
+     * The {@link OutputStream} for the token writer in streaming mode. Bytes go to the
+     * current request, or are held until there is one (e.g. header before {@code txnBegin}).
+     */
+    private static class StreamOutput extends OutputStream {
+        private final ByteArrayOutputStream pending;
+        private RDFChangesHTTP owner;
+
+        StreamOutput(ByteArrayOutputStream pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            HttpEntityRDFChanges e = owner.entity;
+            if ( e == null )
+                pending.write(b, off, len);
+            else
+                e.write(b, off, len);
+        }
+    }
+
+    /**
+     * Start the HTTP request; the body is supplied as the transaction proceeds.
+     * If there is no thread free to run the request, the bytes are collected
+     * and sent by the commit.
+     */
+    private void startStream() {
+        if ( entity != null || streamBuffered )
+            return;
+        HttpEntityRDFChanges e = new HttpEntityRDFChanges(resetAction != null ? RETRY_LIMIT : 0);
+        e.setContentType(contentType);
+        HttpPost postRequest = new HttpPost(urlSupplier.get());
+        postRequest.setEntity(e);
+        try {
+            streamResult = executor.submit(()->{
+                try(CloseableHttpResponse r = httpClient.execute(postRequest) ) {
+                    return new Result(r.getStatusLine(), readResponse(r));
+                } finally {
+                    e.done();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            FmtLog.debug(LOG, "No thread to stream the patch -> %s", label);
+            streamBuffered = true;
+            return;
+        }
+        streamRequest = postRequest;
+        if ( bytes.size() > 0 ) {
+            // Header, sent before the transaction started.
+            e.write(bytes.toByteArray(), 0, bytes.size());
+            bytes.reset();
+        }
+        entity = e;
+    }
+
+    /** Complete the request body and process the response. */
+    private void finishStream() {
+        if ( entity == null ) {
+            // No txnBegin - send what has been collected.
+            startStream();
+            if ( streamBuffered ) {
+                send$();
+                return;
+            }
+        }
+        entity.finish();
+        Result result;
+        try {
+            result = streamResult.get();
+        } catch (InterruptedException ex) {
+            streamRequest.abort();
+            throw new DeltaException("Interrupted while sending patch");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if ( cause instanceof IOException )
+                throw IOX.exception((IOException)cause);
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            throw new DeltaException(cause);
+        }
+        String idStr = ( patchId != null ) ? Id.str(patchId) : Long.toString(counter.incrementAndGet());
+        FmtLog.info(LOG, "Sent patch %s (%d bytes, streamed) -> %s", idStr, entity.count(), label);
+        statusLine = result.statusLine;
+        response = result.response;
+        int sc = statusLine.getStatusCode();
+        if ( sc == 401 && resetAction != null ) {
+            // Fix the registration, then resend if the body was kept.
+            resetAction.run();
+            byte[] body = entity.kept();
+            if ( body != null ) {
+                FmtLog.info(LOG, "Resend patch %s (%d bytes) -> %s", idStr, body.length, label);
+                post(PatchCompression.compress(body, compression), idStr, false);
+                return;
+            }
+        }
+        checkStatus(statusLine, idStr);
+    }
+
+    /** Abandon the request; the server sees an incomplete request body. */
+    private void abortStream() {
+        if ( entity == null )
+            return;
+        entity.abort();
+        streamRequest.abort();
+        try { streamResult.get(); }
+        catch (InterruptedException | ExecutionException | CancellationException ex) {}
+    }
+
+    /**
+     * An {@link HttpEntity} that is "output only"; the RDF Patch is written,
+     * by the transaction thread, into a bounded queue of chunks and sent,
+     * by the HTTP client thread, as a chunked request body.
+     * It does not support {@link HttpEntity#getContent()}
+     */
+    static class HttpEntityRDFChanges extends AbstractHttpEntity {
+        // Markers - compared by identity.
+        private static final byte[] END    = new byte[0];
+        private static final byte[] ABORT  = new byte[0];
+
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_LENGTH);
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int idx = 0;
+        private long count = 0;
+        // Set when the HTTP client will no longer take chunks.
+        private volatile boolean consumerDone = false;
+        // Copy of the body for a resend; null when over the limit.
+        private final int keepLimit;
+        private ByteArrayOutputStream kept;
+
+        /** An entity that keeps a copy of the body, if not over {@code keepLimit} bytes. */
+        HttpEntityRDFChanges(int keepLimit) {
+            setChunked(true);
+            this.keepLimit = keepLimit;
+            this.kept = ( keepLimit > 0 ) ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException, UnsupportedOperationException {
+            throw new UnsupportedOperationException("HttpEntityRDFChanges");
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            try {
+                for(;;) {
+                    byte[] chunk = chunks.take();
+                    if ( chunk == END )
+                        break;
+                    if ( chunk == ABORT )
+                        throw new IOException("Patch aborted");
+                    outstream.write(chunk);
+                }
+                outstream.flush();
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted", ex);
+            } finally {
+                consumerDone = true;
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+
+        /** Number of bytes written. */
+        long count() {
+            return count;
+        }
+
+        /** The bytes written, or null if they were not kept. */
+        byte[] kept() {
+            return ( kept == null ) ? null : kept.toByteArray();
+        }
+
+        void write(byte[] b, int off, int len) {
+            count += len;
+            if ( kept != null ) {
+                if ( count > keepLimit )
+                    kept = null;
+                else
+                    kept.write(b, off, len);
+            }
+            while ( len > 0 ) {
+                int n = Math.min(len, buffer.length-idx);
+                System.arraycopy(b, off, buffer, idx, n);
+                idx += n;
+                off += n;
+                len -= n;
+                if ( idx == buffer.length )
+                    sendChunk();
+            }
+        }
+
+        void finish() {
+            if ( idx > 0 )
+                sendChunk();
+            put(END);
+        }
+
+        void abort() {
+            chunks.clear();
+            consumerDone = true;
+            chunks.offer(ABORT);
+        }
+
+        /** The request has finished, one way or another. */
+        void done() {
+            consumerDone = true;
+            chunks.clear();
+        }
+
+        private void sendChunk() {
+            byte[] chunk = ( idx == buffer.length ) ? buffer : Arrays.copyOf(buffer, idx);
+            put(chunk);
+            if ( chunk == buffer )
+                buffer = new byte[CHUNK_SIZE];
+            idx = 0;
+        }
+
+        private void put(byte[] chunk) {
+            try {
+                // If the request has failed, drop data; the error is reported on commit.
+                while ( ! consumerDone ) {
+                    if ( chunks.offer(chunk, 100, TimeUnit.MILLISECONDS) )
+                        return;
+                }
+            } catch (InterruptedException ex) {
+                throw new DeltaException("Interrupted while sending patch");
+            }
+        }
+    }
     
     private static AtomicLong counter = new AtomicLong(0);
     
@@ -233,36 +584,30 @@ public class RDFChangesHTTP extends RDFChangesWriter {
             }
         }
         
+        post(PatchCompression.compress(bytes, compression), idStr, true);
+    }
+
+    /** POST the request body; on a 401, if {@code retryAuth}, run the reset action and try again once. */
+    private void post(byte[] content, String idStr, boolean retryAuth) {
         int attempts = 0 ;
         for(;;) {
             HttpPost postRequest = new HttpPost(urlSupplier.get());
-            postRequest.setEntity(new ByteArrayEntity(bytes));
+            ByteArrayEntity body = new ByteArrayEntity(content);
+            body.setContentType(contentType);
+            if ( compression != PatchCompression.NONE )
+                body.setContentEncoding(compression.name());
+            postRequest.setEntity(body);
 
             try(CloseableHttpResponse r = httpClient.execute(postRequest) ) {
                 attempts++;
                 statusLine = r.getStatusLine();
                 response = readResponse(r);
                 int sc = r.getStatusLine().getStatusCode();
-                if ( sc >= 200 && sc <= 299 )
-                    return ;
-                if ( sc >= 300 && sc <= 399 ) {
-                    FmtLog.info(LOG, "Send patch %s HTTP %d", idStr, sc);
-                    throw new DeltaHttpException(sc, "HTTP Redirect");
-                }
-                if ( sc == 400 ) {
-                    // Bad request.
-                    // This includes being out of sync with the patch log due to a concurrent update.
-                    FmtLog.warn(LOG, "Patch %s : HTTP bad request: %s", idStr, r.getStatusLine().getReasonPhrase());
-                    throw new DeltaBadRequestException(r.getStatusLine().getReasonPhrase());
-                }
-                if ( sc == 401 && attempts == 1 && resetAction != null ) {
+                if ( sc == 401 && retryAuth && attempts == 1 && resetAction != null ) {
                     resetAction.run();
                     continue;
                 }
-                if ( sc >= 400 && sc <= 499 )
-                    throw new DeltaHttpException(sc, r.getStatusLine().getReasonPhrase());
-                if ( sc >= 500 )
-                    throw new DeltaHttpException(sc, r.getStatusLine().getReasonPhrase());
+                checkStatus(r.getStatusLine(), idStr);
                 break;
             }
             catch (DeltaHttpException ex) { throw ex; }
@@ -270,6 +615,24 @@ public class RDFChangesHTTP extends RDFChangesWriter {
         }
     }
         
+    /** Return if the status is 2xx, otherwise throw an exception. */
+    private static void checkStatus(StatusLine statusLine, String idStr) {
+        int sc = statusLine.getStatusCode();
+        if ( sc >= 200 && sc <= 299 )
+            return ;
+        if ( sc >= 300 && sc <= 399 ) {
+            FmtLog.info(LOG, "Send patch %s HTTP %d", idStr, sc);
+            throw new DeltaHttpException(sc, "HTTP Redirect");
+        }
+        if ( sc == 400 ) {
+            // Bad request.
+            // This includes being out of sync with the patch log due to a concurrent update.
+            FmtLog.warn(LOG, "Patch %s : HTTP bad request: %s", idStr, statusLine.getReasonPhrase());
+            throw new DeltaBadRequestException(statusLine.getReasonPhrase());
+        }
+        throw new DeltaHttpException(sc, statusLine.getReasonPhrase());
+    }
+
     private static String readResponse(HttpResponse resp) {
         HttpEntity e = resp.getEntity();
         if ( e != null ) {
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.seaborne.delta.Id;
+
+/**
+ * Replication statistics for one {@link DeltaConnection}: version lag, patches and
+ * quads applied, fetch and append latency, and time spent syncing at the start of
+ * transactions.
+ * 
+ * @see DeltaConnection#getStats()
+ * @see MetricsRegistry
+ */
+public class ReplicationStats implements ReplicationStatsMBean {
+    private static final AtomicLong counter = new AtomicLong(0);
+    
+    // Distinguishes connections to the same data source, e.g. from different zones.
+    private final long instance = counter.incrementAndGet();
+    private final Id datasourceId;
+    private final String datasourceName;
+    private final LongSupplier localVersion;
+    private final LongSupplier remoteVersion;
+    
+    private volatile long startTime = System.nanoTime();
+    private volatile LatencyHistogram fetchLatency = new LatencyHistogram();
+    private volatile LatencyHistogram appendLatency = new LatencyHistogram();
+    private final LongAdder patchesApplied = new LongAdder();
+    private final LongAdder quadsApplied = new LongAdder();
+    private final LongAdder appendRejects = new LongAdder();
+    private final LongAdder txnBeginSyncCount = new LongAdder();
+    private final LongAdder txnBeginSyncNanos = new LongAdder();
+    
+    /*package*/ ReplicationStats(Id datasourceId, String datasourceName, LongSupplier localVersion, LongSupplier remoteVersion) {
+        this.datasourceId = datasourceId;
+        this.datasourceName = datasourceName;
+        this.localVersion = localVersion;
+        this.remoteVersion = remoteVersion;
+    }
+    
+    /*package*/ void patchApplied(long quads) {
+        patchesApplied.increment();
+        quadsApplied.add(quads);
+    }
+
+    /*package*/ void fetched(long nanos) {
+        fetchLatency.record(nanos);
+    }
+    
+    /*package*/ void appended(long nanos) {
+        appendLatency.record(nanos);
+    }
+
+    /*package*/ void appendRejected() {
+        appendRejects.increment();
+    }
+
+    /*package*/ void txnBeginSync(long nanos) {
+        txnBeginSyncCount.increment();
+        txnBeginSyncNanos.add(nanos);
+    }
+    
+    /** Number, unique within the JVM, of this statistics object. */
+    /*package*/ long getInstance() {
+        return instance;
+    }
+    
+    public Id getId() {
+        return datasourceId;
+    }
+    
+    public LatencyHistogram getFetchLatency() {
+        return fetchLatency;
+    }
+
+    public LatencyHistogram getAppendLatency() {
+        return appendLatency;
+    }
+
+    @Override
+    public String getDataSourceName() {
+        return datasourceName;
+    }
+
+    @Override
+    public String getDataSourceId() {
+        return datasourceId.toString();
+    }
+
+    @Override
+    public long getLocalVersion() {
+        return localVersion.getAsLong();
+    }
+
+    @Override
+    public long getRemoteVersion() {
+        return remoteVersion.getAsLong();
+    }
+
+    @Override
+    public long getVersionLag() {
+        return Math.max(0, getRemoteVersion() - getLocalVersion());
+    }
+
+    @Override
+    public long getPatchesApplied() {
+        return patchesApplied.sum();
+    }
+
+    @Override
+    public long getQuadsApplied() {
+        return quadsApplied.sum();
+    }
+
+    @Override
+    public double getPatchesPerSecond() {
+        return perSecond(patchesApplied.sum());
+    }
+
+    @Override
+    public double getQuadsPerSecond() {
+        return perSecond(quadsApplied.sum());
+    }
+    
+    private double perSecond(long x) {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds <= 0 ? 0 : x / seconds;
+    }
+
+    @Override
+    public long getFetchCount() {
+        return fetchLatency.getCount();
+    }
+
+    @Override
+    public double getFetchLatencyMean() {
+        return fetchLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getFetchLatency50() {
+        return fetchLatency.getQuantileMillis(0.5);
+    }
+
+    @Override
+    public double getFetchLatency99() {
+        return fetchLatency.getQuantileMillis(0.99);
+    }
+
+    @Override
+    public double getFetchLatencyMax() {
+        return fetchLatency.getMaxMillis();
+    }
+
+    @Override
+    public long getAppendCount() {
+        return appendLatency.getCount();
+    }
+
+    @Override
+    public long getAppendRejects() {
+        return appendRejects.sum();
+    }
+
+    @Override
+    public double getAppendLatencyMean() {
+        return appendLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getAppendLatency99() {
+        return appendLatency.getQuantileMillis(0.99);
+    }
+
+    @Override
+    public double getAppendLatencyMax() {
+        return appendLatency.getMaxMillis();
+    }
+
+    @Override
+    public long getTxnBeginSyncCount() {
+        return txnBeginSyncCount.sum();
+    }
+
+    @Override
+    public double getTxnBeginSyncTime() {
+        return txnBeginSyncNanos.sum() / 1_000_000.0;
+    }
+
+    /** Clear the counters and histograms. The versions are not affected. */
+    @Override
+    public void reset() {
+        fetchLatency = new LatencyHistogram();
+        appendLatency = new LatencyHistogram();
+        patchesApplied.reset();
+        quadsApplied.reset();
+        appendRejects.reset();
+        txnBeginSyncCount.reset();
+        txnBeginSyncNanos.reset();
+        startTime = System.nanoTime();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("[Stats: %s local=%d remote=%d patches=%d quads=%d fetch=%d append=%d rejects=%d]",
+                             datasourceName, getLocalVersion(), getRemoteVersion(), getPatchesApplied(), getQuadsApplied(),
+                             getFetchCount(), getAppendCount(), getAppendRejects());
+    }
+}
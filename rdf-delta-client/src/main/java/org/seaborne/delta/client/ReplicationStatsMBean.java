@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+/** JMX view of {@link ReplicationStats}. Times are in milliseconds. */
+public interface ReplicationStatsMBean {
+    public String getDataSourceName();
+    public String getDataSourceId();
+    
+    public long getLocalVersion();
+    public long getRemoteVersion();
+    /** Remote version, as last seen, minus the local version. */
+    public long getVersionLag();
+    
+    public long getPatchesApplied();
+    public long getQuadsApplied();
+    /** Average since the statistics started. */
+    public double getPatchesPerSecond();
+    /** Average since the statistics started. */
+    public double getQuadsPerSecond();
+
+    public long getFetchCount();
+    public double getFetchLatencyMean();
+    public double getFetchLatency50();
+    public double getFetchLatency99();
+    public double getFetchLatencyMax();
+
+    public long getAppendCount();
+    public long getAppendRejects();
+    public double getAppendLatencyMean();
+    public double getAppendLatency99();
+    public double getAppendLatencyMax();
+    
+    public long getTxnBeginSyncCount();
+    public double getTxnBeginSyncTime();
+    
+    public void reset();
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta.client;
+
+import static org.seaborne.delta.DeltaConst.F_ID ;
+import static org.seaborne.delta.DeltaConst.F_VERSION ;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.lib.IOX;
+import org.seaborne.delta.lib.JSONX;
+
+/**
+ * Append-only journal of the changing part of a {@link DataState} (version and patch id).
+ * <p>
+ * Each update is one line of flat JSON appended to the file.
+ * A record without its terminating newline (a torn write) is ignored when reading;
+ * the client then replays from the previous record, which is safe.
+ * <p>
+ * The journal is compacted by the {@link DataState} rewriting the full state file
+ * and then calling {@link #truncate()}.
+ */
+class StateJournal {
+    private final Path path;
+    // Force each record to disk.
+    private final boolean sync;
+    private FileChannel channel = null;
+    private long entries = 0;
+
+    StateJournal(Path path, boolean sync) {
+        this.path = path;
+        this.sync = sync;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /** Number of records appended since the last {@link #truncate()}. */
+    long entries() {
+        return entries;
+    }
+
+    /** Append a record, forcing it to disk if the journal was created with {@code sync}. */
+    void append(long version, Id patchId) {
+        String patchStr = ( patchId == null ) ? "" : patchId.asPlainString();
+        JsonObject obj = JSONX.buildObject(b->{
+            b.pair(F_VERSION, version);
+            b.pair(F_ID, patchStr);
+        });
+        String x = JSON.toStringFlat(obj)+"\n";
+        ByteBuffer bb = ByteBuffer.wrap(x.getBytes(StandardCharsets.UTF_8));
+        try {
+            FileChannel ch = channel();
+            while ( bb.hasRemaining() )
+                ch.write(bb);
+            if ( sync )
+                ch.force(false);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        entries++;
+    }
+
+    /** Remove all records. Call after the full state has been safely written. */
+    void truncate() {
+        try {
+            channel().truncate(0);
+            channel().force(false);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        entries = 0;
+    }
+
+    /**
+     * Return the last complete record as (version, patch id) or null if there isn't one.
+     * Any torn record at the end of the journal is removed.
+     */
+    Pair<Long, Id> last() {
+        if ( ! Files.exists(path) )
+            return null;
+        byte[] bytes = IOX.readAll(path);
+        Pair<Long, Id> result = null;
+        int start = 0;
+        for ( int i = 0 ; i < bytes.length ; i++ ) {
+            if ( bytes[i] != '\n' )
+                continue;
+            String line = new String(bytes, start, i-start, StandardCharsets.UTF_8).trim();
+            start = i+1;
+            if ( line.isEmpty() )
+                continue;
+            try {
+                JsonObject obj = JSON.parse(line);
+                long version = JSONX.getLong(obj, F_VERSION, -99);
+                String patchStr = JSONX.getStrOrNull(obj, F_ID);
+                Id patchId = ( patchStr == null || patchStr.isEmpty() ) ? null : Id.fromString(patchStr);
+                result = Pair.create(version, patchId);
+                entries++;
+            } catch (Exception ex) {
+                FmtLog.warn(DataState.LOG, "Bad record in state journal %s : %s", path, line);
+            }
+        }
+        if ( start < bytes.length ) {
+            // No newline : torn last record.
+            FmtLog.warn(DataState.LOG, "Incomplete record in state journal %s", path);
+            try {
+                channel().truncate(start);
+            } catch (IOException ex) { throw IOX.exception(ex); }
+        }
+        return result;
+    }
+
+    /** Force any records to disk and close. */
+    void close() {
+        if ( channel == null )
+            return;
+        try { 
+            channel.force(false);
+            channel.close();
+        }
+        catch (IOException ex) { throw IOX.exception(ex); }
+        channel = null;
+    }
+
+    private FileChannel channel() throws IOException {
+        if ( channel == null )
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return channel;
+    }
+}
@@ -23,12 +23,18 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption ;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern ;
 import java.util.stream.Collectors;
 
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.atlas.lib.NotImplemented ;
+import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.graph.Node;
 import org.apache.jena.sparql.core.DatasetGraph ;
 import org.apache.jena.sparql.core.DatasetGraphFactory ;
 import org.apache.jena.tdb.TDBFactory ;
@@ -57,6 +63,11 @@ public class Zone {
     private Path                       stateArea     = null;
     private final Location             stateLocation;
     private Object                     zoneLock      = new Object();
+    // Compaction interval for DataState journals; 0 means no journal.
+    private volatile int               stateJournal  = 0;
+    private volatile boolean           stateJournalSync = true;
+    // Whether new data sources keep a local copy of their patches.
+    private volatile boolean           patchMirror   = false;
 
     private static Map<Location, Zone> zones         = new ConcurrentHashMap<>();
 
@@ -106,6 +117,7 @@ public class Zone {
     }
 
     public void reset() {
+        states.values().forEach(DataState::close);
         states.clear();
         datasets.clear();
         external.clear();
@@ -125,6 +137,55 @@ public class Zone {
         }
     }
     
+    /**
+     * Record {@link DataState} changes in an append-only journal alongside the state
+     * file, and rewrite the state file every {@code compactInterval} changes.
+     * This replaces a safe-write of the whole state file for each patch applied.
+     * Set to 0 to rewrite the state file on every change (the default).
+     * <p>
+     * A journal left by an earlier run is always read on restart, whatever this setting.
+     */
+    public void setStateJournal(int compactInterval) {
+        this.stateJournal = Math.max(0, compactInterval);
+    }
+
+    /** The compaction interval for {@link DataState} journals; 0 means no journal. */
+    public int getStateJournal() {
+        return stateJournal;
+    }
+
+    /**
+     * Whether each {@link DataState} journal record is forced to disk as it is appended
+     * (the default), so the journal is as durable as rewriting the state file.
+     * If false, records are written to the operating system and forced on close;
+     * after a machine crash, the client may replay patches it had already applied.
+     * Takes effect for data sources loaded or created after this call.
+     */
+    public void setStateJournalSync(boolean sync) {
+        this.stateJournalSync = sync;
+    }
+
+    public boolean getStateJournalSync() {
+        return stateJournalSync;
+    }
+
+    /**
+     * Keep a local, append-only copy of the patches of each new data source with in-memory
+     * local storage, in the zone area. On restart, the data source is rebuilt from this copy
+     * and only later patches are fetched from the patch log server.
+     * Persistent local storage already keeps the data, so no copy is kept.
+     * <p>
+     * A data source created with a patch mirror always uses it, whatever this setting.
+     */
+    public void setPatchMirror(boolean patchMirror) {
+        this.patchMirror = patchMirror;
+    }
+
+    /** Whether new data sources keep a local copy of their patches. */
+    public boolean getPatchMirror() {
+        return patchMirror;
+    }
+
     /** Ids of connections active in this zone */ 
     public List<Id> localConnections() {
         return new ArrayList<>(states.keySet());
@@ -161,17 +222,38 @@ public class Zone {
             dataState.updateState(0, null);
         try {
             register(dataState);
+            if ( dataState.getStorageType().isEphemeral() )
+                restoreFromMirror(dataState);
         } catch (Exception ex) {
             LOG.error("Problem registering and restoring from path "+p, ex);
             // And (try to) continue.
         }
     }
     
+    /** Rebuild the local dataset from the patch mirror, if there is one. */ 
+    private void restoreFromMirror(DataState dataState) {
+        PatchMirror mirror = dataState.getPatchMirror();
+        DatasetGraph dsg = datasets.get(dataState.getDataSourceId());
+        if ( mirror == null || dsg == null )
+            return;
+        Pair<Long, Node> last = mirror.replay(dsg);
+        if ( last == null )
+            return;
+        FmtLog.info(LOG, "[%s] Restored from patch mirror: version %d", dataState.getDataSourceId(), last.car());
+        dataState.updateState(last.car(), Id.fromNode(last.cdr()));
+    }
+    
+    /**
+     * Register a data state. In-memory storage is created now; persistent storage
+     * is opened on first use by {@link #getDataset}.
+     */
     private void register(DataState dataState) {
         Id dsRef = dataState.getDataSourceId();
-        DatasetGraph dsg = localStorage(dataState.getStorageType(), dataPath(dataState));
-        if ( dsg != null )
-            datasets.put(dsRef, dsg);
+        if ( dataState.getStorageType().isEphemeral() ) {
+            DatasetGraph dsg = localStorage(dataState.getStorageType(), dataPath(dataState));
+            if ( dsg != null )
+                datasets.put(dsRef, dsg);
+        }
         states.put(dsRef, dataState);
         names.put(dataState.getDatasourceName(), dsRef);
     }
@@ -231,14 +313,52 @@ public class Zone {
     }
 
     /** 
-     * Return the zone-managed dataset (if any).
-     * Return null if the dataset is externally managed.  
+     * Return the zone-managed dataset (if any), opening the local storage if necessary.
+     * Return the external dataset if the dataset is externally managed.  
      */
     public DatasetGraph getDataset(DataState dataState) {
-        DatasetGraph dsg = datasets.get(dataState.getDataSourceId());
+        Id dsRef = dataState.getDataSourceId();
+        DatasetGraph dsg = datasets.get(dsRef);
         if ( dsg != null )
             return dsg;
-        return external.get(dataState.getDataSourceId());
+        if ( isZoneManaged(dataState) && states.get(dsRef) == dataState ) {
+            dsg = datasets.computeIfAbsent(dsRef, (id)->localStorage(dataState.getStorageType(), dataPath(dataState)));
+            if ( dsg != null )
+                return dsg;
+        }
+        return external.get(dsRef);
+    }
+    
+    /**
+     * Open the local storage of all the zone-managed data sources now, using
+     * {@code parallelism} threads, rather than on first use.
+     * Failures are logged and do not stop other data sources opening.
+     */
+    public void openAll(int parallelism) {
+        List<DataState> toOpen = states.values().stream()
+            .filter(ds->isZoneManaged(ds) && ! datasets.containsKey(ds.getDataSourceId()))
+            .collect(Collectors.toList());
+        if ( toOpen.isEmpty() )
+            return;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, toOpen.size())));
+        try {
+            List<Future<?>> opening = new ArrayList<>();
+            toOpen.forEach(ds->opening.add(executor.submit(()->getDataset(ds))));
+            for ( int i = 0 ; i < opening.size() ; i++ ) {
+                try { opening.get(i).get(); }
+                catch (ExecutionException ex) {
+                    LOG.error("Problem opening local storage for "+toOpen.get(i).getDatasourceName(), ex.getCause());
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally { executor.shutdown(); }
+    }
+    
+    private static boolean isZoneManaged(DataState dataState) {
+        return dataState.getStorageType() != LocalStorageType.EXTERNAL;
     }
     
     /** Create a dataset appropriate to the storage type.
@@ -258,7 +378,8 @@ public class Zone {
     
     /** Supply a dataset for matching to an attached external data source */  
     public void externalStorage(Id datasourceId, DatasetGraph dsg) {
-        if ( datasets.containsKey(datasourceId) )
+        DataState dataState = states.get(datasourceId);
+        if ( datasets.containsKey(datasourceId) || ( dataState != null && isZoneManaged(dataState) ) )
             throw new DeltaConfigException("Data source already regsitered as zone-managed: "+datasourceId);
         if ( external.containsKey(datasourceId) ) {
             DatasetGraph dsg1 = external.get(datasourceId);
@@ -279,6 +400,7 @@ public class Zone {
     public void delete(Id dsRef) {
         synchronized (zoneLock) {
             DataState dataState = get(dsRef);
+            dataState.close();
             states.remove(dataState.getDataSourceId());
             datasets.remove(dataState.getDataSourceId());
             external.remove(dataState.getDataSourceId());
@@ -309,6 +431,7 @@ public class Zone {
         DataState dataState = states.remove(dsRef);
         if ( dataState == null )
             return ;
+        dataState.close();
         datasets.remove(dsRef);
         external.remove(dsRef);
         names.remove(dataState.getDatasourceName());
@@ -19,7 +19,6 @@
 package org.seaborne.delta.fuseki;
 
 import static java.lang.String.format;
-import static org.seaborne.delta.DeltaConst.contentTypePatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchText;
 
@@ -37,7 +36,10 @@ import org.apache.jena.riot.WebContent;
 import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.web.HttpSC;
+import org.seaborne.delta.DeltaOps;
+import org.seaborne.patch.PatchProcessor;
 import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
 import org.seaborne.patch.changes.RDFChangesApply;
 import org.seaborne.patch.changes.RDFChangesWrapper;
 import org.seaborne.patch.text.RDFPatchReaderText ;
@@ -75,8 +77,6 @@ public class PatchApplyService extends ActionREST {
         ContentType contentType = ( ctStr != null ) ? ContentType.create(ctStr) : ctPatchText;
         if ( ! ctPatchText.equals(contentType) && ! ctPatchBinary.equals(contentType) ) 
             ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, "Allowed Content-types are "+ctPatchText+" or "+ctPatchBinary+", not "+ctStr); 
-        if ( ctPatchBinary.equals(contentType) )
-            ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, contentTypePatchBinary+" not supported yet");
     }
     
     protected void operation(HttpAction action) {
@@ -112,7 +112,9 @@ public class PatchApplyService extends ActionREST {
             InputStream input = action.request.getInputStream();
             DatasetGraph dsg = action.getDataset();
             
-            RDFPatchReaderText pr = new RDFPatchReaderText(input);
+            PatchProcessor pr = DeltaOps.isBinaryPatch(ct)
+                ? RDFPatchReaderBinary.create(input)
+                : new RDFPatchReaderText(input);
             RDFChanges changes = new RDFChangesApply(dsg);
             // External transaction. Suppress patch recorded TX and TC.
             changes = new RDFChangesNoTxn(changes);
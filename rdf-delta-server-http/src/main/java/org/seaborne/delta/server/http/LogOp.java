@@ -18,9 +18,12 @@
 
 package org.seaborne.delta.server.http;
 
+import java.io.ByteArrayOutputStream ;
 import java.io.IOException ;
 import java.io.InputStream ;
 import java.io.OutputStream ;
+import java.nio.file.Path ;
+import java.nio.file.Paths ;
 import java.util.UUID;
 
 import org.apache.jena.atlas.io.IO ;
@@ -34,8 +37,17 @@ import org.apache.jena.riot.WebContent ;
 import org.apache.jena.riot.web.HttpNames ;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.*;
+import org.seaborne.delta.server.local.DeltaLinkLocal ;
+import org.seaborne.delta.server.local.LocalServer ;
+import org.seaborne.delta.server.local.LocalServerConfig ;
+import org.seaborne.patch.PatchCompression ;
+import org.seaborne.patch.PatchCompression.Codec ;
 import org.seaborne.patch.RDFPatch ;
 import org.seaborne.patch.RDFPatchOps ;
+import org.seaborne.patch.binary.RDFChangesWriterBinary ;
+import org.seaborne.patch.changes.PatchSquash ;
+import org.seaborne.patch.changes.RDFChangesWriter ;
+import org.seaborne.patch.text.TokenWriterText ;
 import org.slf4j.Logger ;
 
 public class LogOp {
@@ -47,11 +59,13 @@ public class LogOp {
         if ( dsRef == null )
             throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
         
+        Codec codec = requestCodec(action);
         Node patchId = null;
         
         //FmtLog.info(LOG, "Patch:append ds:%s", dsRef); 
         try (InputStream in = action.request.getInputStream()) {
-            RDFPatch patch = RDFPatchOps.read(in);
+            // Compressed or not, by the Content-Encoding; text or binary, by the Content-Type of the request.
+            RDFPatch patch = DeltaOps.readPatch(codec.decompress(in), action.request.getContentType());
             patchId = patch.getId();
             if ( false )
                 RDFPatchOps.write(System.out, patch);
@@ -88,6 +102,21 @@ public class LogOp {
 
     }
     
+    /**
+     * The codec for the request body, from its {@code Content-Encoding}.
+     * No header, or "identity", means the body is not compressed.
+     * A coding with no registered codec is rejected with 415 (Unsupported Media Type).
+     */
+    private static Codec requestCodec(DeltaAction action) {
+        String encoding = action.request.getHeader(HttpNames.hContentEncoding);
+        if ( encoding == null || encoding.trim().isEmpty() )
+            return PatchCompression.NONE;
+        Codec codec = PatchCompression.get(encoding);
+        if ( codec == null )
+            throw new DeltaHttpException(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, "Unsupported Content-Encoding: "+encoding);
+        return codec;
+    }
+    
     private static Id idForDatasource(DeltaAction action) {
         String datasourceName = action.httpArgs.datasourceName;
         if ( Id.maybeUUID(datasourceName) ) {
@@ -111,6 +140,11 @@ public class LogOp {
             throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
         RDFPatch patch;
         
+        if ( action.httpArgs.version != null && action.request.getParameter(DeltaConst.paramCatchUp) != null ) {
+            fetchCatchUp(action, dsRef, action.httpArgs.version);
+            return;
+        }
+        
         if ( action.httpArgs.patchId != null ) {
             Id patchId = action.httpArgs.patchId;
             patch = action.dLink.fetch(dsRef, patchId);
@@ -128,9 +162,90 @@ public class LogOp {
         OutputStream out = action.response.getOutputStream();
         //action.response.setCharacterEncoding(WebContent.charsetUTF8);
         action.response.setStatus(HttpSC.OK_200);
-        action.response.setContentType(DeltaConst.contentTypePatchText); 
-        RDFPatchOps.write(out, patch);
+        // Text unless the client asks for binary.
+        String contentType = DeltaOps.negotiatePatch(action.request.getHeader(HttpNames.hAccept));
+        action.response.setContentType(contentType); 
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeltaOps.writePatch(bytes, patch, contentType);
+        Codec codec = ( bytes.size() < CompressMinBytes ) ? PatchCompression.NONE : responseCodec(action, dsRef);
+        try ( OutputStream output = compressedOutput(action, codec, out) ) {
+            bytes.writeTo(output);
+        }
         // Not "close".
         IO.flush(out);
     }
+
+    /** Patches smaller than this, in bytes, are sent uncompressed. */
+    private static final int CompressMinBytes = 1024;
+
+    /**
+     * The compression for a response: the compression configured for the patch log
+     * (see {@link LocalServerConfig#getCompression}), if the request's {@code Accept-Encoding}
+     * allows it, otherwise none.
+     */
+    private static Codec responseCodec(DeltaAction action, Id dsRef) {
+        LocalServerConfig config = serverConfig(action);
+        if ( config == null )
+            return PatchCompression.NONE;
+        DataSourceDescription dsd = action.dLink.getDataSourceDescription(dsRef);
+        Codec codec = config.getCompression(dsd == null ? null : dsd.getName());
+        if ( ! PatchCompression.accepts(action.request.getHeader(HttpNames.hAcceptEncoding), codec) )
+            return PatchCompression.NONE;
+        return codec;
+    }
+
+    private static LocalServerConfig serverConfig(DeltaAction action) {
+        if ( ! ( action.dLink instanceof DeltaLinkLocal ) )
+            return null;
+        LocalServer server = ((DeltaLinkLocal)action.dLink).getLocalServer();
+        return ( server == null ) ? null : server.getConfig();
+    }
+
+    /**
+     * Set the response {@code Content-Encoding} and return a stream that compresses with {@code codec}.
+     * Closing the returned stream does not close {@code out}.
+     */
+    private static OutputStream compressedOutput(DeltaAction action, Codec codec, OutputStream out) {
+        if ( codec != PatchCompression.NONE )
+            action.response.setHeader(HttpNames.hContentEncoding, codec.name());
+        return PatchCompression.compress(out, codec);
+    }
+
+    /**
+     * Send the net effect of the patches from {@code version} to the latest as one patch.
+     * The memory used and where any temporary files go are set by the server configuration
+     * (see {@link LocalServerConfig#getCatchUpMemory} and {@link LocalServerConfig#getCatchUpDir}).
+     */
+    private static void fetchCatchUp(DeltaAction action, Id dsRef, long version) throws IOException {
+        long latest = action.dLink.getCurrentVersion(dsRef);
+        if ( version < DeltaConst.VERSION_FIRST || version > latest )
+            throw new DeltaNotFoundException("No patches from version="+version);
+        LocalServerConfig config = serverConfig(action);
+        long inMemory = ( config == null ) ? LocalServerConfig.CatchUpMemoryDefault : config.getCatchUpMemory();
+        Path tmpDir = ( config == null ) ? Paths.get(System.getProperty("java.io.tmpdir")) : config.getCatchUpDir();
+        PatchSquash squash = new PatchSquash(inMemory, tmpDir);
+        try {
+            for ( long v = version ; v <= latest ; v++ ) {
+                RDFPatch patch = action.dLink.fetch(dsRef, v);
+                if ( patch == null )
+                    throw new DeltaNotFoundException("Patch not found: version="+v);
+                squash.add(patch);
+            }
+            FmtLog.info(LOG, "Patch:catch-up ds:%s versions %d-%d%s", dsRef, version, latest, squash.spilled() ? " (spilled)" : "");
+            OutputStream out = action.response.getOutputStream();
+            action.response.setStatus(HttpSC.OK_200);
+            String contentType = DeltaOps.negotiatePatch(action.request.getHeader(HttpNames.hAccept));
+            action.response.setContentType(contentType);
+            try ( OutputStream output = compressedOutput(action, responseCodec(action, dsRef), out) ) {
+                if ( DeltaOps.isBinaryPatch(contentType) )
+                    squash.output(new RDFChangesWriterBinary(output));
+                else {
+                    RDFChangesWriter writer = new RDFChangesWriter(new TokenWriterText(output));
+                    squash.output(writer);
+                    writer.flush();
+                }
+            }
+            IO.flush(out);
+        } finally { squash.close(); }
+    }
 }
@@ -30,6 +30,7 @@ import org.seaborne.delta.link.DeltaLinkBase;
 import org.seaborne.delta.link.DeltaNotConnectedException;
 import org.seaborne.delta.link.DeltaNotRegisteredException;
 import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +41,8 @@ public class DeltaLinkLocal extends DeltaLinkBase implements DeltaLink {
     private static Logger     LOG      = LoggerFactory.getLogger(DeltaLinkLocal.class);
 
     private final LocalServer localServer;
+    // Reduce patches to their net effect before storing them.
+    private final boolean     canonical;
     private boolean           linkOpen = false;
 
     public static DeltaLink connect(LocalServer localServer) {
@@ -48,6 +51,8 @@ public class DeltaLinkLocal extends DeltaLinkBase implements DeltaLink {
 
     private DeltaLinkLocal(LocalServer localServer) {
         this.localServer = localServer;
+        LocalServerConfig config = localServer.getConfig();
+        this.canonical = ( config != null ) && Boolean.parseBoolean(config.getProperty(DeltaConst.pDeltaCanonical));
         this.linkOpen = true;
     }
 
@@ -153,6 +158,8 @@ public class DeltaLinkLocal extends DeltaLinkBase implements DeltaLink {
         // Patch not known to be valid yet.
         // Patch not safe in the Patch Log yet.
         PatchLog patchLog = source.getPatchLog();
+        if ( canonical )
+            rdfPatch = RDFPatchOps.canonical(rdfPatch);
         try {
             beforeWrite(source, patchLog, rdfPatch);
             // FmtLog.info(LOG, "append: start: Patch=%s ds=%s", str(rdfPatch.getId()),
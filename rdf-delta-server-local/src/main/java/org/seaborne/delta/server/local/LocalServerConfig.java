@@ -34,6 +34,8 @@ import org.seaborne.delta.Delta;
 import org.seaborne.delta.DeltaConfigException;
 import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.lib.JSONX;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
 import org.slf4j.Logger;
 
 public class LocalServerConfig {
@@ -70,6 +72,57 @@ public class LocalServerConfig {
         return properties.getProperty(key);
     }
 
+    /**
+     * The compression for stored patches of the named log: the property
+     * {@code delta.compression.<logName>} if set, otherwise {@code delta.compression},
+     * otherwise no compression.
+     */
+    public Codec getCompression(String logName) {
+        String name = null;
+        if ( logName != null )
+            name = getProperty(DeltaConst.pDeltaCompression+"."+logName);
+        if ( name == null )
+            name = getProperty(DeltaConst.pDeltaCompression);
+        if ( name == null )
+            return PatchCompression.NONE;
+        Codec codec = PatchCompression.get(name);
+        if ( codec == null )
+            throw new DeltaConfigException("No such compression: "+name);
+        return codec;
+    }
+
+    /** Default for the most quad changes held in memory when squashing patches for a catch-up fetch. */
+    public static final long CatchUpMemoryDefault = 1_000_000;
+
+    /**
+     * The most quad changes held in memory when squashing patches for a catch-up fetch:
+     * the property {@code delta.catchup.memory}, otherwise {@link #CatchUpMemoryDefault}.
+     */
+    public long getCatchUpMemory() {
+        String str = getProperty(DeltaConst.pDeltaCatchUpMemory);
+        if ( str == null )
+            return CatchUpMemoryDefault;
+        try {
+            long x = Long.parseLong(str.trim());
+            if ( x <= 0 )
+                throw new DeltaConfigException("Not a positive number: "+DeltaConst.pDeltaCatchUpMemory+"="+str);
+            return x;
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Not a number: "+DeltaConst.pDeltaCatchUpMemory+"="+str);
+        }
+    }
+
+    /**
+     * The directory for the temporary files of a catch-up fetch that does not fit in memory:
+     * the property {@code delta.catchup.dir}, otherwise the system temporary directory.
+     */
+    public Path getCatchUpDir() {
+        String str = getProperty(DeltaConst.pDeltaCatchUpDir);
+        if ( str == null )
+            str = System.getProperty("java.io.tmpdir");
+        return Paths.get(str);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -23,7 +23,10 @@ import static org.seaborne.delta.DeltaConst.VERSION_UNSET ;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.Iterator ;
 import java.util.Map ;
 import java.util.Objects ;
@@ -31,6 +34,8 @@ import java.util.concurrent.ConcurrentHashMap ;
 import java.util.stream.LongStream ;
 import java.util.stream.Stream;
 
+import org.apache.jena.atlas.lib.Cache ;
+import org.apache.jena.atlas.lib.CacheFactory ;
 import org.apache.jena.atlas.lib.InternalErrorException ;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.ext.com.google.common.collect.BiMap;
@@ -38,17 +43,18 @@ import org.apache.jena.ext.com.google.common.collect.HashBiMap;
 import org.apache.jena.ext.com.google.common.collect.Maps ;
 import org.apache.jena.tdb.base.file.Location;
 import org.seaborne.delta.*;
-import org.seaborne.delta.lib.IOX;
 import org.seaborne.delta.server.local.DataSource ;
 import org.seaborne.delta.server.local.PatchLog;
 import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.PatchValidation;
 import org.seaborne.delta.server.local.filestore.FileEntry;
 import org.seaborne.delta.server.local.filestore.FileStore;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
 import org.seaborne.patch.PatchHeader;
 import org.seaborne.patch.RDFPatch;
-import org.seaborne.patch.RDFPatchOps;
 import org.seaborne.patch.changes.RDFChangesWriter ;
+import org.seaborne.patch.text.RDFPatchMapped ;
 import org.seaborne.patch.text.RDFPatchReaderText ;
 import org.seaborne.patch.text.TokenWriter ;
 import org.seaborne.patch.text.TokenWriterText ;
@@ -70,25 +76,37 @@ public class PatchLogFile implements PatchLog {
     private final DataSourceDescription dsd;
     private final PatchStore      patchStore;
     private final FileStore       fileStore;
+    // Compression for new patch files. Existing files are read whatever their compression.
+    private final Codec           codec;
 
     // Forward, backwards chain?
     // c.g. HistoryEntry
     private BiMap<Id, Long> idToVersion =  Maps.synchronizedBiMap(HashBiMap.create()); 
     private Map<Id, PatchHeader> headers = new ConcurrentHashMap<>();
+    // Recently fetched patches, so that a patch that is fetched again reuses the file mapping
+    // and the number of mappings held by the log is bounded.
+    private static final int FETCH_CACHE_SIZE = 16;
+    private final Cache<Long, RDFPatch> fetchCache = CacheFactory.createCache(FETCH_CACHE_SIZE);
     
     private Id latestId = null;
     private long latestVersion = VERSION_UNSET;
     
     /** Attached to an existing {@code PatchLog}. */
     public static PatchLogFile attach(DataSourceDescription dsd, PatchStore patchStore, Location location) {
-        return new PatchLogFile(dsd, patchStore, location);
+        return attach(dsd, patchStore, location, PatchCompression.NONE);
     }
     
-    private PatchLogFile(DataSourceDescription dsd, PatchStore patchStore, Location location) {
+    /** Attached to an existing {@code PatchLog}, writing new patches with the given compression. */
+    public static PatchLogFile attach(DataSourceDescription dsd, PatchStore patchStore, Location location, Codec codec) {
+        return new PatchLogFile(dsd, patchStore, location, codec);
+    }
+    
+    private PatchLogFile(DataSourceDescription dsd, PatchStore patchStore, Location location, Codec codec) {
         this.dsd = dsd;
         this.logId = dsd.getId();
         this.fileStore = FileStore.attach(location, "patch");
         this.patchStore = patchStore;
+        this.codec = codec;
         initFromFileStore();
     }
     
@@ -103,7 +121,7 @@ public class PatchLogFile implements PatchLog {
         for ( ; iter.hasNext() ; ) {
             long idx = iter.next();
             try ( InputStream in = fileStore.open(idx) ) {
-                PatchHeader patchHeader = RDFPatchReaderText.readerHeader(in);
+                PatchHeader patchHeader = RDFPatchReaderText.readerHeader(PatchCompression.decompress(in));
                 if ( patchHeader == null ) {
                     FmtLog.error(LOG, "Can't read header: idx=%d", idx);
                     continue;
@@ -203,8 +221,7 @@ public class PatchLogFile implements PatchLog {
     
     @Override
     public void release() {
-        
-        
+        fetchCache.clear();
         CfgFile.retire(fileStore.getPath());
         fileStore.release();
     }
@@ -245,9 +262,12 @@ public class PatchLogFile implements PatchLog {
         // ** Commit point for a patch, 
         // specifically at the atomic "move file" in FileStore::writeNewFile.
         FileEntry entry = fileStore.writeNewFile(out -> {
-            TokenWriter tw = new TokenWriterText(out) ;
-            RDFChangesWriter dest = new RDFChangesWriter(tw) ;
-            patch.apply(dest);
+            try ( OutputStream output = PatchCompression.compress(out, codec) ) {
+                TokenWriter tw = new TokenWriterText(output) ;
+                RDFChangesWriter dest = new RDFChangesWriter(tw) ;
+                patch.apply(dest);
+                tw.flush();
+            }
         });
         long version = entry.version;
 
@@ -334,15 +354,19 @@ public class PatchLogFile implements PatchLog {
         if ( version > getLatestVersion() )
             return null;
         
-        try ( InputStream in = fileStore.open((int)version) ) {
-            RDFPatch patch = RDFPatchOps.read(in) ;
+        RDFPatch patch = fetchCache.getIfPresent(version);
+        if ( patch != null )
             return patch;
-        }
-        catch ( DeltaNotFoundException ex)  // Our internal 404.
-        { return null; }
-        catch (IOException ex) { 
-            throw IOX.exception(ex); 
-        }
+        // The patch is memory mapped, or read from a compressed file, and parsed when
+        // it is applied, not read into the heap. Files are immutable once written.
+        Path path = fileStore.filename(version);
+        if ( ! Files.exists(path) )
+            return null;
+        Id id = find(version);
+        PatchHeader header = ( id == null ) ? null : headers.get(id);
+        patch = RDFPatchMapped.map(path, header);
+        fetchCache.put(version, patch);
+        return patch;
     }
 
     @Override
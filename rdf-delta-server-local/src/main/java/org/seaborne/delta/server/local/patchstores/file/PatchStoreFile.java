@@ -30,6 +30,8 @@ import org.apache.jena.tdb.base.file.Location;
 import org.seaborne.delta.DataSourceDescription;
 import org.seaborne.delta.lib.IOX;
 import org.seaborne.delta.server.local.*;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,15 +50,26 @@ public class PatchStoreFile extends PatchStore {
     private Map<DataSourceDescription, PatchLog> logs = new ConcurrentHashMap<>();
 
     private final Path serverRoot;
+    // For the per-log compression. May be null.
+    private final LocalServerConfig config;
     
     public PatchStoreFile(String location, PatchStoreProvider provider) {
         this(Paths.get(location), provider);
     }
     
     public PatchStoreFile(Path location, PatchStoreProvider provider) {
+        this(location, provider, null);
+    }
+
+    public PatchStoreFile(String location, PatchStoreProvider provider, LocalServerConfig config) {
+        this(Paths.get(location), provider, config);
+    }
+
+    public PatchStoreFile(Path location, PatchStoreProvider provider, LocalServerConfig config) {
         super(provider);
         IOX.ensureDirectory(location);
         this.serverRoot = location; 
+        this.config = config;
     }
 
     @Override
@@ -83,7 +96,8 @@ public class PatchStoreFile extends PatchStore {
         if ( ! Files.exists(patchLogArea) ) 
             CfgFile.setupDataSourceByFile(serverRoot, this, dsd);
         Location loc = Location.create(patchLogArea.toString());
-        PatchLog pLog = PatchLogFile.attach(dsd, this, loc);
+        Codec codec = ( config == null ) ? PatchCompression.NONE : config.getCompression(dsd.getName());
+        PatchLog pLog = PatchLogFile.attach(dsd, this, loc, codec);
         logs.put(dsd, pLog);
         return pLog;
     }
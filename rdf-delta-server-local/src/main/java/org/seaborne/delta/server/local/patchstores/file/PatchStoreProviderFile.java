@@ -28,7 +28,7 @@ public class PatchStoreProviderFile implements PatchStoreProvider {
         String fileArea = config.getProperty(DeltaConst.pDeltaFile);
         if ( fileArea == null )
             return null;
-        return new PatchStoreFile(fileArea, this);
+        return new PatchStoreFile(fileArea, this, config);
     }
     
     @Override
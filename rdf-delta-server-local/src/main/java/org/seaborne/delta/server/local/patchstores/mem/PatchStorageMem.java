@@ -25,6 +25,7 @@ import java.util.stream.Stream;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
 
 /**
  * 
@@ -42,7 +43,8 @@ public class PatchStorageMem implements PatchStorage {
 
     @Override
     public void store(Id key, RDFPatch value) {
-        store.put(key, value);
+        // Patches are held for the life of the store: keep them in the compact form.
+        store.put(key, RDFPatchOps.compact(value));
     }
 
     @Override
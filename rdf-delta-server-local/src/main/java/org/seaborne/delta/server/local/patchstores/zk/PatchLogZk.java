@@ -25,6 +25,8 @@ import org.seaborne.delta.DataSourceDescription;
 import org.seaborne.delta.server.local.PatchLog;
 import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.patchstores.PatchLogBase;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
 
 /**
  * Zookeeper based {@link PatchLog}.
@@ -36,9 +38,13 @@ import org.seaborne.delta.server.local.patchstores.PatchLogBase;
 public class PatchLogZk extends PatchLogBase {
     // The decision of where to place it in the Zookeeper namespace is the responsibility of calling PatchStore.
     public PatchLogZk(DataSourceDescription dsd, String logPath, CuratorFramework client, PatchStore patchStore) {
+        this(dsd, logPath, client, patchStore, PatchCompression.NONE);
+    }
+
+    public PatchLogZk(DataSourceDescription dsd, String logPath, CuratorFramework client, PatchStore patchStore, Codec codec) {
         super(dsd,
               new PatchLogIndexZk(client, zkPath(logPath, ZkConst.nState), zkPath(logPath, ZkConst.nVersions)),
-              new PatchStorageZk(client, zkPath(logPath, ZkConst.nPatches)),
+              new PatchStorageZk(client, zkPath(logPath, ZkConst.nPatches), codec),
               patchStore);
     }
 }
@@ -27,6 +27,8 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.shared.SharedCount;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
 
@@ -43,11 +45,18 @@ public class PatchStorageZk implements PatchStorage {
     private final CuratorFramework client;
     private final String patches;
     private final SharedCount versionCounter;
+    private final Codec codec;
 
     public PatchStorageZk(CuratorFramework client, String patches) {
+        this(client, patches, PatchCompression.NONE);
+    }
+
+    /** Patch storage, compressing new patches with the codec. */
+    public PatchStorageZk(CuratorFramework client, String patches, Codec codec) {
         this.client = client;
         this.patches = patches;
         this.versionCounter = null;
+        this.codec = codec;
         Zk.zkEnsure(client, patches);
     }
     
@@ -62,7 +71,7 @@ public class PatchStorageZk implements PatchStorage {
         String p = Zk.zkPath(patches, key.asPlainString());
         ByteArrayOutputStream out = new ByteArrayOutputStream(10*1024);
         RDFPatchOps.write(out, value);
-        byte[] b = out.toByteArray();
+        byte[] b = PatchCompression.compress(out.toByteArray(), codec);
         Zk.zkCreateSet(client, p, b);
     }
 
@@ -74,6 +83,6 @@ public class PatchStorageZk implements PatchStorage {
             return null;
         if ( b.length == 0 )
             System.err.println("Zero bytes");
-        return RDFPatchOps.read(new ByteArrayInputStream(b));
+        return RDFPatchOps.read(PatchCompression.decompress(new ByteArrayInputStream(b)));
     }
 }
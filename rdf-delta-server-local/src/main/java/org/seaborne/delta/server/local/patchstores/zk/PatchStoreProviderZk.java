@@ -69,7 +69,7 @@ public class PatchStoreProviderZk implements PatchStoreProvider {
             String connectString = config.getProperty(DeltaConst.pDeltaZk);
             clientHere = makeClient(connectString);
         }
-        return new PatchStoreZk(clientHere, this); 
+        return new PatchStoreZk(clientHere, this, config); 
     }
 
     @Override
@@ -39,6 +39,8 @@ import org.apache.zookeeper.Watcher;
 import org.seaborne.delta.DataSourceDescription;
 import org.seaborne.delta.DeltaBadRequestException;
 import org.seaborne.delta.server.local.*;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory; 
 
@@ -47,13 +49,20 @@ public class PatchStoreZk extends PatchStore {
     // Use ServiceLoader.
     public static final String PatchStoreZkName = "PatchStoreZk";
     private final CuratorFramework client;
+    // For the per-log compression. May be null.
+    private final LocalServerConfig config;
     
     // Schema!
     // https://curator.apache.org/curator-framework/schema.html
     
     /*package*/ PatchStoreZk(CuratorFramework client, PatchStoreProvider psp) { 
+        this(client, psp, null);
+    }
+
+    /*package*/ PatchStoreZk(CuratorFramework client, PatchStoreProvider psp, LocalServerConfig config) { 
         super(psp);
         this.client = client;
+        this.config = config;
     }
 
     public static PatchStore create(CuratorFramework client, LocalServerConfig config) {
@@ -176,7 +185,8 @@ public class PatchStoreZk extends PatchStore {
                 formatLog(dsd, logPath);
             });
         }
-        PatchLog patchLog = new PatchLogZk(dsd, logPath, client, this);
+        Codec codec = ( config == null ) ? PatchCompression.NONE : config.getCompression(dsName);
+        PatchLog patchLog = new PatchLogZk(dsd, logPath, client, this, codec);
         return patchLog;
     }
     
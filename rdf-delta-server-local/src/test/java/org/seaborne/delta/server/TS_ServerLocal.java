@@ -31,6 +31,7 @@ import test.TestPatchStoreZk;
     
     , TestPatchLogMem.class
     , TestPatchLogFile.class
+    , TestPatchLogFileCompressed.class
     , TestPatchLogZk.class
     
     , TestPatchStoreMem.class
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.delta.server.patchstores;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.tdb.base.file.Location;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.server.local.LocalServerConfig;
+import org.seaborne.delta.server.local.LocalServers;
+import org.seaborne.delta.server.local.PatchLog;
+import org.seaborne.delta.server.local.PatchStore;
+import org.seaborne.delta.server.local.filestore.FileStore;
+import org.seaborne.delta.server.local.patchstores.file.PatchLogFile;
+import org.seaborne.delta.server.local.patchstores.file.PatchStoreProviderFile;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+
+/** File patch log with patches stored gzip compressed. */
+public class TestPatchLogFileCompressed extends AbstractTestPatchLog {
+    
+    private static final String LOG = "target/test";
+    private static final LocalServerConfig config = 
+        LocalServerConfig.create(LocalServers.configFile(LOG)).setProperty(DeltaConst.pDeltaCompression, "gzip").build();
+    
+    @Before public void before() {
+        FileStore.resetTracked();
+        FileOps.ensureDir(LOG);
+        FileOps.clearAll(LOG);
+    }
+    
+    private PatchStore patchStore;
+    private PatchLog patchLog;
+    
+    @After public void after() {
+        if ( patchLog != null )
+            patchLog.release();
+    }
+    
+    @Override
+    protected PatchLog patchLog() {
+        DataSourceDescription dsd = new DataSourceDescription(Id.create(), "ABC", "http://test/ABC");
+        patchStore = new PatchStoreProviderFile().create(config);
+        patchLog = patchStore.createLog(dsd);
+        return patchLog;
+    }
+
+    @Test public void patchLog_compressed() throws Exception {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch = RDFPatchOps.emptyPatch();
+        patchLog.append(patch);
+        Path path = ((PatchLogFile)patchLog).getFileStore().filename(1);
+        byte[] bytes = Files.readAllBytes(path);
+        assertTrue(PatchCompression.GZIP.matches(bytes, bytes.length));
+        assertEquals(patch.getId(), patchLog.fetch(1).getId());
+
+        // Reattach : headers read from the compressed file.
+        Location loc = Location.create(((PatchLogFile)patchLog).getFileStore().getPath().toString());
+        FileStore.resetTracked();
+        PatchLog patchLog2 = PatchLogFile.attach(patchLog.getDescription(), patchStore, loc);
+        assertEquals(1, patchLog2.getLatestVersion());
+        assertEquals(patch.getId(), patchLog2.getLatestId().asNode());
+        try ( InputStream in = PatchCompression.decompress(Files.newInputStream(path)) ) {
+            assertEquals(patch.getId(), RDFPatchOps.read(in).getId());
+        }
+    }
+
+    @Test public void config_per_log() {
+        LocalServerConfig c = LocalServerConfig.create()
+            .setProperty(DeltaConst.pDeltaCompression, "gzip")
+            .setProperty(DeltaConst.pDeltaCompression+".ABC", "identity")
+            .build();
+        assertSame(PatchCompression.NONE, c.getCompression("ABC"));
+        assertSame(PatchCompression.GZIP, c.getCompression("XYZ"));
+    }
+
+    @Test public void config_catch_up() {
+        LocalServerConfig c0 = LocalServerConfig.create().build();
+        assertEquals(LocalServerConfig.CatchUpMemoryDefault, c0.getCatchUpMemory());
+        LocalServerConfig c1 = LocalServerConfig.create()
+            .setProperty(DeltaConst.pDeltaCatchUpMemory, "1000")
+            .setProperty(DeltaConst.pDeltaCatchUpDir, "target")
+            .build();
+        assertEquals(1000, c1.getCatchUpMemory());
+        assertEquals(Paths.get("target"), c1.getCatchUpDir());
+    }
+
+    @Test(expected=DeltaConfigException.class)
+    public void config_catch_up_bad() {
+        LocalServerConfig.create().setProperty(DeltaConst.pDeltaCatchUpMemory, "lots").build().getCatchUpMemory();
+    }
+}
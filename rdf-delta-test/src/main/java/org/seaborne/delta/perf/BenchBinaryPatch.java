@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.delta.perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.binary.RDFChangesWriterBinary;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesNoOp;
+
+/**
+ * Benchmark of the binary (Thrift) patch writer and reader : quads per second and
+ * bytes allocated per quad.
+ * <p>
+ * Usage: {@code BenchBinaryPatch [quads] [rounds]}
+ */
+public class BenchBinaryPatch {
+    public static void main(String... args) {
+        int quads = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        RDFPatch patch = patch(quads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(quads*100);
+        write(patch, out);
+        byte[] bytes = out.toByteArray();
+        System.out.printf("Patch: %,d quads, %,d bytes\n", quads, bytes.length);
+
+        // Warm up
+        for ( int i = 0 ; i < rounds ; i++ ) {
+            out.reset();
+            write(patch, out);
+            read(bytes);
+        }
+
+        long allocWrite = 0;
+        long allocRead = 0;
+        long timeWrite = 0;
+        long timeRead = 0;
+        for ( int i = 0 ; i < rounds ; i++ ) {
+            out.reset();
+            long a0 = allocated();
+            long t0 = System.nanoTime();
+            write(patch, out);
+            long t1 = System.nanoTime();
+            long a1 = allocated();
+            read(bytes);
+            long t2 = System.nanoTime();
+            long a2 = allocated();
+            timeWrite += t1-t0;
+            timeRead += t2-t1;
+            allocWrite += a1-a0;
+            allocRead += a2-a1;
+        }
+        long total = (long)quads*rounds;
+        boolean measured = allocated() >= 0;
+        report("Write", total, timeWrite, measured ? allocWrite : -1);
+        report("Read", total, timeRead, measured ? allocRead : -1);
+    }
+
+    private static void report(String label, long total, long nanos, long alloc) {
+        double rate = total / (nanos/1e9);
+        if ( alloc < 0 )
+            System.out.printf("%-6s %,12.0f quads/s\n", label, rate);
+        else
+            System.out.printf("%-6s %,12.0f quads/s  %,8.1f bytes/quad\n", label, rate, (double)alloc/total);
+    }
+
+    private static RDFPatch patch(int quads) {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        Node g = NodeFactory.createURI("http://example/graph");
+        Node p1 = NodeFactory.createURI("http://example/ns#p");
+        Node p2 = NodeFactory.createURI("http://example/ns#q");
+        changes.txnBegin();
+        for ( int i = 0 ; i < quads ; i++ ) {
+            Node s = NodeFactory.createURI("http://example/s"+(i%1000));
+            if ( i % 2 == 0 )
+                changes.add(g, s, p1, NodeFactory.createURI("http://example/o"+(i%500)));
+            else
+                changes.add(g, s, p2, NodeFactory.createLiteralByValue(i, XSDDatatype.XSDinteger));
+        }
+        changes.txnCommit();
+        return changes.getRDFPatch();
+    }
+
+    private static void write(RDFPatch patch, ByteArrayOutputStream out) {
+        RDFChangesWriterBinary writer = new RDFChangesWriterBinary(out);
+        patch.apply(writer);
+        writer.finish();
+    }
+
+    private static void read(byte[] bytes) {
+        RDFPatchReaderBinary.read(new ByteArrayInputStream(bytes), new RDFChangesNoOp());
+    }
+
+    /** Bytes allocated by this thread, or -1 if the JVM does not support the measurement. */
+    private static long allocated() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ( bean instanceof com.sun.management.ThreadMXBean )
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+}
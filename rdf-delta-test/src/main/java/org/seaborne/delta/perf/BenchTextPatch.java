@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.delta.perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesNoOp;
+import org.seaborne.patch.text.RDFPatchReaderText;
+
+/**
+ * Benchmark of parsing RDF Patch text : quads per second.
+ * <p>
+ * Usage: {@code BenchTextPatch [quads] [rounds]}
+ */
+public class BenchTextPatch {
+    public static void main(String... args) {
+        int quads = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        RDFPatch patch = patch(quads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(quads*100);
+        RDFPatchOps.write(out, patch);
+        byte[] bytes = out.toByteArray();
+        System.out.printf("Patch: %,d quads, %,d bytes\n", quads, bytes.length);
+
+        // Warm up
+        for ( int i = 0 ; i < rounds ; i++ )
+            read(bytes);
+
+        long time = 0;
+        for ( int i = 0 ; i < rounds ; i++ ) {
+            long t0 = System.nanoTime();
+            read(bytes);
+            time += System.nanoTime()-t0;
+        }
+        double rate = (long)quads*rounds / (time/1e9);
+        System.out.printf("Read   %,12.0f quads/s\n", rate);
+    }
+
+    private static RDFPatch patch(int quads) {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        Node g = NodeFactory.createURI("http://example/graph");
+        Node p1 = NodeFactory.createURI("http://example/ns#p");
+        Node p2 = NodeFactory.createURI("http://example/ns#q");
+        Node p3 = NodeFactory.createURI("http://example/ns#label");
+        changes.txnBegin();
+        for ( int i = 0 ; i < quads ; i++ ) {
+            Node s = NodeFactory.createURI("http://example/s"+(i%1000));
+            switch (i % 3) {
+                case 0 :
+                    changes.add(g, s, p1, NodeFactory.createURI("http://example/o"+(i%500)));
+                    break;
+                case 1 :
+                    changes.add(g, s, p2, NodeFactory.createLiteralByValue(i, XSDDatatype.XSDinteger));
+                    break;
+                default :
+                    changes.add(g, s, p3, NodeFactory.createLiteral("Label "+i, "en"));
+                    break;
+            }
+        }
+        changes.txnCommit();
+        return changes.getRDFPatch();
+    }
+
+    private static void read(byte[] bytes) {
+        new RDFPatchReaderText(new ByteArrayInputStream(bytes)).apply(new RDFChangesNoOp());
+    }
+}
@@ -24,9 +24,18 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull ;
 import static org.junit.Assert.assertTrue ;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger ;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.atlas.logging.LogCtl ;
@@ -43,7 +52,9 @@ import org.seaborne.delta.client.*;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.link.RegToken;
 import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
 import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.PatchSummary;
 import org.seaborne.patch.changes.RDFChangesCollector;
 
 /** Test a client connection over a link */  
@@ -167,6 +178,355 @@ public abstract class AbstractTestDeltaConnection {
         }
     }
     
+    // Canonical: a transaction is sent as its net effect.
+    @Test
+    public void change_canonical_1() {
+        String NAME = "change_canonical_1";
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            Id dsRef = dConn.getDataSourceId();
+            long version = dConn.getRemoteVersionLatest();
+            dConn.setCanonical(true);
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeWrite(dsg, ()->{
+                dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)"));
+                dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)"));
+                dsg.add(SSE.parseQuad("(_ :s2 :p2 :o2)"));
+                dsg.delete(SSE.parseQuad("(_ :s2 :p2 :o2)"));
+            });
+            RDFPatch patch1 = dConn.getLink().fetch(dsRef, version+1) ;
+            PatchSummary summary = RDFPatchOps.summary(patch1);
+            assertEquals(1, summary.countAddData);
+            assertEquals(1, summary.countDeleteData);
+
+            DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+            RDFPatchOps.applyChange(dsg2, patch1);
+            Set<Quad> set1 = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.find()));
+            Set<Quad> set2 = Txn.calculateRead(dsg2, ()->Iter.toSet(dsg2.find()));
+            assertEquals(set1, set2);
+        }
+    }
+
+    // Write-behind: several local commits become one patch in the log.
+    @Test
+    public void change_write_behind_1() {
+        String NAME = "change_write_behind_1";
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            Id dsRef = dConn.getDataSourceId();
+            long version = dConn.getRemoteVersionLatest();
+            dConn.setWriteBehind(100, 0);
+            try { 
+                DatasetGraph dsg = dConn.getDatasetGraph();
+                Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+                Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s2 :p2 :o2)")));
+                Txn.executeWrite(dsg, ()->dsg.delete(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+                assertTrue(dConn.hasPendingWrites());
+                assertEquals(version, dConn.getRemoteVersionLatest());
+
+                dConn.flush();
+                assertFalse(dConn.hasPendingWrites());
+                assertEquals(version+1, dConn.getRemoteVersionLatest());
+                assertEquals(version+1, dConn.getLocalVersion());
+
+                DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+                RDFPatch patch1 = dConn.getLink().fetch(dsRef, version+1) ;
+                RDFPatchOps.applyChange(dsg2, patch1);
+                Set<Quad> set1 = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.find()));
+                Set<Quad> set2 = Txn.calculateRead(dsg2, ()->Iter.toSet(dsg2.find()));
+                assertEquals(set1, set2);
+            } finally { dConn.setWriteBehind(0, 0); }
+        }
+    }
+    
+    // Write-behind: the patch log moves on before the waiting changes are sent.
+    @Test
+    public void change_write_behind_2() {
+        String NAME = "change_write_behind_2";
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            Id dsRef = dConn.getDataSourceId();
+            long version = dConn.getRemoteVersionLatest();
+            dConn.setWriteBehind(100, 0);
+            try { 
+                DatasetGraph dsg = dConn.getDatasetGraph();
+                Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+                appendOther(dConn, "(_ :s2 :p2 :o2)");
+                assertTrue(dConn.hasPendingWrites());
+
+                // Not possible to re-base inside a transaction.
+                try {
+                    Txn.executeRead(dsg, ()->dConn.flush());
+                    fail("Expected the flush to be rejected");
+                } catch (DeltaBadRequestException ex) {}
+                assertTrue(dConn.hasPendingWrites());
+                assertEquals(version, dConn.getLocalVersion());
+
+                dConn.sync();
+                assertFalse(dConn.hasPendingWrites());
+                assertEquals(version+2, dConn.getRemoteVersionLatest());
+                assertEquals(version+2, dConn.getLocalVersion());
+
+                DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+                for ( long v = 1 ; v <= version+2 ; v++ )
+                    RDFPatchOps.applyChange(dsg2, dConn.getLink().fetch(dsRef, v));
+                Set<Quad> set1 = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.find()));
+                Set<Quad> set2 = Txn.calculateRead(dsg2, ()->Iter.toSet(dsg2.find()));
+                assertEquals(2, set1.size());
+                assertEquals(set1, set2);
+            } finally { dConn.setWriteBehind(0, 0); }
+        }
+    }
+    
+    // Write-behind: sent because of the number of changes, after the patch log has moved on.
+    @Test
+    public void change_write_behind_3() {
+        String NAME = "change_write_behind_3";
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            Id dsRef = dConn.getDataSourceId();
+            long version = dConn.getRemoteVersionLatest();
+            dConn.setWriteBehind(2, 0);
+            try { 
+                DatasetGraph dsg = dConn.getDatasetGraph();
+                Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+                appendOther(dConn, "(_ :s2 :p2 :o2)");
+                Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s3 :p3 :o3)")));
+                assertFalse(dConn.hasPendingWrites());
+                assertEquals(version+2, dConn.getRemoteVersionLatest());
+                assertEquals(version+2, dConn.getLocalVersion());
+                assertSameAsLog(dConn, dsRef, 3);
+            } finally { dConn.setWriteBehind(0, 0); }
+        }
+    }
+
+    // Write-behind: sent because of the time waiting, after the patch log has moved on.
+    @Test
+    public void change_write_behind_4() throws InterruptedException {
+        String NAME = "change_write_behind_4";
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            Id dsRef = dConn.getDataSourceId();
+            long version = dConn.getRemoteVersionLatest();
+            dConn.setWriteBehind(100, 20);
+            try { 
+                DatasetGraph dsg = dConn.getDatasetGraph();
+                // The log moves on before the timer sends the local commit.
+                appendOther(dConn, "(_ :s2 :p2 :o2)");
+                Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+                for ( int i = 0 ; i < 250 && dConn.hasPendingWrites() ; i++ )
+                    Thread.sleep(20);
+                assertFalse(dConn.hasPendingWrites());
+                assertEquals(version+2, dConn.getLocalVersion());
+                assertSameAsLog(dConn, dsRef, 2);
+            } finally { dConn.setWriteBehind(0, 0); }
+        }
+    }
+
+    // Write-behind: closing the connection sends the waiting changes.
+    @Test
+    public void change_write_behind_close() {
+        String NAME = "change_write_behind_close";
+        DeltaClient dClient = createRegister(NAME);
+        DeltaConnection dConn = dClient.get(NAME);
+        long version = dConn.getRemoteVersionLatest();
+        dConn.setWriteBehind(100, 0);
+        DatasetGraph dsg = dConn.getDatasetGraph();
+        Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+        assertTrue(dConn.hasPendingWrites());
+        dConn.close();
+        assertFalse(dConn.hasPendingWrites());
+        assertEquals(version+1, dConn.getRemoteVersionLatest());
+    }
+
+    /** Check the local dataset is the same as the patches in the log. */
+    private static void assertSameAsLog(DeltaConnection dConn, Id dsRef, int size) {
+        DatasetGraph dsg = dConn.getDatasetGraph();
+        DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+        long version = dConn.getRemoteVersionLatest();
+        for ( long v = 1 ; v <= version ; v++ )
+            RDFPatchOps.applyChange(dsg2, dConn.getLink().fetch(dsRef, v));
+        Set<Quad> set1 = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.find()));
+        Set<Quad> set2 = Txn.calculateRead(dsg2, ()->Iter.toSet(dsg2.find()));
+        assertEquals(size, set1.size());
+        assertEquals(set1, set2);
+    }
+    
+    // Conflict: the patch log has moved on since the last sync.
+    @Test
+    public void change_rebase_1() {
+        String NAME = "change_rebase_1";
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            Id dsRef = dConn.getDataSourceId();
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+            long version = dConn.getLocalVersion();
+            
+            // Another writer.
+            appendOther(dConn, "(_ :s2 :p2 :o2)");
+            
+            // No rebase : commit fails.
+            Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s3 :p3 :o3)")));
+            assertEquals(version, dConn.getLocalVersion());
+            assertFalse(Txn.calculateRead(dsg, ()->dsg.contains(SSE.parseQuad("(_ :s3 :p3 :o3)"))));
+
+            dConn.setRebaseRetries(2);
+            Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s3 :p3 :o3)")));
+            assertEquals(version+2, dConn.getLocalVersion());
+            assertEquals(version+2, dConn.getRemoteVersionLatest());
+            
+            // Local dataset and patch log agree.
+            DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+            for ( long v = 1 ; v <= version+2 ; v++ )
+                RDFPatchOps.applyChange(dsg2, dConn.getLink().fetch(dsRef, v));
+            Set<Quad> set1 = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.find()));
+            Set<Quad> set2 = Txn.calculateRead(dsg2, ()->Iter.toSet(dsg2.find()));
+            assertEquals(3, set1.size());
+            assertEquals(set1, set2);
+        }
+    }
+
+    // Conflict: the rebased patch is rejected as well. The commit fails and nothing of it is kept.
+    @Test
+    public void change_rebase_2() {
+        String NAME = "change_rebase_2";
+        DeltaLink dLink = getLink();
+        AtomicBoolean interfere = new AtomicBoolean(false);
+        // Another writer gets in just after the connection asks for the log head.
+        DeltaLink dLink2 = (DeltaLink)Proxy.newProxyInstance(DeltaLink.class.getClassLoader(), new Class<?>[] {DeltaLink.class}, (proxy, method, args)->{
+            Object result;
+            try { result = method.invoke(dLink, args); }
+            catch (InvocationTargetException ex) { throw ex.getCause(); }
+            if ( method.getName().equals("getPatchLogInfo") && interfere.getAndSet(false) ) {
+                PatchLogInfo info = (PatchLogInfo)result;
+                RDFChangesCollector c = new RDFChangesCollector();
+                c.header(RDFPatchConst.ID, Id.create().asNode());
+                c.header(RDFPatchConst.PREV, info.getLatestPatch().asNode());
+                c.txnBegin();
+                Quad q = SSE.parseQuad("(_ :s4 :p4 :o4)");
+                c.add(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject());
+                c.txnCommit();
+                dLink.append(info.getDataSourceId(), c.getRDFPatch());
+            }
+            return result;
+        });
+        DeltaClient dClient = DeltaClient.create(getZone(), dLink2);
+        Id dsRef = dClient.newDataSource(NAME, "http://example/"+NAME);
+        dClient.register(dsRef, LocalStorageType.MEM, SyncPolicy.NONE);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s1 :p1 :o1)")));
+            long version = dConn.getLocalVersion();
+            
+            appendOther(dConn, "(_ :s2 :p2 :o2)");
+            dConn.setRebaseRetries(1);
+            interfere.set(true);
+            try { 
+                Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s3 :p3 :o3)")));
+            } catch (DeltaBadRequestException ex) {}
+            assertFalse(interfere.get());
+            assertEquals(version+2, dConn.getRemoteVersionLatest());
+            // Neither the local commit nor the patches played while re-basing were kept.
+            assertEquals(version, dConn.getLocalVersion());
+            assertFalse(Txn.calculateRead(dsg, ()->dsg.contains(SSE.parseQuad("(_ :s2 :p2 :o2)"))));
+            assertFalse(Txn.calculateRead(dsg, ()->dsg.contains(SSE.parseQuad("(_ :s3 :p3 :o3)"))));
+            
+            dConn.sync();
+            assertEquals(version+2, dConn.getLocalVersion());
+            DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+            for ( long v = 1 ; v <= version+2 ; v++ )
+                RDFPatchOps.applyChange(dsg2, dConn.getLink().fetch(dsRef, v));
+            Set<Quad> set1 = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.find()));
+            Set<Quad> set2 = Txn.calculateRead(dsg2, ()->Iter.toSet(dsg2.find()));
+            assertEquals(3, set1.size());
+            assertEquals(set1, set2);
+        }
+    }
+
+    // Sync asynchronously, with patches fetched in parallel.
+    @Test
+    public void sync_async_1() {
+        String NAME = "sync_async_1";
+        DeltaClient dClient = createRegister(NAME);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            for ( int i = 0 ; i < 20 ; i++ )
+                appendOther(dConn, "(_ :s :p "+i+")");
+            assertEquals(0, dConn.getLocalVersion());
+            dClient.syncAll(executor).join();
+            assertEquals(20, dConn.getLocalVersion());
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            long x = Txn.calculateRead(dsg, ()->Iter.count(dsg.find()));
+            assertEquals(20, x);
+        } finally { executor.shutdown(); }
+    }
+
+    @Test
+    public void stats_1() throws Exception {
+        String NAME = "stats_1";
+        DeltaClient dClient = createRegister(NAME);
+        dClient.setMetricsRegistry(MetricsRegistry.jmx());
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ :s :p :o)")));
+            for ( int i = 0 ; i < 3 ; i++ )
+                appendOther(dConn, "(_ :s :p "+i+")");
+            dConn.sync();
+            
+            ReplicationStats stats = dConn.getStats();
+            assertEquals(1, stats.getAppendCount());
+            assertEquals(0, stats.getAppendRejects());
+            assertEquals(3, stats.getFetchCount());
+            assertEquals(3, stats.getPatchesApplied());
+            assertEquals(3, stats.getQuadsApplied());
+            assertEquals(4, stats.getLocalVersion());
+            assertEquals(0, stats.getVersionLag());
+            
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName pattern = new ObjectName("org.seaborne.delta:type=DeltaConnection,name="+ObjectName.quote(NAME)+",*");
+            Set<ObjectName> names = mbs.queryNames(pattern, null);
+            assertEquals(1, names.size());
+            ObjectName objName = names.iterator().next();
+            assertNotNull(objName.getKeyProperty("instance"));
+            assertEquals(4L, mbs.getAttribute(objName, "LocalVersion"));
+            dClient.setMetricsRegistry(null);
+            assertFalse(mbs.isRegistered(objName));
+        }
+    }
+
+    // Far behind the log: the net effect of the patches is fetched as one patch.
+    @Test
+    public void sync_catch_up_1() {
+        String NAME = "sync_catch_up_1";
+        DeltaClient dClient = createRegister(NAME);
+        try(DeltaConnection dConn = dClient.get(NAME)) {
+            int N = 150;
+            for ( int i = 0 ; i < N ; i++ )
+                appendOther(dConn, "(_ :s :p "+i+")");
+            dConn.sync();
+            assertEquals(N, dConn.getLocalVersion());
+            assertEquals(dConn.getRemoteIdLatest(), dConn.getLatestPatchId());
+            assertEquals(1, dConn.getStats().getFetchCount());
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            long x = Txn.calculateRead(dsg, ()->Iter.count(dsg.find()));
+            assertEquals(N, x);
+        }
+    }
+
+    private static void appendOther(DeltaConnection dConn, String quadStr) {
+        PatchLogInfo info = dConn.getPatchLogInfo();
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        if ( info.getLatestPatch() != null )
+            c.header(RDFPatchConst.PREV, info.getLatestPatch().asNode());
+        c.txnBegin();
+        Quad q = SSE.parseQuad(quadStr);
+        c.add(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject());
+        c.txnCommit();
+        dConn.getLink().append(dConn.getDataSourceId(), c.getRDFPatch());
+    }
+    
     @Test
     public void change_empty_commit_1() {
         Quad q = SSE.parseQuad("(:g :s :p :o)") ;
@@ -268,6 +268,29 @@ public abstract class AbstractTestDeltaLink {
         assertNotNull(patch1);
     }
 
+    @Test
+    public void patch_catchup_01() {
+        DeltaLink dLink = getLinkRegistered();
+        Id dsRef = dLink.newDataSource("patch_catchup_01", "http://example/");
+        patch_send(dsRef, "patch1.rdfp", "patch2.rdfp", "patch3.rdfp");
+        RDFPatch patch3 = RDFPatchOps.read(FILES_DIR+"patch3.rdfp");
+        RDFPatch patch1 = RDFPatchOps.read(FILES_DIR+"patch1.rdfp");
+
+        RDFPatch patchAll = dLink.fetchCatchUp(dsRef, 1);
+        assertNotNull(patchAll);
+        assertEquals(patch3.getId(), patchAll.getId());
+        assertNull(patchAll.getPrevious());
+        // The two adds of the same quad are one change.
+        assertEquals(2, RDFPatchOps.summary(patchAll).countAddData);
+
+        RDFPatch patchLater = dLink.fetchCatchUp(dsRef, 2);
+        assertEquals(patch3.getId(), patchLater.getId());
+        assertEquals(patch1.getId(), patchLater.getPrevious());
+        assertEquals(1, RDFPatchOps.summary(patchLater).countAddData);
+
+        assertNull(dLink.fetchCatchUp(dsRef, 4));
+    }
+
     static int counter = 1 ;
     private void patch_seq(String...filenames) {
         DeltaLink dLink = getLinkRegistered();
@@ -19,11 +19,13 @@
 package org.seaborne.delta;
 
 import java.net.BindException;
+import java.util.Arrays;
 
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.riot.web.HttpOp;
+import org.seaborne.delta.client.DeltaLinkFailover;
 import org.seaborne.delta.client.DeltaLinkHTTP;
 import org.seaborne.delta.lib.IOX;
 import org.seaborne.delta.link.DeltaLink;
@@ -111,6 +113,26 @@ public class Setup {
 
         private static int TEST_PORT=1086;
         
+        private final boolean streamingAppend;
+        private final boolean binaryPatches;
+        
+        public RemoteSetup() { this(false); }
+        
+        /** Use a {@link DeltaLinkHTTP} that streams appended patches. */ 
+        public RemoteSetup(boolean streamingAppend) {
+            this(streamingAppend, false);
+        }
+        
+        /** Use a {@link DeltaLinkHTTP} that streams appended patches and/or uses binary patches. */ 
+        public RemoteSetup(boolean streamingAppend, boolean binaryPatches) {
+            this.streamingAppend = streamingAppend;
+            this.binaryPatches = binaryPatches;
+        }
+        
+        public static String serverURL() {
+            return "http://localhost:"+TEST_PORT+"/";
+        }
+        
         /** Start a server - this server has no backing local DeltaLink
          * which is reset for each test. This enables the server to be reused 
          * (problems starting and stopping the background server
@@ -163,6 +185,14 @@ public class Setup {
             server.setEngine(null);
             dlink = null;
         }
+
+        /** Use another local server, with its own configuration, for the rest of the test. */
+        public void useLocalServer(LocalServer newLocalServer) {
+            LocalServer.release(localServer);
+            localServer = newLocalServer;
+            server.setEngine(DeltaLinkLocal.connect(localServer));
+            relink();
+        }
         
         @Override
         public void relink() {
@@ -192,7 +222,7 @@ public class Setup {
         
         @Override
         public DeltaLink createLink() {
-            return DeltaLinkHTTP.connect("http://localhost:"+TEST_PORT+"/");
+            return DeltaLinkHTTP.connect(serverURL(), streamingAppend, binaryPatches);
         }
 
         private static void resetDefaultHttpClient() {
@@ -208,4 +238,14 @@ public class Setup {
 
         }
     }
+
+    /** Remote setup with a {@link DeltaLinkFailover} where the first server is not running. */
+    public static class FailoverSetup extends RemoteSetup {
+        private static int DEAD_PORT=1087;
+        
+        @Override
+        public DeltaLink createLink() {
+            return DeltaLinkFailover.connect(Arrays.asList("http://localhost:"+DEAD_PORT+"/", serverURL()));
+        }
+    }
 }
@@ -33,6 +33,9 @@ import org.junit.runners.Suite.SuiteClasses;
     TestRemoteLink.class ,
     TestRemoteConnection.class ,
     TestRemoteClient.class ,
+    TestRemoteLinkStreaming.class ,
+    TestRemoteLinkBinary.class ,
+    TestRemoteLinkFailover.class ,
 
     TestZone.class ,
     TestRestart.class ,
@@ -18,8 +18,36 @@
 
 package org.seaborne.delta;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.InputStream;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.atlas.logging.LogCtl;
+import org.apache.jena.riot.web.HttpNames;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.web.HttpSC;
 import org.junit.*;
+import org.seaborne.delta.client.DeltaLib;
+import org.seaborne.delta.client.DeltaLinkHTTP;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.LocalServer;
+import org.seaborne.delta.server.local.LocalServerConfig;
+import org.seaborne.delta.server.local.LocalServers;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.RDFChangesCollector;
 
 public class TestRemoteLink extends AbstractTestDeltaLink {
     @BeforeClass public static void setForTesting() { 
@@ -38,4 +66,129 @@ public class TestRemoteLink extends AbstractTestDeltaLink {
     @AfterClass  public static void afterClass()    { setup.afterClass(); }
     @Before public void beforeTest()                { setup.beforeTest(); }
     @After  public void afterTest()                 { setup.afterTest(); }
+
+    // A patch large enough to be compressed.
+    private static RDFPatch largePatch() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        c.txnBegin();
+        for ( int i = 0 ; i < 100 ; i++ )
+            c.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode("'abc-"+i+"'"));
+        c.txnCommit();
+        return c.getRDFPatch();
+    }
+
+    // The Content-Encoding of the response to a fetch, seen with an HTTP client that does not decompress.
+    private static String fetchEncoding(DeltaLink dLink, String name, RDFPatch patch) throws Exception {
+        String fetchURL = DeltaLib.makeURL(Setup.RemoteSetup.serverURL()+name+"/1", DeltaConst.paramReg, dLink.getRegToken().asString());
+        HttpGet get = new HttpGet(fetchURL);
+        get.setHeader(HttpNames.hAcceptEncoding, "gzip");
+        try ( CloseableHttpClient client = HttpClients.custom().disableContentCompression().build();
+              CloseableHttpResponse response = client.execute(get) ) {
+            try ( InputStream in = PatchCompression.decompress(response.getEntity().getContent()) ) {
+                assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(RDFPatchOps.read(in)));
+            }
+            Header h = response.getFirstHeader(HttpNames.hContentEncoding);
+            return ( h == null ) ? null : h.getValue();
+        }
+    }
+
+    @Test
+    public void compression_gzip() throws Exception {
+        ((Setup.RemoteSetup)setup).useLocalServer(LocalServer.create(
+            LocalServerConfig.create(LocalServers.configMem()).setProperty(DeltaConst.pDeltaCompression, "gzip").build()));
+        DeltaLink dLink = getLinkRegistered();
+        ((DeltaLinkHTTP)dLink).setCompression(PatchCompression.GZIP);
+        String NAME = "compression_gzip";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        RDFPatch patch = largePatch();
+        long version = dLink.append(dsRef, patch);
+        assertEquals(1, version);
+        RDFPatch patch1 = dLink.fetch(dsRef, version);
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(patch1));
+        assertEquals("gzip", fetchEncoding(dLink, NAME, patch));
+    }
+
+    // The log is not configured for compression: responses are not compressed.
+    @Test
+    public void compression_not_configured() throws Exception {
+        DeltaLink dLink = getLinkRegistered();
+        String NAME = "compression_not_configured";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        RDFPatch patch = largePatch();
+        dLink.append(dsRef, patch);
+        assertNull(fetchEncoding(dLink, NAME, patch));
+    }
+
+    // A small patch is not compressed.
+    @Test
+    public void compression_small() throws Exception {
+        ((Setup.RemoteSetup)setup).useLocalServer(LocalServer.create(
+            LocalServerConfig.create(LocalServers.configMem()).setProperty(DeltaConst.pDeltaCompression, "gzip").build()));
+        DeltaLink dLink = getLinkRegistered();
+        String NAME = "compression_small";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        c.txnBegin();
+        c.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode("'abc'"));
+        c.txnCommit();
+        RDFPatch patch = c.getRDFPatch();
+        dLink.append(dsRef, patch);
+        assertNull(fetchEncoding(dLink, NAME, patch));
+    }
+
+    // Catch-up with a server configured to spill to disk after one quad change.
+    @Test
+    public void catchup_configured() {
+        FileOps.ensureDir(CATCH_UP_DIR);
+        FileOps.clearDirectory(CATCH_UP_DIR);
+        ((Setup.RemoteSetup)setup).useLocalServer(LocalServer.create(
+            LocalServerConfig.create(LocalServers.configMem())
+                .setProperty(DeltaConst.pDeltaCatchUpMemory, "1")
+                .setProperty(DeltaConst.pDeltaCatchUpDir, CATCH_UP_DIR)
+                .build()));
+        DeltaLink dLink = getLinkRegistered();
+        String NAME = "catchup_configured";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        Id prev = null;
+        for ( int i = 0 ; i < 3 ; i++ ) {
+            RDFChangesCollector c = new RDFChangesCollector();
+            Id id = Id.create();
+            c.header(RDFPatchConst.ID, id.asNode());
+            if ( prev != null )
+                c.header(RDFPatchConst.PREV, prev.asNode());
+            c.txnBegin();
+            c.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode(Integer.toString(i)));
+            c.txnCommit();
+            dLink.append(dsRef, c.getRDFPatch());
+            prev = id;
+        }
+        RDFPatch patch = dLink.fetchCatchUp(dsRef, 1);
+        assertEquals(prev.asNode(), patch.getId());
+        assertEquals(3, RDFPatchOps.summary(patch).countAddData);
+    }
+
+    private static final String CATCH_UP_DIR = "target/catchup";
+
+    @Test
+    public void compression_unknown() throws Exception {
+        DeltaLink dLink = getLinkRegistered();
+        String NAME = "compression_unknown";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        c.txnBegin();
+        c.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode("'abc'"));
+        c.txnCommit();
+        String appendURL = DeltaLib.makeURL(Setup.RemoteSetup.serverURL()+NAME, DeltaConst.paramReg, dLink.getRegToken().asString());
+        HttpPost post = new HttpPost(appendURL);
+        post.setHeader(HttpNames.hContentEncoding, "x-unknown");
+        post.setEntity(new StringEntity(RDFPatchOps.str(c.getRDFPatch()), ContentType.create(DeltaConst.contentTypePatchText)));
+        try ( CloseableHttpClient client = HttpClients.custom().disableContentCompression().build();
+              CloseableHttpResponse response = client.execute(post) ) {
+            assertEquals(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, response.getStatusLine().getStatusCode());
+        }
+        assertEquals(0, dLink.getCurrentVersion(dsRef));
+    }
 }
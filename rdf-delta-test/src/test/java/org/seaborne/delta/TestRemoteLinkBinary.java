@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.delta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.apache.jena.atlas.logging.LogCtl;
+import org.apache.jena.atlas.web.TypedInputStream;
+import org.apache.jena.riot.web.HttpOp;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.*;
+import org.seaborne.delta.client.DeltaLib;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.binary.RDFPatchReaderBinary;
+
+/** The remote link tests, with patches sent and fetched in the binary format. */
+public class TestRemoteLinkBinary extends AbstractTestDeltaLink {
+    @BeforeClass public static void setForTesting() { 
+        LogCtl.setJavaLogging("src/test/resources/logging.properties");
+    }
+    
+    static Setup.LinkSetup setup = new Setup.RemoteSetup(false, true);
+    
+    @Override
+    public Setup.LinkSetup getSetup() {
+        return setup;
+    }
+    
+    @BeforeClass public static void beforeClass()   { setup.beforeClass(); }
+    @AfterClass  public static void afterClass()    { setup.afterClass(); }
+    @Before public void beforeTest()                { setup.beforeTest(); }
+    @After  public void afterTest()                 { setup.afterTest(); }
+
+    @Test
+    public void binary_negotiate() {
+        DeltaLink dLink = getLinkRegistered();
+        String NAME = "binary_negotiate";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        String url = DeltaLib.makeURL(Setup.RemoteSetup.serverURL()+NAME, DeltaConst.paramReg, dLink.getRegToken().asString());
+        RDFChanges changes = DeltaLib.destination(url);
+        Quad quad = SSE.parseQuad("(_ :s :p 1)");
+        changes.header(RDFPatchConst.ID, Id.create().asNode());
+        changes.txnBegin();
+        changes.add(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+        changes.txnCommit();
+
+        String fetchURL = DeltaLib.makeURL(Setup.RemoteSetup.serverURL()+NAME+"/1", DeltaConst.paramReg, dLink.getRegToken().asString());
+        // No Accept header : text.
+        try ( TypedInputStream in = HttpOp.execHttpGet(fetchURL) ) {
+            assertEquals(DeltaConst.contentTypePatchText, in.getContentType());
+        }
+        // Binary preferred.
+        try ( TypedInputStream in = HttpOp.execHttpGet(fetchURL, DeltaConst.contentTypePatchBinary+", "+DeltaConst.contentTypePatchText+";q=0.5") ) {
+            assertEquals(DeltaConst.contentTypePatchBinary, in.getContentType());
+            RDFPatch patch = RDFPatchReaderBinary.read(in);
+            assertNotNull(patch.getId());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.delta;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.atlas.logging.LogCtl;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.*;
+import org.seaborne.delta.client.DeltaLib;
+import org.seaborne.delta.client.RDFChangesHTTP;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.link.RegToken;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatchConst;
+
+/** The remote link tests, with patches appended as a chunked stream. */
+public class TestRemoteLinkStreaming extends AbstractTestDeltaLink {
+    @BeforeClass public static void setForTesting() { 
+        LogCtl.setJavaLogging("src/test/resources/logging.properties");
+    }
+    
+    static Setup.LinkSetup setup = new Setup.RemoteSetup(true);
+    
+    @Override
+    public Setup.LinkSetup getSetup() {
+        return setup;
+    }
+    
+    @BeforeClass public static void beforeClass()   { setup.beforeClass(); }
+    @AfterClass  public static void afterClass()    { setup.afterClass(); }
+    @Before public void beforeTest()                { setup.beforeTest(); }
+    @After  public void afterTest()                 { setup.afterTest(); }
+
+    @Test
+    public void stream_commit_abort() {
+        DeltaLink dLink = getLinkRegistered();
+        String NAME = "stream_commit_abort";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        String url = DeltaLib.makeURL(Setup.RemoteSetup.serverURL()+NAME, DeltaConst.paramReg, dLink.getRegToken().asString());
+        RDFChanges changes = DeltaLib.destination(url, true);
+        Quad quad1 = SSE.parseQuad("(_ :s :p 1)");
+        Quad quad2 = SSE.parseQuad("(_ :s :p 2)");
+
+        changes.header(RDFPatchConst.ID, Id.create().asNode());
+        changes.txnBegin();
+        changes.add(quad1.getGraph(), quad1.getSubject(), quad1.getPredicate(), quad1.getObject());
+        changes.txnCommit();
+        PatchLogInfo info = dLink.getPatchLogInfo(dsRef);
+        assertEquals(1, info.getMaxVersion());
+
+        changes.header(RDFPatchConst.ID, Id.create().asNode());
+        changes.header(RDFPatchConst.PREV, info.getLatestPatch().asNode());
+        changes.txnBegin();
+        changes.add(quad2.getGraph(), quad2.getSubject(), quad2.getPredicate(), quad2.getObject());
+        changes.txnAbort();
+        assertEquals(1, dLink.getPatchLogInfo(dsRef).getMaxVersion());
+    }
+
+    // A streamed patch rejected with a 401 is resent after the reset action.
+    @Test
+    public void stream_resend_401() {
+        DeltaLink dLink = getLinkRegistered();
+        String NAME = "stream_resend_401";
+        Id dsRef = dLink.newDataSource(NAME, "http://example/"+NAME);
+        String baseURL = Setup.RemoteSetup.serverURL()+NAME;
+        // Not registered to start with.
+        AtomicReference<String> url = new AtomicReference<>(DeltaLib.makeURL(baseURL, DeltaConst.paramReg, new RegToken().asString()));
+        AtomicInteger resets = new AtomicInteger(0);
+        Runnable reset = ()->{
+            resets.incrementAndGet();
+            url.set(DeltaLib.makeURL(baseURL, DeltaConst.paramReg, dLink.getRegToken().asString()));
+        };
+        RDFChanges changes = new RDFChangesHTTP(NAME, null, url::get, reset, true);
+        Quad quad1 = SSE.parseQuad("(_ :s :p 1)");
+        changes.header(RDFPatchConst.ID, Id.create().asNode());
+        changes.txnBegin();
+        changes.add(quad1.getGraph(), quad1.getSubject(), quad1.getPredicate(), quad1.getObject());
+        changes.txnCommit();
+        assertEquals(1, resets.get());
+        assertEquals(1, dLink.getPatchLogInfo(dsRef).getMaxVersion());
+    }
+}
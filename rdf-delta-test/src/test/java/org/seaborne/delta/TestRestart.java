@@ -20,8 +20,12 @@ package org.seaborne.delta;
 
 import static org.junit.Assert.*;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.lib.FileOps;
@@ -39,6 +43,8 @@ import org.seaborne.delta.server.local.LocalServer;
 import org.seaborne.delta.server.local.LocalServers;
 import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.filestore.FileStore;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.changes.RDFChangesCollector;
 
 // There are restart tests in AbstractTestsDeltaConnection as well.
 // Here we are concerned with different ways to restart on the client side
@@ -315,4 +321,171 @@ public class TestRestart {
         assertFalse(deltaClient.existsRemote(dsRef));
     }
 
+
+    @Test public void restart_journal_01() {
+        setupEmpty();
+        zone.setStateJournal(100);
+        String NAME = "restart_journal_01";
+        Id dsRef = deltaClient.newDataSource(NAME, "http://example/"+NAME);
+        deltaClient.register(dsRef, LocalStorageType.TDB, SyncPolicy.TXN_RW);
+        update(dsRef, deltaClient);
+        update(dsRef, deltaClient);
+        update(dsRef, deltaClient);
+        assertEquals(3, deltaClient.get(dsRef).getLocalVersion());
+
+        // Not compacted : the state file is as created, the journal has the changes.
+        Path statePath = Paths.get(DIR_ZONE, NAME, "state");
+        Path journalPath = Paths.get(DIR_ZONE, NAME, "state-journal");
+        byte[] stateBytes = IOX.readAll(statePath);
+        byte[] journalBytes = IOX.readAll(journalPath);
+        assertTrue(journalBytes.length > 0);
+
+        // Simulate a crash : restore the uncompacted files after shutdown, with a torn last record.
+        shutdown();
+        IOX.writeAll(statePath, stateBytes);
+        byte[] torn = "{ \"version\" : 4 ,".getBytes();
+        byte[] journalTorn = new byte[journalBytes.length+torn.length];
+        System.arraycopy(journalBytes, 0, journalTorn, 0, journalBytes.length);
+        System.arraycopy(torn, 0, journalTorn, journalBytes.length, torn.length);
+        IOX.writeAll(journalPath, journalTorn);
+
+        setup();
+        deltaClient.connect(dsRef, SyncPolicy.TXN_RW);
+        assertEquals(3, deltaClient.getLocal(dsRef).getLocalVersion());
+        test(dsRef, deltaClient, 3);
+        update(dsRef, deltaClient);
+        assertEquals(4, deltaClient.get(dsRef).getLocalVersion());
+    }
+
+    // Journal records not forced to disk on append; they are on close.
+    @Test public void restart_journal_02() {
+        setupEmpty();
+        zone.setStateJournal(100);
+        zone.setStateJournalSync(false);
+        String NAME = "restart_journal_02";
+        Id dsRef = deltaClient.newDataSource(NAME, "http://example/"+NAME);
+        deltaClient.register(dsRef, LocalStorageType.TDB, SyncPolicy.TXN_RW);
+        update(dsRef, deltaClient);
+        update(dsRef, deltaClient);
+        assertTrue(IOX.readAll(Paths.get(DIR_ZONE, NAME, "state-journal")).length > 0);
+
+        shutdown();
+        setup();
+        deltaClient.connect(dsRef, SyncPolicy.TXN_RW);
+        assertEquals(2, deltaClient.getLocal(dsRef).getLocalVersion());
+        test(dsRef, deltaClient, 2);
+    }
+
+    @Test public void restart_mirror_01() {
+        setupEmpty();
+        zone.setPatchMirror(true);
+        String NAME = "restart_mirror_01";
+        Id dsRef = deltaClient.newDataSource(NAME, "http://example/"+NAME);
+        deltaClient.register(dsRef, LocalStorageType.MEM, SyncPolicy.TXN_RW);
+        update(dsRef, deltaClient);
+        update(dsRef, deltaClient);
+        
+        shutdown();
+        setup();
+        
+        // Rebuilt from the local patch mirror, before contacting the server.
+        assertTrue(deltaClient.existsLocal(dsRef));
+        assertEquals(2, zone.get(dsRef).version());
+        DatasetGraph dsg = zone.getDataset(zone.get(dsRef));
+        Txn.executeRead(dsg, ()->assertEquals(2, Iter.count(dsg.find())));
+        
+        deltaClient.connect(dsRef, SyncPolicy.TXN_RW);
+        test(dsRef, deltaClient, 2);
+        update(dsRef, deltaClient);
+        
+        shutdown();
+        setup();
+        assertEquals(3, zone.get(dsRef).version());
+        deltaClient.connect(dsRef, SyncPolicy.TXN_RW);
+        test(dsRef, deltaClient, 3);
+    }
+
+    // Persistent local storage does not have a patch mirror.
+    @Test public void restart_mirror_02() {
+        setupEmpty();
+        zone.setPatchMirror(true);
+        String NAME = "restart_mirror_02";
+        Id dsRef = deltaClient.newDataSource(NAME, "http://example/"+NAME);
+        deltaClient.register(dsRef, LocalStorageType.TDB, SyncPolicy.TXN_RW);
+        update(dsRef, deltaClient);
+        assertFalse(Files.exists(Paths.get(DIR_ZONE, NAME, "patches")));
+    }
+
+    // A patch not found when played is fetched again for the patch mirror.
+    @Test public void restart_mirror_03() {
+        setupEmpty();
+        zone.setPatchMirror(true);
+        String NAME = "restart_mirror_03";
+        Id dsRef = deltaClient.newDataSource(NAME, "http://example/"+NAME);
+        deltaClient.register(dsRef, LocalStorageType.MEM, SyncPolicy.NONE);
+        update(dsRef, deltaClient);
+        appendOther(dsRef);
+        appendOther(dsRef);
+
+        // Patch 2 is not found the first time it is fetched.
+        DeltaLink dLink = deltaLink;
+        AtomicBoolean missing = new AtomicBoolean(true);
+        DeltaLink dLink2 = (DeltaLink)Proxy.newProxyInstance(DeltaLink.class.getClassLoader(), new Class<?>[] {DeltaLink.class}, (proxy, method, args)->{
+            if ( method.getName().equals("fetch") && Long.valueOf(2).equals(args[1]) && missing.getAndSet(false) )
+                return null;
+            try { return method.invoke(dLink, args); }
+            catch (InvocationTargetException ex) { throw ex.getCause(); }
+        });
+        DeltaClient dClient = DeltaClient.create(zone, dLink2);
+        dClient.connect(dsRef, SyncPolicy.NONE);
+        try(DeltaConnection dConn = dClient.get(dsRef)) {
+            dConn.sync();
+            assertEquals(3, dConn.getLocalVersion());
+        }
+        assertFalse(missing.get());
+
+        shutdown();
+        setup();
+        // The mirror has all the patches.
+        assertEquals(3, zone.get(dsRef).version());
+        DatasetGraph dsg = zone.getDataset(zone.get(dsRef));
+        Txn.executeRead(dsg, ()->assertEquals(3, Iter.count(dsg.find())));
+    }
+
+    // Write-behind commits not sent before a crash are sent on restart.
+    @Test public void restart_write_behind_01() {
+        setupEmpty();
+        String NAME = "restart_write_behind_01";
+        Id dsRef = deltaClient.newDataSource(NAME, "http://example/"+NAME);
+        deltaClient.register(dsRef, LocalStorageType.MEM, SyncPolicy.TXN_RW);
+        update(dsRef, deltaClient);
+        DeltaConnection dConn = deltaClient.get(dsRef);
+        dConn.setWriteBehind(100, 0);
+        DatasetGraph dsg = dConn.getDatasetGraph();
+        Txn.executeWrite(dsg, ()->dsg.add(quad()));
+        assertTrue(dConn.hasPendingWrites());
+        assertEquals(1, deltaLink.getCurrentVersion(dsRef));
+
+        // Crash : no flush, no close.
+        shutdown();
+        setup();
+        deltaClient.connect(dsRef, SyncPolicy.TXN_RW);
+        assertEquals(2, deltaLink.getCurrentVersion(dsRef));
+        assertEquals(2, deltaClient.getLocal(dsRef).getLocalVersion());
+        assertFalse(deltaClient.getLocal(dsRef).hasPendingWrites());
+        test(dsRef, deltaClient, 2);
+    }
+
+    private void appendOther(Id dsRef) {
+        PatchLogInfo info = deltaLink.getPatchLogInfo(dsRef);
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        if ( info.getLatestPatch() != null )
+            c.header(RDFPatchConst.PREV, info.getLatestPatch().asNode());
+        c.txnBegin();
+        Quad q = quad();
+        c.add(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject());
+        c.txnCommit();
+        deltaLink.append(dsRef, c.getRDFPatch());
+    }
 }
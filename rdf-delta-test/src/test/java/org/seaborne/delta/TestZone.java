@@ -20,6 +20,7 @@ package org.seaborne.delta;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.jena.atlas.lib.FileOps;
@@ -36,6 +37,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.seaborne.delta.client.DeltaClient;
 import org.seaborne.delta.client.DeltaConnection;
+import org.seaborne.delta.client.LocalStorageType;
 import org.seaborne.delta.client.SyncPolicy;
 import org.seaborne.delta.client.Zone;
 import org.seaborne.delta.link.DeltaLink;
@@ -124,4 +126,27 @@ public class TestZone {
         PatchLogInfo info = deltaLink.getPatchLogInfo(dsRef);
         assertEquals(1, info.getMaxVersion());
     }
+    
+    // Local storage opened on first use, or by openAll, after restart.
+    @Test public void zone_restart_open_01() {
+        Quad quad = SSE.parseQuad("(_ :s :p :o)");
+        Id dsRef1 = deltaClient.newDataSource("ABC", "http://example/ABC");
+        deltaClient.register(dsRef1, LocalStorageType.TDB, SyncPolicy.NONE);
+        Id dsRef2 = deltaClient.newDataSource("DEF", "http://example/DEF");
+        deltaClient.register(dsRef2, LocalStorageType.TDB, SyncPolicy.NONE);
+        try(DeltaConnection dConn = deltaClient.get(dsRef1)) {
+            DatasetGraph dsg = dConn.getDatasetGraph();
+            Txn.executeWrite(dsg, ()->dsg.add(quad)); 
+        }
+        zone.shutdown();
+        
+        zone = Zone.connect(DIR_ZONE);
+        assertEquals(2, zone.localConnections().size());
+        zone.openAll(2);
+        DatasetGraph dsg1 = zone.getDataset(zone.get(dsRef1));
+        assertSame(dsg1, zone.getDataset(zone.get(dsRef1)));
+        Txn.executeRead(dsg1, ()->assertTrue(dsg1.contains(quad)));
+        DatasetGraph dsg2 = zone.getDataset(zone.get(dsRef2));
+        Txn.executeRead(dsg2, ()->assertTrue(dsg2.isEmpty()));
+    }
 }
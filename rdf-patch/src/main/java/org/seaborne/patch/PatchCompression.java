@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.atlas.io.IO;
+
+/**
+ * Compression of patches, for storage and for HTTP {@code Content-Encoding}.
+ * <p>
+ * {@link #GZIP} is built in; other codecs (e.g. LZ4, zstd) can be added with
+ * {@link #register}. A codec name is its HTTP content coding token.
+ * <p>
+ * Compressed data is recognized by its leading bytes, so readers use
+ * {@link #decompress(InputStream)} and do not need to know how the patch was stored.
+ */
+public class PatchCompression {
+
+    /** A compression codec. */
+    public interface Codec {
+        /** The name, also used as the HTTP content coding. */
+        public String name();
+
+        /** Compressing stream. Closing the stream must complete the compressed data. */
+        public OutputStream compress(OutputStream out) throws IOException;
+
+        public InputStream decompress(InputStream in) throws IOException;
+
+        /** Whether the bytes (which may be shorter than any magic number) start compressed data. */
+        public boolean matches(byte[] bytes, int len);
+    }
+
+    /** No compression: the HTTP "identity" coding. */
+    public static final Codec NONE = new Codec() {
+        @Override public String name()                              { return "identity"; }
+        @Override public OutputStream compress(OutputStream out)    { return out; }
+        @Override public InputStream decompress(InputStream in)     { return in; }
+        @Override public boolean matches(byte[] bytes, int len)     { return false; }
+    };
+
+    /** gzip, from the JDK. */
+    public static final Codec GZIP = new Codec() {
+        @Override public String name()                              { return "gzip"; }
+        @Override public OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        @Override public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        @Override public boolean matches(byte[] bytes, int len) {
+            return len >= 2 && (bytes[0] & 0xFF) == 0x1F && (bytes[1] & 0xFF) == 0x8B;
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8*1024;
+    // Longest magic number looked for.
+    private static final int MAGIC_LEN = 8;
+    private static final Map<String, Codec> registry = new ConcurrentHashMap<>();
+    static {
+        register(NONE);
+        register(GZIP);
+    }
+
+    /** Add a codec. */
+    public static void register(Codec codec) {
+        registry.put(codec.name().toLowerCase(Locale.ROOT), codec);
+    }
+
+    /** Get a codec by name, or null if there is no such codec. */
+    public static Codec get(String name) {
+        if ( name == null )
+            return null;
+        return registry.get(name.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * A stream that compresses with the codec and writes to {@code out}.
+     * Closing the returned stream completes the compressed data but does not close {@code out}.
+     */
+    public static OutputStream compress(OutputStream out, Codec codec) {
+        if ( codec == null || codec == NONE )
+            return new NoCloseOutputStream(out);
+        try {
+            return codec.compress(new NoCloseOutputStream(out));
+        } catch (IOException ex) { IO.exception(ex); return null; }
+    }
+
+    /** Compress bytes. */
+    public static byte[] compress(byte[] bytes, Codec codec) {
+        if ( codec == null || codec == NONE )
+            return bytes;
+        ByteArrayOutputStream x = new ByteArrayOutputStream(bytes.length/4+64);
+        try ( OutputStream out = compress(x, codec) ) {
+            out.write(bytes);
+        } catch (IOException ex) { IO.exception(ex); }
+        return x.toByteArray();
+    }
+
+    /**
+     * Return a stream of the uncompressed data, recognizing the codec, if any, by
+     * the leading bytes.
+     */
+    public static InputStream decompress(InputStream in) {
+        try {
+            if ( ! in.markSupported() )
+                in = new BufferedInputStream(in, BUFFER_SIZE);
+            in.mark(MAGIC_LEN);
+            Codec codec = codecOf(in);
+            in.reset();
+            return codec.decompress(in);
+        } catch (IOException ex) { IO.exception(ex); return null; }
+    }
+
+    /**
+     * The codec of the data in the stream, recognized by the leading bytes, or {@link #NONE}.
+     * This reads from the stream.
+     */
+    public static Codec codecOf(InputStream in) {
+        try {
+            byte[] magic = new byte[MAGIC_LEN];
+            int len = 0;
+            while ( len < MAGIC_LEN ) {
+                int n = in.read(magic, len, MAGIC_LEN-len);
+                if ( n < 0 )
+                    break;
+                len += n;
+            }
+            for ( Codec codec : registry.values() ) {
+                if ( codec.matches(magic, len) )
+                    return codec;
+            }
+            return NONE;
+        } catch (IOException ex) { IO.exception(ex); return null; }
+    }
+
+    /**
+     * Choose a codec for a response from an HTTP {@code Accept-Encoding} header.
+     * The registered codec with the highest quality value is chosen, earliest first on a tie.
+     * "*" is any coding not named in the header, and is {@link #GZIP} if that is not named.
+     * A coding with q=0 is not acceptable.
+     * Returns {@link #NONE} if no registered codec is acceptable.
+     */
+    public static Codec negotiate(String acceptEncoding) {
+        if ( acceptEncoding == null )
+            return NONE;
+        Map<String, Double> qualities = qualities(acceptEncoding);
+        Codec best = NONE;
+        double bestQ = 0;
+        for ( Map.Entry<String, Double> e : qualities.entrySet() ) {
+            Codec codec = get(e.getKey());
+            if ( codec != null && codec != NONE && e.getValue() > bestQ ) {
+                best = codec;
+                bestQ = e.getValue();
+            }
+        }
+        double anyQ = qualities.getOrDefault("*", 0.0);
+        if ( anyQ > bestQ ) {
+            if ( ! qualities.containsKey(GZIP.name()) )
+                return GZIP;
+            for ( Map.Entry<String, Codec> e : registry.entrySet() ) {
+                if ( e.getValue() != NONE && ! qualities.containsKey(e.getKey()) )
+                    return e.getValue();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Whether an HTTP {@code Accept-Encoding} header allows a response compressed with {@code codec}:
+     * the coding, or "*" if the coding is not named, has a quality value above 0.
+     * No compression is always allowed.
+     */
+    public static boolean accepts(String acceptEncoding, Codec codec) {
+        if ( codec == NONE )
+            return true;
+        if ( acceptEncoding == null )
+            return false;
+        Map<String, Double> qualities = qualities(acceptEncoding);
+        Double q = qualities.get(codec.name());
+        if ( q == null )
+            q = qualities.getOrDefault("*", 0.0);
+        return q > 0;
+    }
+
+    /** Quality value of each coding of an {@code Accept-Encoding} header, in header order. */
+    private static Map<String, Double> qualities(String acceptEncoding) {
+        Map<String, Double> qualities = new LinkedHashMap<>();
+        for ( String item : acceptEncoding.split(",") ) {
+            String[] parts = item.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if ( name.isEmpty() )
+                continue;
+            double q = 1.0;
+            for ( int i = 1 ; i < parts.length ; i++ ) {
+                String p = parts[i].trim();
+                if ( p.startsWith("q=") ) {
+                    try {
+                        q = Double.parseDouble(p.substring(2).trim());
+                    } catch (NumberFormatException ex) {}
+                }
+            }
+            qualities.putIfAbsent(name, q);
+        }
+        return qualities;
+    }
+
+    /** An HTTP {@code Accept-Encoding} value for all the registered codecs. */
+    public static String acceptEncoding() {
+        StringJoiner sj = new StringJoiner(", ");
+        registry.values().forEach(c->{
+            if ( c != NONE )
+                sj.add(c.name());
+        });
+        return sj.toString();
+    }
+
+    /** Flush, but do not close, the underlying stream on close. */
+    private static class NoCloseOutputStream extends FilterOutputStream {
+        NoCloseOutputStream(OutputStream out) { super(out); }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
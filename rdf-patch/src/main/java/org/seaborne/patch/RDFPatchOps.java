@@ -25,6 +25,7 @@ import java.io.PrintStream;
 import java.io.StringWriter;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 
@@ -38,7 +39,11 @@ import org.apache.jena.sparql.core.DatasetGraph ;
 import org.seaborne.patch.changes.PatchSummary;
 import org.seaborne.patch.changes.RDFChangesApply;
 import org.seaborne.patch.changes.RDFChangesApplyGraph;
+import org.seaborne.patch.changes.PatchSquash;
+import org.seaborne.patch.changes.RDFChangesCanonical;
 import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact.RDFPatchCompact;
 import org.seaborne.patch.changes.RDFChangesCounter;
 import org.seaborne.patch.changes.RDFChangesLog;
 import org.seaborne.patch.changes.RDFChangesWriter;
@@ -120,13 +125,42 @@ public class RDFPatchOps {
      *  to an external resource like an {@link InputStream}.  
      */
     public static RDFPatch collect(RDFPatch patch) {
-        if ( patch instanceof RDFChangesCollector )
+        if ( patch instanceof RDFChangesCollector.RDFPatchStored || patch instanceof RDFPatchCompact )
             return patch;
-        RDFChangesCollector x = new RDFChangesCollector();
+        return compact(patch);
+    }
+
+    /** Return an in-memory copy of a patch in the compact form of {@link RDFChangesCollectorCompact}.
+     *  Use this for patches that are kept in memory for a long time.
+     */
+    public static RDFPatch compact(RDFPatch patch) {
+        if ( patch instanceof RDFPatchCompact )
+            return patch;
+        RDFChangesCollectorCompact x = new RDFChangesCollectorCompact();
         patch.apply(x);
         return x.getRDFPatch();
     }
     
+    /**
+     * Combine a sequence of patches into one patch with the same net effect.
+     * The squashing is done in memory; see {@link PatchSquash} for large sequences.
+     */
+    public static RDFPatch squash(Iterator<RDFPatch> patches) {
+        PatchSquash squash = new PatchSquash();
+        patches.forEachRemaining(squash::add);
+        return squash.getRDFPatch();
+    }
+
+    /**
+     * Return a patch with each transaction reduced to its net effect.
+     * @see RDFChangesCanonical
+     */
+    public static RDFPatch canonical(RDFPatch patch) {
+        RDFChangesCollectorCompact x = new RDFChangesCollectorCompact();
+        patch.apply(new RDFChangesCanonical(x));
+        return x.getRDFPatch();
+    }
+
     /** RDF data file to patch.
      * The patch has no Id or Previous - see {@link #withHeader}.
      */
@@ -171,7 +205,7 @@ public class RDFPatchOps {
     /** Read an {@link RDFPatch} from a file. */
     public static RDFPatch read(InputStream input) {
         RDFPatchReaderText pr = new RDFPatchReaderText(input) ;
-        RDFChangesCollector c = new RDFChangesCollector() ;
+        RDFChangesCollectorCompact c = new RDFChangesCollectorCompact() ;
         pr.apply(c);
         return c.getRDFPatch() ; 
     }
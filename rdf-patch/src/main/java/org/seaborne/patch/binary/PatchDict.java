@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.binary;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.seaborne.patch.PatchException;
+
+/**
+ * Constants and low level encoding for the dictionary-compressed patch format.
+ * <p>
+ * The stream starts with the bytes {@code RPD1} and the maximum number of
+ * entries in the term dictionary. Each row is one row code byte followed by its
+ * terms and strings.
+ * <p>
+ * A term is a varint whose low 3 bits are the kind and the rest is an argument:
+ * <ul>
+ * <li>{@code NULL} : no term (e.g. the default graph).
+ * <li>{@code REF} : argument is the id of a term already defined.
+ * <li>{@code IRI} : argument is the id of a namespace already defined, or 0 followed by
+ *     a new namespace string; then the local part as a string.
+ * <li>{@code BNODE} : the label as a string.
+ * <li>{@code LITERAL} : the lexical form as a string then, by argument,
+ *     nothing (xsd:string), a language tag string, or the datatype as a term.
+ * </ul>
+ * Each {@code IRI}, {@code BNODE} and {@code LITERAL} term is given the next
+ * term id while the dictionary is not full. Reader and writer follow the same
+ * rules so the ids are not written when defined.
+ *
+ * @see RDFChangesWriterDict
+ * @see RDFPatchReaderDict
+ */
+class PatchDict {
+    static final byte[] MAGIC           = { 'R', 'P', 'D', '1' };
+    static final int DEFAULT_MAX_TERMS  = 1<<20;
+
+    // Row codes.
+    static final int ROW_HEADER         = 1;
+    static final int ROW_ADD            = 2;
+    static final int ROW_DEL            = 3;
+    static final int ROW_PREFIX_ADD     = 4;
+    static final int ROW_PREFIX_DEL     = 5;
+    static final int ROW_TXN_BEGIN      = 6;
+    static final int ROW_TXN_COMMIT     = 7;
+    static final int ROW_TXN_ABORT      = 8;
+    static final int ROW_SEGMENT        = 9;
+
+    // Term kinds.
+    static final int KIND_BITS          = 3;
+    static final int KIND_MASK          = (1<<KIND_BITS)-1;
+    static final int KIND_NULL          = 0;
+    static final int KIND_REF           = 1;
+    static final int KIND_IRI           = 2;
+    static final int KIND_BNODE         = 3;
+    static final int KIND_LITERAL       = 4;
+
+    // Literal arguments.
+    static final int LIT_STRING         = 0;
+    static final int LIT_LANG           = 1;
+    static final int LIT_DATATYPE       = 2;
+
+    static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ( (value & ~0x7FL) != 0 ) {
+            out.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for ( int shift = 0 ; shift < 64 ; shift += 7 ) {
+            int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ( (b & 0x80) == 0 )
+                return value;
+        }
+        throw new PatchException("Bad varint");
+    }
+
+    static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        long len = readVarint(in);
+        if ( len < 0 || len > PatchProtocol.MAX_STRING_LENGTH )
+            throw new PatchException("Bad string length: "+len);
+        byte[] bytes = new byte[(int)len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Read the stream header; return the dictionary size or -1 on an empty stream. */
+    static int readStart(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        int n = in.read(magic);
+        if ( n <= 0 )
+            return -1;
+        try { in.readFully(magic, n, magic.length-n); }
+        catch (EOFException ex) { throw new PatchException("Not a dictionary patch stream"); }
+        for ( int i = 0 ; i < MAGIC.length ; i++ ) {
+            if ( magic[i] != MAGIC[i] )
+                throw new PatchException("Not a dictionary patch stream");
+        }
+        return (int)readVarint(in);
+    }
+
+    static void writeStart(DataOutputStream out, int maxTerms) throws IOException {
+        out.write(MAGIC);
+        writeVarint(out, maxTerms);
+    }
+
+    /** Split point of an IRI into namespace and local part: after the last '#' or '/'. */
+    static int splitIRI(String iri) {
+        int idx = iri.lastIndexOf('#');
+        if ( idx < 0 )
+            idx = iri.lastIndexOf('/');
+        return idx+1;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * Thrift compact protocol for patches, with string encoding and decoding through a
+ * reused buffer. The bytes on the wire are the same as {@link TCompactProtocol}.
+ * <p>
+ * {@link TCompactProtocol} allocates a {@code byte[]} for every string written or read;
+ * patch rows are mostly strings (IRIs and lexical forms).
+ */
+class PatchProtocol extends TCompactProtocol {
+    private static final int BUFFER_SIZE = 128*1024;
+    /**
+     * Longest string, in bytes, accepted when reading, so a corrupt or hostile length does
+     * not cause a huge allocation. Also used by {@link PatchDict}.
+     */
+    static final int MAX_STRING_LENGTH = 64*1024*1024;
+    private byte[] buffer = new byte[256];
+    private final byte[] varint = new byte[5];
+
+    static PatchProtocol create(OutputStream out) {
+        if ( ! ( out instanceof BufferedOutputStream ) )
+            out = new BufferedOutputStream(out, BUFFER_SIZE);
+        return new PatchProtocol(new TIOStreamTransport(out));
+    }
+
+    static PatchProtocol create(InputStream in) {
+        if ( ! ( in instanceof BufferedInputStream ) )
+            in = new BufferedInputStream(in, BUFFER_SIZE);
+        return new PatchProtocol(new TIOStreamTransport(in));
+    }
+
+    private PatchProtocol(TTransport transport) {
+        super(transport, MAX_STRING_LENGTH, -1);
+    }
+
+    @Override
+    public void writeString(String str) throws TException {
+        int len = str.length();
+        byte[] b = buffer(len);
+        for ( int i = 0 ; i < len ; i++ ) {
+            char ch = str.charAt(i);
+            if ( ch >= 0x80 ) {
+                // Not ASCII.
+                super.writeString(str);
+                return;
+            }
+            b[i] = (byte)ch;
+        }
+        writeVarint32(len);
+        trans_.write(b, 0, len);
+    }
+
+    @Override
+    public String readString() throws TException {
+        int len = readVarint32();
+        if ( len < 0 )
+            throw new TProtocolException(TProtocolException.NEGATIVE_SIZE, "Negative length: "+len);
+        if ( len > MAX_STRING_LENGTH )
+            throw new TProtocolException(TProtocolException.SIZE_LIMIT, "Length exceeded max allowed: "+len);
+        if ( len == 0 )
+            return "";
+        byte[] b = buffer(len);
+        trans_.readAll(b, 0, len);
+        return new String(b, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private byte[] buffer(int len) {
+        if ( buffer.length < len )
+            buffer = new byte[Math.max(len, 2*buffer.length)];
+        return buffer;
+    }
+
+    private void writeVarint32(int n) throws TException {
+        int idx = 0;
+        while ( (n & ~0x7F) != 0 ) {
+            varint[idx++] = (byte)((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        varint[idx++] = (byte)n;
+        trans_.write(varint, 0, idx);
+    }
+
+    private int readVarint32() throws TException {
+        int result = 0;
+        for ( int shift = 0 ; shift < 35 ; shift += 7 ) {
+            byte b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ( (b & 0x80) == 0 )
+                return result;
+        }
+        throw new TProtocolException("Variable-length int over 5 bytes");
+    }
+}
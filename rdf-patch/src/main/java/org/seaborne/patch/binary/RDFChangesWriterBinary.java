@@ -23,6 +23,7 @@ import java.io.OutputStream;
 
 import org.apache.jena.JenaRuntime;
 import org.apache.jena.atlas.io.IO;
+import org.apache.jena.datatypes.RDFDatatype;
 import org.apache.jena.datatypes.xsd.XSDDatatype;
 import org.apache.jena.datatypes.xsd.impl.RDFLangString;
 import org.apache.jena.graph.Node;
@@ -41,19 +42,27 @@ import org.seaborne.patch.thrift.wire.*;
 public class RDFChangesWriterBinary implements RDFChanges {
     public static void write(RDFPatch patch, String filename) {
         try ( OutputStream out = IO.openOutputFile(filename) ) {
-            TProtocol protocol = TRDF.protocol(out);
-            RDFChangesWriterBinary writer = new RDFChangesWriterBinary(protocol);
+            RDFChangesWriterBinary writer = new RDFChangesWriterBinary(out);
             writer.start();
             patch.apply(writer);
             writer.finish();
         } catch (IOException ex) { IO.exception(ex); }
     }
+
+    /** Write a patch to an {@link OutputStream}. The stream is flushed, not closed. */
+    public static void write(RDFPatch patch, OutputStream out) {
+        RDFChangesWriterBinary writer = new RDFChangesWriterBinary(out);
+        writer.start();
+        patch.apply(writer);
+        writer.finish();
+    }
     
-    private RDF_Term tv = new RDF_Term();
-    private RDF_Term ts = new RDF_Term();
-    private RDF_Term tp = new RDF_Term();
-    private RDF_Term to = new RDF_Term();
-    private RDF_Term tg = new RDF_Term();
+    // Reused for every row : steady state writing does not allocate Thrift structs.
+    private TermSlot tv = new TermSlot();
+    private TermSlot ts = new TermSlot();
+    private TermSlot tp = new TermSlot();
+    private TermSlot to = new TermSlot();
+    private TermSlot tg = new TermSlot();
     private Patch_Header header = new Patch_Header();
     private Patch_Data_Add dataAdd = new Patch_Data_Add();
     private Patch_Data_Del dataDel = new Patch_Data_Del();
@@ -63,6 +72,11 @@ public class RDFChangesWriterBinary implements RDFChanges {
     
     private final TProtocol protocol;
     
+    /** Write to an {@link OutputStream}. {@link #finish} flushes buffered output. */
+    public RDFChangesWriterBinary(OutputStream out) {
+        this(PatchProtocol.create(out));
+    }
+
     public RDFChangesWriterBinary(TProtocol protocol) {
         this.protocol = protocol;
     }
@@ -84,10 +98,8 @@ public class RDFChangesWriterBinary implements RDFChanges {
     @Override
     public void header(String field, Node value) {
         header.clear();
-        tv.clear();
         header.setName(field);
-        RDFChangesWriterBinary.toThrift(value, tv);
-        header.setValue(tv);
+        header.setValue(tv.set(value));
         row.setHeader(header);
         write();
     }
@@ -95,34 +107,23 @@ public class RDFChangesWriterBinary implements RDFChanges {
     @Override
     public void add(Node g, Node s, Node p, Node o) {
         dataAdd.clear();
-        set(g,s,p,o);
-        dataAdd.setS(ts);
-        dataAdd.setP(tp);
-        dataAdd.setO(to);
+        dataAdd.setS(ts.set(s));
+        dataAdd.setP(tp.set(p));
+        dataAdd.setO(to.set(o));
         if ( g != null )
-            dataAdd.setG(tg);
+            dataAdd.setG(tg.set(g));
         row.setDataAdd(dataAdd);
         write();
     }
 
-    private void set(Node g, Node s, Node p, Node o) {
-        ts.clear(); RDFChangesWriterBinary.toThrift(s, ts);
-        tp.clear(); RDFChangesWriterBinary.toThrift(p, tp);
-        to.clear(); RDFChangesWriterBinary.toThrift(o, to);
-        tg.clear();
-        if ( g != null )
-           RDFChangesWriterBinary.toThrift(g, tg);
-    }
-
     @Override
     public void delete(Node g, Node s, Node p, Node o) {
         dataDel.clear();
-        set(g,s,p,o);
-        dataDel.setS(ts);
-        dataDel.setP(tp);
-        dataDel.setO(to);
+        dataDel.setS(ts.set(s));
+        dataDel.setP(tp.set(p));
+        dataDel.setO(to.set(o));
         if ( g != null )
-            dataDel.setG(tg);
+            dataDel.setG(tg.set(g));
         row.setDataDel(dataDel);
         write();
     }
@@ -130,11 +131,8 @@ public class RDFChangesWriterBinary implements RDFChanges {
     @Override
     public void addPrefix(Node gn, String prefix, String uriStr) {
         prefixAdd.clear();
-        if ( gn != null ) { 
-            tv.clear();
-            toThrift(gn, tv);
-            prefixAdd.setGraphNode(tv);
-        }
+        if ( gn != null )
+            prefixAdd.setGraphNode(tv.set(gn));
         prefixAdd.setPrefix(prefix);
         prefixAdd.setIriStr(uriStr);
         row.setPrefixAdd(prefixAdd);
@@ -144,11 +142,8 @@ public class RDFChangesWriterBinary implements RDFChanges {
     @Override
     public void deletePrefix(Node gn, String prefix) {
         prefixDel.clear();
-        if ( gn != null ) { 
-            tv.clear();
-            toThrift(gn, tv);
-            prefixDel.setGraphNode(tv);
-        }
+        if ( gn != null )
+            prefixDel.setGraphNode(tv.set(gn));
         prefixDel.setPrefix(prefix);
         row.setPrefixDel(prefixDel);
         write();
@@ -179,55 +174,59 @@ public class RDFChangesWriterBinary implements RDFChanges {
     }
 
     /*package*/ static void toThrift(Node node, RDF_Term term) {
-        if ( node.isURI() ) {
-            RDF_IRI iri = new RDF_IRI(node.getURI()) ;
-            term.setIri(iri) ;
-            return ;
-        }
+        new TermSlot().set(node, term);
+    }
 
-        if ( node.isBlank() ) {
-            RDF_BNode b = new RDF_BNode(node.getBlankNodeLabel()) ;
-            term.setBnode(b) ;
-            return ;
+    /**
+     * An {@link RDF_Term} and the parts to fill it, reused for each term written in
+     * one position of a row.
+     */
+    private static class TermSlot {
+        private final RDF_Term term = new RDF_Term();
+        private final RDF_IRI iri = new RDF_IRI();
+        private final RDF_BNode bnode = new RDF_BNode();
+        private final RDF_Literal literal = new RDF_Literal();
+        private final RDF_VAR var = new RDF_VAR();
+
+        RDF_Term set(Node node) {
+            set(node, term);
+            return term;
         }
 
-        if ( node.isURI() ) {
-            RDF_IRI iri = new RDF_IRI(node.getURI()) ;
-            term.setIri(iri) ;
-            return ;
-        }
+        void set(Node node, RDF_Term term) {
+            term.clear();
+            if ( node.isURI() ) {
+                iri.setIri(node.getURI());
+                term.setIri(iri);
+                return;
+            }
 
-        if ( node.isLiteral() ) {
-            String lex = node.getLiteralLexicalForm() ;
-            String dt = node.getLiteralDatatypeURI() ;
-            String lang = node.getLiteralLanguage() ;
-
-            // General encoding.
-            RDF_Literal literal = new RDF_Literal(lex) ;
-            if ( JenaRuntime.isRDF11 ) {
-                if ( node.getLiteralDatatype().equals(XSDDatatype.XSDstring) || 
-                    node.getLiteralDatatype().equals(RDFLangString.rdfLangString) )
-                    dt = null ;
+            if ( node.isBlank() ) {
+                bnode.setLabel(node.getBlankNodeLabel());
+                term.setBnode(bnode);
+                return;
             }
 
-            if ( dt != null ) {
-                literal.setDatatype(dt) ;
+            if ( node.isLiteral() ) {
+                literal.clear();
+                literal.setLex(node.getLiteralLexicalForm());
+                String lang = node.getLiteralLanguage();
+                RDFDatatype dt = node.getLiteralDatatype();
+                // General encoding.
+                if ( dt != null && ! ( JenaRuntime.isRDF11 && ( dt.equals(XSDDatatype.XSDstring) || dt.equals(RDFLangString.rdfLangString) ) ) )
+                    literal.setDatatype(dt.getURI());
+                if ( lang != null && ! lang.isEmpty() )
+                    literal.setLangtag(lang);
+                term.setLiteral(literal);
+                return;
             }
-            if ( lang != null && ! lang.isEmpty() )
-                literal.setLangtag(lang) ;
-            term.setLiteral(literal) ;
-            return ;
-        }
 
-        if ( node.isVariable() ) {
-            RDF_VAR var = new RDF_VAR(node.getName()) ;
-            term.setVariable(var) ;
-            return ;
+            if ( node.isVariable() ) {
+                var.setName(node.getName());
+                term.setVariable(var);
+                return;
+            }
+            throw new PatchException("Node converstion not supported: "+node);
         }
-//        if ( Node.ANY.equals(node)) {
-//            term.setAny(ANY) ;
-//            return ;
-//        }
-        throw new PatchException("Node converstion not supported: "+node) ;
     }
-}
\ No newline at end of file
+}
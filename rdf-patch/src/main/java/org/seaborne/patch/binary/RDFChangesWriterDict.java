@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.binary;
+
+import static org.seaborne.patch.binary.PatchDict.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.JenaRuntime;
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.datatypes.xsd.impl.RDFLangString;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.seaborne.patch.PatchException;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+
+/**
+ * Write a patch in the dictionary-compressed binary format.
+ * <p>
+ * The first use of a term defines an integer id; later uses of the term write the id.
+ * IRIs share namespaces (the IRI up to the last '#' or '/') in the same way.
+ * <p>
+ * The dictionary is bounded; when it is full, new terms are written in full each time.
+ * {@link #finish} flushes the output.
+ *
+ * @see RDFPatchReaderDict
+ */
+public class RDFChangesWriterDict implements RDFChanges {
+    /** Write a patch to an {@link OutputStream}. The stream is flushed, not closed. */
+    public static void write(RDFPatch patch, OutputStream out) {
+        RDFChangesWriterDict writer = new RDFChangesWriterDict(out);
+        writer.start();
+        patch.apply(writer);
+        writer.finish();
+    }
+
+    private final DataOutputStream out;
+    private final int maxTerms;
+    private final Map<Node, Integer> terms = new HashMap<>();
+    private final Map<String, Integer> namespaces = new HashMap<>();
+    private boolean started = false;
+
+    public RDFChangesWriterDict(OutputStream out) {
+        this(out, DEFAULT_MAX_TERMS);
+    }
+
+    /** Writer with a limit on the size of the term dictionary. */
+    public RDFChangesWriterDict(OutputStream out, int maxTerms) {
+        if ( maxTerms < 0 )
+            throw new IllegalArgumentException("Negative dictionary size: "+maxTerms);
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64*1024));
+        this.maxTerms = maxTerms;
+    }
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void finish() {
+        try {
+            row();
+            out.flush();
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    @Override
+    public void header(String field, Node value) {
+        try {
+            row(ROW_HEADER);
+            writeString(out, field);
+            term(value);
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        quad(ROW_ADD, g, s, p, o);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        quad(ROW_DEL, g, s, p, o);
+    }
+
+    private void quad(int code, Node g, Node s, Node p, Node o) {
+        try {
+            row(code);
+            term(g);
+            term(s);
+            term(p);
+            term(o);
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        try {
+            row(ROW_PREFIX_ADD);
+            term(gn);
+            writeString(out, prefix);
+            writeString(out, uriStr);
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        try {
+            row(ROW_PREFIX_DEL);
+            term(gn);
+            writeString(out, prefix);
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    @Override
+    public void txnBegin() {
+        simpleRow(ROW_TXN_BEGIN);
+    }
+
+    @Override
+    public void txnCommit() {
+        simpleRow(ROW_TXN_COMMIT);
+    }
+
+    @Override
+    public void txnAbort() {
+        simpleRow(ROW_TXN_ABORT);
+    }
+
+    @Override
+    public void segment() {
+        simpleRow(ROW_SEGMENT);
+    }
+
+    private void simpleRow(int code) {
+        try { row(code); }
+        catch (IOException ex) { IO.exception(ex); }
+    }
+
+    /** Start a row. */
+    private void row(int code) throws IOException {
+        row();
+        out.writeByte(code);
+    }
+
+    /** Write the stream start if not already done. */
+    private void row() throws IOException {
+        if ( started )
+            return;
+        started = true;
+        writeStart(out, maxTerms);
+    }
+
+    private void term(Node node) throws IOException {
+        if ( node == null ) {
+            writeVarint(out, KIND_NULL);
+            return;
+        }
+        Integer id = terms.get(node);
+        if ( id != null ) {
+            writeVarint(out, ((long)id << KIND_BITS) | KIND_REF);
+            return;
+        }
+        if ( node.isURI() ) {
+            String iri = node.getURI();
+            int split = splitIRI(iri);
+            String ns = iri.substring(0, split);
+            Integer nsId = namespaces.get(ns);
+            if ( nsId != null )
+                writeVarint(out, ((long)nsId << KIND_BITS) | KIND_IRI);
+            else {
+                writeVarint(out, KIND_IRI);
+                writeString(out, ns);
+                if ( namespaces.size() < maxTerms )
+                    // Namespace ids start at 1.
+                    namespaces.put(ns, namespaces.size()+1);
+            }
+            writeString(out, iri.substring(split));
+        } else if ( node.isBlank() ) {
+            writeVarint(out, KIND_BNODE);
+            writeString(out, node.getBlankNodeLabel());
+        } else if ( node.isLiteral() ) {
+            String lex = node.getLiteralLexicalForm();
+            String lang = node.getLiteralLanguage();
+            if ( lang != null && ! lang.isEmpty() ) {
+                writeVarint(out, ((long)LIT_LANG << KIND_BITS) | KIND_LITERAL);
+                writeString(out, lex);
+                writeString(out, lang);
+            } else if ( isSimpleString(node) ) {
+                writeVarint(out, ((long)LIT_STRING << KIND_BITS) | KIND_LITERAL);
+                writeString(out, lex);
+            } else {
+                writeVarint(out, ((long)LIT_DATATYPE << KIND_BITS) | KIND_LITERAL);
+                writeString(out, lex);
+                // Datatype IRIs are terms in the dictionary.
+                term(NodeFactory.createURI(node.getLiteralDatatypeURI()));
+            }
+        } else
+            throw new PatchException("Node not supported in a dictionary patch: "+node);
+        define(node);
+    }
+
+    private void define(Node node) {
+        if ( terms.size() < maxTerms )
+            terms.put(node, terms.size());
+    }
+
+    private static boolean isSimpleString(Node node) {
+        String dt = node.getLiteralDatatypeURI();
+        if ( dt == null )
+            return true;
+        if ( JenaRuntime.isRDF11 )
+            return node.getLiteralDatatype().equals(XSDDatatype.XSDstring) ||
+                   node.getLiteralDatatype().equals(RDFLangString.rdfLangString);
+        return false;
+    }
+}
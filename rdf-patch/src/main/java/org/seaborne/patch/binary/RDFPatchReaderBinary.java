@@ -19,13 +19,15 @@
 package org.seaborne.patch.binary;
 
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.lib.CacheFactory;
 import org.apache.jena.datatypes.RDFDatatype;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
-import org.apache.jena.riot.thrift.TRDF;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TTransportException;
@@ -35,7 +37,7 @@ import org.seaborne.patch.PatchProcessor;
 import org.seaborne.patch.RDFChanges;
 import org.seaborne.patch.RDFPatch;
 import org.seaborne.patch.RDFPatchOps;
-import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact;
 import org.seaborne.patch.thrift.wire.Patch_Data_Add;
 import org.seaborne.patch.thrift.wire.Patch_Data_Del;
 import org.seaborne.patch.thrift.wire.Patch_Header;
@@ -74,7 +76,7 @@ public class RDFPatchReaderBinary implements PatchProcessor {
      * See {@link RDFPatchOps#collect} to make sure a patch has been read.
      */ 
     public static RDFPatch read(InputStream input) {
-        RDFChangesCollector changes = new RDFChangesCollector();
+        RDFChangesCollectorCompact changes = new RDFChangesCollectorCompact();
         RDFPatchReaderBinary.read(input, changes);
         return changes.getRDFPatch();
     }
@@ -84,7 +86,7 @@ public class RDFPatchReaderBinary implements PatchProcessor {
      * The stream is read during this call.
      */
     public static PatchHeader readHeader(InputStream input) {
-        TProtocol protocol = TRDF.protocol(input);
+        TProtocol protocol = PatchProtocol.create(input);
         return readHeader(protocol);
     }
 
@@ -122,11 +124,12 @@ public class RDFPatchReaderBinary implements PatchProcessor {
 
     /** Read and apply */ 
     public static void read(InputStream input, RDFChanges changes) {
-        read(TRDF.protocol(input), changes);
+        read(PatchProtocol.create(input), changes);
     }
     
     public static void read(TProtocol protocol, RDFChanges changes) {
         RDF_Patch_Row row = new RDF_Patch_Row();
+        NodeCache cache = new NodeCache();
         changes.start();
         for (;;) {
             row.clear();
@@ -142,38 +145,38 @@ public class RDFPatchReaderBinary implements PatchProcessor {
                 throw new PatchException("Thrift exception", e);
             }
             
-            dispatch(row, changes);
+            dispatch(row, changes, cache);
         }        
     }
 
-    private static void dispatch(RDF_Patch_Row row, RDFChanges changes) {
+    private static void dispatch(RDF_Patch_Row row, RDFChanges changes, NodeCache cache) {
         if ( row.isSetHeader() ) {
             Patch_Header h = row.getHeader();
-            Node n = RDFPatchReaderBinary.fromThrift(h.getValue());
+            Node n = fromThrift(h.getValue(), cache);
             changes.header(h.getName(), n);
             return;
         }
 
         if ( row.isSetDataAdd() ) {
             Patch_Data_Add add = row.getDataAdd();
-            Node s = RDFPatchReaderBinary.fromThrift(add.getS());
-            Node p = RDFPatchReaderBinary.fromThrift(add.getP());
-            Node o = RDFPatchReaderBinary.fromThrift(add.getO());
+            Node s = fromThrift(add.getS(), cache);
+            Node p = fromThrift(add.getP(), cache);
+            Node o = fromThrift(add.getO(), cache);
             Node g = null;
             if ( add.isSetG() )
-                g = RDFPatchReaderBinary.fromThrift(add.getG());
+                g = fromThrift(add.getG(), cache);
             changes.add(g, s, p, o);
             return;
         }
         
         if ( row.isSetDataDel() ) {
             Patch_Data_Del del = row.getDataDel();
-            Node s = RDFPatchReaderBinary.fromThrift(del.getS());
-            Node p = RDFPatchReaderBinary.fromThrift(del.getP());
-            Node o = RDFPatchReaderBinary.fromThrift(del.getO());
+            Node s = fromThrift(del.getS(), cache);
+            Node p = fromThrift(del.getP(), cache);
+            Node o = fromThrift(del.getO(), cache);
             Node g = null;
             if ( del.isSetG() )
-                g = RDFPatchReaderBinary.fromThrift(del.getG());
+                g = fromThrift(del.getG(), cache);
             changes.delete(g, s, p, o);
             return;
         }
@@ -182,7 +185,7 @@ public class RDFPatchReaderBinary implements PatchProcessor {
             Patch_Prefix_Add add = row.getPrefixAdd();
             Node gn = null;
             if ( add.isSetGraphNode() )
-                gn = fromThrift(add.getGraphNode());
+                gn = fromThrift(add.getGraphNode(), cache);
             changes.addPrefix(gn, add.getPrefix(), add.getIriStr());
             return;
         }
@@ -191,7 +194,7 @@ public class RDFPatchReaderBinary implements PatchProcessor {
             Patch_Prefix_Del del = row.getPrefixDel();
             Node gn = null;
             if ( del.isSetGraphNode() )
-                gn = fromThrift(del.getGraphNode());
+                gn = fromThrift(del.getGraphNode(), cache);
             changes.deletePrefix(gn, del.getPrefix());
             return;
         }
@@ -211,6 +214,14 @@ public class RDFPatchReaderBinary implements PatchProcessor {
     }
 
     public static Node fromThrift(RDF_Term term) {
+        return fromThrift(term, null);
+    }
+
+    /** Convert, using the cache for IRIs and datatypes if it is not null. */ 
+    private static Node fromThrift(RDF_Term term, NodeCache cache) {
+        if ( term.isSetIri() && cache != null )
+            return cache.iri(term.getIri().getIri());
+
         if ( term.isSetIri() )
             return NodeFactory.createURI(term.getIri().getIri()) ;
     
@@ -223,7 +234,7 @@ public class RDFPatchReaderBinary implements PatchProcessor {
             String dtString = null ;
             if ( lit.isSetDatatype() )
                 dtString = lit.getDatatype() ;
-            RDFDatatype dt = NodeFactory.getType(dtString) ;
+            RDFDatatype dt = ( cache != null ) ? cache.datatype(dtString) : NodeFactory.getType(dtString) ;
     
             String lang = lit.getLangtag() ;
             return NodeFactory.createLiteral(lex, lang, dt) ;
@@ -231,4 +242,37 @@ public class RDFPatchReaderBinary implements PatchProcessor {
     
         throw new PatchException("No conversion to a Node: "+term.toString()) ;
     }
+
+    /**
+     * Decoded IRIs, so repeated IRIs are created as {@link Node}s once, and datatypes.
+     * One per stream read; not thread safe.
+     */
+    private static class NodeCache {
+        private static final int SIZE = 5000;
+        private final Cache<String, Node> iris = CacheFactory.createSimpleCache(SIZE);
+        private final Map<String, RDFDatatype> datatypes = new HashMap<>();
+        // Last datatype : typically the same as the previous one.
+        private String lastDtString = null;
+        private RDFDatatype lastDt = null;
+
+        Node iri(String iriStr) {
+            Node n = iris.getIfPresent(iriStr);
+            if ( n == null ) {
+                n = NodeFactory.createURI(iriStr);
+                iris.put(iriStr, n);
+            }
+            return n;
+        }
+
+        RDFDatatype datatype(String dtString) {
+            if ( dtString == null )
+                return null;
+            if ( dtString.equals(lastDtString) )
+                return lastDt;
+            RDFDatatype dt = datatypes.computeIfAbsent(dtString, NodeFactory::getType);
+            lastDtString = dtString;
+            lastDt = dt;
+            return dt;
+        }
+    }
 }
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.binary;
+
+import static org.seaborne.patch.binary.PatchDict.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.seaborne.patch.PatchException;
+import org.seaborne.patch.PatchProcessor;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact;
+
+/**
+ * Read a patch in the dictionary-compressed binary format.
+ * Each distinct term is created as a {@link Node} once.
+ *
+ * @see RDFChangesWriterDict
+ * @see PatchProcessor
+ */
+public class RDFPatchReaderDict implements PatchProcessor {
+    private final InputStream input;
+
+    private RDFPatchReaderDict(InputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public void apply(RDFChanges processor) {
+        read(input, processor);
+    }
+
+    public static PatchProcessor create(InputStream input) { return new RDFPatchReaderDict(input); }
+
+    /**
+     * Read input stream and produce an {@link RDFPatch}.
+     * This operation actively reads the patch into memory.
+     */
+    public static RDFPatch read(InputStream input) {
+        RDFChangesCollectorCompact changes = new RDFChangesCollectorCompact();
+        read(input, changes);
+        return changes.getRDFPatch();
+    }
+
+    /** Read and apply */
+    public static void read(InputStream input, RDFChanges changes) {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 64*1024));
+        try {
+            changes.start();
+            int maxTerms = readStart(in);
+            if ( maxTerms >= 0 )
+                new Decoder(in, maxTerms).rows(changes);
+            changes.finish();
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    /** The dictionaries for one stream. */
+    private static class Decoder {
+        private final DataInputStream in;
+        private final int maxTerms;
+        private final List<Node> terms = new ArrayList<>();
+        // Namespace ids start at 1.
+        private final List<String> namespaces = new ArrayList<>();
+
+        Decoder(DataInputStream in, int maxTerms) {
+            this.in = in;
+            this.maxTerms = maxTerms;
+        }
+
+        void rows(RDFChanges changes) throws IOException {
+            for (;;) {
+                int code = in.read();
+                if ( code < 0 )
+                    return;
+                try {
+                    row(code, changes);
+                } catch (EOFException ex) {
+                    throw new PatchException("Truncated dictionary patch");
+                }
+            }
+        }
+
+        private void row(int code, RDFChanges changes) throws IOException {
+            switch(code) {
+                case ROW_HEADER : {
+                    String field = readString(in);
+                    changes.header(field, term());
+                    return;
+                }
+                case ROW_ADD : {
+                    Node g = term();
+                    Node s = term();
+                    Node p = term();
+                    Node o = term();
+                    changes.add(g, s, p, o);
+                    return;
+                }
+                case ROW_DEL : {
+                    Node g = term();
+                    Node s = term();
+                    Node p = term();
+                    Node o = term();
+                    changes.delete(g, s, p, o);
+                    return;
+                }
+                case ROW_PREFIX_ADD : {
+                    Node gn = term();
+                    String prefix = readString(in);
+                    String uriStr = readString(in);
+                    changes.addPrefix(gn, prefix, uriStr);
+                    return;
+                }
+                case ROW_PREFIX_DEL : {
+                    Node gn = term();
+                    String prefix = readString(in);
+                    changes.deletePrefix(gn, prefix);
+                    return;
+                }
+                case ROW_TXN_BEGIN :    changes.txnBegin(); return;
+                case ROW_TXN_COMMIT :   changes.txnCommit(); return;
+                case ROW_TXN_ABORT :    changes.txnAbort(); return;
+                case ROW_SEGMENT :      changes.segment(); return;
+                default :
+                    throw new PatchException("Unrecognized row code: "+code);
+            }
+        }
+
+        private Node term() throws IOException {
+            long x = readVarint(in);
+            int kind = (int)(x & KIND_MASK);
+            long arg = x >>> KIND_BITS;
+            Node node;
+            switch(kind) {
+                case KIND_NULL :
+                    return null;
+                case KIND_REF :
+                    if ( arg >= terms.size() )
+                        throw new PatchException("Bad term reference: "+arg);
+                    return terms.get((int)arg);
+                case KIND_IRI : {
+                    String ns;
+                    if ( arg == 0 ) {
+                        ns = readString(in);
+                        if ( namespaces.size() < maxTerms )
+                            namespaces.add(ns);
+                    } else {
+                        if ( arg > namespaces.size() )
+                            throw new PatchException("Bad namespace reference: "+arg);
+                        ns = namespaces.get((int)arg-1);
+                    }
+                    node = NodeFactory.createURI(ns+readString(in));
+                    break;
+                }
+                case KIND_BNODE :
+                    node = NodeFactory.createBlankNode(readString(in));
+                    break;
+                case KIND_LITERAL : {
+                    String lex = readString(in);
+                    if ( arg == LIT_STRING )
+                        node = NodeFactory.createLiteral(lex);
+                    else if ( arg == LIT_LANG )
+                        node = NodeFactory.createLiteral(lex, readString(in));
+                    else if ( arg == LIT_DATATYPE ) {
+                        Node dt = term();
+                        if ( dt == null || ! dt.isURI() )
+                            throw new PatchException("Bad literal datatype: "+dt);
+                        node = NodeFactory.createLiteral(lex, NodeFactory.getType(dt.getURI()));
+                    } else
+                        throw new PatchException("Bad literal kind: "+arg);
+                    break;
+                }
+                default :
+                    throw new PatchException("Bad term kind: "+kind);
+            }
+            if ( terms.size() < maxTerms )
+                terms.add(node);
+            return node;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.changes;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.PatchException;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.text.RDFPatchReaderText;
+import org.seaborne.patch.text.TokenWriterText;
+
+/**
+ * Combine a sequence of patches into a single patch with the same net effect.
+ * <p>
+ * For each quad, and each prefix, only the last change is kept. A later delete
+ * cancels an earlier add of the same quad (and the other way round). The delete is
+ * kept because the state before the first patch is not known. Changes in aborted
+ * transactions are dropped.
+ * <p>
+ * The squashed patch has the id of the last patch and the previous of the first patch,
+ * and is a single transaction.
+ * <p>
+ * With a spill directory, when more than the given number of quads are held in
+ * memory, the quad changes so far are written to temporary files, partitioned by
+ * quad, and the partitions are squashed one at a time on output. Prefix changes are
+ * always held in memory.
+ * <p>
+ * A {@code PatchSquash} is used once: {@link #add} patches, then call {@link #output}
+ * or {@link #getRDFPatch}.
+ */
+public class PatchSquash {
+    private static final int PARTITIONS = 32;
+
+    private final long maxInMemory;
+    private final Path spillDir;
+
+    private Node firstPrev = null;
+    private Node lastId = null;
+    private long count = 0;
+
+    // Committed state. Value true for add, false for delete.
+    private Map<QuadKey, Boolean> quads = new HashMap<>();
+    // Prefix change: value is the URI, null for delete.
+    private Map<Pair<Node, String>, String> prefixes = new LinkedHashMap<>();
+    // Changes of the current transaction.
+    private Map<QuadKey, Boolean> txnQuads = new HashMap<>();
+    private Map<Pair<Node, String>, String> txnPrefixes = new HashMap<>();
+    private boolean inTransaction = false;
+
+    // Spill files, or null if not spilled.
+    private Path[] spillFiles = null;
+    private RDFChangesWriter[] spillWriters = null;
+    private boolean finished = false;
+
+    private final RDFChanges receiver = new Receiver();
+
+    /** Squash in memory. */
+    public PatchSquash() {
+        this(Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Squash, spilling to temporary files in {@code spillDir} when more than
+     * {@code maxInMemory} quads are held.
+     */
+    public PatchSquash(long maxInMemory, Path spillDir) {
+        if ( maxInMemory < 1 )
+            throw new IllegalArgumentException("maxInMemory must be positive: "+maxInMemory);
+        if ( spillDir == null && maxInMemory != Long.MAX_VALUE )
+            throw new IllegalArgumentException("No spill directory");
+        this.maxInMemory = maxInMemory;
+        this.spillDir = spillDir;
+    }
+
+    /** Add the next patch of the sequence. */
+    public void add(RDFPatch patch) {
+        if ( finished )
+            throw new PatchException("PatchSquash already output");
+        if ( count == 0 )
+            firstPrev = patch.getPrevious();
+        Node id = patch.getId();
+        if ( id != null )
+            lastId = id;
+        count++;
+        patch.apply(receiver);
+        // A patch that ends inside a transaction does not commit it.
+        endTransaction(false);
+    }
+
+    /** Number of patches added. */
+    public long count() {
+        return count;
+    }
+
+    /** Whether the quad changes have been written to temporary files. */
+    public boolean spilled() {
+        return spillFiles != null;
+    }
+
+    /** Send the squashed patch to an {@link RDFChanges}. */
+    public void output(RDFChanges dest) {
+        if ( finished )
+            throw new PatchException("PatchSquash already output");
+        finished = true;
+        try {
+            dest.start();
+            if ( lastId != null )
+                dest.header(RDFPatchConst.ID, lastId);
+            if ( firstPrev != null )
+                dest.header(RDFPatchConst.PREV, firstPrev);
+            dest.txnBegin();
+            prefixes.forEach((k, uri) -> {
+                if ( uri == null )
+                    dest.deletePrefix(k.getLeft(), k.getRight());
+                else
+                    dest.addPrefix(k.getLeft(), k.getRight(), uri);
+            });
+            if ( spillFiles == null )
+                output(quads, dest);
+            else {
+                spill();
+                closeWriters();
+                for ( Path path : spillFiles ) {
+                    Map<QuadKey, Boolean> partition = new HashMap<>();
+                    try ( InputStream in = Files.newInputStream(path) ) {
+                        new RDFPatchReaderText(in).apply(new Receiver(partition));
+                    }
+                    output(partition, dest);
+                }
+            }
+            dest.txnCommit();
+            dest.finish();
+        } catch (IOException ex) {
+            IO.exception(ex);
+        } finally {
+            close();
+        }
+    }
+
+    /** Return the squashed patch as an in-memory {@link RDFPatch}. */
+    public RDFPatch getRDFPatch() {
+        RDFChangesCollectorCompact c = new RDFChangesCollectorCompact();
+        output(c);
+        return c.getRDFPatch();
+    }
+
+    /** Release any temporary files. */
+    public void close() {
+        quads = null;
+        txnQuads = null;
+        if ( spillFiles == null )
+            return;
+        closeWriters();
+        for ( Path path : spillFiles ) {
+            try { Files.deleteIfExists(path); }
+            catch (IOException ex) { /* Best effort. */ }
+        }
+        spillFiles = null;
+    }
+
+    private static void output(Map<QuadKey, Boolean> map, RDFChanges dest) {
+        map.forEach((k, isAdd) -> {
+            if ( isAdd )
+                dest.add(k.g, k.s, k.p, k.o);
+            else
+                dest.delete(k.g, k.s, k.p, k.o);
+        });
+    }
+
+    private void endTransaction(boolean commit) {
+        if ( commit ) {
+            quads.putAll(txnQuads);
+            prefixes.putAll(txnPrefixes);
+            checkSpill();
+        }
+        txnQuads.clear();
+        txnPrefixes.clear();
+        inTransaction = false;
+    }
+
+    private void checkSpill() {
+        if ( quads.size() > maxInMemory )
+            spill();
+    }
+
+    /** Append the in-memory quad changes to the partition files. */
+    private void spill() {
+        try {
+            if ( spillFiles == null ) {
+                spillFiles = new Path[PARTITIONS];
+                spillWriters = new RDFChangesWriter[PARTITIONS];
+                for ( int i = 0 ; i < PARTITIONS ; i++ ) {
+                    spillFiles[i] = Files.createTempFile(spillDir, "squash-", ".rdfp");
+                    OutputStream out = new BufferedOutputStream(Files.newOutputStream(spillFiles[i]), 64*1024);
+                    spillWriters[i] = new RDFChangesWriter(new TokenWriterText(out));
+                }
+            }
+        } catch (IOException ex) { IO.exception(ex); }
+        // Partition files are in order so a later change for a quad comes after
+        // an earlier one when the partition is read back.
+        quads.forEach((k, isAdd) -> {
+            RDFChangesWriter w = spillWriters[Math.floorMod(k.hashCode(), PARTITIONS)];
+            if ( isAdd )
+                w.add(k.g, k.s, k.p, k.o);
+            else
+                w.delete(k.g, k.s, k.p, k.o);
+        });
+        quads.clear();
+    }
+
+    private void closeWriters() {
+        if ( spillWriters == null )
+            return;
+        for ( RDFChangesWriter w : spillWriters )
+            w.close();
+        spillWriters = null;
+    }
+
+    /** Record changes, buffering any transaction until it commits. */
+    private class Receiver extends RDFChangesBase {
+        // Where changes go directly (when reading back a partition), else null.
+        private final Map<QuadKey, Boolean> direct;
+
+        Receiver() { this(null); }
+        Receiver(Map<QuadKey, Boolean> direct) { this.direct = direct; }
+
+        private Map<QuadKey, Boolean> quads() {
+            if ( direct != null )
+                return direct;
+            return inTransaction ? txnQuads : quads;
+        }
+
+        @Override
+        public void add(Node g, Node s, Node p, Node o) {
+            quads().put(new QuadKey(g, s, p, o), Boolean.TRUE);
+            if ( direct == null && ! inTransaction )
+                checkSpill();
+        }
+
+        @Override
+        public void delete(Node g, Node s, Node p, Node o) {
+            quads().put(new QuadKey(g, s, p, o), Boolean.FALSE);
+            if ( direct == null && ! inTransaction )
+                checkSpill();
+        }
+
+        @Override
+        public void addPrefix(Node gn, String prefix, String uriStr) {
+            (inTransaction ? txnPrefixes : prefixes).put(Pair.create(gn, prefix), uriStr);
+        }
+
+        @Override
+        public void deletePrefix(Node gn, String prefix) {
+            (inTransaction ? txnPrefixes : prefixes).put(Pair.create(gn, prefix), null);
+        }
+
+        @Override
+        public void txnBegin() {
+            inTransaction = true;
+        }
+
+        @Override
+        public void txnCommit() {
+            endTransaction(true);
+        }
+
+        @Override
+        public void txnAbort() {
+            endTransaction(false);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.changes;
+
+import java.util.Objects;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Quad;
+
+/** A quad, as a map key, that may be in the default graph (g is null). */
+final class QuadKey {
+    final Node g, s, p, o;
+    private final int hash;
+
+    QuadKey(Node g, Node s, Node p, Node o) {
+        // The default graph is written as no graph.
+        this.g = ( g == null || Quad.isDefaultGraph(g) ) ? null : g;
+        this.s = s;
+        this.p = p;
+        this.o = o;
+        this.hash = Objects.hash(this.g, s, p, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ( this == obj )
+            return true;
+        if ( !(obj instanceof QuadKey) )
+            return false;
+        QuadKey other = (QuadKey)obj;
+        return Objects.equals(g, other.g) && s.equals(other.s) && p.equals(other.p) && o.equals(other.o);
+    }
+}
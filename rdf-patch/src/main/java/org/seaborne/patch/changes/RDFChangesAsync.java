@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.changes;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.PatchException;
+import org.seaborne.patch.RDFChanges;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link RDFChanges} that passes the changes to another {@link RDFChanges} on a
+ * separate thread. Changes go into a preallocated ring buffer; the writer thread takes
+ * all the changes available each time (batching), so adding data does not wait for
+ * the other {@link RDFChanges}, for example, a writer to a slow disk.
+ * <p>
+ * {@link #txnCommit} and {@link #txnAbort} wait according to the {@link Durability}:
+ * either until the other {@link RDFChanges} has finished the commit of this transaction,
+ * or not at all. An error in the other {@link RDFChanges} is reported by the next call,
+ * which will usually be the commit.
+ * <p>
+ * After an error inside a transaction, the rest of that transaction is not sent: it
+ * ends with {@link RDFChanges#txnAbort} to the other {@link RDFChanges}, even if the
+ * caller commits. The error is reported by a later call; with
+ * {@link Durability#COMMITTED}, no later than the commit.
+ * <p>
+ * Like other {@link RDFChanges}, this is for one writer at a time.
+ * Call {@link #close} to finish the writer thread.
+ */
+public class RDFChangesAsync implements RDFChanges {
+    private static Logger LOG = LoggerFactory.getLogger(RDFChangesAsync.class);
+
+    /** When {@link #txnCommit} and {@link #txnAbort} return. */
+    public enum Durability {
+        /** Return when the commit has been handed to the writer thread. */
+        QUEUED,
+        /** Return when the other {@link RDFChanges} has finished the commit. */
+        COMMITTED
+    }
+
+    public static final int DefaultCapacity = 8*1024;
+
+    private static final int START      = 1;
+    private static final int FINISH     = 2;
+    private static final int HEADER     = 3;
+    private static final int ADD        = 4;
+    private static final int DELETE     = 5;
+    private static final int ADD_PREFIX = 6;
+    private static final int DEL_PREFIX = 7;
+    private static final int TXN_BEGIN  = 8;
+    private static final int TXN_COMMIT = 9;
+    private static final int TXN_ABORT  = 10;
+    private static final int SEGMENT    = 11;
+
+    // One slot of the ring buffer; reused.
+    private static class Event {
+        int type;
+        Node g, s, p, o;
+        String str1, str2;
+
+        void clear() {
+            g = s = p = o = null;
+            str1 = str2 = null;
+        }
+    }
+
+    // Longest time a waiting thread sleeps before checking again.
+    private static final long parkNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RDFChanges other;
+    private final Durability durability;
+    private final Event[] ring;
+    private final int mask;
+    private final Thread writer;
+
+    // Next slot to fill; only used by the caller.
+    private long next = 0;
+    // Slots before this are ready for the writer thread.
+    private volatile long published = 0;
+    // Slots before this have been sent to the other RDFChanges.
+    private volatile long consumed = 0;
+    private volatile boolean closed = false;
+    private volatile boolean writerWaiting = false;
+    // Caller waiting for space or for a commit.
+    private volatile Thread waiter = null;
+    private volatile Throwable error = null;
+    // Longest wait, in milliseconds, for space in the ring buffer; 0 means no limit.
+    private long maxWait = 0;
+    // Writer thread only: inside a transaction, whether it has had an error,
+    // and whether the last transaction was ended here after an error.
+    private boolean inTxn = false;
+    private boolean txnFailed = false;
+    private boolean txnAborted = false;
+
+    /** {@code RDFChangesAsync} with the default capacity, where commit waits for the other {@link RDFChanges}. */
+    public RDFChangesAsync(RDFChanges other) {
+        this(other, DefaultCapacity, Durability.COMMITTED);
+    }
+
+    /**
+     * {@code RDFChangesAsync} with a ring buffer of at least {@code capacity} changes.
+     * When the buffer is full, adding a change waits for space.
+     */
+    public RDFChangesAsync(RDFChanges other, int capacity, Durability durability) {
+        if ( capacity <= 0 )
+            throw new IllegalArgumentException("Capacity must be positive: "+capacity);
+        this.other = other;
+        this.durability = durability;
+        int size = Integer.highestOneBit(capacity);
+        if ( size < capacity )
+            size = size << 1;
+        this.ring = new Event[size];
+        for ( int i = 0 ; i < size ; i++ )
+            ring[i] = new Event();
+        this.mask = size-1;
+        this.writer = new Thread(this::run, "RDFChangesAsync");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    /** Number of changes waiting to be sent to the other {@link RDFChanges}. */
+    public long lag() {
+        return published - consumed;
+    }
+
+    /** Number of changes sent to the other {@link RDFChanges}. */
+    public long written() {
+        return consumed;
+    }
+
+    @Override
+    public void start() {
+        publish(START, null, null, null, null, null, null);
+    }
+
+    /** Finish: this waits until all changes have been sent to the other {@link RDFChanges}. */
+    @Override
+    public void finish() {
+        awaitWritten(publish(FINISH, null, null, null, null, null, null));
+    }
+
+    @Override
+    public void header(String field, Node value) {
+        publish(HEADER, null, value, null, null, field, null);
+    }
+
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        publish(ADD, g, s, p, o, null, null);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        publish(DELETE, g, s, p, o, null, null);
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        publish(ADD_PREFIX, gn, null, null, null, prefix, uriStr);
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        publish(DEL_PREFIX, gn, null, null, null, prefix, null);
+    }
+
+    @Override
+    public void txnBegin() {
+        publish(TXN_BEGIN, null, null, null, null, null, null);
+    }
+
+    @Override
+    public void txnCommit() {
+        long seq = publish(TXN_COMMIT, null, null, null, null, null, null);
+        if ( durability == Durability.COMMITTED )
+            awaitWritten(seq);
+    }
+
+    @Override
+    public void txnAbort() {
+        long seq = publish(TXN_ABORT, null, null, null, null, null, null);
+        if ( durability == Durability.COMMITTED )
+            awaitWritten(seq);
+    }
+
+    @Override
+    public void segment() {
+        publish(SEGMENT, null, null, null, null, null, null);
+    }
+
+    /** Wait until all the changes so far have been sent to the other {@link RDFChanges}. */
+    public void flush() {
+        if ( next > 0 )
+            awaitWritten(next-1);
+    }
+
+    /** Send any outstanding changes to the other {@link RDFChanges} and stop the writer thread. */
+    public void close() {
+        if ( closed )
+            return;
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try { writer.join(); }
+        catch (InterruptedException ex) { Thread.currentThread().interrupt(); }
+    }
+
+    // ---- Caller side
+
+    private long publish(int type, Node g, Node s, Node p, Node o, String str1, String str2) {
+        checkError();
+        if ( closed )
+            throw new PatchException("RDFChangesAsync is closed");
+        long seq = next;
+        // Wait for space.
+        long start = ( maxWait > 0 ) ? System.currentTimeMillis() : 0;
+        while ( seq - consumed >= ring.length ) {
+            park(()->seq - consumed >= ring.length);
+            checkError();
+            if ( maxWait > 0 && System.currentTimeMillis()-start > maxWait )
+                throw new PatchException("Change writer is slow: no space after "+maxWait+"ms");
+        }
+        Event e = ring[(int)(seq & mask)];
+        e.type = type;
+        e.g = g;
+        e.s = s;
+        e.p = p;
+        e.o = o;
+        e.str1 = str1;
+        e.str2 = str2;
+        next = seq+1;
+        published = next;
+        if ( writerWaiting )
+            LockSupport.unpark(writer);
+        return seq;
+    }
+
+    private void awaitWritten(long seq) {
+        while ( consumed <= seq ) {
+            if ( ! writer.isAlive() )
+                break;
+            park(()->consumed <= seq);
+            checkError();
+        }
+        checkError();
+    }
+
+    // ---- For RDFChangesN
+
+    /*package*/ void setMaxWait(long maxWaitMillis) {
+        this.maxWait = maxWaitMillis;
+    }
+
+    /** The number of the last change given to this {@code RDFChangesAsync}. */
+    /*package*/ long lastSeq() {
+        return next-1;
+    }
+
+    /*package*/ boolean isWritten(long seq) {
+        return consumed > seq;
+    }
+
+    /** Thread to wake up when changes have been written. */
+    /*package*/ void setWaiter(Thread thread) {
+        waiter = thread;
+    }
+
+    /** Return and clear any error from the other {@link RDFChanges}. */
+    /*package*/ Throwable takeError() {
+        Throwable th = error;
+        error = null;
+        return th;
+    }
+
+    private interface Condition { boolean test(); }
+
+    private void park(Condition stillWaiting) {
+        waiter = Thread.currentThread();
+        // Check after setting "waiter" so that a wake-up is not missed.
+        if ( stillWaiting.test() )
+            LockSupport.parkNanos(this, parkNanos);
+        waiter = null;
+    }
+
+    private void checkError() {
+        Throwable th = error;
+        if ( th != null ) {
+            error = null;
+            throw new PatchException("Asynchronous change writer failed", th);
+        }
+    }
+
+    // ---- Writer thread
+
+    private void run() {
+        long seq = 0;
+        for ( ;; ) {
+            long available = published;
+            if ( seq == available ) {
+                if ( closed )
+                    return;
+                writerWaiting = true;
+                if ( published == seq && ! closed )
+                    LockSupport.parkNanos(this, parkNanos);
+                writerWaiting = false;
+                continue;
+            }
+            // Batch : everything available.
+            for ( ; seq < available ; seq++ ) {
+                Event e = ring[(int)(seq & mask)];
+                try {
+                    write(e);
+                } catch (Throwable th) {
+                    FmtLog.warn(LOG, "Change writer: %s", th.getMessage());
+                    error = th;
+                    if ( inTxn )
+                        txnFailed = true;
+                }
+                e.clear();
+            }
+            consumed = seq;
+            Thread t = waiter;
+            if ( t != null )
+                LockSupport.unpark(t);
+        }
+    }
+
+    private void write(Event e) {
+        if ( txnFailed ) {
+            // Drop the rest of the transaction and end it with an abort.
+            switch (e.type) {
+                case TXN_COMMIT :
+                case TXN_ABORT :
+                    // The error has been, or will be, reported to the caller.
+                    abortFailed();
+                    return;
+                case TXN_BEGIN :
+                case FINISH :
+                    // The caller did not end the transaction.
+                    abortFailed();
+                    break;
+                default :
+                    return;
+            }
+        }
+        if ( txnAborted ) {
+            txnAborted = false;
+            // The caller's own abort of a transaction that has already been aborted.
+            if ( e.type == TXN_ABORT )
+                return;
+        }
+        if ( e.type == TXN_BEGIN )
+            inTxn = true;
+        else if ( e.type == TXN_COMMIT || e.type == TXN_ABORT )
+            inTxn = false;
+        dispatch(e);
+    }
+
+    private void abortFailed() {
+        txnFailed = false;
+        inTxn = false;
+        txnAborted = true;
+        try { other.txnAbort(); }
+        catch (Throwable th) { FmtLog.warn(LOG, "Change writer: abort: %s", th.getMessage()); }
+    }
+
+    private void dispatch(Event e) {
+        switch (e.type) {
+            case START :        other.start(); break;
+            case FINISH :       other.finish(); break;
+            case HEADER :       other.header(e.str1, e.s); break;
+            case ADD :          other.add(e.g, e.s, e.p, e.o); break;
+            case DELETE :       other.delete(e.g, e.s, e.p, e.o); break;
+            case ADD_PREFIX :   other.addPrefix(e.g, e.str1, e.str2); break;
+            case DEL_PREFIX :   other.deletePrefix(e.g, e.str1); break;
+            case TXN_BEGIN :    other.txnBegin(); break;
+            case TXN_COMMIT :   other.txnCommit(); break;
+            case TXN_ABORT :    other.txnAbort(); break;
+            case SEGMENT :      other.segment(); break;
+            default :
+                throw new PatchException("Unknown change: "+e.type);
+        }
+    }
+}
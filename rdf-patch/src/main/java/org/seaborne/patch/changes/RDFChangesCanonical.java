@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.changes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.RDFChanges;
+
+/**
+ * Reduce each transaction to its net effect before passing it on.
+ * <p>
+ * Within a transaction, only the last change to each quad, and each prefix, is
+ * passed on, at the commit. Duplicate adds and deletes are removed, and an add followed
+ * by a delete of the same quad becomes the delete.
+ * <p>
+ * If the changes are known to be real changes, for example from
+ * {@link org.seaborne.patch.system.DatasetGraphRealChanges}, an add followed by a
+ * delete (or a delete followed by an add) means the quad was not (or was) in the
+ * data at the start, and the pair is removed altogether.
+ * <p>
+ * At most {@code maxBuffered} quad changes are held; when more are buffered, the
+ * changes so far are passed on and buffering restarts. Changes outside a transaction
+ * are passed on immediately.
+ */
+public class RDFChangesCanonical extends RDFChangesWrapper {
+    public static final int DefaultMaxBuffered = 100_000;
+
+    // Buffered quad state.
+    private static final byte ADD           = 1;
+    private static final byte DEL           = 2;
+    // Real changes: the first change in the buffer was the other one; no net effect.
+    private static final byte ADD_AFTER_DEL = 3;
+    private static final byte DEL_AFTER_ADD = 4;
+
+    private final boolean realChanges;
+    private final int maxBuffered;
+    private final Map<QuadKey, Byte> quads = new LinkedHashMap<>();
+    // Prefix change: value is the URI, null for delete.
+    private final Map<Pair<Node, String>, String> prefixes = new LinkedHashMap<>();
+    private boolean inTransaction = false;
+
+    public RDFChangesCanonical(RDFChanges other) {
+        this(other, false, DefaultMaxBuffered);
+    }
+
+    public RDFChangesCanonical(RDFChanges other, boolean realChanges, int maxBuffered) {
+        super(other);
+        if ( maxBuffered < 1 )
+            throw new IllegalArgumentException("maxBuffered must be positive: "+maxBuffered);
+        this.realChanges = realChanges;
+        this.maxBuffered = maxBuffered;
+    }
+
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        if ( ! inTransaction ) {
+            super.add(g, s, p, o);
+            return;
+        }
+        change(new QuadKey(g, s, p, o), true);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        if ( ! inTransaction ) {
+            super.delete(g, s, p, o);
+            return;
+        }
+        change(new QuadKey(g, s, p, o), false);
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        if ( ! inTransaction ) {
+            super.addPrefix(gn, prefix, uriStr);
+            return;
+        }
+        prefixes.put(Pair.create(gn, prefix), uriStr);
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        if ( ! inTransaction ) {
+            super.deletePrefix(gn, prefix);
+            return;
+        }
+        prefixes.put(Pair.create(gn, prefix), null);
+    }
+
+    @Override
+    public void txnBegin() {
+        inTransaction = true;
+        super.txnBegin();
+    }
+
+    @Override
+    public void txnCommit() {
+        flushBuffer();
+        inTransaction = false;
+        super.txnCommit();
+    }
+
+    @Override
+    public void txnAbort() {
+        quads.clear();
+        prefixes.clear();
+        inTransaction = false;
+        super.txnAbort();
+    }
+
+    @Override
+    public void segment() {
+        flushBuffer();
+        super.segment();
+    }
+
+    @Override
+    public void finish() {
+        flushBuffer();
+        super.finish();
+    }
+
+    private void change(QuadKey key, boolean isAdd) {
+        byte state = isAdd ? ADD : DEL;
+        if ( realChanges ) {
+            Byte x = quads.get(key);
+            if ( x != null ) {
+                // The first change tells whether the quad was in the data at the start.
+                boolean firstWasAdd = ( x == ADD || x == DEL_AFTER_ADD );
+                if ( firstWasAdd != isAdd )
+                    state = isAdd ? ADD_AFTER_DEL : DEL_AFTER_ADD;
+            }
+        }
+        quads.put(key, state);
+        if ( quads.size() > maxBuffered )
+            flushBuffer();
+    }
+
+    /** Pass on the buffered changes. */
+    private void flushBuffer() {
+        RDFChanges other = get();
+        prefixes.forEach((k, uri) -> {
+            if ( uri == null )
+                other.deletePrefix(k.getLeft(), k.getRight());
+            else
+                other.addPrefix(k.getLeft(), k.getRight(), uri);
+        });
+        prefixes.clear();
+        quads.forEach((k, state) -> {
+            switch (state) {
+                case ADD : other.add(k.g, k.s, k.p, k.o); break;
+                case DEL : other.delete(k.g, k.s, k.p, k.o); break;
+                // Real changes that cancel out.
+                default: break;
+            }
+        });
+        quads.clear();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.changes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.graph.Node ;
+import org.seaborne.patch.PatchHeader;
+import org.seaborne.patch.RDFChanges ;
+import org.seaborne.patch.RDFPatch ;
+
+/**
+ * Capture a stream of changes in a compact form, then play it to another {@link RDFChanges}.
+ * <p>
+ * Each distinct term is stored once in a term table; the changes are an {@code int[]}
+ * of operation codes and term table indexes. This uses a fraction of the space of
+ * {@link RDFChangesCollector}, which has several objects per change.
+ * <p>
+ * {@link #getRDFPatch()} returns a copy; the collector can be reset and reused.
+ */
+public class RDFChangesCollectorCompact implements RDFChanges {
+    // Operation codes.
+    private static final int OP_ADD         = 1;
+    private static final int OP_DEL         = 2;
+    private static final int OP_PREFIX_ADD  = 3;
+    private static final int OP_PREFIX_DEL  = 4;
+    private static final int OP_TXN_BEGIN   = 5;
+    private static final int OP_TXN_COMMIT  = 6;
+    private static final int OP_TXN_ABORT   = 7;
+    private static final int OP_SEGMENT     = 8;
+    // Term index for "no term".
+    private static final int NO_TERM        = -1;
+
+    private Map<String, Node> header = new LinkedHashMap<>();
+    private int[] ops = new int[64];
+    private int opsLen = 0;
+    // Terms and strings (prefixes) share the table.
+    private Object[] terms = new Object[64];
+    private int termsLen = 0;
+    private final Map<Object, Integer> termIndex = new HashMap<>();
+
+    public static class RDFPatchCompact implements RDFPatch {
+        private final PatchHeader header;
+        private final int[] ops;
+        private final Object[] terms;
+
+        private RDFPatchCompact(Map<String, Node> header, int[] ops, Object[] terms) {
+            this.header = new PatchHeader(header);
+            this.ops = ops;
+            this.terms = terms;
+        }
+
+        @Override
+        public PatchHeader header() {
+            return header;
+        }
+
+        @Override
+        public void apply(RDFChanges changes) {
+            header.apply(changes);
+            final int[] ops = this.ops;
+            int i = 0;
+            while ( i < ops.length ) {
+                switch (ops[i]) {
+                    case OP_ADD :
+                        changes.add(node(ops[i+1]), node(ops[i+2]), node(ops[i+3]), node(ops[i+4]));
+                        i += 5;
+                        break;
+                    case OP_DEL :
+                        changes.delete(node(ops[i+1]), node(ops[i+2]), node(ops[i+3]), node(ops[i+4]));
+                        i += 5;
+                        break;
+                    case OP_PREFIX_ADD :
+                        changes.addPrefix(node(ops[i+1]), (String)terms[ops[i+2]], (String)terms[ops[i+3]]);
+                        i += 4;
+                        break;
+                    case OP_PREFIX_DEL :
+                        changes.deletePrefix(node(ops[i+1]), (String)terms[ops[i+2]]);
+                        i += 3;
+                        break;
+                    case OP_TXN_BEGIN :
+                        changes.txnBegin();
+                        i++;
+                        break;
+                    case OP_TXN_COMMIT :
+                        changes.txnCommit();
+                        i++;
+                        break;
+                    case OP_TXN_ABORT :
+                        changes.txnAbort();
+                        i++;
+                        break;
+                    case OP_SEGMENT :
+                        changes.segment();
+                        i++;
+                        break;
+                    default:
+                        throw new InternalError("Unrecognized operation code: "+ops[i]);
+                }
+            }
+        }
+
+        private Node node(int idx) {
+            return ( idx == NO_TERM ) ? null : (Node)terms[idx];
+        }
+
+        @Override
+        public boolean repeatable() {
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + Arrays.hashCode(ops);
+            result = prime * result + Arrays.hashCode(terms);
+            result = prime * result + ((header == null) ? 0 : header.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( obj == null )
+                return false;
+            if ( getClass() != obj.getClass() )
+                return false;
+            // The tables are built in the order of the changes so equal
+            // changes give equal arrays.
+            RDFPatchCompact other = (RDFPatchCompact)obj;
+            return Arrays.equals(ops, other.ops) &&
+                   Arrays.equals(terms, other.terms) &&
+                   header.equals(other.header);
+        }
+    }
+
+    public RDFChangesCollectorCompact() { }
+
+    /** Return the collected changes. This is a copy; later changes do not affect it. */
+    public RDFPatch getRDFPatch() {
+        return new RDFPatchCompact(new LinkedHashMap<>(header),
+                                   Arrays.copyOf(ops, opsLen),
+                                   Arrays.copyOf(terms, termsLen));
+    }
+
+    public void reset() {
+        header.clear();
+        opsLen = 0;
+        Arrays.fill(terms, 0, termsLen, null);
+        termsLen = 0;
+        termIndex.clear();
+    }
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void finish() {}
+
+    @Override
+    public void header(String field, Node value) {
+        header.put(field, value);
+    }
+
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        quad(OP_ADD, g, s, p, o);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        quad(OP_DEL, g, s, p, o);
+    }
+
+    private void quad(int op, Node g, Node s, Node p, Node o) {
+        ensure(5);
+        ops[opsLen++] = op;
+        ops[opsLen++] = term(g);
+        ops[opsLen++] = term(s);
+        ops[opsLen++] = term(p);
+        ops[opsLen++] = term(o);
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        ensure(4);
+        ops[opsLen++] = OP_PREFIX_ADD;
+        ops[opsLen++] = term(gn);
+        ops[opsLen++] = term(prefix);
+        ops[opsLen++] = term(uriStr);
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        ensure(3);
+        ops[opsLen++] = OP_PREFIX_DEL;
+        ops[opsLen++] = term(gn);
+        ops[opsLen++] = term(prefix);
+    }
+
+    @Override
+    public void txnBegin() {
+        op(OP_TXN_BEGIN);
+    }
+
+    @Override
+    public void txnCommit() {
+        op(OP_TXN_COMMIT);
+    }
+
+    @Override
+    public void txnAbort() {
+        op(OP_TXN_ABORT);
+    }
+
+    @Override
+    public void segment() {
+        op(OP_SEGMENT);
+    }
+
+    private void op(int op) {
+        ensure(1);
+        ops[opsLen++] = op;
+    }
+
+    private void ensure(int n) {
+        if ( opsLen+n > ops.length )
+            ops = Arrays.copyOf(ops, Math.max(opsLen+n, 2*ops.length));
+    }
+
+    /** Index of a term (a Node or a String) in the term table, adding it if new. */
+    private int term(Object obj) {
+        if ( obj == null )
+            return NO_TERM;
+        Integer idx = termIndex.get(obj);
+        if ( idx != null )
+            return idx;
+        if ( termsLen == terms.length )
+            terms = Arrays.copyOf(terms, 2*terms.length);
+        int i = termsLen++;
+        terms[i] = obj;
+        termIndex.put(obj, i);
+        return i;
+    }
+}
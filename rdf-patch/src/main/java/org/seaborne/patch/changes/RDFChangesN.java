@@ -20,15 +20,43 @@ package org.seaborne.patch.changes;
 
 import java.util.ArrayList ;
 import java.util.List ;
+import java.util.concurrent.TimeUnit ;
+import java.util.concurrent.locks.LockSupport ;
+import java.util.function.Consumer ;
 
+import org.apache.jena.atlas.logging.FmtLog ;
 import org.apache.jena.graph.Node ;
+import org.seaborne.patch.PatchException ;
 import org.seaborne.patch.RDFChanges ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
 
 /**
  *  An {@link RDFChanges} that replicates the stream of changes to N other {@link RDFChanges} streams.  
+ *  <p>
+ *  By default, each change is sent to each destination in turn on the caller's thread.
+ *  In parallel mode ({@link #parallel}), each destination has its own queue and thread
+ *  (an {@link RDFChangesAsync}); a commit waits until a quorum of the destinations
+ *  have finished the commit. A destination that fails, or that does not take a change
+ *  in time, is handled according to the {@link FailurePolicy}.
+ *  <p>
+ *  A destination that fails part way through a transaction aborts that transaction.
+ *  With {@link FailurePolicy#FAIL}, the transaction is aborted in all the destinations:
+ *  the commit is only sent when every destination has taken all the changes of the
+ *  transaction without error.
  */
 public class RDFChangesN implements RDFChanges
 {
+    private static Logger LOG = LoggerFactory.getLogger(RDFChangesN.class) ;
+
+    /** What to do, in parallel mode, about a destination that fails or is too slow. */
+    public enum FailurePolicy {
+        /** Fail the operation. */
+        FAIL,
+        /** Stop sending changes to the destination and carry on with the others. */
+        DETACH
+    }
+
     /** Create a 2-way {@code RDFChangesN} */
     public static RDFChanges multi(RDFChanges sc1, RDFChanges sc2) {
         if ( sc1 == null )
@@ -43,75 +71,287 @@ public class RDFChangesN implements RDFChanges
         }
     }
     
+    /**
+     * Create an {@code RDFChangesN} in parallel mode where commits wait for all the
+     * destinations and a failure of any destination is an error.
+     */
+    public static RDFChangesN parallel(RDFChanges... changes) {
+        return parallel(0, FailurePolicy.FAIL, 0, changes) ;
+    }
+
+    /**
+     * Create an {@code RDFChangesN} in parallel mode.
+     * @param quorum  Number of destinations that must finish a commit before it returns; 0 means all.
+     * @param failurePolicy  What to do about a destination that fails.
+     * @param maxWaitMillis  Longest time to wait for a destination to accept a change, or to
+     *     reach the quorum on commit, before treating the slow destinations as failed; 0 means no limit.
+     * @param changes The destinations.
+     */
+    public static RDFChangesN parallel(int quorum, FailurePolicy failurePolicy, long maxWaitMillis, RDFChanges... changes) {
+        RDFChangesN x = new RDFChangesN(new Parallel(quorum, failurePolicy, maxWaitMillis)) ;
+        for ( RDFChanges sc : changes )
+            x.add(sc) ;
+        return x ;
+    }
+
+    // Parallel mode settings.
+    private static class Parallel {
+        final int quorum ;
+        final FailurePolicy failurePolicy ;
+        final long maxWait ;
+        Parallel(int quorum, FailurePolicy failurePolicy, long maxWait) {
+            this.quorum = quorum ;
+            this.failurePolicy = failurePolicy ;
+            this.maxWait = maxWait ;
+        }
+    }
+
+    private static final long parkNanos = TimeUnit.MILLISECONDS.toNanos(1) ;
+
+    // Active destinations.
     private final List<RDFChanges> changes = new ArrayList<>() ;
+    // Parallel mode: all destinations, including detached ones, or null.
+    private final Parallel parallel ;
+    private final List<RDFChangesAsync> destinations ;
+    // Parallel mode: inside a transaction, and whether it has been aborted after a failure.
+    private boolean inTxn = false ;
+    private boolean aborted = false ;
+
     public RDFChangesN(RDFChanges... changes) {
+        this((Parallel)null) ;
         for ( RDFChanges sc : changes ) {
             add(sc) ;
         }
     }
     
     public RDFChangesN(List<RDFChanges> changes) {
+        this((Parallel)null) ;
         for ( RDFChanges sc : changes ) {
             add(sc) ;
         }
     }
 
+    private RDFChangesN(Parallel parallel) {
+        this.parallel = parallel ;
+        this.destinations = ( parallel == null ) ? null : new ArrayList<>() ;
+    }
+
     private void add(RDFChanges sc) {
+        if ( parallel != null ) {
+            RDFChangesAsync async = new RDFChangesAsync(sc, RDFChangesAsync.DefaultCapacity, RDFChangesAsync.Durability.QUEUED) ;
+            async.setMaxWait(parallel.maxWait) ;
+            destinations.add(async) ;
+            sc = async ;
+        }
         changes.add(sc) ;
     }
 
+    /** Whether this {@code RDFChangesN} is in parallel mode. */
+    public boolean isParallel() {
+        return parallel != null ;
+    }
+
+    /** Number of destinations, including any that have been detached. */
+    public int size() {
+        return ( parallel == null ) ? changes.size() : destinations.size() ;
+    }
+
+    /** Parallel mode: the number of changes waiting to be sent to destination {@code i}. */
+    public long lag(int i) {
+        return asyncDestination(i).lag() ;
+    }
+
+    /** Parallel mode: the number of changes sent to destination {@code i}. */
+    public long written(int i) {
+        return asyncDestination(i).written() ;
+    }
+
+    /** Parallel mode: whether destination {@code i} has been detached after failing. */
+    public boolean isDetached(int i) {
+        return ! changes.contains(asyncDestination(i)) ;
+    }
+
+    private RDFChangesAsync asyncDestination(int i) {
+        if ( parallel == null )
+            throw new PatchException("Not in parallel mode") ;
+        return destinations.get(i) ;
+    }
+
+    /** Parallel mode: send outstanding changes and stop the destination threads. */
+    public void close() {
+        if ( parallel == null )
+            return ;
+        for ( RDFChangesAsync async : destinations ) {
+            try { async.close() ; }
+            catch (RuntimeException ex) { FmtLog.warn(LOG, "Close: %s", ex.getMessage()) ; }
+        }
+    }
+
+    // Apply to each active destination. In parallel mode, apply the failure policy.
+    private void each(Consumer<RDFChanges> action) {
+        if ( parallel == null ) {
+            changes.forEach(action) ;
+            return ;
+        }
+        for ( RDFChanges sc : new ArrayList<>(changes) ) {
+            try {
+                action.accept(sc) ;
+            } catch (RuntimeException ex) {
+                failed(sc, ex) ;
+            }
+        }
+    }
+
+    private void failed(RDFChanges sc, RuntimeException ex) {
+        if ( parallel.failurePolicy == FailurePolicy.FAIL ) {
+            if ( inTxn )
+                abortAll() ;
+            throw ex ;
+        }
+        int i = destinations.indexOf(sc) ;
+        FmtLog.warn(LOG, "Destination %d detached: %s", i, ex.getMessage()) ;
+        changes.remove(sc) ;
+        if ( inTxn ) {
+            try { sc.txnAbort() ; }
+            catch (RuntimeException ex2) { FmtLog.warn(LOG, "Abort: %s", ex2.getMessage()) ; }
+        }
+        if ( changes.isEmpty() )
+            throw new PatchException("No destinations left", ex) ;
+    }
+
+    // Parallel mode: abort the transaction in all the active destinations.
+    private void abortAll() {
+        inTxn = false ;
+        aborted = true ;
+        for ( RDFChanges sc : changes ) {
+            try { sc.txnAbort() ; }
+            catch (RuntimeException ex) { FmtLog.warn(LOG, "Abort: %s", ex.getMessage()) ; }
+        }
+    }
+
+    // Parallel mode: send the end of the transaction and wait for the quorum.
+    private void endTxn(Consumer<RDFChanges> action) {
+        each(action) ;
+        await(parallel.quorum) ;
+    }
+
+    // Parallel mode: wait until the quorum of active destinations (0 for all) have
+    // taken all the changes so far, applying the failure policy to any that fail.
+    private void await(int requiredQuorum) {
+        List<RDFChangesAsync> waitFor = new ArrayList<>(changes.size()) ;
+        List<Long> seqs = new ArrayList<>(changes.size()) ;
+        for ( RDFChanges sc : changes ) {
+            RDFChangesAsync async = (RDFChangesAsync)sc ;
+            waitFor.add(async) ;
+            seqs.add(async.lastSeq()) ;
+        }
+        long start = System.currentTimeMillis() ;
+        Thread thread = Thread.currentThread() ;
+        for ( ;; ) {
+            int quorum = ( requiredQuorum <= 0 ) ? changes.size() : Math.min(requiredQuorum, changes.size()) ;
+            int done = 0 ;
+            for ( int i = 0 ; i < waitFor.size() ; i++ ) {
+                RDFChangesAsync async = waitFor.get(i) ;
+                if ( ! changes.contains(async) )
+                    continue ;
+                if ( ! async.isWritten(seqs.get(i)) ) {
+                    async.setWaiter(thread) ;
+                    continue ;
+                }
+                Throwable th = async.takeError() ;
+                if ( th != null ) {
+                    failed(async, new PatchException("Destination failed", th)) ;
+                    continue ;
+                }
+                done++ ;
+            }
+            if ( done >= quorum )
+                return ;
+            if ( parallel.maxWait > 0 && System.currentTimeMillis()-start > parallel.maxWait ) {
+                for ( int i = 0 ; i < waitFor.size() ; i++ ) {
+                    RDFChangesAsync async = waitFor.get(i) ;
+                    if ( changes.contains(async) && ! async.isWritten(seqs.get(i)) )
+                        failed(async, new PatchException("Destination is slow: no commit after "+parallel.maxWait+"ms")) ;
+                }
+                start = System.currentTimeMillis() ;
+                continue ;
+            }
+            LockSupport.parkNanos(this, parkNanos) ;
+        }
+    }
+
     @Override
     public void start() {
-        changes.forEach(RDFChanges::start) ;
+        each(RDFChanges::start) ;
     }
     
     @Override
     public void finish() {
-        changes.forEach(RDFChanges::finish) ;
+        each(RDFChanges::finish) ;
     }
 
     @Override
     public void header(String field, Node value) {
-        changes.forEach(c->c.header(field, value)) ;
+        each(c->c.header(field, value)) ;
     }
 
     @Override
     public void add(Node g, Node s, Node p, Node o) {
-        changes.forEach(sc->sc.add(g,s,p,o)) ;
+        each(sc->sc.add(g,s,p,o)) ;
     }
 
     @Override
     public void delete(Node g, Node s, Node p, Node o) { 
-        changes.forEach(sc->sc.delete(g,s,p,o)) ;
+        each(sc->sc.delete(g,s,p,o)) ;
     }
     
     @Override
     public void addPrefix(Node graph, String prefix, String uriStr) {
-        changes.forEach(sc->sc.addPrefix(graph, prefix, uriStr)) ;
+        each(sc->sc.addPrefix(graph, prefix, uriStr)) ;
     } 
     
     @Override
     public void deletePrefix(Node graph, String prefix) {
-        changes.forEach(sc->sc.deletePrefix(graph, prefix));
+        each(sc->sc.deletePrefix(graph, prefix));
     }
     
     @Override
     public void txnBegin() {
-        changes.forEach(sc->sc.txnBegin());
+        aborted = false;
+        inTxn = true;
+        each(sc->sc.txnBegin());
     }
     
     @Override
     public void txnCommit() {
-        changes.forEach(RDFChanges::txnCommit);
+        if ( parallel == null ) {
+            changes.forEach(RDFChanges::txnCommit);
+            return;
+        }
+        if ( aborted )
+            throw new PatchException("Transaction aborted after a destination failed");
+        if ( parallel.failurePolicy == FailurePolicy.FAIL && inTxn )
+            // Every destination has the whole transaction before any commits.
+            await(0);
+        inTxn = false;
+        endTxn(RDFChanges::txnCommit);
     }
     
     @Override
     public void txnAbort() {
-        changes.forEach(RDFChanges::txnAbort);
+        if ( parallel == null ) {
+            changes.forEach(RDFChanges::txnAbort);
+            return;
+        }
+        if ( aborted )
+            // Already aborted after a failure.
+            return;
+        inTxn = false;
+        endTxn(RDFChanges::txnAbort);
     }
 
     @Override
     public void segment() {
-        changes.forEach(RDFChanges::segment);
+        each(RDFChanges::segment);
     }
 }
@@ -30,6 +30,7 @@ import org.apache.jena.atlas.lib.IRILib;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.util.graph.GraphUtils;
@@ -38,7 +39,9 @@ import org.seaborne.patch.RDFChanges;
 import org.seaborne.patch.RDFPatchConst;
 import org.seaborne.patch.RDFPatchOps;
 import org.seaborne.patch.changes.RDFChangesN;
+import org.seaborne.patch.filelog.rotate.CompressionPolicy;
 import org.seaborne.patch.filelog.rotate.ManagedOutput;
+import org.seaborne.patch.filelog.rotate.OutputManagedFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +61,16 @@ public class AssemblerFileLog extends AssemblerBase {
         String logPolicy = GraphUtils.getStringValue(root, VocabPatch.pLogPolicy);
         FilePolicy policy = logPolicy == null ? FilePolicy.INDEX : FilePolicy.policy(logPolicy);
         
+        String logSync = GraphUtils.getStringValue(root, VocabPatch.pLogSync);
+        SyncPolicy syncPolicy = logSync == null ? SyncPolicy.TRANSACTION : SyncPolicy.policy(logSync);
+        long syncInterval = getLong(root, VocabPatch.pLogSyncInterval, OutputManagedFile.DefaultSyncInterval);
+        long syncBatch = getLong(root, VocabPatch.pLogSyncBatch, OutputManagedFile.DefaultSyncBatch);
+        long rollSize = getLong(root, VocabPatch.pLogRollSize, OutputManagedFile.DefaultRollSize);
+        String logCompress = GraphUtils.getStringValue(root, VocabPatch.pLogCompress);
+        CompressionPolicy compression = logCompress == null ? CompressionPolicy.NONE : CompressionPolicy.policy(logCompress);
+        String logIndex = GraphUtils.getAsStringValue(root, VocabPatch.pLogIndex);
+        boolean index = logIndex != null && Boolean.parseBoolean(logIndex.trim());
+        
         DatasetGraph dsgBase;;
         try { 
             Dataset dsBase = (Dataset)a.open(dataset);
@@ -83,7 +96,16 @@ public class AssemblerFileLog extends AssemblerBase {
                 x = IRILib.IRIToFilename(x);
             FmtLog.info(LOG, "Log file: '%s'", x);
             
-            ManagedOutput output = OutputMgr.create(x, policy);
+            ManagedOutput output = OutputMgr.builder()
+                .pathName(x)
+                .filePolicy(policy)
+                .rollSize(rollSize)
+                .compression(compression)
+                .syncPolicy(syncPolicy)
+                .syncInterval(syncInterval)
+                .syncBatch((int)syncBatch)
+                .index(index)
+                .build();
             // --------------
             String ext = FileUtils.getFilenameExt(x);
 //            if ( ext.equals("gz") ) {
@@ -106,4 +128,15 @@ public class AssemblerFileLog extends AssemblerBase {
         Dataset ds = DatasetFactory.wrap(dsg);
         return ds;
     }
+
+    private static long getLong(Resource root, Property property, long dftValue) {
+        String x = GraphUtils.getAsStringValue(root, property);
+        if ( x == null )
+            return dftValue;
+        try {
+            return Long.parseLong(x.trim());
+        } catch (NumberFormatException ex) {
+            throw new AssemblerException(root, "Not an integer: "+property.getLocalName()+" "+x);
+        }
+    }
 }
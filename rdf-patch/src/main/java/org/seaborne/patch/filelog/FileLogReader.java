@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.io.IO;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact;
+import org.seaborne.patch.filelog.rotate.FileMgr;
+import org.seaborne.patch.filelog.rotate.SectionIndex;
+import org.seaborne.patch.text.RDFPatchReaderText;
+
+/**
+ * Read the files written by a {@link RDFChangesManagedOutput}: all the files of
+ * a rotation policy, in the order they were written, whether compressed or not.
+ * <p>
+ * If the log was written with a {@link SectionIndex}, reading can start at any
+ * transaction, by sequence number or by time, without parsing the log before it.
+ */
+public class FileLogReader {
+
+    /** The files, in the order they were written, for a file name and rotation policy. */
+    public static List<Path> files(String pathName, FilePolicy policy) {
+        Path p = Paths.get(pathName).toAbsolutePath();
+        return FileMgr.segments(p.getParent(), p.getFileName().toString(), policy);
+    }
+
+    /** Send the changes in all the files, in order, to an {@link RDFChanges}. */
+    public static void replay(String pathName, FilePolicy policy, RDFChanges changes) {
+        for ( Path path : files(pathName, policy) ) {
+            try ( InputStream in = PatchCompression.decompress(Files.newInputStream(path)) ) {
+                new RDFPatchReaderText(in).apply(changes);
+            } catch (IOException ex) { IO.exception(ex); }
+        }
+    }
+
+    /** The index entries of all the files, in order. Files without an index have no entries. */
+    public static List<SectionIndex.Entry> index(String pathName, FilePolicy policy) {
+        List<SectionIndex.Entry> entries = new ArrayList<>();
+        for ( Path path : files(pathName, policy) )
+            entries.addAll(SectionIndex.read(path));
+        return entries;
+    }
+
+    /** The index entry with a sequence number, or null. */
+    public static SectionIndex.Entry find(String pathName, FilePolicy policy, long seq) {
+        for ( Path path : files(pathName, policy) ) {
+            for ( SectionIndex.Entry e : SectionIndex.read(path) ) {
+                if ( e.seq == seq )
+                    return e;
+            }
+        }
+        return null;
+    }
+
+    /** Send the changes of one section (usually a transaction) to an {@link RDFChanges}. */
+    public static void replay(SectionIndex.Entry entry, RDFChanges changes) {
+        try ( InputStream in = open(entry.file, entry.offset) ) {
+            byte[] bytes = new byte[Math.toIntExact(entry.length)];
+            int n = 0;
+            while ( n < bytes.length ) {
+                int x = in.read(bytes, n, bytes.length-n);
+                if ( x < 0 )
+                    throw new EOFException(entry.toString());
+                n += x;
+            }
+            new RDFPatchReaderText(new ByteArrayInputStream(bytes)).apply(changes);
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    /**
+     * Send the changes from the section with sequence number {@code seq}, or the
+     * first one after it, to the end of the log. Return false if there is no such section.
+     */
+    public static boolean replayFrom(String pathName, FilePolicy policy, long seq, RDFChanges changes) {
+        return replayFrom(pathName, policy, e->e.seq >= seq, changes);
+    }
+
+    /**
+     * Send the changes from the first section finished at or after {@code timestamp}
+     * (milliseconds) to the end of the log. Return false if there is no such section.
+     */
+    public static boolean replaySince(String pathName, FilePolicy policy, long timestamp, RDFChanges changes) {
+        return replayFrom(pathName, policy, e->e.time >= timestamp, changes);
+    }
+
+    private static boolean replayFrom(String pathName, FilePolicy policy, Predicate<SectionIndex.Entry> start, RDFChanges changes) {
+        boolean started = false;
+        for ( Path path : files(pathName, policy) ) {
+            long offset = 0;
+            if ( ! started ) {
+                SectionIndex.Entry first = null;
+                for ( SectionIndex.Entry e : SectionIndex.read(path) ) {
+                    if ( start.test(e) ) {
+                        first = e;
+                        break;
+                    }
+                }
+                if ( first == null )
+                    continue;
+                started = true;
+                offset = first.offset;
+            }
+            try ( InputStream in = open(path, offset) ) {
+                new RDFPatchReaderText(in).apply(changes);
+            } catch (IOException ex) { IO.exception(ex); }
+        }
+        return started;
+    }
+
+    /** Open a file, compressed or not, at an offset in the uncompressed bytes. */
+    private static InputStream open(Path path, long offset) throws IOException {
+        InputStream in = PatchCompression.decompress(Files.newInputStream(path));
+        long remaining = offset;
+        while ( remaining > 0 ) {
+            long x = in.skip(remaining);
+            if ( x <= 0 ) {
+                if ( in.read() < 0 ) {
+                    in.close();
+                    throw new EOFException(path+" : offset "+offset);
+                }
+                x = 1;
+            }
+            remaining -= x;
+        }
+        return in;
+    }
+
+    /** All the changes in all the files as one {@link RDFPatch}. */
+    public static RDFPatch read(String pathName, FilePolicy policy) {
+        RDFChangesCollectorCompact collector = new RDFChangesCollectorCompact();
+        replay(pathName, policy, collector);
+        return collector.getRDFPatch();
+    }
+}
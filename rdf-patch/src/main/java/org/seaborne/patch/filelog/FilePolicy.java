@@ -38,6 +38,12 @@ public enum FilePolicy {
      * Files are filename-0001, filename-0002, .. and "rotate" means next index.
      */
     INDEX,
+    /**
+     * Files are filename.0001, filename.0002, .. as for {@link #INDEX}, and also
+     * move to the next index when the current file reaches a given size. The size
+     * is checked between sections so a section is not split across files.
+     */
+    SIZE,
     /**
      * Always write to a file with the base filename. On rotate, the files are shifted up
      * as filename.001, filename.002, ... and the base filename used for a new file.
@@ -54,6 +60,7 @@ public enum FilePolicy {
         if ( name.equalsIgnoreCase("date") ) return DATE;
         if ( name.equalsIgnoreCase("timestamp") ) return TIMESTAMP;
         if ( name.equalsIgnoreCase("index") ) return INDEX;
+        if ( name.equalsIgnoreCase("size") ) return SIZE;
         if ( name.equalsIgnoreCase("rotate") ) return SHIFT;
         if ( name.equalsIgnoreCase("shift") ) return SHIFT;
         if ( name.equalsIgnoreCase("fixed") ) return FIXED;
@@ -23,9 +23,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Objects;
 
+import org.seaborne.patch.filelog.rotate.CompressionPolicy;
 import org.seaborne.patch.filelog.rotate.ManagedOutput;
 import org.seaborne.patch.filelog.rotate.OutputFixed;
 import org.seaborne.patch.filelog.rotate.OutputManagedFile;
+import org.seaborne.patch.filelog.rotate.SectionIndex;
 
 /** Create a managed output steram handler for a file. */
 public class OutputMgr {
@@ -71,10 +73,39 @@ public class OutputMgr {
      * @return ManagedOutput
      */
     public static ManagedOutput create(String pathName, FilePolicy strategy) {
+        return create(pathName, strategy, SyncPolicy.TRANSACTION);
+    }
+    
+    /** Create a {@link ManagedOutput managed output stream} handler for a file.
+     * The {@link FilePolicy} determines how the file is rotated; 
+     * the {@link SyncPolicy} determines when output is forced to storage.
+     * @param pathName
+     * @param strategy
+     * @param syncPolicy
+     * @return ManagedOutput
+     */
+    public static ManagedOutput create(String pathName, FilePolicy strategy, SyncPolicy syncPolicy) {
+        return create(pathName, strategy, syncPolicy, OutputManagedFile.DefaultSyncInterval, OutputManagedFile.DefaultSyncBatch);
+    }
+    
+    /** Create a {@link ManagedOutput managed output stream} handler for a file.
+     * The {@link FilePolicy} determines how the file is rotated; 
+     * the {@link SyncPolicy} determines when output is forced to storage.
+     * For {@link SyncPolicy#GROUP}, a sync is done when the oldest waiting write is
+     * {@code syncInterval} milliseconds old or when {@code syncBatch} writes are waiting.
+     * @param pathName
+     * @param strategy
+     * @param syncPolicy
+     * @param syncInterval
+     * @param syncBatch
+     * @return ManagedOutput
+     */
+    public static ManagedOutput create(String pathName, FilePolicy strategy, SyncPolicy syncPolicy, long syncInterval, int syncBatch) {
         Objects.requireNonNull(pathName);
         Objects.requireNonNull(strategy);
+        Objects.requireNonNull(syncPolicy);
         Path p = Paths.get(pathName).toAbsolutePath();
-        return new OutputManagedFile(p.getParent(), p.getFileName().toString(), strategy);
+        return new OutputManagedFile(p.getParent(), p.getFileName().toString(), strategy, syncPolicy, syncInterval, syncBatch);
     }
     
     /** Create a managed output stream handler for fixed {@link OutputStream}.
@@ -86,4 +117,42 @@ public class OutputMgr {
     public static ManagedOutput create(OutputStream outputStream) {
         return new OutputFixed(outputStream); 
     }
+    
+    /** Builder for a {@link ManagedOutput managed output stream} handler for a file. */
+    public static Builder builder() { return new Builder(); }
+    
+    public static class Builder {
+        private String pathName                 = null;
+        private FilePolicy filePolicy           = FilePolicy.INDEX;
+        private long rollSize                   = OutputManagedFile.DefaultRollSize;
+        private CompressionPolicy compression   = CompressionPolicy.NONE;
+        private SyncPolicy syncPolicy           = SyncPolicy.TRANSACTION;
+        private long syncInterval               = OutputManagedFile.DefaultSyncInterval;
+        private int syncBatch                   = OutputManagedFile.DefaultSyncBatch;
+        private boolean index                   = false;
+        
+        /** The file name; the rotation policy adds to it. */
+        public Builder pathName(String pathName)                    { this.pathName = pathName; return this; }
+        public Builder filePolicy(FilePolicy filePolicy)            { this.filePolicy = filePolicy; return this; }
+        /** For {@link FilePolicy#SIZE} : start a new file after this many bytes. */
+        public Builder rollSize(long rollSize)                      { this.rollSize = rollSize; return this; }
+        public Builder compression(CompressionPolicy compression)   { this.compression = compression; return this; }
+        public Builder syncPolicy(SyncPolicy syncPolicy)            { this.syncPolicy = syncPolicy; return this; }
+        /** For {@link SyncPolicy#GROUP} : the longest time, in milliseconds, a write waits for a sync. */
+        public Builder syncInterval(long syncInterval)              { this.syncInterval = syncInterval; return this; }
+        /** For {@link SyncPolicy#GROUP} : the number of waiting writes that causes a sync. */
+        public Builder syncBatch(int syncBatch)                     { this.syncBatch = syncBatch; return this; }
+        /** Keep a {@link SectionIndex} for each file. */
+        public Builder index(boolean index)                         { this.index = index; return this; }
+        
+        public ManagedOutput build() {
+            Objects.requireNonNull(pathName, "No file name");
+            Objects.requireNonNull(filePolicy);
+            Objects.requireNonNull(compression);
+            Objects.requireNonNull(syncPolicy);
+            Path p = Paths.get(pathName).toAbsolutePath();
+            return new OutputManagedFile(p.getParent(), p.getFileName().toString(), filePolicy, rollSize, compression, 
+                                         syncPolicy, syncInterval, syncBatch, index);
+        }
+    }
 }
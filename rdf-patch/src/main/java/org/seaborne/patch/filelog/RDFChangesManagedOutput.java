@@ -22,13 +22,16 @@ import java.io.OutputStream;
 
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.RDFPatchConst;
 import org.seaborne.patch.changes.RDFChangesWriter;
 import org.seaborne.patch.filelog.rotate.ManagedOutput;
 import org.seaborne.patch.text.TokenWriter;
 import org.seaborne.patch.text.TokenWriterText;
 
 /** Log changes to a {@link ManagedOutput}. 
- * {@link ManagedOutput} sections 
+ * Each transaction, with any headers before it, is one {@link ManagedOutput} section;
+ * the patch id header, if any, labels the section.
  * */ 
 public class RDFChangesManagedOutput extends RDFChangesWriter {
     
@@ -40,9 +43,19 @@ public class RDFChangesManagedOutput extends RDFChangesWriter {
         this.managedOutput = output;
     }
     
+    @Override
+    public void header(String field, Node value) {
+        if ( currentStream == null )
+            startOutput();
+        super.header(field, value);
+        if ( RDFPatchConst.ID.equals(field) && value != null )
+            managedOutput.sectionId(value.isURI() ? value.getURI() : value.isLiteral() ? value.getLiteralLexicalForm() : value.toString());
+    }
+
     @Override
     public void txnBegin() {
-        startOutput();
+        if ( currentStream == null )
+            startOutput();
         super.txnBegin();
     }
 
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog;
+
+import java.util.Objects;
+
+import org.seaborne.patch.filelog.rotate.FileRotateException;
+import org.seaborne.patch.filelog.rotate.ManagedOutput;
+
+/** When the output of a {@link ManagedOutput} is forced to storage. */
+public enum SyncPolicy {
+    /**
+     * Sync (fsync) the file at the end of each transaction.
+     */
+    TRANSACTION,
+    /**
+     * Group commit: at the end of a transaction, the writer waits until a sync has
+     * covered its output. One sync is done for all the transactions that finished
+     * within a time interval, or when a number of transactions are waiting.
+     */
+    GROUP,
+    /**
+     * Write to the operating system at the end of each transaction and leave it to
+     * the operating system to decide when the file goes to storage.
+     * The file is synced when it is closed.
+     */
+    OS
+    ;
+
+    public static SyncPolicy policy(String name) {
+        Objects.requireNonNull(name);
+        if ( name.equalsIgnoreCase("transaction") ) return TRANSACTION;
+        if ( name.equalsIgnoreCase("txn") ) return TRANSACTION;
+        if ( name.equalsIgnoreCase("group") ) return GROUP;
+        if ( name.equalsIgnoreCase("os") ) return OS;
+        if ( name.equalsIgnoreCase("none") ) return OS;
+        throw new FileRotateException("Unknown sync policy name: "+name); 
+    }
+}
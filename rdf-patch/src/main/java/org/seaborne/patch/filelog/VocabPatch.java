@@ -45,6 +45,24 @@ public class VocabPatch {
 
     /** Name of a file rotation policy . */
     public static final Property pLogPolicy     = Vocab.property(getURI(), "logPolicy") ;
+
+    /** For log policy "size" : the number of bytes after which a new file is started. */
+    public static final Property pLogRollSize   = Vocab.property(getURI(), "logRollSize") ;
+
+    /** Compression of log files: "none" or "rotate" (compress files when they are rotated out). */
+    public static final Property pLogCompress   = Vocab.property(getURI(), "logCompress") ;
+
+    /** Whether to keep an index of the transactions in each log file (boolean, default false). */
+    public static final Property pLogIndex      = Vocab.property(getURI(), "logIndex") ;
+
+    /** When log output is forced to storage: "transaction", "group" or "os". */
+    public static final Property pLogSync       = Vocab.property(getURI(), "logSync") ;
+
+    /** Group commit: longest time, in milliseconds, a transaction waits for others before a sync. */
+    public static final Property pLogSyncInterval = Vocab.property(getURI(), "logSyncInterval") ;
+
+    /** Group commit: number of waiting transactions that causes a sync. */
+    public static final Property pLogSyncBatch  = Vocab.property(getURI(), "logSyncBatch") ;
     
     private static volatile boolean initialized = false ; 
     
@@ -18,6 +18,8 @@
 
 package org.seaborne.patch.filelog.rotate;
 
+import java.util.Objects;
+
 public enum CompressionPolicy {
     /** No compression.*/
     NONE,
@@ -25,4 +27,14 @@ public enum CompressionPolicy {
     OUTPUT,
     /** Compress when finished writing */  
     ROTATE
+    ;
+
+    public static CompressionPolicy policy(String name) {
+        Objects.requireNonNull(name);
+        if ( name.equalsIgnoreCase("none") ) return NONE;
+        if ( name.equalsIgnoreCase("output") ) return OUTPUT;
+        if ( name.equalsIgnoreCase("rotate") ) return ROTATE;
+        if ( name.equalsIgnoreCase("gzip") ) return ROTATE;
+        throw new FileRotateException("Unknown compression policy name: "+name); 
+    }
 }
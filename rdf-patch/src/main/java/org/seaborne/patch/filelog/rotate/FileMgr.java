@@ -19,19 +19,22 @@
 package org.seaborne.patch.filelog.rotate;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.patch.PatchCompression;
 import org.seaborne.patch.PatchException;
+import org.seaborne.patch.filelog.FilePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,7 +62,7 @@ public class FileMgr {
         for ( int idx = startingFrom; idx < IDX_TRIES+startingFrom; idx++ ) {
             String fn = ( idx == 0 ) ? filename : basename(filename, idx, sep, format);
             Path p = directory.resolve(fn);
-            if ( ! Files.exists(p) )
+            if ( ! existsMaybeCompressed(p) )
                 return p.toString();
         }
         FmtLog.warn(LOG, "Failed to find a unique file extension name for "+filename);
@@ -120,8 +123,13 @@ public class FileMgr {
             return fromPath(directory, filepath.getFileName().toString(), pattern);
     }
     
-    /** Create a {@link Filename} */ 
+    /** Create a {@link Filename}. A compressed file, "....gz", matches if the name without the extension matches. */ 
     /*package*/ public static Filename fromPath(Path directory, String fn, Pattern pattern) {
+        String compression = null;
+        if ( fn.endsWith(COMPRESS_SUFFIX) ) {
+            compression = COMPRESS_EXT;
+            fn = fn.substring(0, fn.length()-COMPRESS_SUFFIX.length());
+        }
         Matcher matcher = pattern.matcher(fn);
         if ( ! matcher.matches() )
             return null;
@@ -133,10 +141,6 @@ public class FileMgr {
         String basename = matcher.group(1);
         String separator = matcher.group(2);
         String modifier = matcher.group(3);
-        String compression = null;
-        if ( matcher.groupCount() >= 4 )
-            compression = matcher.group(4);
-        
         return new Filename(directory, basename, separator, modifier, compression);
     }
 
@@ -153,6 +157,9 @@ public class FileMgr {
     /*package*/ static Pattern patternIncremental = Pattern.compile("(.*)(\\.)(\\d+)");
     
     /*package*/ static final String INC_SEP = ".";
+    /** File extension of a compressed file. */
+    /*package*/ static final String COMPRESS_EXT = "gz";
+    /*package*/ static final String COMPRESS_SUFFIX = "."+COMPRESS_EXT;
     /*package*/ static Comparator<Filename> cmpNumericModifier = (x,y)->{
         long vx = indexFromFilename(x);
         long vy = indexFromFilename(y);
@@ -207,9 +214,15 @@ public class FileMgr {
             long idx = fn.isBasename() ? 0L : Integer.parseInt(fn.modifier);
             long idx2 = idx+increment;
             String target = String.format("%s%s"+format, fn.basename, INC_SEP, idx2);
+            if ( fn.isCompressed() )
+                target = target+"."+fn.compression;
             Path dst = directory.resolve(target);
             try {
                 Files.move(src, dst);
+                // Any index goes with the file.
+                Path srcIndex = SectionIndex.indexPath(src);
+                if ( Files.exists(srcIndex) )
+                    Files.move(srcIndex, SectionIndex.indexPath(dst));
             }
             catch (IOException e) { IO.exception(e); }
         }
@@ -222,4 +235,103 @@ public class FileMgr {
         return String.format("%s%s"+modFormat, base, sep, idx);
      }
 
+    /** Whether the file, or its compressed form, exists. */
+    /*package*/ static boolean existsMaybeCompressed(Path path) {
+        return Files.exists(path) || Files.exists(compressedPath(path));
+    }
+
+    /*package*/ static Path compressedPath(Path path) {
+        return path.resolveSibling(path.getFileName().toString()+COMPRESS_SUFFIX);
+    }
+
+    /**
+     * Compress a file to "filename.gz" and then delete the file.
+     * The compressed file appears atomically and is synced to disk before the original
+     * file is deleted.
+     */
+    public static void compress(Path path) {
+        Path target = compressedPath(path);
+        Path tmp = path.resolveSibling(target.getFileName().toString()+".tmp");
+        try {
+            try ( OutputStream out = Files.newOutputStream(tmp);
+                  OutputStream gz = PatchCompression.compress(out, PatchCompression.GZIP) ) {
+                Files.copy(path, gz);
+            }
+            try ( FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE) ) {
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(path.toAbsolutePath().getParent());
+            Files.delete(path);
+        } catch (IOException ex) {
+            FmtLog.warn(LOG, "Failed to compress %s : %s", path, ex.getMessage());
+            try { Files.deleteIfExists(tmp); } catch (IOException ex2) {}
+        }
+    }
+
+    /**
+     * Sync a directory so that a rename within it is durable. Not all platforms allow a
+     * directory to be opened (e.g. MS Windows) and there it is skipped.
+     */
+    private static void syncDirectory(Path dir) {
+        try ( FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ) ) {
+            channel.force(true);
+        } catch (IOException ex) {
+            FmtLog.debug(LOG, "Directory sync not supported: %s : %s", dir, ex.getMessage());
+        }
+    }
+
+    /**
+     * The files, compressed or not, written to by a {@link ManagedOutput} with the
+     * given policy, in the order they were written. If a file exists both uncompressed and
+     * compressed (a compression was interrupted), the uncompressed file is used.
+     */
+    public static List<Path> segments(Path directory, String baseFilename, FilePolicy policy) {
+        List<Filename> files;
+        Comparator<Filename> order;
+        switch (policy) {
+            case INDEX :
+            case SIZE :
+                files = scan(directory, baseFilename, RollerIndex.patternFilename);
+                order = cmpNumericModifier;
+                break;
+            case SHIFT :
+                // Highest number is oldest; the base file is the latest.
+                files = scanIncludeBase(directory, baseFilename, patternIncremental);
+                order = cmpNumericModifier.reversed();
+                break;
+            case DATE :
+                files = scan(directory, baseFilename, RollerDate.patternFilenameDate);
+                order = (x,y)->x.modifier.compareTo(y.modifier);
+                break;
+            case TIMESTAMP :
+                files = scan(directory, baseFilename, RollerTimestamp.patternFilenameDateTime);
+                order = (x,y)->x.modifier.compareTo(y.modifier);
+                break;
+            case FIXED : {
+                Path p = directory.resolve(baseFilename);
+                if ( Files.exists(p) )
+                    return Collections.singletonList(p);
+                if ( Files.exists(compressedPath(p)) )
+                    return Collections.singletonList(compressedPath(p));
+                return Collections.emptyList();
+            }
+            default :
+                throw new FileRotateException("Unknown policy: "+policy);
+        }
+        Map<String, Filename> byName = new HashMap<>();
+        for ( Filename fn : files ) {
+            if ( ! baseFilename.equals(fn.basename) )
+                continue;
+            String key = fn.asUncompressedFilenameString();
+            Filename other = byName.get(key);
+            if ( other == null || other.isCompressed() )
+                byName.put(key, fn);
+        }
+        List<Filename> x = new ArrayList<>(byName.values());
+        Collections.sort(x, order);
+        List<Path> paths = new ArrayList<>(x.size());
+        x.forEach(fn->paths.add(directory.resolve(fn.asFilenameString())));
+        return paths;
+    }
 }
@@ -51,11 +51,19 @@ public class Filename {
     }
     
     public boolean isCompressed() {
-        return compression==null;
+        return compression!=null;
     }
 
     /** As a filename, without directory. */
     public String asFilenameString() {
+        String fn = asUncompressedFilenameString();
+        if ( isCompressed() )
+            fn = fn+"."+compression;
+        return fn;
+    }
+
+    /** As a filename, without directory and without any compression extension. */
+    public String asUncompressedFilenameString() {
         if ( isBasename() )
             return basename;
         return basename+separator+modifier;
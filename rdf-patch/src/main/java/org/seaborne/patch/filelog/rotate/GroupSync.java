@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog.rotate;
+
+import java.io.FileDescriptor;
+import java.io.SyncFailedException;
+
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.atlas.io.IO;
+
+/**
+ * Group commit for a file.
+ * <p>
+ * Each writer records its output, flushed to the operating system, and then waits
+ * until a sync of the file covers it. The first waiting writer to find a sync is due
+ * does one sync for all the writes so far. A sync is due when the oldest unsynced
+ * write is {@code intervalMillis} old, or when {@code maxWaiting} writes are unsynced.
+ */
+class GroupSync {
+    private final long intervalMillis;
+    private final int maxWaiting;
+
+    // Writes recorded, and writes covered by a completed sync.
+    private long written = 0;
+    private long synced = 0;
+    // Time of the oldest write not covered by a sync.
+    private long firstPending = 0;
+    // A writer is doing a sync, or the file is being closed.
+    private boolean syncing = false;
+    private FileDescriptor fd = null;
+
+    GroupSync(long intervalMillis, int maxWaiting) {
+        this.intervalMillis = intervalMillis;
+        this.maxWaiting = Math.max(1, maxWaiting);
+    }
+
+    /** Record a write that has been flushed to {@code fd}. Returns the ticket for {@link #await}. */
+    synchronized long written(FileDescriptor fd) {
+        this.fd = fd;
+        if ( written == synced )
+            firstPending = System.currentTimeMillis();
+        written++;
+        if ( written - synced >= maxWaiting )
+            notifyAll();
+        return written;
+    }
+
+    /** Wait until the write with this ticket is on storage. */
+    void await(long ticket) {
+        long target;
+        FileDescriptor syncFd;
+        for(;;) {
+            synchronized(this) {
+                if ( synced >= ticket )
+                    return;
+                long delay = firstPending + intervalMillis - System.currentTimeMillis();
+                boolean due = ( written - synced >= maxWaiting ) || delay <= 0;
+                if ( syncing || ! due ) {
+                    try {
+                        // Woken when a sync finishes or the batch is full.
+                        wait(syncing ? 0 : delay);
+                    } catch (InterruptedException ex) { throw new RuntimeIOException(ex); }
+                    continue;
+                }
+                // This writer does the sync.
+                syncing = true;
+                target = written;
+                syncFd = fd;
+            }
+            boolean done = false;
+            try {
+                syncFd.sync();
+                done = true;
+            } catch (SyncFailedException ex) {
+                IO.exception(ex);
+            } finally {
+                synchronized(this) {
+                    syncing = false;
+                    if ( done && target > synced ) {
+                        synced = target;
+                        firstPending = System.currentTimeMillis();
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * The file is about to be synced and closed by the caller.
+     * Waits for any sync in progress; no sync starts until {@link #closed}.
+     */
+    synchronized void closing() {
+        while ( syncing ) {
+            try { wait(); }
+            catch (InterruptedException ex) { throw new RuntimeIOException(ex); }
+        }
+        syncing = true;
+    }
+
+    /** The file has been synced and closed: all the writes recorded are on storage. */
+    synchronized void closed() {
+        synced = written;
+        fd = null;
+        syncing = false;
+        notifyAll();
+    }
+}
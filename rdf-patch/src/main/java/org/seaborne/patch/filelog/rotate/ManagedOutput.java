@@ -22,11 +22,13 @@ import java.io.OutputStream;
 
 import org.seaborne.patch.filelog.FilePolicy;
 import org.seaborne.patch.filelog.OutputMgr;
+import org.seaborne.patch.filelog.SyncPolicy;
 
 /** Interface to managed output streams.
  * 
  * @see OutputMgr
  * @see FilePolicy
+ * @see SyncPolicy
  */
 public interface ManagedOutput {
     /** Get an OutputStream; use with try-resources or similar usage pattern.
@@ -45,4 +47,10 @@ public interface ManagedOutput {
     
     /** Get rotation engine */
     public Roller roller();
+    
+    /** When output is forced to storage. */
+    public SyncPolicy syncPolicy();
+    
+    /** Label the current section of output, for example with its patch id, for any {@link SectionIndex}. */
+    public default void sectionId(String id) {}
 }
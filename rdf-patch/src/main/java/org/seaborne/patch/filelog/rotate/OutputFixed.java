@@ -24,6 +24,7 @@ import java.util.concurrent.Semaphore;
 
 import org.apache.jena.atlas.RuntimeIOException;
 import org.apache.jena.atlas.io.IO;
+import org.seaborne.patch.filelog.SyncPolicy;
 
 /** Fixed OutputStream */
 public class OutputFixed implements ManagedOutput {
@@ -42,6 +43,12 @@ public class OutputFixed implements ManagedOutput {
         return null;
     }
     
+    /** The stream is flushed, not synced. */
+    @Override
+    public SyncPolicy syncPolicy() {
+        return SyncPolicy.OS;
+    }
+    
     @Override
     public String currentFilename() {
         return null;
@@ -20,20 +20,49 @@ package org.seaborne.patch.filelog.rotate;
 
 import java.io.*;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 
 import org.apache.jena.atlas.RuntimeIOException;
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.seaborne.patch.filelog.FilePolicy;
+import org.seaborne.patch.filelog.SyncPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** File-based {@link ManagedOutput} with various {@link FilePolicy} for file rotation. */ 
+/**
+ * File-based {@link ManagedOutput} with various {@link FilePolicy} for file rotation
+ * and a {@link SyncPolicy} for when output is forced to storage.
+ * <p>
+ * With {@link CompressionPolicy#ROTATE}, a file that has been rotated out is
+ * compressed, to "filename.gz", by a background thread.
+ * <p>
+ * Optionally, each file has a {@link SectionIndex} recording where each section is in the file. 
+ */ 
 public class OutputManagedFile implements ManagedOutput {
     private static Logger LOG = LoggerFactory.getLogger(OutputManagedFile.class); 
     
+    /** Default for {@link SyncPolicy#GROUP}: longest time, in milliseconds, a write waits for other writes before a sync. */
+    public static final long DefaultSyncInterval = 10;
+    /** Default for {@link SyncPolicy#GROUP}: number of waiting writes that causes a sync. */
+    public static final int DefaultSyncBatch = 100;
+    /** Default for {@link FilePolicy#SIZE}: the file size, in bytes, after which a new file is started. */
+    public static final long DefaultRollSize = 100*1024*1024;
+    
+    // Compress rotated files in the background, one at a time.
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(r->{
+        Thread thread = new Thread(r, "FileLogCompress");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
     // The file area 
     private final Path directory;
     private final String filebase;
@@ -55,17 +84,96 @@ public class OutputManagedFile implements ManagedOutput {
     
     // Number of writes this process-lifetime.
     private long counter = 0;
+    
+    private final SyncPolicy syncPolicy;
+    // SyncPolicy.GROUP only.
+    private final GroupSync groupSync;
+    private final CompressionPolicy compression;
+    // The last background compression.
+    private Future<?> compressing = null;
+    
+    private final FilePolicy filePolicy;
+    // Index of sections, null if not indexing. 
+    private final boolean indexed;
+    private SectionIndex index = null;
+    // Last section sequence number.
+    private long sequence = 0;
+    // Start of the current section and its label.
+    private long sectionStart = -1;
+    private String sectionId = null;
 
     /* package*/ public OutputManagedFile(Path directory, String baseFilename, FilePolicy strategy) {
+        this(directory, baseFilename, strategy, SyncPolicy.TRANSACTION);
+    }
+
+    public OutputManagedFile(Path directory, String baseFilename, FilePolicy strategy, SyncPolicy syncPolicy) {
+        this(directory, baseFilename, strategy, syncPolicy, DefaultSyncInterval, DefaultSyncBatch);
+    }
+
+    /**
+     * Managed file output. For {@link SyncPolicy#GROUP}, a sync is done when the
+     * oldest unsynced write is {@code syncInterval} milliseconds old or when
+     * {@code syncBatch} writes are waiting.
+     */
+    public OutputManagedFile(Path directory, String baseFilename, FilePolicy strategy, SyncPolicy syncPolicy, long syncInterval, int syncBatch) {
+        this(directory, baseFilename, strategy, DefaultRollSize, CompressionPolicy.NONE, syncPolicy, syncInterval, syncBatch);
+    }
+
+    /**
+     * Managed file output. For {@link FilePolicy#SIZE}, a new file is started when the
+     * current one has reached {@code rollSize} bytes. For {@link SyncPolicy#GROUP},
+     * a sync is done when the oldest unsynced write is {@code syncInterval}
+     * milliseconds old or when {@code syncBatch} writes are waiting.
+     */
+    public OutputManagedFile(Path directory, String baseFilename, FilePolicy strategy, long rollSize, CompressionPolicy compression,
+                             SyncPolicy syncPolicy, long syncInterval, int syncBatch) {
+        this(directory, baseFilename, strategy, rollSize, compression, syncPolicy, syncInterval, syncBatch, false);
+    }
+
+    /**
+     * Managed file output, as {@link #OutputManagedFile(Path, String, FilePolicy, long, CompressionPolicy, SyncPolicy, long, int)}
+     * and, if {@code index} is true, with a {@link SectionIndex} for each file.
+     */
+    public OutputManagedFile(Path directory, String baseFilename, FilePolicy strategy, long rollSize, CompressionPolicy compression,
+                             SyncPolicy syncPolicy, long syncInterval, int syncBatch, boolean index) {
+        if ( compression == CompressionPolicy.OUTPUT )
+            throw new FileRotateException("Compressed output streams are not supported: use CompressionPolicy.ROTATE");
         this.directory = directory;
         this.filebase = baseFilename;
-        this.roller = roller(directory, baseFilename, strategy);
+        this.roller = roller(directory, baseFilename, strategy, rollSize);
+        this.compression = compression;
+        this.syncPolicy = syncPolicy;
+        this.groupSync = ( syncPolicy == SyncPolicy.GROUP ) ? new GroupSync(syncInterval, syncBatch) : null;
+        this.filePolicy = strategy;
+        this.indexed = index;
+        if ( indexed )
+            this.sequence = recoverIndex();
     }
 
-    private static Roller roller(Path directory, String baseFilename, FilePolicy strategy) {
+    /** Find the last sequence number, repairing the index of the latest file if necessary. */
+    private long recoverIndex() {
+        List<Path> files = FileMgr.segments(directory, filebase, filePolicy);
+        long seq = 0;
+        for ( int i = 0 ; i < files.size() ; i++ ) {
+            Path p = files.get(i);
+            boolean latest = ( i == files.size()-1 );
+            if ( latest && ! p.getFileName().toString().endsWith(FileMgr.COMPRESS_SUFFIX) ) {
+                // Only the latest file can be incomplete.
+                seq = SectionIndex.recover(p, seq);
+                continue;
+            }
+            SectionIndex.Entry e = SectionIndex.last(p);
+            if ( e != null )
+                seq = e.seq;
+        }
+        return seq;
+    }
+
+    private static Roller roller(Path directory, String baseFilename, FilePolicy strategy, long rollSize) {
         switch ( strategy ) {
             case DATE :         return new RollerDate(directory, baseFilename);
             case INDEX :        return new RollerIndex(directory, baseFilename, "%04d");
+            case SIZE :         return new RollerSize(directory, baseFilename, "%04d", rollSize);
             case SHIFT :        return new RollerShifter(directory, baseFilename, "%03d");
             case TIMESTAMP :    return new RollerTimestamp(directory, baseFilename);
             case FIXED :        return new RollerFixed(directory, baseFilename);
@@ -80,6 +188,11 @@ public class OutputManagedFile implements ManagedOutput {
     }
 
     
+    @Override
+    public SyncPolicy syncPolicy() {
+        return syncPolicy;
+    }
+    
     @Override
     public OutputStream currentOutput() {
         return currentOutput;
@@ -101,10 +214,22 @@ public class OutputManagedFile implements ManagedOutput {
         }
         roller.startSection();
         advanceIfNecessary();
+        if ( indexed )
+            sectionStart = position();
         currentOutput = new OutputStreamManaged(output, (x)->finish());
         return currentOutput;
     }
     
+    @Override
+    public void sectionId(String id) {
+        sectionId = id;
+    }
+    
+    /** The sequence number of the last section written, if indexing. */
+    public long sequence() {
+        return sequence;
+    }
+
     /** Force a rotation of the output file. */
     @Override
     public void rotate() {
@@ -113,20 +238,66 @@ public class OutputManagedFile implements ManagedOutput {
     }
 
     private void finish() {
+        long ticket = finishSection();
+        // Group commit: wait, without holding the output, for a sync that covers this write.
+        if ( ticket > 0 )
+            groupSync.await(ticket);
+    }
+
+    /** Finish writing; return the group commit ticket, or 0. */
+    private long finishSection() {
         roller.finishSection();
+        long ticket = 0;
         try {
             currentOutput = null;
             // Flush the BufferedOutputStream to the FileOutputStream
             output.flush();
-            // fsync the FileOutputStream to storage
-            fileOutput.getFD().sync();
+            switch ( syncPolicy ) {
+                case TRANSACTION :
+                    // fsync the FileOutputStream to storage
+                    fileOutput.getFD().sync();
+                    break;
+                case GROUP :
+                    ticket = groupSync.written(fileOutput.getFD());
+                    break;
+                case OS :
+                    break;
+            }
+            // sectionStart < 0 : rotate() without a section.
+            if ( indexed && sectionStart >= 0 ) {
+                long end = position();
+                sequence++;
+                index.append(sequence, sectionStart, end-sectionStart, System.currentTimeMillis(), sectionId);
+            }
             // output still valid.
         }
         catch (IOException e) {
             e.printStackTrace();
         }
+        sectionStart = -1;
+        sectionId = null;
         if ( sema.availablePermits() == 0 )
             sema.release();
+        return ticket;
+    }
+
+    /** Wait for any background compression of a rotated file to finish. */
+    public void awaitCompression() {
+        Future<?> f = compressing;
+        if ( f == null )
+            return;
+        try { f.get(); }
+        catch (InterruptedException | ExecutionException ex) {
+            FmtLog.warn(LOG, "Compression: %s", ex.getMessage());
+        }
+        compressing = null;
+    }
+
+    // Bytes in the current file; the buffered output has been flushed.
+    private long position() {
+        try {
+            return fileOutput.getChannel().position();
+        } catch (IOException ex) { IO.exception(ex); return -1; }
     }
 
     private boolean hasActiveFile() { 
@@ -155,9 +326,18 @@ public class OutputManagedFile implements ManagedOutput {
     private void closeOutput() {
         if ( output == null )
             return;
-        flushOutput();
-        IO.close(output);
-        //[gz] Compress currentFilename.
+        if ( groupSync != null )
+            groupSync.closing();
+        try {
+            flushOutput();
+            IO.close(output);
+        } finally {
+            if ( groupSync != null )
+                groupSync.closed();
+        }
+        if ( index != null )
+            index.close();
+        index = null;
         output = null;
         fileOutput = null;
         // keep: currentFilename
@@ -166,12 +346,21 @@ public class OutputManagedFile implements ManagedOutput {
 
     private void nextFile() {
         try {
+            String previousFilename = currentFilename;
+            if ( previousFilename != null && compression == CompressionPolicy.ROTATE )
+                // The roller may rename files (SHIFT); not while a compression is running. 
+                awaitCompression();
             currentFilename = roller.nextFilename();
+            if ( previousFilename != null && compression == CompressionPolicy.ROTATE ) {
+                Path rotated = Paths.get(roller.rotatedFilename(previousFilename));
+                compressing = compressor.submit(()->FileMgr.compress(rotated));
+            }
             FmtLog.debug(LOG, "Setup: %s", currentFilename);
             // Must be a FileOutputStream so that getFD().sync is available.
             fileOutput = new FileOutputStream(currentFilename, true);
             output = new BufferedOutputStream(fileOutput);
-            //[gz]
+            if ( indexed )
+                index = new SectionIndex(Paths.get(currentFilename));
         } catch (FileNotFoundException ex) {
             IO.exception(ex);
             return;
@@ -52,6 +52,14 @@ interface Roller {
     /** Generate the next filename; incldues any directory name to the file. */ 
     public String nextFilename();
     
+    /**
+     * The name, after {@link #nextFilename}, of the file that was in use before
+     * it; that is, the file that has just been rotated out.
+     */
+    public default String rotatedFilename(String previousFilename) {
+        return previousFilename;
+    }
+    
     /** Create a {@link Filename} if and only if it matches the pattern managed by this policy. */
     public Filename toFilename(String filename);
 }
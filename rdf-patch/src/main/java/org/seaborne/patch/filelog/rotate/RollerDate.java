@@ -40,7 +40,7 @@ class RollerDate implements Roller {
     private LocalDate current = LocalDate.now();
     
     /** Match a date-appended filename */ 
-    private static final Pattern patternFilenameDate = Pattern.compile("(.*)(-)(\\d{4}-\\d{2}-\\d{2})");
+    /*package*/ static final Pattern patternFilenameDate = Pattern.compile("(.*)(-)(\\d{4}-\\d{2}-\\d{2})");
     private static final String DATE_SEP = "-";
     private static final DateTimeFormatter fmtDate = DateTimeFormatter.ISO_LOCAL_DATE;
     private static final Comparator<Filename> cmpDate = (x,y)->{
@@ -39,7 +39,7 @@ class RollerIndex implements Roller {
     public static Comparator<Filename> cmpNumericModifier = FileMgr.cmpNumericModifier;
 
     
-    private final Pattern patternFilename = Pattern.compile("(.*)(-)(\\d)*");
+    /*package*/ static final Pattern patternFilename = Pattern.compile("(.*)(\\.)(\\d+)");
     private final String  fmtModifer = "%04d";
     private static final String INC_SEP = FileMgr.INC_SEP;
     
@@ -55,8 +55,9 @@ class RollerIndex implements Roller {
     
     private void init(Path directory, String baseFilename) {
         List<Filename> filenames = FileMgr.scan(directory, baseFilename, patternFilename);
+        filenames.removeIf(fn->!baseFilename.equals(fn.basename));
         if ( ! filenames.isEmpty() ) {
-            Filename max = Collections.max(filenames, cmpNumericModifier.reversed());
+            Filename max = Collections.max(filenames, cmpNumericModifier);
             currentId = Long.parseLong(max.modifier);
         }
         else
@@ -95,8 +96,14 @@ class RollerIndex implements Roller {
     public String nextFilename() {
         valid = true;
         long idx = nextIndex();
-        String fn = FileMgr.freshFilename(directory, baseFilename, (int)idx, INC_SEP, fmtModifer);
-        return fn; 
+        // Skip any files (maybe compressed) already present so the index is always increasing.
+        for ( ;; idx++ ) {
+            Path p = directory.resolve(FileMgr.basename(baseFilename, idx, INC_SEP, fmtModifer));
+            if ( ! FileMgr.existsMaybeCompressed(p) ) {
+                currentId = idx;
+                return p.toString();
+            }
+        }
     }
     
     @Override
@@ -74,6 +74,12 @@ class RollerShifter implements Roller {
         return filename; 
     }
     
+    @Override
+    public String rotatedFilename(String previousFilename) {
+        // Shifted from "base" to "base.001".
+        return directory.resolve(FileMgr.basename(baseFilename, 1, INC_SEP, "%03d")).toString();
+    }
+    
     @Override
     public Filename toFilename(String filename) {
         if ( filename.equals(baseFilename))
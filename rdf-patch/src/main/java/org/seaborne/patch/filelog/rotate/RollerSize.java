@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog.rotate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Roller where the files are "0001", "0002", "0003", as for {@link RollerIndex},
+ * and which also moves to the next file when the current file has reached a size.
+ * The size is checked at the start of a section so sections are not split across files.
+ */
+class RollerSize extends RollerIndex {
+    private final long maxSize;
+    private Path current = null;
+
+    RollerSize(Path directory, String baseFilename, String indexFormat, long maxSize) {
+        super(directory, baseFilename, indexFormat);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public boolean hasExpired() {
+        if ( super.hasExpired() )
+            return true;
+        if ( current == null )
+            return false;
+        try {
+            return Files.size(current) >= maxSize;
+        } catch (IOException ex) {
+            // Not there (deleted?) : move on.
+            return true;
+        }
+    }
+
+    @Override
+    public String nextFilename() {
+        String fn = super.nextFilename();
+        current = Paths.get(fn);
+        return fn;
+    }
+}
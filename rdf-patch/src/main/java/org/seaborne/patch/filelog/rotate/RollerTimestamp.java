@@ -44,7 +44,7 @@ class RollerTimestamp implements Roller {
     private String lastAllocatedFilename = null; 
     
     /** Match a datetime-appended filename, with non-capturing optional fractional seconds. */
-    private static final Pattern patternFilenameDateTime = Pattern.compile("(.*)(-)(\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}(?:\\.\\d+)?)");
+    /*package*/ static final Pattern patternFilenameDateTime = Pattern.compile("(.*)(-)(\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}(?:\\.\\d+)?)");
     private static final String DATETIME_SEP = "-";
     private static final DateTimeFormatter fmtDateTime = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
     private static final Comparator<Filename> cmpDateTime = (x,y)->{
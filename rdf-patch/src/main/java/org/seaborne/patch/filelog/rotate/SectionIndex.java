@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog.rotate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.logging.FmtLog;
+
+/**
+ * Sidecar index for one file written by a {@link ManagedOutput}: one line per
+ * section (usually a transaction) giving the sequence number, the byte offset and length
+ * in the file, the time the section was finished, and the patch id if there was one.
+ * <p>
+ * The index of "file" or "file.gz" is "file.idx". Offsets are in the uncompressed file.
+ * <p>
+ * The index is written after the data and it is not forced to storage; it is
+ * made consistent with the data file by {@link #recover}.
+ */
+public class SectionIndex {
+    /** File extension of an index file. */
+    public static final String INDEX_EXT = "idx";
+    private static final String INDEX_SUFFIX = "."+INDEX_EXT;
+    private static final String NO_ID = "-";
+
+    /** One section of a file. */
+    public static class Entry {
+        /** The data file, as found (it may be compressed). */
+        public final Path file;
+        /** Sequence number, across all files of the log. */
+        public final long seq;
+        public final long offset;
+        public final long length;
+        /** Time the section was finished, in milliseconds. */
+        public final long time;
+        /** Patch id, or null. */
+        public final String id;
+
+        public Entry(Path file, long seq, long offset, long length, long time, String id) {
+            this.file = file;
+            this.seq = seq;
+            this.offset = offset;
+            this.length = length;
+            this.time = time;
+            this.id = id;
+        }
+
+        /** Offset of the byte after this section. */
+        public long end() {
+            return offset+length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%d %s %d+%d %d %s]", seq, file.getFileName(), offset, length, time, id);
+        }
+    }
+
+    private final Path dataFile;
+    private final Path path;
+    private FileChannel channel = null;
+
+    /** Open the index of a data file for appending. */
+    /*package*/ SectionIndex(Path dataFile) {
+        this.dataFile = dataFile;
+        this.path = indexPath(dataFile);
+    }
+
+    /** Append an entry. This writes to the OS; it does not force the file to disk. */
+    /*package*/ void append(long seq, long offset, long length, long time, String id) {
+        String x = format(seq, offset, length, time, id);
+        ByteBuffer bb = ByteBuffer.wrap(x.getBytes(StandardCharsets.UTF_8));
+        try {
+            if ( channel == null )
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            while ( bb.hasRemaining() )
+                channel.write(bb);
+        } catch (IOException ex) {
+            FmtLog.warn(FileMgr.LOG, "Failed to write index %s : %s", path, ex.getMessage());
+        }
+    }
+
+    /*package*/ void close() {
+        if ( channel == null )
+            return;
+        try { channel.close(); }
+        catch (IOException ex) { IO.exception(ex); }
+        channel = null;
+    }
+
+    @Override
+    public String toString() {
+        return "SectionIndex["+dataFile.getFileName()+"]";
+    }
+
+    /** The index file for a data file, compressed or not. */
+    public static Path indexPath(Path dataFile) {
+        String fn = dataFile.getFileName().toString();
+        if ( fn.endsWith(FileMgr.COMPRESS_SUFFIX) )
+            fn = fn.substring(0, fn.length()-FileMgr.COMPRESS_SUFFIX.length());
+        return dataFile.resolveSibling(fn+INDEX_SUFFIX);
+    }
+
+    /** Whether the data file has an index. */
+    public static boolean hasIndex(Path dataFile) {
+        return Files.exists(indexPath(dataFile));
+    }
+
+    /** The entries for a data file, in order; the empty list if there is no index. */
+    public static List<Entry> read(Path dataFile) {
+        Path path = indexPath(dataFile);
+        if ( ! Files.exists(path) )
+            return Collections.emptyList();
+        List<Entry> entries = new ArrayList<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (IOException ex) { IO.exception(ex); return null; }
+        for ( String line : lines ) {
+            line = line.trim();
+            if ( line.isEmpty() )
+                continue;
+            String[] f = line.split(" ", 5);
+            try {
+                String id = ( f.length < 5 || f[4].equals(NO_ID) ) ? null : f[4];
+                entries.add(new Entry(dataFile, Long.parseLong(f[0]), Long.parseLong(f[1]), Long.parseLong(f[2]), Long.parseLong(f[3]), id));
+            } catch (RuntimeException ex) {
+                // Torn or damaged line.
+                FmtLog.warn(FileMgr.LOG, "Bad record in index %s : %s", path, line);
+            }
+        }
+        return entries;
+    }
+
+    /** The last entry for a data file, or null. */
+    public static Entry last(Path dataFile) {
+        List<Entry> entries = read(dataFile);
+        return entries.isEmpty() ? null : entries.get(entries.size()-1);
+    }
+
+    /**
+     * Make the index of an uncompressed data file consistent with the data after a crash.
+     * Entries for data that did not reach the file are removed, and any data at the end of the
+     * file that is not in the index (the index update was lost) becomes one entry.
+     * {@code prevSeq} is the sequence number before the first entry of this file.
+     * Does nothing if the file does not have an index.
+     * Returns the last sequence number of the file.
+     */
+    public static long recover(Path dataFile, long prevSeq) {
+        Path path = indexPath(dataFile);
+        if ( ! Files.exists(path) || ! Files.exists(dataFile) )
+            return prevSeq;
+        try {
+            long size = Files.size(dataFile);
+            List<Entry> entries = read(dataFile);
+            List<Entry> valid = new ArrayList<>(entries.size()+1);
+            long seq = prevSeq;
+            long end = 0;
+            for ( Entry e : entries ) {
+                if ( e.end() > size )
+                    break;
+                valid.add(e);
+                seq = e.seq;
+                end = e.end();
+            }
+            if ( end < size ) {
+                seq++;
+                valid.add(new Entry(dataFile, seq, end, size-end, Files.getLastModifiedTime(dataFile).toMillis(), null));
+            }
+            if ( valid.size() == entries.size() && end == size )
+                return seq;
+            FmtLog.warn(FileMgr.LOG, "Repair index %s (%d entries -> %d)", path, entries.size(), valid.size());
+            StringBuilder sb = new StringBuilder();
+            valid.forEach(e->sb.append(format(e.seq, e.offset, e.length, e.time, e.id)));
+            Path tmp = path.resolveSibling(path.getFileName().toString()+".tmp");
+            Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return seq;
+        } catch (IOException ex) { IO.exception(ex); return prevSeq; }
+    }
+
+    private static String format(long seq, long offset, long length, long time, String id) {
+        return String.format("%d %d %d %d %s\n", seq, offset, length, time, ( id == null ) ? NO_ID : id);
+    }
+}
@@ -18,108 +18,260 @@
 
 package org.seaborne.patch.system;
 
+import java.util.ArrayList ;
 import java.util.Iterator ;
+import java.util.List ;
 import java.util.Set ;
-import java.util.concurrent.ConcurrentHashMap ;
 
 import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.graph.Graph ;
 import org.apache.jena.graph.Node ;
+import org.apache.jena.query.ReadWrite ;
 import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.GraphView ;
 import org.apache.jena.sparql.core.Quad ;
 import org.seaborne.patch.RDFChanges ;
 
-// UNFINISHED
-
-/** A {@link DatasetGraph} implementation that buffers adds/deletes and prefix changes
- * then plays them to another {@link DatasetGraph} or to a {@link RDFChanges}. 
+/** A {@link DatasetGraph} implementation that buffers adds and deletes
+ * then plays them to another {@link DatasetGraph} and, optionally, to a {@link RDFChanges}. 
  * <p>
+ * In a write transaction, the changes are kept in the buffer and applied to the
+ * underlying dataset, inside its transaction, on commit; abort discards them.  
  * This has the capacity to add {@link DatasetGraph#abort} functionality to a {@link DatasetGraph} 
- * that does not provide it. 
+ * that does not provide it. Outside a transaction, call {@link #flush} to apply the changes.
+ * <p>
+ * The pending changes are indexed so {@code find} on this dataset stays selective.
+ * Whether a change has any real effect on the underlying dataset is checked in batches,
+ * not for each change, so the changes played are the minimal set.
+ * <p>
+ * The buffer belongs to the thread making the changes, as the write transaction does:
+ * reads on other threads go straight to the underlying dataset and do not see it.
+ * <p>
+ * Prefix changes are not buffered.
  */
 public class DatasetGraphBuffering extends AbstractDatasetGraphAddDelete {
     
-    // Structurally safe but not thread safe.
-    private Set<Quad> addQuads      = ConcurrentHashMap.newKeySet() ;
-    private Set<Quad> deleteQuads   = ConcurrentHashMap.newKeySet() ;
-    // Necessary to check to avoid duplicate suppression in find* 
-    private boolean checking = true ;
+    private static class Buffer {
+        // Disjoint: the last change of each quad.
+        final QuadSet addQuads      = new QuadSet() ;
+        final QuadSet deleteQuads   = new QuadSet() ;
+        // Adds not yet checked against the underlying dataset.
+        // Necessary to check to avoid duplicates in find* 
+        final List<Quad> unchecked  = new ArrayList<>() ;
+
+        boolean isEmpty() {
+            return addQuads.isEmpty() && deleteQuads.isEmpty() ;
+        }
+    }
+
+    // The buffer of the thread making changes, if any.
+    private final ThreadLocal<Buffer> buffer = new ThreadLocal<>() ;
+    private final RDFChanges changes ;
     
     public DatasetGraphBuffering(DatasetGraph dsg) { 
+        this(dsg, null) ;
+    }
+
+    /** Buffer changes; on flush, the real changes are sent to {@code changes} as well. */
+    public DatasetGraphBuffering(DatasetGraph dsg, RDFChanges changes) { 
         super(dsg) ;
+        this.changes = changes ;
+    }
+
+    private static Quad quad(Node g, Node s, Node p, Node o) {
+        if ( g == null || Quad.isDefaultGraph(g) )
+            g = Quad.defaultGraphIRI ;
+        return Quad.create(g, s, p, o) ;
+    }
+
+    // This thread's buffer, created if necessary.
+    private Buffer buffer() {
+        Buffer b = buffer.get() ;
+        if ( b == null ) {
+            b = new Buffer() ;
+            buffer.set(b) ;
+        }
+        return b ;
     }
 
     @Override
     protected void actionAdd(Node g, Node s, Node p, Node o) {
-        // add/delete (Quad) creates churn.
-        if ( checking && get().contains(g,s,p,o) )
-            return ;
-        Quad quad = Quad.create(g, s, p, o) ;
-        if ( addQuads.add(quad) ) 
-            deleteQuads.remove(quad) ;
+        Quad quad = quad(g, s, p, o) ;
+        Buffer b = buffer() ;
+        b.deleteQuads.remove(quad) ;
+        if ( b.addQuads.add(quad) )
+            b.unchecked.add(quad) ;
     }
 
     @Override
     protected void actionDelete(Node g, Node s, Node p, Node o) {
-        if ( checking && ! get().contains(g,s,p,o) )
+        Quad quad = quad(g, s, p, o) ;
+        Buffer b = buffer() ;
+        b.addQuads.remove(quad) ;
+        b.deleteQuads.add(quad) ;
+    }
+
+    /** Whether there are changes from this thread waiting to be applied. */
+    public boolean hasPending() {
+        Buffer b = buffer.get() ;
+        return b != null && ! b.isEmpty() ;
+    }
+
+    // Remove adds of quads that are already in the underlying dataset.
+    private void checkAdds(Buffer b) {
+        if ( b.unchecked.isEmpty() )
             return ;
-        Quad quad = Quad.create(g, s, p, o) ;
-        if ( deleteQuads.add(quad) )
-            addQuads.remove(quad) ;
+        b.unchecked.removeIf(q->!b.addQuads.contains(q)) ;
+        Set<Quad> present = QuadsExist.present(get(), b.unchecked) ;
+        present.forEach(b.addQuads::remove) ;
+        b.unchecked.clear() ;
     }
 
     @Override
     public Iterator<Quad> find(Node g, Node s, Node p, Node o) {
+        if ( g != null && g != Node.ANY && Quad.isDefaultGraph(g) )
+            g = Quad.defaultGraphIRI ;
         // Original, without deletes
-        Iterator<Quad> iter1 = Iter.filter(get().find(g, s, p, o), (q)->!deleteQuads.contains(q) ) ;
-        // plus adds (which do not contain deletes)
-        Iterator<Quad> iter2 = addQuads.stream().filter(q->Match.match(q, g, s, p, o)).iterator() ;
+        Iterator<Quad> iter1 = get().find(g, s, p, o) ;
+        Buffer b = buffer.get() ;
+        if ( b == null || b.isEmpty() )
+            return iter1 ;
+        checkAdds(b) ;
+        if ( ! b.deleteQuads.isEmpty() )
+            iter1 = Iter.filter(iter1, (q)->!b.deleteQuads.contains(quad(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject())) ) ;
+        if ( b.addQuads.isEmpty() )
+            return iter1 ;
+        // plus adds (which are not in the original)
+        Iterator<Quad> iter2 = b.addQuads.find(g, s, p, o) ;
         return Iter.concat(iter1,iter2);
     }
-    
-//    isEmpty()
-//    find()
-//    find(Quad)
-//    find(Node, Node, Node, Node)
-//    findNG(Node, Node, Node, Node)
-//    contains(Quad)
-//    contains(Node, Node, Node, Node)
-//    size()
-    
-    private void flushBuffering() {
-        for ( Quad q : deleteQuads )
-            get().delete(q);
-        for ( Quad q : addQuads )
-            get().add(q);
-        deleteQuads.clear();
-        addQuads.clear();
+
+    @Override
+    public Iterator<Quad> find() {
+        return find(Node.ANY, Node.ANY, Node.ANY, Node.ANY) ;
     }
 
-    // Transactions trigger flushBuffering()
-    
-    // If DatasetGraphWrapper
-//    @Override
-//    public void add(Quad quad)
-//    { get().add(quad) ; }
-//
-//    @Override
-//    public void delete(Quad quad)
-//    { get().delete(quad) ; }
-//
-//    @Override
-//    public void add(Node g, Node s, Node p, Node o)
-//    { get().add(g, s, p, o) ; }
-//
-//    @Override
-//    public void delete(Node g, Node s, Node p, Node o)
-//    { get().delete(g, s, p, o) ; }
-//    
-//    @Override
-//    public void deleteAny(Node g, Node s, Node p, Node o)
-//    { get().deleteAny(g, s, p, o) ; }
-//
-//    @Override
-//    public void clear()
-//    { get().clear() ; }
-    
+    @Override
+    public Iterator<Quad> find(Quad quad) {
+        return find(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject()) ;
+    }
+
+    @Override
+    public Iterator<Quad> findNG(Node g, Node s, Node p, Node o) {
+        Iterator<Quad> iter = find(g, s, p, o) ;
+        if ( g == null || g == Node.ANY )
+            iter = Iter.filter(iter, q->!q.isDefaultGraph()) ;
+        return iter ;
+    }
 
+    @Override
+    public boolean contains(Node g, Node s, Node p, Node o) {
+        return find(g, s, p, o).hasNext() ;
+    }
+
+    @Override
+    public boolean contains(Quad quad) {
+        return contains(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject()) ;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ! contains(Node.ANY, Node.ANY, Node.ANY, Node.ANY) ;
+    }
+
+    @Override
+    public Iterator<Node> listGraphNodes() {
+        Set<Node> nodes = Iter.toSet(Iter.distinct(Iter.map(findNG(Node.ANY, Node.ANY, Node.ANY, Node.ANY), Quad::getGraph))) ;
+        return nodes.iterator() ;
+    }
+
+    @Override
+    public boolean containsGraph(Node graphNode) {
+        if ( Quad.isDefaultGraph(graphNode) )
+            return true ;
+        return contains(graphNode, Node.ANY, Node.ANY, Node.ANY) ;
+    }
+
+    @Override
+    public Graph getGraph(Node graphNode)
+    { return GraphView.createNamedGraph(this, graphNode) ; }
+
+    /**
+     * Apply this thread's pending changes to the underlying dataset, deletes first.
+     * Only changes that have a real effect are applied (and sent to any {@link RDFChanges}).
+     * Inside a transaction, this happens on commit.
+     */
+    public void flush() {
+        if ( ! hasPending() )
+            return ;
+        Buffer b = buffer.get() ;
+        checkAdds(b) ;
+        List<Quad> deletes = new ArrayList<>(b.deleteQuads.quads()) ;
+        Set<Quad> present = QuadsExist.present(get(), deletes) ;
+        for ( Quad q : deletes ) {
+            if ( ! present.contains(q) )
+                continue ;
+            if ( changes != null )
+                changes.delete(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject()) ;
+            get().delete(q) ;
+        }
+        for ( Quad q : b.addQuads.quads() ) {
+            if ( changes != null )
+                changes.add(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject()) ;
+            get().add(q) ;
+        }
+        discard() ;
+    }
+
+    /** Drop this thread's pending changes. */
+    public void discard() {
+        buffer.remove() ;
+    }
+
+    // Transactions : commit triggers flush(); abort, or end of a write transaction without commit, discards.
+    // Changes made outside a transaction are kept over a read transaction.
+
+    @Override
+    public boolean supportsTransactionAbort() {
+        return true ;
+    }
+
+    @Override
+    public void commit() {
+        if ( super.transactionMode() == ReadWrite.WRITE && hasPending() ) {
+            if ( changes != null ) {
+                changes.txnBegin() ;
+                try {
+                    flush() ;
+                } catch (RuntimeException ex) {
+                    changes.txnAbort() ;
+                    discard() ;
+                    super.abort() ;
+                    throw ex ;
+                }
+                changes.txnCommit() ;
+            } else
+                flush() ;
+        }
+        super.commit() ;
+    }
+
+    @Override
+    public void abort() {
+        if ( isWriteTxn() )
+            discard() ;
+        super.abort() ;
+    }
+
+    @Override
+    public void end() {
+        // After a commit or abort, the transaction has finished.
+        if ( isWriteTxn() )
+            discard() ;
+        super.end() ;
+    }
+
+    private boolean isWriteTxn() {
+        return super.isInTransaction() && super.transactionMode() == ReadWrite.WRITE ;
+    }
 }
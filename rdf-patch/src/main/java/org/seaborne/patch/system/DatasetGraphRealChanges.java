@@ -18,23 +18,61 @@
 
 package org.seaborne.patch.system;
 
+import java.util.*;
+
+import org.apache.jena.graph.Graph ;
 import org.apache.jena.graph.Node ;
+import org.apache.jena.query.ReadWrite ;
 import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.GraphView ;
+import org.apache.jena.sparql.core.Quad ;
 import org.seaborne.patch.RDFChanges ;
 
-// UNFINISHED
-
+/**
+ * Pass on only the adds and deletes that have a real effect: adding a quad
+ * that is already present, or deleting one that is not, is dropped. 
+ * <p>
+ * By default, each change is checked as it happens. With a batch size, changes are
+ * collected into a window of that many changes, existence is resolved for the whole window
+ * at once (see {@link QuadsExist}) and the real changes are then passed on in their
+ * original order. The window is also flushed before any read and on commit, and discarded
+ * when a write transaction does not commit.
+ * <p>
+ * The window belongs to the thread making the changes: reads on other threads
+ * do not see it and do not flush it.
+ */
 // ?? Prefixes.
 public class DatasetGraphRealChanges extends AbstractDatasetGraphAddDelete {
     /** With checking, the {@link RDFChanges} becomes reversible */ 
     protected final boolean checking = true ; 
 
+    // Batched mode: the window of changes, in order, true for add.
+    private static class Window {
+        final List<Quad> quads = new ArrayList<>() ;
+        final List<Boolean> isAdd = new ArrayList<>() ;
+    }
+
+    private final int batchSize ;
+    // Batched mode: the window of the thread making changes, if any.
+    private final ThreadLocal<Window> window ;
+
     public DatasetGraphRealChanges(DatasetGraph dsg) { 
+        this(dsg, 1) ; 
+    }
+
+    /** Check changes in batches of {@code batchSize}; 1 means check each change as it happens. */
+    public DatasetGraphRealChanges(DatasetGraph dsg, int batchSize) { 
         super(dsg) ; 
+        this.batchSize = Math.max(1, batchSize) ;
+        this.window = ( this.batchSize > 1 ) ? new ThreadLocal<>() : null ;
     }
 
     @Override
     protected void actionAdd(Node g, Node s, Node p, Node o) {
+        if ( window != null ) {
+            buffer(true, g, s, p, o) ;
+            return ;
+        }
         if ( checking && get().contains(g, s, p, o) )
             return ;
         get().add(g, s, p, o); 
@@ -42,8 +80,133 @@ public class DatasetGraphRealChanges extends AbstractDatasetGraphAddDelete {
 
     @Override
     protected void actionDelete(Node g, Node s, Node p, Node o) {
+        if ( window != null ) {
+            buffer(false, g, s, p, o) ;
+            return ;
+        }
         if ( checking && ! get().contains(g, s, p, o) )
             return ;
         get().delete(g, s, p, o); 
     }
+
+    private void buffer(boolean isAdd, Node g, Node s, Node p, Node o) {
+        if ( g == null || Quad.isDefaultGraph(g) )
+            g = Quad.defaultGraphIRI ;
+        Window w = window.get() ;
+        if ( w == null ) {
+            w = new Window() ;
+            window.set(w) ;
+        }
+        w.quads.add(Quad.create(g, s, p, o)) ;
+        w.isAdd.add(isAdd) ;
+        if ( w.quads.size() >= batchSize )
+            flush() ;
+    }
+
+    /** Batched mode: resolve this thread's window and pass on the real changes. */
+    public void flush() {
+        if ( window == null )
+            return ;
+        Window w = window.get() ;
+        if ( w == null || w.quads.isEmpty() )
+            return ;
+        // State of each quad as the window is played, starting from the dataset.
+        Map<Quad, Boolean> state = new HashMap<>() ;
+        for ( Quad q : QuadsExist.present(get(), new HashSet<>(w.quads)) )
+            state.put(q, Boolean.TRUE) ;
+        for ( int i = 0 ; i < w.quads.size() ; i++ ) {
+            Quad q = w.quads.get(i) ;
+            boolean exists = state.getOrDefault(q, Boolean.FALSE) ;
+            if ( w.isAdd.get(i) ) {
+                if ( exists )
+                    continue ;
+                get().add(q) ;
+                state.put(q, Boolean.TRUE) ;
+            } else {
+                if ( ! exists )
+                    continue ;
+                get().delete(q) ;
+                state.put(q, Boolean.FALSE) ;
+            }
+        }
+        w.quads.clear() ;
+        w.isAdd.clear() ;
+    }
+
+    private void discard() {
+        if ( window == null )
+            return ;
+        window.remove() ;
+    }
+
+    // Batched mode: reads see the changes.
+
+    @Override
+    public Iterator<Quad> find()
+    { flush() ; return super.find() ; }
+
+    @Override
+    public Iterator<Quad> find(Quad quad)
+    { flush() ; return super.find(quad) ; }
+
+    @Override
+    public Iterator<Quad> find(Node g, Node s, Node p, Node o)
+    { flush() ; return super.find(g, s, p, o) ; }
+
+    @Override
+    public Iterator<Quad> findNG(Node g, Node s, Node p, Node o)
+    { flush() ; return super.findNG(g, s, p, o) ; }
+
+    @Override
+    public boolean contains(Quad quad)
+    { flush() ; return super.contains(quad) ; }
+
+    @Override
+    public boolean contains(Node g, Node s, Node p, Node o)
+    { flush() ; return super.contains(g, s, p, o) ; }
+
+    @Override
+    public boolean isEmpty()
+    { flush() ; return super.isEmpty() ; }
+
+    @Override
+    public long size()
+    { flush() ; return super.size() ; }
+
+    @Override
+    public Iterator<Node> listGraphNodes()
+    { flush() ; return super.listGraphNodes() ; }
+
+    @Override
+    public boolean containsGraph(Node graphNode)
+    { flush() ; return super.containsGraph(graphNode) ; }
+
+    @Override
+    public Graph getGraph(Node graphNode)
+    { return GraphView.createNamedGraph(this, graphNode) ; }
+
+    @Override
+    public void commit() {
+        flush() ;
+        super.commit() ;
+    }
+
+    @Override
+    public void abort() {
+        if ( isWriteTxn() )
+            discard() ;
+        super.abort() ;
+    }
+
+    @Override
+    public void end() {
+        // After a commit or abort, the transaction has finished.
+        if ( isWriteTxn() )
+            discard() ;
+        super.end() ;
+    }
+
+    private boolean isWriteTxn() {
+        return super.isInTransaction() && super.transactionMode() == ReadWrite.WRITE ;
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.patch.system;
+
+import java.util.function.Predicate;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb.store.DatasetGraphTDB;
+import org.apache.jena.tdb.store.NodeId;
+import org.apache.jena.tdb.sys.TDBInternal;
+
+/** Node table lookups for TDB1 datasets, used by {@link QuadsExist}. */
+class NodeTableTDB1 {
+    /**
+     * Return a test of whether a node is in the node table of the dataset,
+     * or null if the dataset is not TDB1.
+     */
+    static Predicate<Node> nodeExists(DatasetGraph dsg) {
+        if ( ! TDBInternal.isTDB1(dsg) )
+            return null;
+        DatasetGraphTDB dsgtdb = TDBInternal.getDatasetGraphTDB(dsg);
+        return n -> ! NodeId.isDoesNotExist(TDBInternal.getNodeId(dsgtdb, n));
+    }
+}
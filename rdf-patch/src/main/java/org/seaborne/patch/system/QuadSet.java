@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.system;
+
+import java.util.Collections ;
+import java.util.Iterator ;
+import java.util.Map ;
+import java.util.Set ;
+import java.util.concurrent.ConcurrentHashMap ;
+import java.util.function.Function ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.sparql.core.Quad ;
+
+/**
+ * A set of quads with an index on each of graph, subject, predicate and object so that
+ * {@link #find} looks at the quads for the most selective bound slot, not all the quads.
+ * <p>
+ * Structurally safe but not thread safe.
+ */
+class QuadSet {
+    private final Set<Quad> quads = ConcurrentHashMap.newKeySet() ;
+    private final Map<Node, Set<Quad>> byGraph      = new ConcurrentHashMap<>() ;
+    private final Map<Node, Set<Quad>> bySubject    = new ConcurrentHashMap<>() ;
+    private final Map<Node, Set<Quad>> byPredicate  = new ConcurrentHashMap<>() ;
+    private final Map<Node, Set<Quad>> byObject     = new ConcurrentHashMap<>() ;
+
+    /** Add a quad; return true if it was not already in the set. */
+    boolean add(Quad quad) {
+        if ( ! quads.add(quad) )
+            return false ;
+        index(byGraph, quad.getGraph(), quad) ;
+        index(bySubject, quad.getSubject(), quad) ;
+        index(byPredicate, quad.getPredicate(), quad) ;
+        index(byObject, quad.getObject(), quad) ;
+        return true ;
+    }
+
+    /** Remove a quad; return true if it was in the set. */
+    boolean remove(Quad quad) {
+        if ( ! quads.remove(quad) )
+            return false ;
+        unindex(byGraph, quad.getGraph(), quad) ;
+        unindex(bySubject, quad.getSubject(), quad) ;
+        unindex(byPredicate, quad.getPredicate(), quad) ;
+        unindex(byObject, quad.getObject(), quad) ;
+        return true ;
+    }
+
+    boolean contains(Quad quad) {
+        return quads.contains(quad) ;
+    }
+
+    boolean isEmpty() {
+        return quads.isEmpty() ;
+    }
+
+    int size() {
+        return quads.size() ;
+    }
+
+    /** All the quads. */
+    Set<Quad> quads() {
+        return Collections.unmodifiableSet(quads) ;
+    }
+
+    /** The graph names used. */
+    Iterator<Node> graphNodes() {
+        return byGraph.keySet().iterator() ;
+    }
+
+    void clear() {
+        quads.clear() ;
+        byGraph.clear() ;
+        bySubject.clear() ;
+        byPredicate.clear() ;
+        byObject.clear() ;
+    }
+
+    /** Find, with {@code null} or {@link Node#ANY} as a wildcard. */
+    Iterator<Quad> find(Node g, Node s, Node p, Node o) {
+        Set<Quad> candidates = quads ;
+        candidates = smaller(candidates, byGraph, g) ;
+        candidates = smaller(candidates, bySubject, s) ;
+        candidates = smaller(candidates, byPredicate, p) ;
+        candidates = smaller(candidates, byObject, o) ;
+        if ( candidates.isEmpty() )
+            return Iter.nullIterator() ;
+        return Iter.filter(candidates.iterator(), q->Match.match(q, g, s, p, o)) ;
+    }
+
+    private static Set<Quad> smaller(Set<Quad> current, Map<Node, Set<Quad>> index, Node n) {
+        if ( ! isConcrete(n) )
+            return current ;
+        Set<Quad> x = index.get(n) ;
+        if ( x == null )
+            return Collections.emptySet() ;
+        return ( x.size() < current.size() ) ? x : current ;
+    }
+
+    private static boolean isConcrete(Node n) {
+        return n != null && n != Node.ANY ;
+    }
+
+    private static final Function<Node, Set<Quad>> newSet = (n)->ConcurrentHashMap.newKeySet() ;
+
+    private static void index(Map<Node, Set<Quad>> index, Node n, Quad quad) {
+        index.computeIfAbsent(n, newSet).add(quad) ;
+    }
+
+    private static void unindex(Map<Node, Set<Quad>> index, Node n, Quad quad) {
+        Set<Quad> x = index.get(n) ;
+        if ( x == null )
+            return ;
+        x.remove(quad) ;
+        if ( x.isEmpty() )
+            index.remove(n) ;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.system;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphWrapper;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.util.NodeUtils;
+
+/**
+ * Test which of a collection of quads are in a {@link DatasetGraph}.
+ * <p>
+ * The quads are grouped by graph and subject and the groups are probed in sorted order,
+ * so successive probes are close together in the indexes. A group with enough quads
+ * is checked with one {@code find}, reading at most {@link #ScanFactor} quads of the
+ * dataset for each quad of the group so a subject with many triples is not scanned;
+ * any quads of the group not found by then, and the quads of smaller groups, are
+ * checked with {@code contains}.
+ * <p>
+ * If the dataset is TDB1 or TDB2, a quad with a node that is not in the node table
+ * can not be in the dataset; such quads are not probed at all.
+ */
+class QuadsExist {
+    /** Number of quads with the same graph and subject to check with one {@code find}. */
+    static final int BatchThreshold = 4;
+    /** Limit on the quads read by the {@code find} for a group, as a multiple of the group size. */
+    static final int ScanFactor = 8;
+
+    private static Comparator<Pair<Node, Node>> cmpGraphSubject = (x, y) -> {
+        int z = NodeUtils.compareRDFTerms(x.getLeft(), y.getLeft());
+        if ( z != 0 )
+            return z;
+        return NodeUtils.compareRDFTerms(x.getRight(), y.getRight());
+    };
+
+    /** Return the quads that are in the dataset. */
+    static Set<Quad> present(DatasetGraph dsg, Collection<Quad> quads) {
+        Set<Quad> result = new HashSet<>();
+        if ( quads.isEmpty() )
+            return result;
+        Predicate<Node> nodeExists = nodeTable(dsg);
+        Map<Pair<Node, Node>, Set<Quad>> groups = new TreeMap<>(cmpGraphSubject);
+        for ( Quad q : quads ) {
+            if ( nodeExists != null && ! nodesExist(nodeExists, q) )
+                continue;
+            groups.computeIfAbsent(Pair.create(q.getGraph(), q.getSubject()), k->new HashSet<>()).add(q);
+        }
+        groups.forEach((key, group) -> {
+            if ( group.size() < BatchThreshold ) {
+                for ( Quad q : group ) {
+                    if ( dsg.contains(q) )
+                        result.add(q);
+                }
+                return;
+            }
+            Set<Quad> notFound = new HashSet<>(group);
+            long limit = (long)ScanFactor * group.size();
+            Iterator<Quad> iter = dsg.find(key.getLeft(), key.getRight(), Node.ANY, Node.ANY);
+            try {
+                for ( long read = 0 ; read < limit && ! notFound.isEmpty() && iter.hasNext() ; read++ ) {
+                    Quad q = iter.next();
+                    if ( Quad.isDefaultGraph(q.getGraph()) && ! q.getGraph().equals(key.getLeft()) )
+                        q = Quad.create(key.getLeft(), q.asTriple());
+                    if ( notFound.remove(q) )
+                        result.add(q);
+                }
+                // Scan ended early: the rest is checked quad by quad.
+                if ( ! notFound.isEmpty() && iter.hasNext() ) {
+                    for ( Quad q : notFound ) {
+                        if ( dsg.contains(q) )
+                            result.add(q);
+                    }
+                }
+            } finally { Iter.close(iter); }
+        });
+        return result;
+    }
+
+    private static boolean nodesExist(Predicate<Node> nodeExists, Quad q) {
+        try {
+            // The default graph is not a node in the node table.
+            if ( ! q.isDefaultGraph() && ! nodeExists.test(q.getGraph()) )
+                return false;
+            return nodeExists.test(q.getSubject()) && nodeExists.test(q.getPredicate()) && nodeExists.test(q.getObject());
+        } catch (RuntimeException ex) {
+            // Can't tell : probe the dataset.
+            return true;
+        }
+    }
+
+    /** Node table test for TDB datasets, or null. */
+    private static Predicate<Node> nodeTable(DatasetGraph dsg) {
+        DatasetGraph base = dsg;
+        try {
+            for ( ;; ) {
+                Predicate<Node> nodeExists = NodeTableTDB1.nodeExists(base);
+                if ( nodeExists == null )
+                    nodeExists = NodeTableTDB2.nodeExists(base);
+                if ( nodeExists != null )
+                    return nodeExists;
+                if ( ! ( base instanceof DatasetGraphWrapper ) )
+                    return null;
+                base = ((DatasetGraphWrapper)base).getWrapped();
+            }
+        } catch (RuntimeException ex) {
+            // Not usable (e.g. no transaction) : probe the dataset.
+            return null;
+        }
+    }
+}
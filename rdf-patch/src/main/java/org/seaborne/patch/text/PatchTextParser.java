@@ -0,0 +1,672 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.system.RiotLib;
+import org.seaborne.patch.PatchException;
+import org.seaborne.patch.RDFChanges;
+
+/**
+ * Parser for RDF Patch text working directly on the bytes of the input.
+ * <p>
+ * The patch grammar is a small subset of the Turtle tokens: a row is a code, then
+ * terms as IRIs, {@code <_:label>} or {@code _:label} blank nodes, literals, numbers
+ * and booleans, ending in a DOT. UTF-8 is decoded only for the parts that become
+ * strings, and IRIs and blank nodes are looked up, by their bytes, in a cache
+ * so repeated terms do not create new {@link Node}s.
+ *
+ * @see RDFPatchReaderText
+ */
+class PatchTextParser {
+    // Row codes.
+    static final int CODE_HEADER     = 1;
+    static final int CODE_ADD        = 2;
+    static final int CODE_DEL        = 3;
+    static final int CODE_PREFIX_ADD = 4;
+    static final int CODE_PREFIX_DEL = 5;
+    static final int CODE_TXN_BEGIN  = 6;
+    static final int CODE_TXN_COMMIT = 7;
+    static final int CODE_TXN_ABORT  = 8;
+    static final int CODE_SEGMENT    = 9;
+
+    private static final int EOF = -1;
+    private static final int BUFFER_SIZE = 64*1024;
+
+    private final InputStream input;
+    private byte[] buf;
+    // Start of the current token; bytes before this can be discarded.
+    private int start = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private long line = 1;
+
+    private final NodeCache cache = new NodeCache(1024);
+    private final Map<String, RDFDatatype> datatypes = new HashMap<>();
+    private Node lastDtNode = null;
+    private RDFDatatype lastDt = null;
+
+    PatchTextParser(InputStream input) {
+        this(input, BUFFER_SIZE);
+    }
+
+    /** Parser with an initial buffer size; the buffer grows if a token does not fit. */
+    PatchTextParser(InputStream input, int bufferSize) {
+        this.input = input;
+        this.buf = new byte[Math.max(bufferSize, 16)];
+    }
+
+    /** Parse and send one row. Return false at the end of the input. */
+    boolean row(RDFChanges sink) {
+        int code = code();
+        switch (code) {
+            case EOF :
+                return false;
+            case CODE_HEADER :
+                headerLine(sink::header);
+                return true;
+            case CODE_ADD : {
+                Node s = term();
+                Node p = term();
+                Node o = term();
+                Node g = termMaybe();
+                dot();
+                sink.add(g, s, p, o);
+                return true;
+            }
+            case CODE_DEL : {
+                Node s = term();
+                Node p = term();
+                Node o = term();
+                Node g = termMaybe();
+                dot();
+                sink.delete(g, s, p, o);
+                return true;
+            }
+            case CODE_PREFIX_ADD : {
+                String prefix = string("Prefix is not a string");
+                String uriStr;
+                skipWhitespace();
+                if ( at(0) == '<' )
+                    uriStr = iriString();
+                else
+                    uriStr = string("Prefix error: URI slot is not a URI nor a string");
+                Node gn = termMaybe();
+                dot();
+                sink.addPrefix(gn, prefix, uriStr);
+                return true;
+            }
+            case CODE_PREFIX_DEL : {
+                String prefix = string("Prefix is not a string");
+                Node gn = termMaybe();
+                dot();
+                sink.deletePrefix(gn, prefix);
+                return true;
+            }
+            case CODE_TXN_BEGIN :
+                dot();
+                sink.txnBegin();
+                return true;
+            case CODE_TXN_COMMIT :
+                dot();
+                sink.txnCommit();
+                return true;
+            case CODE_TXN_ABORT :
+                dot();
+                sink.txnAbort();
+                return true;
+            case CODE_SEGMENT :
+                dot();
+                sink.segment();
+                return true;
+            default :
+                throw exception("Code not recognized");
+        }
+    }
+
+    /** Parse header rows, stopping before the first row that is not a header. */
+    void header(BiConsumer<String, Node> action) {
+        for (;;) {
+            skipWhitespace();
+            if ( at(0) != 'H' || ! isWordEnd(at(1)) )
+                return;
+            code();
+            headerLine(action);
+        }
+    }
+
+    /** After an error : skip to the start of the next line. */
+    void skipLine() {
+        for (;;) {
+            int c = at(0);
+            if ( c == EOF )
+                return;
+            start++;
+            if ( c == '\n' ) {
+                line++;
+                return;
+            }
+        }
+    }
+
+    private void headerLine(BiConsumer<String, Node> action) {
+        skipWhitespace();
+        int c = at(0);
+        String field;
+        if ( c == '"' || c == '\'' )
+            field = stringLiteral();
+        else if ( isWordStart(c) )
+            field = word();
+        else
+            throw exception("Header does not have a key that is a word");
+        Node v = term();
+        dot();
+        action.accept(field, v);
+    }
+
+    // ---- Tokens
+
+    /** Read the row code, or return EOF. */
+    private int code() {
+        skipWhitespace();
+        int c0 = at(0);
+        if ( c0 == EOF )
+            return EOF;
+        if ( c0 == '.' )
+            throw exception("Empty line");
+        if ( ! isWordStart(c0) )
+            throw exception("Expected keyword at start of patch record");
+        int c1 = at(1);
+        int code = -2;
+        int len = 1;
+        if ( isWordEnd(c1) ) {
+            switch (c0) {
+                case 'H' : code = CODE_HEADER; break;
+                case 'A' : code = CODE_ADD; break;
+                case 'D' : code = CODE_DEL; break;
+                case 'Z' : code = CODE_SEGMENT; break;
+            }
+        } else if ( isWordEnd(at(2)) ) {
+            len = 2;
+            if ( c0 == 'P' && c1 == 'A' )
+                code = CODE_PREFIX_ADD;
+            else if ( c0 == 'P' && c1 == 'D' )
+                code = CODE_PREFIX_DEL;
+            else if ( c0 == 'T' && ( c1 == 'X' || c1 == 'B' ) )
+                code = CODE_TXN_BEGIN;
+            else if ( c0 == 'T' && c1 == 'C' )
+                code = CODE_TXN_COMMIT;
+            else if ( c0 == 'T' && c1 == 'A' )
+                code = CODE_TXN_ABORT;
+        }
+        if ( code < 0 )
+            throw exception("Code '"+word()+"' not recognized");
+        start += len;
+        return code;
+    }
+
+    /** A required term. */
+    private Node term() {
+        skipWhitespace();
+        int c = at(0);
+        if ( c == '.' && ! isDigit(at(1)) )
+            throw exception("Input truncated by DOT: line too short");
+        return node(c);
+    }
+
+    /** An optional term before the DOT. */
+    private Node termMaybe() {
+        skipWhitespace();
+        int c = at(0);
+        if ( c == '.' && ! isDigit(at(1)) )
+            return null;
+        return node(c);
+    }
+
+    private void dot() {
+        skipWhitespace();
+        int c = at(0);
+        if ( c == EOF )
+            throw exception("Input truncated: no DOT seen on last line");
+        if ( c != '.' )
+            throw exception("Expected DOT");
+        start++;
+    }
+
+    private Node node(int c) {
+        switch (c) {
+            case EOF :
+                throw exception("Input truncated: no DOT seen on last line");
+            case '<' :
+                return iri();
+            case '_' :
+                if ( at(1) == ':' )
+                    return bnode();
+                break;
+            case '"' : case '\'' :
+                return literal();
+            case '?' : {
+                start++;
+                return NodeFactory.createVariable(word());
+            }
+            case '+' : case '-' : case '.' :
+            case '0' : case '1' : case '2' : case '3' : case '4' :
+            case '5' : case '6' : case '7' : case '8' : case '9' :
+                return number();
+        }
+        if ( isWordStart(c) ) {
+            String w = word();
+            if ( w.equals("true") || w.equals("false") )
+                return NodeFactory.createLiteral(w, XSDDatatype.XSDboolean);
+            throw exception("Expect a Node, got '"+w+"'");
+        }
+        throw exception("Expect a Node, got '"+(char)c+"'");
+    }
+
+    /** {@code <...>} : IRI or {@code <_:label>} */
+    private Node iri() {
+        int len = iriLength();
+        Node n = cache.get(buf, start, len);
+        if ( n == null ) {
+            String s = decodeIRI(len);
+            n = RiotLib.createIRIorBNode(s);
+            cache.put(buf, start, len, n);
+        }
+        start += len;
+        return n;
+    }
+
+    private String iriString() {
+        int len = iriLength();
+        String s = decodeIRI(len);
+        start += len;
+        return s;
+    }
+
+    /** Length of {@code <...>} including the angle brackets. */
+    private int iriLength() {
+        for ( int i = 1 ; ; i++ ) {
+            int c = at(i);
+            if ( c == '>' )
+                return i+1;
+            if ( c == EOF || c == '\n' || c == ' ' || c == '<' )
+                throw exception("Bad IRI");
+        }
+    }
+
+    private String decodeIRI(int len) {
+        boolean escapes = false;
+        for ( int i = start+1 ; i < start+len-1 ; i++ ) {
+            if ( buf[i] == '\\' ) {
+                escapes = true;
+                break;
+            }
+        }
+        if ( ! escapes )
+            return new String(buf, start+1, len-2, StandardCharsets.UTF_8);
+        return unescape(start+1, len-2);
+    }
+
+    /** {@code _:label} */
+    private Node bnode() {
+        int len = 2;
+        while ( isLabelChar(at(len)) )
+            len++;
+        // Trailing DOTs are not part of the label.
+        while ( len > 2 && buf[start+len-1] == '.' )
+            len--;
+        if ( len == 2 )
+            throw exception("Blank node label missing");
+        Node n = cache.get(buf, start, len);
+        if ( n == null ) {
+            n = NodeFactory.createBlankNode(new String(buf, start+2, len-2, StandardCharsets.UTF_8));
+            cache.put(buf, start, len, n);
+        }
+        start += len;
+        return n;
+    }
+
+    private Node literal() {
+        String lex = stringLiteral();
+        int c = at(0);
+        if ( c == '@' ) {
+            int len = 1;
+            while ( isLangChar(at(len)) )
+                len++;
+            if ( len == 1 )
+                throw exception("Bad language tag");
+            String lang = new String(buf, start+1, len-1, StandardCharsets.US_ASCII);
+            start += len;
+            return NodeFactory.createLiteral(lex, lang);
+        }
+        if ( c == '^' ) {
+            if ( at(1) != '^' || at(2) != '<' )
+                throw exception("Bad datatype");
+            start += 2;
+            Node dt = iri();
+            return NodeFactory.createLiteral(lex, datatype(dt));
+        }
+        return NodeFactory.createLiteral(lex);
+    }
+
+    private RDFDatatype datatype(Node dtNode) {
+        // Cached IRI nodes are usually the same object.
+        if ( dtNode == lastDtNode )
+            return lastDt;
+        RDFDatatype dt = datatypes.computeIfAbsent(dtNode.getURI(), NodeFactory::getType);
+        lastDtNode = dtNode;
+        lastDt = dt;
+        return dt;
+    }
+
+    /** A string, including long strings, as its unescaped lexical form. */
+    private String stringLiteral() {
+        int quote = at(0);
+        boolean longString = ( at(1) == quote && at(2) == quote );
+        int begin = longString ? 3 : 1;
+        boolean escapes = false;
+        boolean ascii = true;
+        int i = begin;
+        for ( ;; i++ ) {
+            int c = at(i);
+            if ( c == EOF )
+                throw exception("Unterminated string");
+            if ( c == '\\' ) {
+                escapes = true;
+                i++;
+                if ( at(i) == EOF )
+                    throw exception("Unterminated string");
+                continue;
+            }
+            if ( c >= 0x80 )
+                ascii = false;
+            if ( c == '\n' ) {
+                if ( ! longString )
+                    throw exception("Newline in string");
+                line++;
+            }
+            if ( c == quote ) {
+                if ( ! longString )
+                    break;
+                if ( at(i+1) == quote && at(i+2) == quote ) {
+                    // Quotes at the end of the string are part of it ("""a"""" is 'a"').
+                    while ( at(i+3) == quote )
+                        i++;
+                    break;
+                }
+            }
+        }
+        int len = i-begin;
+        String s;
+        if ( escapes )
+            s = unescape(start+begin, len);
+        else if ( ascii )
+            s = new String(buf, start+begin, len, StandardCharsets.ISO_8859_1);
+        else
+            s = new String(buf, start+begin, len, StandardCharsets.UTF_8);
+        start += i + (longString ? 3 : 1);
+        return s;
+    }
+
+    private String string(String msg) {
+        skipWhitespace();
+        int c = at(0);
+        if ( c != '"' && c != '\'' )
+            throw exception(msg);
+        return stringLiteral();
+    }
+
+    private Node number() {
+        int i = 0;
+        int c = at(0);
+        if ( c == '+' || c == '-' )
+            i++;
+        int digits = 0;
+        while ( isDigit(at(i)) ) { i++; digits++; }
+        XSDDatatype dt = XSDDatatype.XSDinteger;
+        if ( at(i) == '.' && ( isDigit(at(i+1)) || ( digits > 0 && isExponent(at(i+1)) ) ) ) {
+            i++;
+            dt = XSDDatatype.XSDdecimal;
+            while ( isDigit(at(i)) ) { i++; digits++; }
+        }
+        if ( digits == 0 )
+            throw exception("Bad number");
+        if ( isExponent(at(i)) ) {
+            i++;
+            if ( at(i) == '+' || at(i) == '-' )
+                i++;
+            if ( ! isDigit(at(i)) )
+                throw exception("Bad number: exponent");
+            while ( isDigit(at(i)) )
+                i++;
+            dt = XSDDatatype.XSDdouble;
+        }
+        String lex = new String(buf, start, i, StandardCharsets.US_ASCII);
+        start += i;
+        return NodeFactory.createLiteral(lex, dt);
+    }
+
+    private String word() {
+        int len = 0;
+        while ( isWordChar(at(len)) )
+            len++;
+        String s = new String(buf, start, len, StandardCharsets.UTF_8);
+        start += len;
+        return s;
+    }
+
+    private void skipWhitespace() {
+        for (;;) {
+            int c = at(0);
+            switch (c) {
+                case '\n' :
+                    line++;
+                    start++;
+                    continue;
+                case ' ' : case '\t' : case '\r' :
+                    start++;
+                    continue;
+                case '#' :
+                    while ( (c = at(0)) != EOF && c != '\n' )
+                        start++;
+                    continue;
+                default :
+                    return;
+            }
+        }
+    }
+
+    /** Unescape string escapes and unicode escapes; the bytes are UTF-8. */
+    private String unescape(int begin, int len) {
+        String s = new String(buf, begin, len, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder(s.length());
+        for ( int i = 0 ; i < s.length() ; i++ ) {
+            char ch = s.charAt(i);
+            if ( ch != '\\' ) {
+                sb.append(ch);
+                continue;
+            }
+            if ( i+1 >= s.length() )
+                throw exception("Bad escape");
+            char ch2 = s.charAt(++i);
+            switch (ch2) {
+                case 'n' : sb.append('\n'); break;
+                case 't' : sb.append('\t'); break;
+                case 'r' : sb.append('\r'); break;
+                case 'b' : sb.append('\b'); break;
+                case 'f' : sb.append('\f'); break;
+                case '"' : sb.append('"'); break;
+                case '\'' : sb.append('\''); break;
+                case '\\' : sb.append('\\'); break;
+                case 'u' :
+                    sb.appendCodePoint(hex(s, i+1, 4));
+                    i += 4;
+                    break;
+                case 'U' :
+                    sb.appendCodePoint(hex(s, i+1, 8));
+                    i += 8;
+                    break;
+                default :
+                    throw exception("Bad escape: \\"+ch2);
+            }
+        }
+        return sb.toString();
+    }
+
+    private int hex(String s, int idx, int len) {
+        if ( idx+len > s.length() )
+            throw exception("Bad \\u escape");
+        try {
+            return Integer.parseInt(s.substring(idx, idx+len), 16);
+        } catch (NumberFormatException ex) {
+            throw exception("Bad \\u escape");
+        }
+    }
+
+    // ---- Bytes
+
+    /** The byte at offset {@code off} from the token start, or EOF. */
+    private int at(int off) {
+        for (;;) {
+            int i = start+off;
+            if ( i < limit )
+                return buf[i] & 0xFF;
+            if ( ! fill() )
+                return EOF;
+        }
+    }
+
+    /** Read more input, keeping the current token. */
+    private boolean fill() {
+        if ( eof )
+            return false;
+        if ( start > 0 ) {
+            System.arraycopy(buf, start, buf, 0, limit-start);
+            limit -= start;
+            start = 0;
+        }
+        if ( limit == buf.length )
+            buf = Arrays.copyOf(buf, 2*buf.length);
+        try {
+            int n = input.read(buf, limit, buf.length-limit);
+            if ( n < 0 ) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+            return true;
+        } catch (IOException ex) { IO.exception(ex); return false; }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isExponent(int c) {
+        return c == 'e' || c == 'E';
+    }
+
+    private static boolean isWordStart(int c) {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' );
+    }
+
+    private static boolean isWordChar(int c) {
+        return isWordStart(c) || isDigit(c) || c == '_' || c == '-' || c >= 0x80;
+    }
+
+    private static boolean isWordEnd(int c) {
+        return ! isWordChar(c) && c != ':';
+    }
+
+    private static boolean isLabelChar(int c) {
+        return isWordChar(c) || c == '.';
+    }
+
+    private static boolean isLangChar(int c) {
+        return isWordStart(c) || isDigit(c) || c == '-';
+    }
+
+    private PatchException exception(String msg) {
+        return new PatchException("[line "+line+"] "+msg);
+    }
+
+    /**
+     * Direct-mapped cache from the bytes of a term to the {@link Node}.
+     * A lookup that hits does not allocate. The cache starts small, for short patches,
+     * and grows (losing its entries) when there are many misses.
+     */
+    private static class NodeCache {
+        private static final int MAX_SIZE = 64*1024;
+        private byte[][] keys;
+        private Node[] nodes;
+        private int mask;
+        private int misses = 0;
+
+        NodeCache(int size) {
+            allocate(Integer.highestOneBit(size));
+        }
+
+        private void allocate(int n) {
+            keys = new byte[n][];
+            nodes = new Node[n];
+            mask = n-1;
+            misses = 0;
+        }
+
+        Node get(byte[] bytes, int off, int len) {
+            int idx = hash(bytes, off, len) & mask;
+            byte[] k = keys[idx];
+            if ( k == null || k.length != len )
+                return null;
+            for ( int i = 0 ; i < len ; i++ ) {
+                if ( k[i] != bytes[off+i] )
+                    return null;
+            }
+            return nodes[idx];
+        }
+
+        void put(byte[] bytes, int off, int len, Node node) {
+            if ( ++misses > 2*keys.length && keys.length < MAX_SIZE )
+                allocate(4*keys.length);
+            int idx = hash(bytes, off, len) & mask;
+            keys[idx] = Arrays.copyOfRange(bytes, off, off+len);
+            nodes[idx] = node;
+        }
+
+        private static int hash(byte[] bytes, int off, int len) {
+            int h = 0x811C9DC5;
+            for ( int i = off ; i < off+len ; i++ )
+                h = (h ^ bytes[i]) * 0x01000193;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.graph.Node;
+import org.seaborne.patch.PatchCompression;
+import org.seaborne.patch.PatchCompression.Codec;
+import org.seaborne.patch.PatchHeader;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+
+/**
+ * An {@link RDFPatch} for a text patch file that is memory mapped, not read into the heap.
+ * <p>
+ * The file is parsed each time {@link #apply} is called so the patch is repeatable
+ * while holding only the mapping. The header is read, on first use, from the start of
+ * the file unless it was provided when the patch was created.
+ * <p>
+ * A compressed file is not mapped: it is read, and decompressed, from the file each time.
+ * <p>
+ * The file must not change while the patch is in use.
+ */
+public class RDFPatchMapped implements RDFPatch {
+    // Parser buffer sizes. Header rows are short.
+    private static final int HEADER_BUFFER_SIZE = 1024;
+    private static final int BUFFER_SIZE        = 16*1024;
+
+    private final Path path;
+    // Null for a compressed file.
+    private final ByteBuffer bytes;
+    private volatile PatchHeader header;
+
+    /** Map a patch file. */
+    public static RDFPatchMapped map(Path path) {
+        return map(path, null);
+    }
+
+    /** Map a patch file where the header is already known. */
+    public static RDFPatchMapped map(Path path, PatchHeader header) {
+        try {
+            Codec codec;
+            try ( InputStream in = Files.newInputStream(path) ) {
+                codec = PatchCompression.codecOf(in);
+            }
+            if ( codec != PatchCompression.NONE )
+                return new RDFPatchMapped(path, null, header);
+            try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+                // The mapping remains valid after the channel is closed.
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new RDFPatchMapped(path, bytes, header);
+            }
+        } catch (IOException ex) { IO.exception(ex); return null; }
+    }
+
+    private RDFPatchMapped(Path path, ByteBuffer bytes, PatchHeader header) {
+        this.path = path;
+        this.bytes = bytes;
+        this.header = header;
+    }
+
+    @Override
+    public PatchHeader header() {
+        PatchHeader h = header;
+        if ( h == null ) {
+            Map<String, Node> fields = new LinkedHashMap<>();
+            try ( InputStream in = input() ) {
+                PatchTextParser parser = new PatchTextParser(in, HEADER_BUFFER_SIZE);
+                parser.header((f,n)->fields.put(f, n));
+            } catch (IOException ex) { IO.exception(ex); }
+            h = new PatchHeader(fields);
+            header = h;
+        }
+        return h;
+    }
+
+    @Override
+    public void apply(RDFChanges changes) {
+        try ( InputStream in = input() ) {
+            new RDFPatchReaderText(new PatchTextParser(in, BUFFER_SIZE)).apply(changes);
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+
+    @Override
+    public boolean repeatable() {
+        return true;
+    }
+
+    /** Size of the patch file in bytes. */
+    public long size() {
+        if ( bytes == null ) {
+            try { return Files.size(path); }
+            catch (IOException ex) { IO.exception(ex); return -1; }
+        }
+        return bytes.capacity();
+    }
+
+    /** Whether the file is memory mapped; a compressed file is not. */
+    public boolean isMapped() {
+        return bytes != null;
+    }
+
+    @Override
+    public String toString() {
+        return "RDFPatchMapped["+path+"]";
+    }
+
+    /**
+     * A fresh stream of the uncompressed patch. Each has its own position, or its own
+     * file stream, so readers can run concurrently.
+     */
+    private InputStream input() throws IOException {
+        if ( bytes == null )
+            return PatchCompression.decompress(Files.newInputStream(path));
+        return new ByteBufferInputStream(bytes.duplicate());
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer bb;
+
+        ByteBufferInputStream(ByteBuffer bb) { this.bb = bb; }
+
+        @Override
+        public int read() {
+            return bb.hasRemaining() ? bb.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if ( len == 0 )
+                return 0;
+            if ( ! bb.hasRemaining() )
+                return -1;
+            int n = Math.min(len, bb.remaining());
+            bb.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return bb.remaining();
+        }
+    }
+}
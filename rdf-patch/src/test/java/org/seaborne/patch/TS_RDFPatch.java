@@ -21,8 +21,14 @@ package org.seaborne.patch;
 import org.apache.jena.atlas.logging.LogCtl;
 import org.junit.runner.RunWith ;
 import org.junit.runners.Suite ;
+import org.seaborne.patch.binary.TestPatchBinary;
+import org.seaborne.patch.binary.TestPatchDict;
 import org.seaborne.patch.filelog.TestAssemblerFileLog;
+import org.seaborne.patch.filelog.TestRollCompress;
+import org.seaborne.patch.filelog.TestSectionIndex;
 import org.seaborne.patch.filelog.TestRotate;
+import org.seaborne.patch.filelog.TestSyncPolicy;
+import org.seaborne.patch.text.TestRDFPatchReaderText;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
@@ -30,8 +36,20 @@ import org.seaborne.patch.filelog.TestRotate;
     , TestRDFChangesDataset.class
     , TestRDFChangesGraph.class
     , TestRDFChangesCancel.class
+    , TestRDFPatchCompact.class
+    , TestPatchSquash.class
+    , TestRDFChangesCanonical.class
+    , TestRDFChangesAsync.class
+    , TestDatasetGraphRealChanges.class
+    , TestPatchCompression.class
     , TestRotate.class
+    , TestSyncPolicy.class
+    , TestRollCompress.class
+    , TestSectionIndex.class
     , TestAssemblerFileLog.class
+    , TestPatchBinary.class
+    , TestPatchDict.class
+    , TestRDFPatchReaderText.class
 })
 
 public class TS_RDFPatch { 
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.system.DatasetGraphRealChanges;
+
+@RunWith(Parameterized.class)
+public class TestDatasetGraphRealChanges {
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        Supplier<DatasetGraph> mem = DatasetGraphFactory::createTxnMem;
+        Supplier<DatasetGraph> tdb1 = TDBFactory::createDatasetGraph;
+        Supplier<DatasetGraph> tdb2 = DatabaseMgr::createDatasetGraph;
+        return Arrays.asList(new Object[][] {
+            { "Mem/1",      mem,  1 },
+            { "Mem/100",    mem,  100 },
+            { "TDB1/100",   tdb1, 100 },
+            { "TDB2/100",   tdb2, 100 },
+        });
+    }
+
+    private static Quad q1 = SSE.parseQuad("(:g1 :s1 :p1 :o1)");
+    private static Quad q2 = SSE.parseQuad("(_ :s1 :p1 :o1)");
+    private static Quad q3 = SSE.parseQuad("(:g1 :s1 :p1 :o3)");
+    private static Quad q4 = SSE.parseQuad("(:g1 :s1 :p2 :o4)");
+
+    private final int batchSize;
+    private final DatasetGraph dsgBase;
+    private final RDFChangesCollector collector = new RDFChangesCollector();
+
+    public TestDatasetGraphRealChanges(String name, Supplier<DatasetGraph> maker, int batchSize) {
+        this.dsgBase = maker.get();
+        this.batchSize = batchSize;
+    }
+
+    private DatasetGraph create() {
+        Txn.executeWrite(dsgBase, ()->dsgBase.add(q1));
+        DatasetGraph dsg = RDFPatchOps.changes(dsgBase, collector);
+        return new DatasetGraphRealChanges(dsg, batchSize);
+    }
+
+    private String expected(Quad... adds) {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.txnBegin();
+        for ( Quad q : adds )
+            c.add(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject());
+        c.txnCommit();
+        return RDFPatchOps.str(c.getRDFPatch());
+    }
+
+    @Test public void realChanges_add() {
+        DatasetGraph dsg = create();
+        Txn.executeWrite(dsg, ()->{
+            dsg.add(q1);    // Present
+            dsg.add(q3);
+            dsg.add(q2);
+            dsg.add(q3);    // Already added
+            dsg.add(q4);
+        });
+        assertEquals(expected(q3, q2, q4), RDFPatchOps.str(collector.getRDFPatch()));
+    }
+
+    @Test public void realChanges_delete() {
+        DatasetGraph dsg = create();
+        Txn.executeWrite(dsg, ()->{
+            dsg.delete(q2);    // Not present
+            dsg.add(q2);
+            dsg.delete(q2);
+            dsg.delete(q1);
+            dsg.delete(q1);
+        });
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.txnBegin();
+        c.add(q2.getGraph(), q2.getSubject(), q2.getPredicate(), q2.getObject());
+        c.delete(q2.getGraph(), q2.getSubject(), q2.getPredicate(), q2.getObject());
+        c.delete(q1.getGraph(), q1.getSubject(), q1.getPredicate(), q1.getObject());
+        c.txnCommit();
+        assertEquals(RDFPatchOps.str(c.getRDFPatch()), RDFPatchOps.str(collector.getRDFPatch()));
+        Txn.executeRead(dsgBase, ()->assertTrue(dsgBase.isEmpty()));
+    }
+
+    @Test public void realChanges_read() {
+        DatasetGraph dsg = create();
+        Txn.executeWrite(dsg, ()->{
+            dsg.add(q3);
+            // Reads see the changes so far.
+            assertTrue(dsg.contains(q3));
+            dsg.delete(q3);
+            assertFalse(dsg.contains(q3));
+        });
+    }
+
+    @Test public void realChanges_abort() {
+        DatasetGraph dsg = create();
+        dsg.begin(ReadWrite.WRITE);
+        dsg.add(q3);
+        dsg.abort();
+        dsg.end();
+        Txn.executeRead(dsgBase, ()->assertFalse(dsgBase.contains(q3)));
+    }
+
+    // Several changes to one subject that has many triples.
+    @Test public void realChanges_subject() {
+        DatasetGraph dsg = create();
+        Txn.executeWrite(dsgBase, ()->{
+            for ( int i = 0 ; i < 100 ; i++ )
+                dsgBase.add(SSE.parseQuad("(:g1 :s1 :p "+i+")"));
+        });
+        collector.reset();
+        Quad[] present = { SSE.parseQuad("(:g1 :s1 :p 0)"), SSE.parseQuad("(:g1 :s1 :p 50)"), SSE.parseQuad("(:g1 :s1 :p 99)") };
+        Quad[] absent = { SSE.parseQuad("(:g1 :s1 :p 100)"), SSE.parseQuad("(:g1 :s1 :p 101)"), SSE.parseQuad("(:g1 :s1 :q 0)") };
+        Txn.executeWrite(dsg, ()->{
+            for ( Quad q : present )
+                dsg.add(q);
+            for ( Quad q : absent )
+                dsg.add(q);
+        });
+        assertEquals(expected(absent), RDFPatchOps.str(collector.getRDFPatch()));
+    }
+
+    // A read on another thread does not see, or pass on, the changes of the write transaction.
+    @Test public void realChanges_isolation() throws Exception {
+        DatasetGraph dsg = create();
+        dsg.begin(ReadWrite.WRITE);
+        try {
+            dsg.add(q3);
+            boolean seen = CompletableFuture.supplyAsync(()->Txn.calculateRead(dsg, ()->dsg.contains(q3))).get();
+            assertFalse(seen);
+            assertTrue(dsg.contains(q3));
+            dsg.commit();
+        } finally { dsg.end(); }
+        assertEquals(expected(q3), RDFPatchOps.str(collector.getRDFPatch()));
+    }
+
+    // Changes made outside a transaction are not dropped by a read transaction.
+    @Test public void realChanges_no_txn() {
+        DatasetGraph dsg = new DatasetGraphRealChanges(DatasetGraphFactory.create(), batchSize);
+        dsg.add(q3);
+        Txn.executeRead(dsg, ()->{});
+        assertTrue(dsg.contains(q3));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.PatchCompression.Codec;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.text.RDFPatchMapped;
+
+public class TestPatchCompression {
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node p1 = SSE.parseNode(":p1");
+
+    private static RDFPatch patch() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, SSE.parseNode("<uuid:0123>"));
+        c.txnBegin();
+        for ( int i = 0 ; i < 100 ; i++ )
+            c.add(null, s1, p1, SSE.parseNode(Integer.toString(i)));
+        c.txnCommit();
+        return c.getRDFPatch();
+    }
+
+    private static byte[] bytes(RDFPatch patch) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFPatchOps.write(out, patch);
+        return out.toByteArray();
+    }
+
+    @Test public void compress_gzip() {
+        byte[] bytes = bytes(patch());
+        byte[] gz = PatchCompression.compress(bytes, PatchCompression.GZIP);
+        assertTrue(gz.length < bytes.length);
+        assertTrue(PatchCompression.GZIP.matches(gz, gz.length));
+        RDFPatch patch = RDFPatchOps.read(PatchCompression.decompress(new ByteArrayInputStream(gz)));
+        assertEquals(RDFPatchOps.str(patch()), RDFPatchOps.str(patch));
+    }
+
+    @Test public void compress_none() throws Exception {
+        byte[] bytes = bytes(patch());
+        assertSame(bytes, PatchCompression.compress(bytes, PatchCompression.NONE));
+        // Not recognized as compressed.
+        String s = IO.readWholeFileAsUTF8(PatchCompression.decompress(new ByteArrayInputStream(bytes)));
+        assertEquals(new String(bytes, StandardCharsets.UTF_8), s);
+    }
+
+    @Test public void compress_short() throws Exception {
+        // Shorter than any magic number.
+        byte[] bytes = { 'T' };
+        assertEquals("T", IO.readWholeFileAsUTF8(PatchCompression.decompress(new ByteArrayInputStream(bytes))));
+    }
+
+    @Test public void compress_not_closed() throws Exception {
+        boolean[] closed = { false };
+        ByteArrayOutputStream x = new ByteArrayOutputStream() {
+            @Override public void close() { closed[0] = true; }
+        };
+        try ( OutputStream out = PatchCompression.compress(x, PatchCompression.GZIP) ) {
+            out.write(bytes(patch()));
+        }
+        assertFalse(closed[0]);
+        assertTrue(x.size() > 0);
+    }
+
+    @Test public void compress_mapped() throws Exception {
+        Path path = Files.createTempFile("patch", ".rdfp");
+        try {
+            Files.write(path, PatchCompression.compress(bytes(patch()), PatchCompression.GZIP));
+            RDFPatchMapped patch = RDFPatchMapped.map(path);
+            // Read from the file, not mapped.
+            assertFalse(patch.isMapped());
+            assertEquals(patch().getId(), patch.getId());
+            assertEquals(RDFPatchOps.str(patch()), RDFPatchOps.str(patch));
+        } finally { Files.delete(path); }
+    }
+
+    @Test public void codec_get() {
+        assertSame(PatchCompression.GZIP, PatchCompression.get("GZIP"));
+        assertSame(PatchCompression.NONE, PatchCompression.get("identity"));
+        assertNull(PatchCompression.get("unknown"));
+    }
+
+    @Test public void accepts() {
+        assertTrue(PatchCompression.accepts("gzip, deflate", PatchCompression.GZIP));
+        assertTrue(PatchCompression.accepts("deflate;q=0.5, *", PatchCompression.GZIP));
+        assertFalse(PatchCompression.accepts("gzip;q=0, *", PatchCompression.GZIP));
+        assertFalse(PatchCompression.accepts("deflate", PatchCompression.GZIP));
+        assertFalse(PatchCompression.accepts(null, PatchCompression.GZIP));
+        assertTrue(PatchCompression.accepts(null, PatchCompression.NONE));
+    }
+
+    @Test public void negotiate() {
+        assertSame(PatchCompression.GZIP, PatchCompression.negotiate("gzip, deflate"));
+        assertSame(PatchCompression.GZIP, PatchCompression.negotiate("br, gzip;q=0.8"));
+        assertSame(PatchCompression.NONE, PatchCompression.negotiate("gzip;q=0"));
+        assertSame(PatchCompression.NONE, PatchCompression.negotiate("deflate"));
+        assertSame(PatchCompression.NONE, PatchCompression.negotiate(null));
+        assertSame(PatchCompression.GZIP, PatchCompression.negotiate("*"));
+        assertSame(PatchCompression.GZIP, PatchCompression.negotiate("deflate;q=0.9, *;q=0.5"));
+        assertNotSame(PatchCompression.GZIP, PatchCompression.negotiate("gzip;q=0, *"));
+        assertSame(PatchCompression.NONE, PatchCompression.negotiate("*;q=0"));
+        assertSame(PatchCompression.NONE, PatchCompression.negotiate("identity, *;q=0"));
+        assertTrue(PatchCompression.acceptEncoding().contains("gzip"));
+    }
+
+    @Test public void register() {
+        Codec codec = new Codec() {
+            @Override public String name()                              { return "x-test"; }
+            @Override public OutputStream compress(OutputStream out)    { return out; }
+            @Override public java.io.InputStream decompress(java.io.InputStream in) { return in; }
+            @Override public boolean matches(byte[] bytes, int len)     { return false; }
+        };
+        PatchCompression.register(codec);
+        assertSame(codec, PatchCompression.get("x-test"));
+        assertSame(codec, PatchCompression.negotiate("x-test"));
+    }
+}
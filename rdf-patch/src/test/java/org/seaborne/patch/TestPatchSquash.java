@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.IsoMatcher;
+import org.junit.Test;
+import org.seaborne.patch.changes.PatchSquash;
+import org.seaborne.patch.changes.PatchSummary;
+import org.seaborne.patch.changes.RDFChangesApply;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+public class TestPatchSquash {
+    private static Node g1 = SSE.parseNode(":g1");
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node p1 = SSE.parseNode(":p1");
+    private static Node o1 = SSE.parseNode(":o1");
+    private static Node o2 = SSE.parseNode("'abc'");
+
+    private static RDFPatch patch(String id, String prev, Node[]... quads) {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, SSE.parseNode(id));
+        if ( prev != null )
+            c.header(RDFPatchConst.PREV, SSE.parseNode(prev));
+        c.txnBegin();
+        for ( Node[] q : quads ) {
+            // Sign in the first slot: non-null for add.
+            if ( q[0] != null )
+                c.add(q[1], q[2], q[3], q[4]);
+            else
+                c.delete(q[1], q[2], q[3], q[4]);
+        }
+        c.txnCommit();
+        return c.getRDFPatch();
+    }
+
+    private static Node[] add(Node g, Node s, Node p, Node o) { return new Node[] {s, g, s, p, o}; }
+    private static Node[] del(Node g, Node s, Node p, Node o) { return new Node[] {null, g, s, p, o}; }
+
+    private static List<RDFPatch> patches() {
+        return Arrays.asList(
+            patch("<uuid:01>", "<uuid:00>", add(null, s1, p1, o1), add(g1, s1, p1, o2)),
+            patch("<uuid:02>", "<uuid:01>", del(null, s1, p1, o1)),
+            patch("<uuid:03>", "<uuid:02>", add(null, s1, p1, o1), add(null, s1, p1, o2)));
+    }
+
+    private static DatasetGraph apply(DatasetGraph dsg, List<RDFPatch> patches) {
+        patches.forEach(p->p.apply(new RDFChangesApply(dsg)));
+        return dsg;
+    }
+
+    private static void check(RDFPatch squashed) {
+        assertEquals(SSE.parseNode("<uuid:03>"), squashed.getId());
+        assertEquals(SSE.parseNode("<uuid:00>"), squashed.getPrevious());
+        PatchSummary summary = RDFPatchOps.summary(squashed);
+        assertEquals(3, summary.countAddData);
+        assertEquals(0, summary.countDeleteData);
+        DatasetGraph dsg1 = apply(DatasetGraphFactory.createTxnMem(), patches());
+        DatasetGraph dsg2 = apply(DatasetGraphFactory.createTxnMem(), Arrays.asList(squashed));
+        assertTrue(IsoMatcher.isomorphic(dsg1, dsg2));
+    }
+
+    @Test public void squash_01() {
+        check(RDFPatchOps.squash(patches().iterator()));
+    }
+
+    @Test public void squash_delete_kept() {
+        // Add then delete : the delete remains.
+        RDFPatch squashed = RDFPatchOps.squash(Arrays.asList(
+            patch("<uuid:01>", null, add(g1, s1, p1, o1)),
+            patch("<uuid:02>", "<uuid:01>", del(g1, s1, p1, o1))).iterator());
+        PatchSummary summary = RDFPatchOps.summary(squashed);
+        assertEquals(0, summary.countAddData);
+        assertEquals(1, summary.countDeleteData);
+    }
+
+    @Test public void squash_abort() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, SSE.parseNode("<uuid:01>"));
+        c.txnBegin();
+        c.add(g1, s1, p1, o1);
+        c.txnAbort();
+        c.addPrefix(null, "ex", "http://example/");
+        RDFPatch squashed = RDFPatchOps.squash(Arrays.asList(c.getRDFPatch()).iterator());
+        PatchSummary summary = RDFPatchOps.summary(squashed);
+        assertEquals(0, summary.countAddData);
+        assertEquals(1, summary.countAddPrefix);
+    }
+
+    @Test public void squash_spill() throws IOException {
+        Path dir = Files.createTempDirectory("squash");
+        try {
+            PatchSquash squash = new PatchSquash(1, dir);
+            patches().forEach(squash::add);
+            assertTrue(squash.spilled());
+            check(squash.getRDFPatch());
+            try ( Stream<Path> files = Files.list(dir) ) {
+                assertEquals(0, files.count());
+            }
+        } finally { Files.delete(dir); }
+    }
+
+    @Test public void squash_large() throws IOException {
+        List<RDFPatch> patches = new ArrayList<>();
+        for ( int i = 0 ; i < 20 ; i++ ) {
+            RDFChangesCollector c = new RDFChangesCollector();
+            c.txnBegin();
+            for ( int j = 0 ; j < 100 ; j++ ) {
+                Node s = SSE.parseNode("<http://example/s"+j+">");
+                Node o = SSE.parseNode(Integer.toString((i+j)%7));
+                if ( (i+j) % 3 == 0 )
+                    c.delete(null, s, p1, o);
+                else
+                    c.add(null, s, p1, o);
+            }
+            c.txnCommit();
+            patches.add(c.getRDFPatch());
+        }
+        Path dir = Files.createTempDirectory("squash");
+        try {
+            PatchSquash squash = new PatchSquash(50, dir);
+            patches.forEach(squash::add);
+            RDFPatch squashed = squash.getRDFPatch();
+            DatasetGraph dsg1 = apply(DatasetGraphFactory.createTxnMem(), patches);
+            DatasetGraph dsg2 = apply(DatasetGraphFactory.createTxnMem(), Arrays.asList(squashed));
+            assertTrue(IsoMatcher.isomorphic(dsg1, dsg2));
+            assertEquals(RDFPatchOps.str(RDFPatchOps.squash(patches.iterator())).length(), RDFPatchOps.str(squashed).length());
+        } finally { Files.delete(dir); }
+    }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
 import java.util.function.Consumer;
 
 import org.apache.jena.atlas.lib.StrUtils;
@@ -31,6 +32,8 @@ import org.seaborne.patch.changes.PatchSummary;
 import org.seaborne.patch.changes.RDFChangesCollector;
 import org.seaborne.patch.changes.RDFChangesCounter;
 import org.seaborne.patch.changes.RDFChangesN;
+import org.seaborne.patch.changes.RDFChangesN.FailurePolicy;
+import org.seaborne.patch.changes.RDFChangesWrapper;
 
 public class TestRDFChanges {
     // Write read.
@@ -180,4 +183,119 @@ public class TestRDFChanges {
         assertEquals(0, c2.summary().getCountTxnAbort());
         assertEquals(2, c2.summary().getCountAddData());
     }
+
+    private static RDFPatch patch2() {
+        return makePatch((x)->{
+            x.txnBegin();
+            x.add(g1, s1, p1, o1);
+            x.add(g2, s1, p1, o1);
+            x.txnCommit();
+        });
+    }
+
+    @Test public void changesN_parallel_01() {
+        RDFChangesCounter c1 = new RDFChangesCounter();
+        RDFChangesCounter c2 = new RDFChangesCounter();
+        RDFChangesN changes = RDFChangesN.parallel(c1, c2);
+        patch2().apply(changes);
+        // Commit waits for all destinations.
+        assertEquals(1, c1.summary().getCountTxnCommit());
+        assertEquals(2, c1.summary().getCountAddData());
+        assertEquals(1, c2.summary().getCountTxnCommit());
+        assertEquals(2, c2.summary().getCountAddData());
+        assertEquals(0, changes.lag(0));
+        assertEquals(0, changes.lag(1));
+        changes.close();
+    }
+
+    @Test public void changesN_parallel_quorum() {
+        CountDownLatch latch = new CountDownLatch(1);
+        RDFChangesCounter c1 = new RDFChangesCounter();
+        RDFChangesCounter c2 = new RDFChangesCounter();
+        // Destination 2 does not finish the commit until released.
+        RDFChanges slow = new RDFChangesWrapper(c2) {
+            @Override public void txnCommit() {
+                try { latch.await(); } catch (InterruptedException ex) {}
+                super.txnCommit();
+            }
+        };
+        RDFChangesN changes = RDFChangesN.parallel(1, FailurePolicy.FAIL, 0, c1, slow);
+        patch2().apply(changes);
+        assertEquals(1, c1.summary().getCountTxnCommit());
+        assertEquals(0, c2.summary().getCountTxnCommit());
+        assertTrue(changes.lag(1) > 0);
+        latch.countDown();
+        changes.close();
+        assertEquals(1, c2.summary().getCountTxnCommit());
+        assertEquals(0, changes.lag(1));
+    }
+
+    private static RDFChanges failing() {
+        return new RDFChangesWrapper(new RDFChangesCounter()) {
+            @Override public void txnCommit() { throw new PatchException("Commit failed"); }
+        };
+    }
+
+    @Test public void changesN_parallel_detach() {
+        RDFChangesCounter c1 = new RDFChangesCounter();
+        RDFChangesN changes = RDFChangesN.parallel(0, FailurePolicy.DETACH, 0, c1, failing());
+        patch2().apply(changes);
+        assertEquals(1, c1.summary().getCountTxnCommit());
+        assertFalse(changes.isDetached(0));
+        assertTrue(changes.isDetached(1));
+        // Carries on with the remaining destination.
+        patch2().apply(changes);
+        assertEquals(2, c1.summary().getCountTxnCommit());
+        changes.close();
+    }
+
+    // Fails on the second add.
+    private static RDFChanges failingAdd(RDFChanges other) {
+        return new RDFChangesWrapper(other) {
+            int adds = 0;
+            @Override public void add(Node g, Node s, Node p, Node o) {
+                if ( ++adds == 2 )
+                    throw new PatchException("Add failed");
+                super.add(g, s, p, o);
+            }
+        };
+    }
+
+    @Test public void changesN_parallel_detach_add() {
+        RDFChangesCounter c1 = new RDFChangesCounter();
+        RDFChangesCounter c2 = new RDFChangesCounter();
+        RDFChangesN changes = RDFChangesN.parallel(0, FailurePolicy.DETACH, 0, c1, failingAdd(c2));
+        patch2().apply(changes);
+        changes.close();
+        assertEquals(1, c1.summary().getCountTxnCommit());
+        assertTrue(changes.isDetached(1));
+        // The failed destination did not commit the partial transaction.
+        assertEquals(0, c2.summary().getCountTxnCommit());
+        assertEquals(1, c2.summary().getCountTxnAbort());
+    }
+
+    @Test public void changesN_parallel_fail_add() {
+        RDFChangesCounter c1 = new RDFChangesCounter();
+        RDFChangesCounter c2 = new RDFChangesCounter();
+        RDFChangesN changes = RDFChangesN.parallel(0, FailurePolicy.FAIL, 0, c1, failingAdd(c2));
+        try {
+            patch2().apply(changes);
+            fail("Expected an exception");
+        } catch (PatchException ex) {}
+        changes.txnAbort();
+        changes.close();
+        // No destination committed.
+        assertEquals(0, c1.summary().getCountTxnCommit());
+        assertEquals(1, c1.summary().getCountTxnAbort());
+        assertEquals(0, c2.summary().getCountTxnCommit());
+        assertEquals(1, c2.summary().getCountTxnAbort());
+    }
+
+    @Test(expected=PatchException.class)
+    public void changesN_parallel_fail() {
+        RDFChangesN changes = RDFChangesN.parallel(0, FailurePolicy.FAIL, 0, new RDFChangesCounter(), failing());
+        try {
+            patch2().apply(changes);
+        } finally { changes.close(); }
+    }
 }
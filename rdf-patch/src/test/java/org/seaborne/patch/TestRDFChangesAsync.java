@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.changes.PatchSummary;
+import org.seaborne.patch.changes.RDFChangesAsync;
+import org.seaborne.patch.changes.RDFChangesAsync.Durability;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesCounter;
+import org.seaborne.patch.changes.RDFChangesWrapper;
+
+public class TestRDFChangesAsync {
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node p1 = SSE.parseNode(":p1");
+    private static Node o1 = SSE.parseNode(":o1");
+
+    private static PatchSummary summary(RDFChangesCollector c) {
+        return RDFPatchOps.summary(c.getRDFPatch());
+    }
+
+    // More changes than the ring buffer holds.
+    @Test public void async_order() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChangesAsync changes = new RDFChangesAsync(c, 16, Durability.COMMITTED);
+        RDFChangesCollector expected = new RDFChangesCollector();
+        for ( RDFChanges x : new RDFChanges[] {changes, expected} ) {
+            x.txnBegin();
+            x.addPrefix(null, "ex", "http://example/");
+            for ( int i = 0 ; i < 1000 ; i++ )
+                x.add(null, s1, p1, SSE.parseNode(Integer.toString(i)));
+            x.delete(null, s1, p1, o1);
+            x.txnCommit();
+        }
+        assertEquals(RDFPatchOps.str(expected.getRDFPatch()), RDFPatchOps.str(c.getRDFPatch()));
+        changes.close();
+    }
+
+    @Test public void async_commit_waits() {
+        AtomicBoolean committed = new AtomicBoolean(false);
+        RDFChanges slow = new RDFChangesWrapper(new RDFChangesCollector()) {
+            @Override public void txnCommit() {
+                try { Thread.sleep(50); } catch (InterruptedException ex) {}
+                committed.set(true);
+            }
+        };
+        RDFChangesAsync changes = new RDFChangesAsync(slow);
+        changes.txnBegin();
+        changes.add(null, s1, p1, o1);
+        changes.txnCommit();
+        assertTrue(committed.get());
+        changes.close();
+    }
+
+    @Test public void async_queued() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChangesAsync changes = new RDFChangesAsync(c, 1024, Durability.QUEUED);
+        changes.txnBegin();
+        changes.add(null, s1, p1, o1);
+        changes.txnCommit();
+        changes.flush();
+        PatchSummary summary = summary(c);
+        assertEquals(1, summary.countAddData);
+        assertEquals(1, summary.countTxnCommit);
+        changes.close();
+    }
+
+    @Test public void async_error() {
+        RDFChanges failing = new RDFChangesWrapper(new RDFChangesCollector()) {
+            @Override public void txnCommit() { throw new PatchException("Commit failed"); }
+        };
+        RDFChangesAsync changes = new RDFChangesAsync(failing);
+        changes.txnBegin();
+        changes.add(null, s1, p1, o1);
+        try {
+            changes.txnCommit();
+            fail("Expected an exception");
+        } catch (PatchException ex) {}
+        changes.close();
+    }
+
+    // An error part way through a transaction: the rest of it is not sent and it is aborted.
+    @Test public void async_error_add() {
+        RDFChangesCounter counter = new RDFChangesCounter();
+        AtomicInteger adds = new AtomicInteger(0);
+        RDFChanges failing = new RDFChangesWrapper(counter) {
+            @Override public void add(Node g, Node s, Node p, Node o) {
+                if ( adds.incrementAndGet() == 2 )
+                    throw new PatchException("Add failed");
+                super.add(g, s, p, o);
+            }
+        };
+        RDFChangesAsync changes = new RDFChangesAsync(failing);
+        try {
+            changes.txnBegin();
+            for ( int i = 0 ; i < 3 ; i++ )
+                changes.add(null, s1, p1, SSE.parseNode(Integer.toString(i)));
+            changes.txnCommit();
+            fail("Expected an exception");
+        } catch (PatchException ex) {}
+        changes.txnAbort();
+        assertEquals(1, counter.summary().getCountAddData());
+        assertEquals(0, counter.summary().getCountTxnCommit());
+        assertEquals(1, counter.summary().getCountTxnAbort());
+
+        // The next transaction goes through.
+        changes.txnBegin();
+        changes.add(null, s1, p1, o1);
+        changes.txnCommit();
+        assertEquals(1, counter.summary().getCountTxnCommit());
+        changes.close();
+    }
+
+    @Test public void async_dataset() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChangesAsync changes = new RDFChangesAsync(c);
+        DatasetGraph dsg = RDFPatchOps.changes(DatasetGraphFactory.createTxnMem(), changes);
+        dsg.begin(ReadWrite.WRITE);
+        dsg.add(Quad.defaultGraphIRI, s1, p1, o1);
+        dsg.commit();
+        dsg.end();
+        PatchSummary summary = summary(c);
+        assertEquals(1, summary.countAddData);
+        assertEquals(1, summary.countTxnCommit);
+        changes.close();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.changes.PatchSummary;
+import org.seaborne.patch.changes.RDFChangesCanonical;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+public class TestRDFChangesCanonical {
+    private static Node g1 = SSE.parseNode(":g1");
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node p1 = SSE.parseNode(":p1");
+    private static Node o1 = SSE.parseNode(":o1");
+    private static Node o2 = SSE.parseNode(":o2");
+
+    private static PatchSummary summary(RDFChangesCollector c) {
+        return RDFPatchOps.summary(c.getRDFPatch());
+    }
+
+    @Test public void canonical_duplicates() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChanges changes = new RDFChangesCanonical(c);
+        changes.txnBegin();
+        changes.add(g1, s1, p1, o1);
+        changes.add(g1, s1, p1, o1);
+        changes.delete(null, s1, p1, o2);
+        changes.delete(null, s1, p1, o2);
+        changes.addPrefix(null, "ex", "http://example/");
+        changes.addPrefix(null, "ex", "http://example/ns#");
+        changes.txnCommit();
+        PatchSummary summary = summary(c);
+        assertEquals(1, summary.countAddData);
+        assertEquals(1, summary.countDeleteData);
+        assertEquals(1, summary.countAddPrefix);
+        assertEquals(1, summary.countTxnCommit);
+    }
+
+    @Test public void canonical_last_change() {
+        // Add then delete : the delete is kept.
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChanges changes = new RDFChangesCanonical(c);
+        changes.txnBegin();
+        changes.add(g1, s1, p1, o1);
+        changes.delete(g1, s1, p1, o1);
+        changes.txnCommit();
+        PatchSummary summary = summary(c);
+        assertEquals(0, summary.countAddData);
+        assertEquals(1, summary.countDeleteData);
+    }
+
+    @Test public void canonical_real_changes() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChanges changes = new RDFChangesCanonical(c, true, 100);
+        changes.txnBegin();
+        // Cancel out.
+        changes.add(g1, s1, p1, o1);
+        changes.delete(g1, s1, p1, o1);
+        changes.delete(g1, s1, p1, o2);
+        changes.add(g1, s1, p1, o2);
+        // Net add.
+        changes.add(null, s1, p1, o1);
+        changes.delete(null, s1, p1, o1);
+        changes.add(null, s1, p1, o1);
+        changes.txnCommit();
+        PatchSummary summary = summary(c);
+        assertEquals(1, summary.countAddData);
+        assertEquals(0, summary.countDeleteData);
+    }
+
+    @Test public void canonical_abort() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChanges changes = new RDFChangesCanonical(c);
+        changes.txnBegin();
+        changes.add(g1, s1, p1, o1);
+        changes.txnAbort();
+        PatchSummary summary = summary(c);
+        assertEquals(0, summary.countAddData);
+        assertEquals(1, summary.countTxnAbort);
+    }
+
+    @Test public void canonical_bounded() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        RDFChanges changes = new RDFChangesCanonical(c, false, 2);
+        changes.txnBegin();
+        for ( int i = 0 ; i < 10 ; i++ )
+            changes.add(g1, s1, p1, SSE.parseNode(Integer.toString(i)));
+        // Passed on before the commit.
+        assertTrue(summary(c).countAddData > 0);
+        changes.txnCommit();
+        assertEquals(10, summary(c).countAddData);
+    }
+
+    @Test public void canonical_patch() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, SSE.parseNode("<uuid:0123>"));
+        c.txnBegin();
+        c.add(g1, s1, p1, o1);
+        c.add(g1, s1, p1, o1);
+        c.txnCommit();
+        RDFPatch patch = RDFPatchOps.canonical(c.getRDFPatch());
+        assertEquals(SSE.parseNode("<uuid:0123>"), patch.getId());
+        assertEquals(1, RDFPatchOps.summary(patch).countAddData);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact;
+import org.seaborne.patch.changes.RDFChangesCollectorCompact.RDFPatchCompact;
+
+public class TestRDFPatchCompact {
+    private static Node g1 = SSE.parseNode(":g1");
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node p1 = SSE.parseNode(":p1");
+    private static Node o1 = SSE.parseNode("'abc'@en");
+    private static Node o2 = SSE.parseNode("123");
+
+    private static void fill(RDFChanges changes) {
+        changes.header(RDFPatchConst.ID, SSE.parseNode("<uuid:0123>"));
+        changes.txnBegin();
+        changes.addPrefix(null, "ex", "http://example/");
+        changes.add(g1, s1, p1, o1);
+        changes.add(null, s1, p1, o2);
+        changes.delete(g1, s1, p1, o1);
+        changes.deletePrefix(g1, "ex");
+        changes.segment();
+        changes.txnAbort();
+        changes.txnBegin();
+        changes.add(null, s1, p1, o1);
+        changes.txnCommit();
+    }
+
+    private static RDFPatch compact() {
+        RDFChangesCollectorCompact c = new RDFChangesCollectorCompact();
+        fill(c);
+        return c.getRDFPatch();
+    }
+
+    @Test public void compact_same_as_collector() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        fill(c);
+        RDFPatch patch1 = c.getRDFPatch();
+        RDFPatch patch2 = compact();
+        assertEquals(RDFPatchOps.str(patch1), RDFPatchOps.str(patch2));
+        assertEquals(patch1.getId(), patch2.getId());
+    }
+
+    @Test public void compact_repeatable() {
+        RDFPatch patch = compact();
+        assertTrue(patch.repeatable());
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(patch));
+    }
+
+    @Test public void compact_equals() {
+        RDFPatch patch1 = compact();
+        RDFPatch patch2 = compact();
+        assertEquals(patch1, patch2);
+        assertEquals(patch1.hashCode(), patch2.hashCode());
+        RDFChangesCollectorCompact c = new RDFChangesCollectorCompact();
+        c.add(null, s1, p1, o1);
+        assertNotEquals(patch1, c.getRDFPatch());
+    }
+
+    @Test public void compact_copy() {
+        RDFChangesCollectorCompact c = new RDFChangesCollectorCompact();
+        c.add(g1, s1, p1, o1);
+        RDFPatch patch1 = c.getRDFPatch();
+        String str = RDFPatchOps.str(patch1);
+        c.add(g1, s1, p1, o2);
+        assertEquals(str, RDFPatchOps.str(patch1));
+        c.reset();
+        assertEquals(str, RDFPatchOps.str(patch1));
+        assertEquals(0, RDFPatchOps.summary(c.getRDFPatch()).countAddData);
+    }
+
+    @Test public void compact_ops() {
+        RDFPatch patch = RDFPatchOps.compact(RDFPatchOps.collect(compact()));
+        assertTrue(patch instanceof RDFPatchCompact);
+        assertSame(patch, RDFPatchOps.compact(patch));
+        RDFChangesCollector c = new RDFChangesCollector();
+        fill(c);
+        RDFPatch patch2 = RDFPatchOps.compact(c.getRDFPatch());
+        assertEquals(patch, patch2);
+    }
+}
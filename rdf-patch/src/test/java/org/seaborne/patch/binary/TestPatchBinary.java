@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.thrift.protocol.TProtocolException;
+import org.junit.Test;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.RDFChangesCollector;
+
+public class TestPatchBinary {
+    private static RDFPatch patch() {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0 ; i < 1000 ; i++ )
+            sb.append("abcdefghij");
+        RDFChangesCollector changes = new RDFChangesCollector();
+        changes.header(RDFPatchConst.ID, SSE.parseNode("<uuid:0123>"));
+        changes.txnBegin();
+        changes.add(SSE.parseNode(":g"), SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode("'abc'@en"));
+        changes.add(null, SSE.parseNode("_:b"), SSE.parseNode(":p"), SSE.parseNode("'café 中文'"));
+        changes.add(null, SSE.parseNode("<http://example/é>"), SSE.parseNode(":p"), SSE.parseNode("123"));
+        changes.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode("''"));
+        changes.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode("'"+sb+"'"));
+        changes.delete(null, SSE.parseNode(":s"), SSE.parseNode(":p"), SSE.parseNode("'2018-01-01'^^<http://www.w3.org/2001/XMLSchema#date>"));
+        changes.txnCommit();
+        return changes.getRDFPatch();
+    }
+
+    @Test public void binary_write_read_01() {
+        RDFPatch patch = patch();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFChangesWriterBinary.write(patch, out);
+        RDFPatch patch2 = RDFPatchReaderBinary.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(patch2));
+    }
+
+    @Test public void binary_compatible() {
+        // Same bytes as the plain Thrift compact protocol.
+        RDFPatch patch = patch();
+        ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+        RDFChangesWriterBinary.write(patch, out1);
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        RDFChangesWriterBinary w = new RDFChangesWriterBinary(TRDF.protocol(out2));
+        patch.apply(w);
+        w.finish();
+        assertArrayEquals(out2.toByteArray(), out1.toByteArray());
+        RDFPatch patch2 = RDFPatchReaderBinary.read(new ByteArrayInputStream(out2.toByteArray()));
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(patch2));
+    }
+
+    @Test(expected=TProtocolException.class)
+    public void binary_string_too_long() throws Exception {
+        // A string length over the limit is rejected before allocating.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PatchDict.writeVarint(new DataOutputStream(out), PatchProtocol.MAX_STRING_LENGTH+1L);
+        PatchProtocol.create(new ByteArrayInputStream(out.toByteArray())).readString();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.PatchException;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesWrapper;
+
+public class TestPatchDict {
+    private static Node g1 = SSE.parseNode(":g1");
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node s2 = SSE.parseNode("_:s2");
+    private static Node p1 = SSE.parseNode("<http://example/p1>");
+    private static Node p2 = SSE.parseNode("<http://example/other#p2>");
+
+    private static RDFPatch patch() {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        changes.header(RDFPatchConst.ID, SSE.parseNode("<uuid:0123>"));
+        changes.txnBegin();
+        changes.addPrefix(null, "ex", "http://example/");
+        changes.add(g1, s1, p1, SSE.parseNode("123"));
+        changes.add(null, s1, p1, SSE.parseNode("'abc'"));
+        changes.add(null, s2, p2, SSE.parseNode("'abc'@en"));
+        changes.add(g1, s2, p2, SSE.parseNode("'2018-01-01'^^<http://www.w3.org/2001/XMLSchema#date>"));
+        changes.delete(g1, s1, p1, SSE.parseNode("123"));
+        changes.deletePrefix(g1, "ex");
+        changes.txnCommit();
+        return changes.getRDFPatch();
+    }
+
+    private static byte[] write(RDFPatch patch, int maxTerms) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFChangesWriterDict w = new RDFChangesWriterDict(out, maxTerms);
+        patch.apply(w);
+        w.finish();
+        return out.toByteArray();
+    }
+
+    @Test public void dict_write_read_01() {
+        RDFPatch patch = patch();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFChangesWriterDict.write(patch, out);
+        RDFPatch patch2 = RDFPatchReaderDict.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(patch2));
+    }
+
+    @Test public void dict_write_read_02() {
+        // Dictionary full from the start : everything written in full.
+        RDFPatch patch = patch();
+        RDFPatch patch2 = RDFPatchReaderDict.read(new ByteArrayInputStream(write(patch, 0)));
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(patch2));
+        // Partially full.
+        RDFPatch patch3 = RDFPatchReaderDict.read(new ByteArrayInputStream(write(patch, 3)));
+        assertEquals(RDFPatchOps.str(patch), RDFPatchOps.str(patch3));
+    }
+
+    @Test public void dict_empty() {
+        RDFPatch patch = RDFPatchReaderDict.read(new ByteArrayInputStream(new byte[0]));
+        assertEquals(0, RDFPatchOps.summary(patch).countAddData);
+    }
+
+    @Test public void dict_nodes_once() {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        for ( int i = 0 ; i < 10 ; i++ )
+            changes.add(g1, s1, p1, SSE.parseNode("'"+i+"'"));
+        byte[] bytes = write(changes.getRDFPatch(), 100);
+        List<Node> subjects = new ArrayList<>();
+        RDFChanges c = new RDFChangesWrapper(new RDFChangesCollector()) {
+            @Override public void add(Node g, Node s, Node p, Node o) { subjects.add(s); }
+        };
+        RDFPatchReaderDict.read(new ByteArrayInputStream(bytes), c);
+        assertEquals(10, subjects.size());
+        for ( Node n : subjects )
+            assertSame(subjects.get(0), n);
+    }
+
+    @Test public void dict_smaller() {
+        RDFChangesCollector changes = new RDFChangesCollector();
+        for ( int i = 0 ; i < 1000 ; i++ )
+            changes.add(g1, SSE.parseNode("<http://example/s"+(i%50)+">"), p1, SSE.parseNode(Integer.toString(i)));
+        RDFPatch patch = changes.getRDFPatch();
+        byte[] dict = write(patch, 1000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFChangesWriterBinary w = new RDFChangesWriterBinary(TRDF.protocol(out));
+        patch.apply(w);
+        w.finish();
+        ByteArrayOutputStream outText = new ByteArrayOutputStream();
+        RDFPatchOps.write(outText, patch);
+        assertTrue(dict.length*3 < out.size());
+        assertTrue(dict.length*3 < outText.size());
+    }
+
+    @Test(expected=PatchException.class)
+    public void dict_string_too_long() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PatchDict.writeVarint(new DataOutputStream(out), PatchProtocol.MAX_STRING_LENGTH+1L);
+        PatchDict.readString(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+    }
+}
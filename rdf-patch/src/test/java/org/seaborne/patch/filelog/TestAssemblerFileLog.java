@@ -75,5 +75,16 @@ public class TestAssemblerFileLog {
         boolean b = IsoMatcher.isomorphic(ds.asDatasetGraph(), dsg1);
         assertTrue(b);
     }
-    
+
+    @Test public void assemSyncGroup() {
+        Dataset ds = (Dataset)AssemblerUtils.build(ADIR+"/assem-logged-group.ttl", VocabPatch.tLoggedDataset);
+        Txn.executeWrite(ds, ()->RDFDataMgr.read(ds, ADIR+"/data.ttl"));
+        
+        String patchfile = "target/filelog/log-group.rdfp.0001";
+        assertTrue("Patch file does not exist: "+patchfile, FileOps.exists(patchfile));
+        RDFPatch patch = RDFPatchOps.read(patchfile);
+        DatasetGraph dsg1 = DatasetGraphFactory.createTxnMem();
+        RDFPatchOps.applyChange(dsg1, patch);
+        assertTrue(IsoMatcher.isomorphic(ds.asDatasetGraph(), dsg1));
+    }
 }
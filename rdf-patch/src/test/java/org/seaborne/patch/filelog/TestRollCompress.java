@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.filelog.rotate.CompressionPolicy;
+import org.seaborne.patch.filelog.rotate.ManagedOutput;
+import org.seaborne.patch.filelog.rotate.OutputManagedFile;
+
+public class TestRollCompress {
+    private static Path DIR = Paths.get("target/filelog-roll");
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node p1 = SSE.parseNode(":p1");
+
+    @BeforeClass
+    public static void beforeClass() {
+        FileOps.ensureDir(DIR.toString());
+        FileOps.clearAll(DIR.toString());
+    }
+
+    private static void txn(RDFChanges changes, int i) {
+        changes.txnBegin();
+        changes.add(null, s1, p1, SSE.parseNode(Integer.toString(i)));
+        changes.txnCommit();
+    }
+
+    // Write N transactions, rotating after each one if asked to, and check what is read back.
+    private static List<Path> writeRead(String fn, ManagedOutput output, FilePolicy policy, int N, boolean rotate) {
+        RDFChanges changes = new RDFChangesManagedOutput(output);
+        RDFChangesCollector expected = new RDFChangesCollector();
+        for ( int i = 0 ; i < N ; i++ ) {
+            txn(changes, i);
+            txn(expected, i);
+            if ( rotate )
+                output.rotate();
+        }
+        // Start the next file so the last one is rotated out.
+        txn(changes, N);
+        txn(expected, N);
+        ((OutputManagedFile)output).awaitCompression();
+        RDFPatch patch = FileLogReader.read(fn, policy);
+        assertEquals(RDFPatchOps.str(expected.getRDFPatch()), RDFPatchOps.str(patch));
+        return FileLogReader.files(fn, policy);
+    }
+
+    @Test public void roll_size() {
+        String fn = DIR.resolve("log-size").toString();
+        ManagedOutput output = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.SIZE).rollSize(60).build();
+        List<Path> files = writeRead(fn, output, FilePolicy.SIZE, 10, false);
+        assertTrue(files.size() > 1);
+        assertTrue(files.size() <= 11);
+        for ( Path p : files )
+            assertFalse(p.toString().endsWith(".gz"));
+    }
+
+    @Test public void roll_size_compress() {
+        String fn = DIR.resolve("log-size-gz").toString();
+        ManagedOutput output = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.SIZE).rollSize(60)
+            .compression(CompressionPolicy.ROTATE).build();
+        List<Path> files = writeRead(fn, output, FilePolicy.SIZE, 10, false);
+        assertTrue(files.size() > 1);
+        // All but the current file are compressed.
+        for ( int i = 0 ; i < files.size()-1 ; i++ )
+            assertTrue(files.get(i).toString().endsWith(".gz"));
+        assertFalse(files.get(files.size()-1).toString().endsWith(".gz"));
+    }
+
+    @Test public void rotate_index_compress() {
+        String fn = DIR.resolve("log-index-gz").toString();
+        ManagedOutput output = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.INDEX)
+            .compression(CompressionPolicy.ROTATE).build();
+        List<Path> files = writeRead(fn, output, FilePolicy.INDEX, 3, true);
+        assertEquals(4, files.size());
+        assertTrue(Files.exists(Paths.get(fn+".0001.gz")));
+        assertTrue(Files.exists(Paths.get(fn+".0004")));
+    }
+
+    @Test public void rotate_shift_compress() {
+        String fn = DIR.resolve("log-shift-gz").toString();
+        ManagedOutput output = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.SHIFT)
+            .compression(CompressionPolicy.ROTATE).build();
+        List<Path> files = writeRead(fn, output, FilePolicy.SHIFT, 3, true);
+        assertEquals(4, files.size());
+        assertTrue(Files.exists(Paths.get(fn+".003.gz")));
+        assertTrue(Files.exists(Paths.get(fn+".001.gz")));
+        assertTrue(Files.exists(Paths.get(fn)));
+    }
+
+    @Test public void restart_index() {
+        String fn = DIR.resolve("log-restart").toString();
+        ManagedOutput output1 = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.INDEX)
+            .compression(CompressionPolicy.ROTATE).build();
+        writeRead(fn, output1, FilePolicy.INDEX, 2, true);
+        // A new output continues the index after the existing files, compressed or not.
+        ManagedOutput output2 = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.INDEX).build();
+        txn(new RDFChangesManagedOutput(output2), 99);
+        assertEquals("log-restart.0004", Paths.get(output2.currentFilename()).getFileName().toString());
+        assertEquals(4, FileLogReader.files(fn, FilePolicy.INDEX).size());
+    }
+}
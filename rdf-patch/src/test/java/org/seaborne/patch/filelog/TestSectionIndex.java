@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.seaborne.patch.RDFChanges;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.filelog.rotate.CompressionPolicy;
+import org.seaborne.patch.filelog.rotate.ManagedOutput;
+import org.seaborne.patch.filelog.rotate.OutputManagedFile;
+import org.seaborne.patch.filelog.rotate.SectionIndex;
+
+public class TestSectionIndex {
+    private static Path DIR = Paths.get("target/filelog-index");
+    private static Node s1 = SSE.parseNode(":s1");
+    private static Node p1 = SSE.parseNode(":p1");
+
+    @BeforeClass
+    public static void beforeClass() {
+        FileOps.ensureDir(DIR.toString());
+        FileOps.clearAll(DIR.toString());
+    }
+
+    private static void txn(RDFChanges changes, int i) {
+        changes.txnBegin();
+        changes.add(null, s1, p1, SSE.parseNode(Integer.toString(i)));
+        changes.txnCommit();
+    }
+
+    // Transactions i, i+1, ... N-1 as a string.
+    private static String expected(int i, int N) {
+        RDFChangesCollector c = new RDFChangesCollector();
+        for ( ; i < N ; i++ )
+            txn(c, i);
+        return RDFPatchOps.str(c.getRDFPatch());
+    }
+
+    private static ManagedOutput write(String fn, FilePolicy policy, int N) {
+        ManagedOutput output = OutputMgr.builder().pathName(fn).filePolicy(policy).rollSize(60)
+            .compression(CompressionPolicy.ROTATE).index(true).build();
+        RDFChanges changes = new RDFChangesManagedOutput(output);
+        for ( int i = 0 ; i < N ; i++ )
+            txn(changes, i);
+        ((OutputManagedFile)output).awaitCompression();
+        return output;
+    }
+
+    @Test public void index_size_compressed() {
+        String fn = DIR.resolve("log-size").toString();
+        write(fn, FilePolicy.SIZE, 10);
+        List<Path> files = FileLogReader.files(fn, FilePolicy.SIZE);
+        assertTrue(files.size() > 1);
+        assertTrue(files.get(0).toString().endsWith(".gz"));
+        List<SectionIndex.Entry> entries = FileLogReader.index(fn, FilePolicy.SIZE);
+        assertEquals(10, entries.size());
+        for ( int i = 0 ; i < entries.size() ; i++ )
+            assertEquals(i+1, entries.get(i).seq);
+    }
+
+    @Test public void replay_from() {
+        String fn = DIR.resolve("log-from").toString();
+        write(fn, FilePolicy.SIZE, 10);
+        // Transaction i has sequence number i+1
+        RDFChangesCollector c = new RDFChangesCollector();
+        assertTrue(FileLogReader.replayFrom(fn, FilePolicy.SIZE, 5, c));
+        assertEquals(expected(4, 10), RDFPatchOps.str(c.getRDFPatch()));
+
+        RDFChangesCollector c2 = new RDFChangesCollector();
+        assertFalse(FileLogReader.replayFrom(fn, FilePolicy.SIZE, 11, c2));
+    }
+
+    @Test public void replay_one() {
+        String fn = DIR.resolve("log-one").toString();
+        write(fn, FilePolicy.SIZE, 10);
+        for ( int i = 1 ; i <= 10 ; i++ ) {
+            SectionIndex.Entry e = FileLogReader.find(fn, FilePolicy.SIZE, i);
+            assertNotNull(e);
+            RDFChangesCollector c = new RDFChangesCollector();
+            FileLogReader.replay(e, c);
+            assertEquals(expected(i-1, i), RDFPatchOps.str(c.getRDFPatch()));
+        }
+        assertNull(FileLogReader.find(fn, FilePolicy.SIZE, 11));
+    }
+
+    @Test public void replay_since() {
+        String fn = DIR.resolve("log-since").toString();
+        write(fn, FilePolicy.INDEX, 3);
+        List<SectionIndex.Entry> entries = FileLogReader.index(fn, FilePolicy.INDEX);
+        assertEquals(3, entries.size());
+        RDFChangesCollector c = new RDFChangesCollector();
+        assertTrue(FileLogReader.replaySince(fn, FilePolicy.INDEX, entries.get(0).time, c));
+        assertEquals(expected(0, 3), RDFPatchOps.str(c.getRDFPatch()));
+    }
+
+    @Test public void index_shift() {
+        String fn = DIR.resolve("log-shift").toString();
+        ManagedOutput output = write(fn, FilePolicy.SHIFT, 2);
+        output.rotate();
+        txn(new RDFChangesManagedOutput(output), 2);
+        ((OutputManagedFile)output).awaitCompression();
+        // The index moved with the file.
+        assertTrue(Files.exists(Paths.get(fn+".001.gz")));
+        assertTrue(Files.exists(Paths.get(fn+".001.idx")));
+        List<SectionIndex.Entry> entries = FileLogReader.index(fn, FilePolicy.SHIFT);
+        assertEquals(3, entries.size());
+        assertEquals(3, entries.get(2).seq);
+        RDFChangesCollector c = new RDFChangesCollector();
+        FileLogReader.replayFrom(fn, FilePolicy.SHIFT, 2, c);
+        assertEquals(expected(1, 3), RDFPatchOps.str(c.getRDFPatch()));
+    }
+
+    @Test public void index_patch_id() {
+        String fn = DIR.resolve("log-id").toString();
+        ManagedOutput output = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.FIXED).index(true).build();
+        RDFChanges changes = new RDFChangesManagedOutput(output);
+        Node id = NodeFactory.createURI("uuid:0123-4567");
+        changes.header(RDFPatchConst.ID, id);
+        txn(changes, 1);
+        txn(changes, 2);
+        List<SectionIndex.Entry> entries = FileLogReader.index(fn, FilePolicy.FIXED);
+        assertEquals(2, entries.size());
+        assertEquals("uuid:0123-4567", entries.get(0).id);
+        assertNull(entries.get(1).id);
+    }
+
+    @Test public void index_recover() throws Exception {
+        String fn = DIR.resolve("log-recover").toString();
+        Path path = Paths.get(fn);
+        ManagedOutput output1 = OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.FIXED).index(true).build();
+        RDFChanges changes1 = new RDFChangesManagedOutput(output1);
+        for ( int i = 0 ; i < 3 ; i++ )
+            txn(changes1, i);
+        // Lose the last index entry and add one for data that never reached the file.
+        Path idx = SectionIndex.indexPath(path);
+        List<String> lines = Files.readAllLines(idx, StandardCharsets.UTF_8);
+        lines.set(2, "3 100000 50 0 -");
+        Files.write(idx, lines, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+
+        OutputManagedFile output2 = (OutputManagedFile)OutputMgr.builder().pathName(fn).filePolicy(FilePolicy.FIXED).index(true).build();
+        assertEquals(3, output2.sequence());
+        txn(new RDFChangesManagedOutput(output2), 3);
+        List<SectionIndex.Entry> entries = FileLogReader.index(fn, FilePolicy.FIXED);
+        assertEquals(4, entries.size());
+        assertEquals(Files.size(path), entries.get(3).end());
+        RDFChangesCollector c = new RDFChangesCollector();
+        FileLogReader.replayFrom(fn, FilePolicy.FIXED, 3, c);
+        assertEquals(expected(2, 4), RDFPatchOps.str(c.getRDFPatch()));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.filelog;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.lib.FileOps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.seaborne.patch.filelog.rotate.FileRotateException;
+import org.seaborne.patch.filelog.rotate.ManagedOutput;
+
+public class TestSyncPolicy {
+    private static Path DIR = Paths.get("target/filelog-sync");
+
+    @BeforeClass
+    public static void beforeClass() {
+        FileOps.ensureDir(DIR.toString());
+        FileOps.clearAll(DIR.toString());
+    }
+
+    @Test public void policy_names() {
+        assertEquals(SyncPolicy.TRANSACTION, SyncPolicy.policy("transaction"));
+        assertEquals(SyncPolicy.GROUP, SyncPolicy.policy("Group"));
+        assertEquals(SyncPolicy.OS, SyncPolicy.policy("os"));
+    }
+
+    @Test(expected=FileRotateException.class)
+    public void policy_bad() {
+        SyncPolicy.policy("sometimes");
+    }
+
+    @Test public void sync_transaction()    { write(SyncPolicy.TRANSACTION, 1, 10); }
+
+    @Test public void sync_os()             { write(SyncPolicy.OS, 1, 10); }
+
+    @Test public void sync_group_1()        { write(SyncPolicy.GROUP, 1, 10); }
+
+    @Test public void sync_group_N()        { write(SyncPolicy.GROUP, 8, 50); }
+
+    // Threads each write lines; all lines are in the file when the writes return.
+    private static void write(SyncPolicy syncPolicy, int threads, int each) {
+        String fn = DIR.resolve("log-"+syncPolicy.name().toLowerCase()+"-"+threads).toString();
+        ManagedOutput output = OutputMgr.create(fn, FilePolicy.FIXED, syncPolicy, 2, 4);
+        assertEquals(syncPolicy, output.syncPolicy());
+        List<Thread> workers = new ArrayList<>();
+        // The first failure in a worker thread.
+        AtomicReference<Throwable> failure = new AtomicReference<>(null);
+        for ( int t = 0 ; t < threads ; t++ ) {
+            int id = t;
+            workers.add(new Thread(()->{
+                try {
+                    for ( int i = 0 ; i < each ; i++ ) {
+                        try ( OutputStream out = output.output() ) {
+                            out.write(("T"+id+" "+i+"\n").getBytes(StandardCharsets.UTF_8));
+                        }
+                    }
+                } catch (Throwable th) { failure.compareAndSet(null, th); }
+            }));
+        }
+        workers.forEach(Thread::start);
+        workers.forEach(t->{
+            try { t.join(); } catch (InterruptedException ex) { failure.compareAndSet(null, ex); }
+        });
+        if ( failure.get() != null )
+            throw new AssertionError("Worker failed: "+failure.get(), failure.get());
+        try {
+            List<String> lines = Files.readAllLines(Paths.get(output.currentFilename()));
+            assertEquals(threads*each, lines.size());
+        } catch (IOException ex) { IO.exception(ex); }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.seaborne.patch.text;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.tokens.Tokenizer;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.Test;
+import org.seaborne.patch.PatchHeader;
+import org.seaborne.patch.RDFPatch;
+import org.seaborne.patch.RDFPatchConst;
+import org.seaborne.patch.RDFPatchOps;
+import org.seaborne.patch.changes.PatchSummary;
+import org.seaborne.patch.changes.RDFChangesCollector;
+import org.seaborne.patch.changes.RDFChangesCounter;
+
+public class TestRDFPatchReaderText {
+
+    private static InputStream input(String str) {
+        return new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static RDFPatch read(String str) {
+        RDFChangesCollector c = new RDFChangesCollector();
+        new RDFPatchReaderText(input(str)).apply(c);
+        return c.getRDFPatch();
+    }
+
+    /** Parse the object of an "A" row. */
+    private static Node parseObject(String term) {
+        Node[] result = new Node[1];
+        RDFChangesCollector c = new RDFChangesCollector() {
+            @Override public void add(Node g, Node s, Node p, Node o) { result[0] = o; }
+        };
+        new RDFPatchReaderText(input("A <http://example/s> <http://example/p> "+term+" .")).apply(c);
+        return result[0];
+    }
+
+    /** As the general tokenizer does it. */
+    private static Node tokenizerNode(String term) {
+        Tokenizer tokenizer = TokenizerFactory.makeTokenizerString(term);
+        return tokenizer.next().asNode();
+    }
+
+    private static void testTerm(String term) {
+        Node expected = tokenizerNode(term);
+        assertNotNull(expected);
+        assertEquals(expected, parseObject(term));
+    }
+
+    @Test public void term_iri()            { testTerm("<http://example/o>"); }
+    @Test public void term_iri_escape()     { testTerm("<http://example/\\u00E9>"); }
+    @Test public void term_iri_utf8()       { testTerm("<http://example/café>"); }
+    @Test public void term_string_1()       { testTerm("\"abc\""); }
+    @Test public void term_string_2()       { testTerm("'abc'"); }
+    @Test public void term_string_3()       { testTerm("\"\""); }
+    @Test public void term_string_escape()  { testTerm("\"a\\n\\t\\\"\\\\\\u00E9\\U0001F600\""); }
+    @Test public void term_string_utf8()    { testTerm("\"café 中文\""); }
+    @Test public void term_string_long_1()  { testTerm("\"\"\"a \"quoted\"\nstring\"\"\""); }
+    @Test public void term_string_long_2()  { testTerm("'''abc'''"); }
+    @Test public void term_lang()           { testTerm("\"abc\"@en-GB"); }
+    @Test public void term_datatype()       { testTerm("\"1\"^^<http://www.w3.org/2001/XMLSchema#int>"); }
+    @Test public void term_integer_1()      { testTerm("123"); }
+    @Test public void term_integer_2()      { testTerm("-5"); }
+    @Test public void term_decimal_1()      { testTerm("+1.5"); }
+    @Test public void term_decimal_2()      { testTerm(".5"); }
+    @Test public void term_double()         { testTerm("1.0e5"); }
+    @Test public void term_boolean()        { testTerm("true"); }
+
+    @Test public void term_bnode_1() {
+        assertEquals(NodeFactory.createBlankNode("b1"), parseObject("<_:b1>"));
+    }
+
+    @Test public void term_bnode_2() {
+        assertEquals(NodeFactory.createBlankNode("b2"), parseObject("_:b2"));
+    }
+
+    @Test public void term_integer_dot() {
+        // No space before the DOT
+        RDFPatch patch = read("A <http://example/s> <http://example/p> 123.");
+        assertEquals(1, RDFPatchOps.summary(patch).countAddData);
+    }
+
+    @Test public void read_rows() {
+        String x = String.join("\n",
+            "# Comment",
+            "H id <uuid:0123> .",
+            "TX .",
+            "PA \"ex\" <http://example/> .",
+            "PA \"ex2\" \"http://example/2\" <http://example/g> .",
+            "A <http://example/s> <http://example/p> <http://example/o> <http://example/g> .  # Comment",
+            "",
+            "D <http://example/s> <http://example/p> 'x'@en .",
+            "PD \"ex\" .",
+            "TC .",
+            "TB .",
+            "TA .",
+            "Z .",
+            "");
+        RDFChangesCounter counter = new RDFChangesCounter();
+        new RDFPatchReaderText(input(x)).apply(counter);
+        PatchSummary summary = counter.summary();
+        assertEquals(1, summary.countHeader);
+        assertEquals(2, summary.countTxnBegin);
+        assertEquals(1, summary.countTxnCommit);
+        assertEquals(1, summary.countTxnAbort);
+        assertEquals(1, summary.countAddData);
+        assertEquals(1, summary.countDeleteData);
+        assertEquals(2, summary.countAddPrefix);
+        assertEquals(1, summary.countDeletePrefix);
+        assertEquals(1, summary.countSegment);
+    }
+
+    @Test public void read_header() {
+        String x = "H id <uuid:0123> .\nH prev <uuid:0122> .\nTX .\nA <http://example/s> <http://example/p> 1 .\nTC .";
+        PatchHeader header = RDFPatchReaderText.readerHeader(input(x));
+        assertEquals(SSE.parseNode("<uuid:0123>"), header.get(RDFPatchConst.ID));
+        assertEquals(SSE.parseNode("<uuid:0122>"), header.get(RDFPatchConst.PREV));
+    }
+
+    @Test public void read_bad_row() {
+        // Bad row : the transaction is aborted.
+        String x = "TX .\nA <http://example/s> .\nTC .";
+        RDFChangesCounter counter = new RDFChangesCounter();
+        PrintStream err = System.err;
+        try {
+            System.setErr(new PrintStream(new ByteArrayOutputStream()));
+            new RDFPatchReaderText(input(x)).apply(counter);
+        } finally { System.setErr(err); }
+        assertEquals(1, counter.summary().countTxnAbort);
+        assertEquals(0, counter.summary().countAddData);
+    }
+
+    @Test public void read_large() {
+        // Across buffer boundaries, including a term larger than the buffer.
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0 ; i < 100_000 ; i++ )
+            sb.append('a');
+        String lex = sb.toString();
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.txnBegin();
+        for ( int i = 0 ; i < 5000 ; i++ )
+            c.add(null, SSE.parseNode("<http://example/s"+(i%10)+">"), SSE.parseNode(":p"), SSE.parseNode("'"+i+"'"));
+        c.add(null, SSE.parseNode(":s"), SSE.parseNode(":p"), NodeFactory.createLiteral(lex));
+        c.txnCommit();
+        RDFPatch patch = c.getRDFPatch();
+        String str = RDFPatchOps.str(patch);
+        RDFPatch patch2 = read(str);
+        assertEquals(str, RDFPatchOps.str(patch2));
+    }
+
+    @Test public void read_mapped() throws IOException {
+        String x = "H id <uuid:0123> .\nTX .\nA <http://example/s> <http://example/p> 'abc' .\nTC .\n";
+        Path path = Files.createTempFile("patch", ".rdfp");
+        try {
+            Files.write(path, x.getBytes(StandardCharsets.UTF_8));
+            RDFPatchMapped patch = RDFPatchMapped.map(path);
+            assertTrue(patch.isMapped());
+            assertEquals(SSE.parseNode("<uuid:0123>"), patch.getId());
+            assertTrue(patch.repeatable());
+            String str = RDFPatchOps.str(read(x));
+            assertEquals(str, RDFPatchOps.str(patch));
+            assertEquals(str, RDFPatchOps.str(patch));
+            // Header provided.
+            PatchHeader header = new PatchHeader(Collections.singletonMap(RDFPatchConst.ID, SSE.parseNode("<uuid:0999>")));
+            assertEquals(SSE.parseNode("<uuid:0999>"), RDFPatchMapped.map(path, header).getId());
+        } finally { Files.delete(path); }
+    }
+}